@@ -24,6 +24,9 @@ import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import crypto.pb.Crypto;
 import threads.lite.IPFS;
@@ -55,6 +58,7 @@ public class DOCS {
 
     private static final String TAG = DOCS.class.getSimpleName();
     private static final String INDEX_HTML = "index.html";
+    private static final long GC_DELAY = 5000; // [ms] after the last delete
     private static final HashSet<Long> runs = new HashSet<>();
     private static final HashSet<Uri> uris = new HashSet<>();
     private static DOCS INSTANCE = null;
@@ -64,6 +68,10 @@ public class DOCS {
     private final PAGES pages;
     private final String host;
     private final Hashtable<String, String> resolves = new Hashtable<>();
+    private final ScheduledExecutorService collector =
+            Executors.newSingleThreadScheduledExecutor();
+    @Nullable
+    private ScheduledFuture<?> collection;
 
     private boolean isRedirectIndex;
     private boolean isRedirectUrl;
@@ -75,6 +83,7 @@ public class DOCS {
         books = BOOKS.getInstance(context);
         host = ipfs.getPeerID().toBase32();
         refreshRedirectOptions(context);
+        initContentPins();
         initPinsPage();
     }
 
@@ -255,6 +264,49 @@ public class DOCS {
 
         deleteDocument(idx);
 
+        // the blocks of the unpinned content are removed in the background
+        scheduleGc();
+    }
+
+    // a batch of deletes runs one collection, it starts GC_DELAY after the last delete and
+    // when no collection is running (it would not know the content unpinned meanwhile)
+    private synchronized void scheduleGc() {
+        if (collection != null) {
+            collection.cancel(false);
+        }
+        collection = collector.schedule(() -> {
+            if (ipfs.isCollecting()) {
+                scheduleGc();
+            } else {
+                ipfs.gc();
+            }
+        }, GC_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    // the content of the threads and of the pages (the local one too) is pinned when it is
+    // stored, the content stored before the pins existed is pinned here (before a collection
+    // can run, the collections are started by a delete)
+    private void initContentPins() {
+        List<String> contents = new ArrayList<>(threads.getContents());
+        contents.addAll(pages.getContents());
+        for (String content : contents) {
+            try {
+                Cid cid = Cid.decode(content);
+                if (!ipfs.isPinned(cid)) {
+                    ipfs.pin(cid, true);
+                }
+            } catch (Throwable throwable) {
+                LogUtils.error(TAG, throwable);
+            }
+        }
+    }
+
+    // a replaced directory is unpinned, when no thread (and not the pins page) uses it
+    private void unpinContent(@NonNull Cid cid) {
+        if (!threads.isReferenced(cid.String()) &&
+                !Objects.equals(cid.String(), getLocalName())) {
+            ipfs.unpin(cid);
+        }
     }
 
     private void deleteThread(long idx) {
@@ -268,7 +320,7 @@ public class DOCS {
                     threads.removeThread(thread);
                     if (cid != null) {
                         if (!threads.isReferenced(cid)) {
-                            ipfs.rm(Cid.decode(cid));
+                            ipfs.unpin(Cid.decode(cid));
                         }
                     }
                 }
@@ -386,6 +438,7 @@ public class DOCS {
         if (parent > 0) {
             Cid dirCid = Cid.decode(Objects.requireNonNull(threads.getThreadContent(parent)));
             Objects.requireNonNull(dirCid);
+            Cid oldDir = dirCid;
             if (!oldName.isEmpty()) {
                 Cid dir = ipfs.rmLinkFromDir(dirCid, oldName);
                 if (dir != null) {
@@ -395,11 +448,14 @@ public class DOCS {
             Cid newDir = ipfs.addLinkToDir(dirCid, name, cid);
             Objects.requireNonNull(newDir);
             threads.setThreadContent(parent, newDir.String());
+            unpinContent(oldDir);
+            unpinContent(dirCid);
             threads.setThreadLastModified(parent, System.currentTimeMillis());
             updateParentDocument(parent, "");
         } else {
             Cid dirCid = Cid.decode(Objects.requireNonNull(pages.getPageContent(ipfs.getPeerID().toBase58())));
             Objects.requireNonNull(dirCid);
+            Cid oldDir = dirCid;
             if (!oldName.isEmpty()) {
                 Cid dir = ipfs.rmLinkFromDir(dirCid, oldName);
                 if (dir != null) {
@@ -410,6 +466,8 @@ public class DOCS {
             Cid newDir = ipfs.addLinkToDir(dirCid, name, cid);
             Objects.requireNonNull(newDir);
             pages.setPageContent(ipfs.getPeerID().toBase58(), newDir.String());
+            unpinContent(oldDir);
+            unpinContent(dirCid);
         }
     }
 
@@ -426,6 +484,7 @@ public class DOCS {
                 Cid newDir = ipfs.rmLinkFromDir(dirCid, name);
                 if (newDir != null) {
                     threads.setThreadContent(parent, newDir.String());
+                    unpinContent(dirCid);
                     threads.setThreadLastModified(parent, System.currentTimeMillis());
                     updateParentDocument(parent, "");
                 }
@@ -436,6 +495,7 @@ public class DOCS {
                 Cid newDir = ipfs.rmLinkFromDir(dirCid, name);
                 if (newDir != null) {
                     pages.setPageContent(ipfs.getPeerID().toBase58(), newDir.String());
+                    unpinContent(dirCid);
                 }
             }
         }
@@ -538,6 +598,7 @@ public class DOCS {
             // just for backup, in case something happen before
             page = getPinsPage();
             Objects.requireNonNull(page);
+            Cid oldDir = Cid.decode(Objects.requireNonNull(page.getContent()));
             Cid dir = ipfs.createEmptyDir();
             Objects.requireNonNull(dir);
 
@@ -549,12 +610,15 @@ public class DOCS {
                     String link = pin.getContent();
                     Objects.requireNonNull(link);
                     String name = pin.getName();
+                    Cid previous = dir;
                     dir = ipfs.addLinkToDir(dir, name, Cid.decode(link));
                     Objects.requireNonNull(dir);
+                    unpinContent(previous);
                 }
             }
             page.setContent(dir.String());
             pages.storePage(page);
+            unpinContent(oldDir);
 
 
         } catch (Throwable throwable) {
@@ -758,8 +822,13 @@ public class DOCS {
         }
 
         resolves.put(pid, entry.getHash());
+        // the stored part of the page content is kept, the replaced one is not
+        ipfs.pin(Cid.decode(entry.getHash()), true);
         pages.setPageContent(pid, entry.getHash());
         pages.setPageSequence(pid, entry.getSequence());
+        if (cid != null && !Objects.equals(cid, entry.getHash())) {
+            unpinContent(Cid.decode(cid));
+        }
         return entry.getHash();
     }
 
@@ -78,6 +78,10 @@ public class PAGES {
         return pageDatabase.pageDao().getPageContent(pid);
     }
 
+    @NonNull
+    public List<String> getContents() {
+        return pageDatabase.pageDao().getContents();
+    }
 
     public void setPageContent(@NonNull String pid, @NonNull String content) {
         pageDatabase.pageDao().setContent(pid, content);
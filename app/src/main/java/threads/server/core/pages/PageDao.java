@@ -20,6 +20,9 @@ public interface PageDao {
     @Query("SELECT content FROM Page WHERE pid = :pid")
     String getPageContent(String pid);
 
+    @Query("SELECT DISTINCT content FROM Page WHERE content IS NOT NULL")
+    List<String> getContents();
+
     @Query("UPDATE Page SET content =:content WHERE pid = :pid")
     void setContent(String pid, String content);
 
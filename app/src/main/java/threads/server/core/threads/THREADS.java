@@ -121,6 +121,11 @@ public class THREADS {
         return getThreadsDatabase().threadDao().references(cid) > 0;
     }
 
+    @NonNull
+    public List<String> getContents() {
+        return getThreadsDatabase().threadDao().getContents();
+    }
+
     public List<Thread> getNewestThreads(int limit) {
         return getThreadsDatabase().threadDao().getNewestThreads(limit);
     }
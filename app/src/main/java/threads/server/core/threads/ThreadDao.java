@@ -42,6 +42,9 @@ public interface ThreadDao {
     @Query("SELECT COUNT(idx) FROM Thread WHERE content =:cid")
     int references(String cid);
 
+    @Query("SELECT DISTINCT content FROM Thread WHERE content IS NOT NULL")
+    List<String> getContents();
+
     @Query("SELECT * FROM Thread WHERE parent =:thread")
     List<Thread> getChildren(long thread);
 
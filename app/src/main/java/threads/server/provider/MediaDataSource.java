@@ -7,6 +7,7 @@ import android.media.MediaMetadataRetriever;
 import androidx.annotation.NonNull;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import threads.lite.LogUtils;
@@ -37,7 +38,7 @@ public class MediaDataSource extends android.media.MediaDataSource {
         try {
 
             retriever.setDataSource(new MediaDataSource(
-                    threads.lite.data.BLOCKS.getInstance(context), cid));
+                    threads.lite.IPFS.getInstance(context).getStorage(), cid));
 
             if (time <= 0) {
                 return retriever.getFrameAtTime();
@@ -75,10 +76,7 @@ public class MediaDataSource extends android.media.MediaDataSource {
     @Override
     public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
         try {
-            byte[] data = new byte[size];
-            fileReader.readNextData(position, size, data);
-            System.arraycopy(data, 0, buffer, offset, data.length);
-            return data.length;
+            return fileReader.read(position, ByteBuffer.wrap(buffer, offset, size));
         } catch (Throwable throwable) {
             throw new IOException(throwable);
         }
@@ -184,7 +184,7 @@ public class ClearBrowserDataWorker extends Worker {
             fileProvider.cleanDataDir();
 
             // Clear browser data
-            threads.lite.data.BLOCKS.getInstance(getApplicationContext()).clear();
+            threads.lite.IPFS.getInstance(getApplicationContext()).clearDatabase();
             PAGES.getInstance(getApplicationContext()).clear();
             THREADS.getInstance(getApplicationContext()).clear();
 
@@ -128,12 +128,27 @@ public class DownloadContentWorker extends Worker {
                     String mimeType = docs.getMimeType(getApplicationContext(),
                             uri, cid, this::isStopped);
 
-                    if (Objects.equals(mimeType, MimeType.DIR_MIME_TYPE)) {
-                        doc = doc.createDirectory(name);
-                        Objects.requireNonNull(doc);
-                    }
+                    // all blocks are fetched in parallel, the download itself reads the
+                    // local blocks (nothing is created when blocks are missing), the
+                    // blocks are not removed by a collection meanwhile
+                    ipfs.holdBlocks();
+                    try {
+                        if (!fetch(cid, name)) {
+                            LogUtils.info(TAG, "Missing blocks of " + cid.String());
+                            closeNotification();
+                            buildFailedNotification(name);
+                            return Result.failure();
+                        }
+
+                        if (Objects.equals(mimeType, MimeType.DIR_MIME_TYPE)) {
+                            doc = doc.createDirectory(name);
+                            Objects.requireNonNull(doc);
+                        }
 
-                    downloadContent(doc, cid, mimeType, name);
+                        downloadLinks(doc, cid, mimeType, name);
+                    } finally {
+                        ipfs.releaseBlocks();
+                    }
 
 
                     if (!isStopped()) {
@@ -152,6 +167,7 @@ public class DownloadContentWorker extends Worker {
             }
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
+            return Result.failure();
         } finally {
             LogUtils.info(TAG, " finish onStart [" + (System.currentTimeMillis() - start) + "]...");
         }
@@ -161,11 +177,24 @@ public class DownloadContentWorker extends Worker {
     }
 
 
-    private void downloadContent(@NonNull DocumentFile doc, @NonNull Cid root,
-                                 @NonNull String mimeType, @NonNull String name) throws ClosedException {
+    private boolean fetch(@NonNull Cid root, @NonNull String name) throws ClosedException {
 
+        return ipfs.fetch(root, new Progress() {
+            @Override
+            public boolean isClosed() {
+                return isStopped();
+            }
 
-        downloadLinks(doc, root, mimeType, name);
+            @Override
+            public void setProgress(int percent) {
+                reportProgress(name, percent);
+            }
+
+            @Override
+            public boolean doProgress() {
+                return true;
+            }
+        });
 
     }
 
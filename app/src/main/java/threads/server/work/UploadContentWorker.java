@@ -246,6 +246,7 @@ public class UploadContentWorker extends Worker {
                         }
                         threads.setThreadName(idx, name);
                         threads.setThreadMimeType(idx, mimeType);
+                        ipfs.pin(cid, true);
                         threads.setThreadContent(idx, cid.String());
 
                         downloadThread(idx);
@@ -0,0 +1,305 @@
+package threads.lite;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import net.luminis.quic.QuicClientConnectionImpl;
+import net.luminis.quic.QuicConnection;
+import net.luminis.quic.TransportParameters;
+import net.luminis.quic.Version;
+import net.luminis.quic.cc.CongestionControlAlgorithm;
+import net.luminis.quic.server.ApplicationProtocolConnection;
+import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
+import net.luminis.quic.server.Server;
+import net.luminis.quic.stream.QuicStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import threads.lite.crypto.Rsa;
+import threads.lite.host.LiteHostCertificate;
+
+import static org.junit.Assert.assertEquals;
+
+// Uploads data over a simulated network path for each congestion control algorithm and reports
+// the goodput. The path is a UDP relay on localhost, which limits the bandwidth (with a drop tail
+// queue) and adds delay and random loss in both directions.
+@RunWith(AndroidJUnit4.class)
+public class IpfsCongestionPerformance {
+    private static final String TAG = IpfsCongestionPerformance.class.getSimpleName();
+    private static final int SIZE = 8 * 1024 * 1024;
+    private static final long BANDWIDTH = 5_000_000; // bytes per second (40 Mbit/s)
+    private static final int DELAY = 40; // one way, ms
+    private static final double LOSS = 0.005;
+    private static Context context;
+
+    @BeforeClass
+    public static void setup() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void test_goodput() throws Exception {
+
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+        keyGen.initialize(2048, LiteHostCertificate.ThreadLocalInsecureRandom.current());
+        KeyPair keypair = keyGen.generateKeyPair();
+        LiteHostCertificate certificate = new LiteHostCertificate(context,
+                new Rsa.RsaPrivateKey(keypair.getPrivate(), keypair.getPublic()), keypair);
+
+        DatagramSocket serverSocket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        Server server = new Server(serverSocket, IPFS.APRN,
+                new FileInputStream(certificate.certificate()),
+                new FileInputStream(certificate.privateKey()),
+                Arrays.asList(Version.IETF_draft_29, Version.QUIC_version_1), false,
+                new ApplicationProtocolConnectionFactory() {
+                    @Override
+                    public ApplicationProtocolConnection createConnection(String protocol,
+                                                                          QuicConnection quicConnection) {
+                        quicConnection.setPeerInitiatedStreamCallback(stream ->
+                                new Thread(() -> sink(stream)).start());
+                        return new ApplicationProtocolConnection() {
+                        };
+                    }
+                });
+        server.start();
+
+        Relay relay = new Relay(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                serverSocket.getLocalPort()), BANDWIDTH, DELAY, LOSS);
+        try {
+            byte[] data = new byte[SIZE];
+            new Random().nextBytes(data);
+            // warm up client and server, the first transfer is much slower
+            upload(CongestionControlAlgorithm.NewReno, relay, certificate, data);
+
+            for (CongestionControlAlgorithm algorithm : CongestionControlAlgorithm.values()) {
+                upload(algorithm, relay, certificate, data);
+            }
+        } finally {
+            relay.close();
+            server.shutdown();
+        }
+    }
+
+    private void upload(@NonNull CongestionControlAlgorithm algorithm, @NonNull Relay relay,
+                        @NonNull LiteHostCertificate certificate, byte[] data) throws Exception {
+
+        QuicClientConnectionImpl conn = QuicClientConnectionImpl.newBuilder()
+                .version(Version.QUIC_version_1)
+                .noServerCertificateCheck()
+                .clientCertificate(certificate.cert())
+                .clientCertificateKey(certificate.key())
+                .host("127.0.0.1")
+                .port(relay.getPort())
+                .congestionControl(algorithm)
+                .build();
+        conn.connect(IPFS.CONNECT_TIMEOUT, IPFS.APRN,
+                new TransportParameters(IPFS.GRACE_PERIOD, IPFS.MESSAGE_SIZE_MAX,
+                        IPFS.MAX_STREAMS, 0), null);
+
+        long dropped = relay.getDropped();
+        long start = System.currentTimeMillis();
+        QuicStream stream = conn.createStream(true);
+        stream.write(ByteBuffer.wrap(data));
+        stream.getOutputStream().close();
+        // the sink confirms the number of bytes, when all data is received
+        byte[] confirmation = new byte[8];
+        InputStream inputStream = stream.getInputStream();
+        int read = 0;
+        while (read < confirmation.length) {
+            int count = inputStream.read(confirmation, read, confirmation.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        assertEquals(data.length, ByteBuffer.wrap(confirmation).getLong());
+
+        LogUtils.debug(TAG, algorithm + " : " + data.length + " bytes in " + time + " [ms] " +
+                (data.length / time) + " [KB/s] of " + (BANDWIDTH / 1000) + " [KB/s], dropped " +
+                (relay.getDropped() - dropped) + " [datagrams], " +
+                conn.getStats().toString().replace('\n', ' '));
+        conn.close();
+    }
+
+    private static void sink(@NonNull QuicStream stream) {
+        try {
+            InputStream inputStream = stream.getInputStream();
+            byte[] buffer = new byte[16384];
+            long total = 0;
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                total += count;
+            }
+            OutputStream outputStream = stream.getOutputStream();
+            outputStream.write(ByteBuffer.allocate(8).putLong(total).array());
+            outputStream.close();
+        } catch (Throwable throwable) {
+            LogUtils.error(TAG, throwable);
+        }
+    }
+
+    // forwards the datagrams of one client to the server and back
+    private static class Relay {
+        private final DatagramSocket clientSide;
+        private final DatagramSocket serverSide;
+        private final Link toServer;
+        private final Link toClient;
+        private volatile SocketAddress client;
+        private volatile boolean closed;
+
+        Relay(@NonNull SocketAddress server, long bandwidth, int delay, double loss) throws Exception {
+            clientSide = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            serverSide = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            toServer = new Link(serverSide, bandwidth, delay, loss);
+            toServer.target = server;
+            toClient = new Link(clientSide, bandwidth, delay, loss);
+            receive(clientSide, toServer, true);
+            receive(serverSide, toClient, false);
+        }
+
+        private void receive(@NonNull DatagramSocket socket, @NonNull Link link, boolean fromClient) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[1500];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                while (!closed) {
+                    try {
+                        packet.setLength(buffer.length);
+                        socket.receive(packet);
+                        if (fromClient && client == null) {
+                            client = packet.getSocketAddress();
+                            toClient.target = client;
+                        }
+                        link.offer(Arrays.copyOf(buffer, packet.getLength()));
+                    } catch (Throwable throwable) {
+                        if (!closed) {
+                            LogUtils.error(TAG, throwable);
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return clientSide.getLocalPort();
+        }
+
+        long getDropped() {
+            return toServer.dropped.get() + toClient.dropped.get();
+        }
+
+        void close() {
+            closed = true;
+            toServer.close();
+            toClient.close();
+            clientSide.close();
+            serverSide.close();
+        }
+    }
+
+    // one direction of the path: a bottleneck with a drop tail queue (of twice the delay),
+    // followed by a fixed delay and random loss
+    private static class Link {
+        private final DelayQueue<Datagram> queue = new DelayQueue<>();
+        private final DatagramSocket socket;
+        private final long bandwidth;
+        private final long delay;
+        private final long maxQueueTime;
+        private final double loss;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+        private volatile SocketAddress target;
+        private long nextDeparture;
+
+        Link(@NonNull DatagramSocket socket, long bandwidth, int delay, double loss) {
+            this.socket = socket;
+            this.bandwidth = bandwidth;
+            this.delay = TimeUnit.MILLISECONDS.toNanos(delay);
+            this.maxQueueTime = 2 * this.delay;
+            this.loss = loss;
+            thread = new Thread(this::forward);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void offer(byte[] data) {
+            if (ThreadLocalRandom.current().nextDouble() < loss) {
+                dropped.incrementAndGet();
+                return;
+            }
+            long now = System.nanoTime();
+            long departure = Math.max(now, nextDeparture) + data.length * 1_000_000_000L / bandwidth;
+            if (departure - now > maxQueueTime) {
+                dropped.incrementAndGet();
+                return;
+            }
+            nextDeparture = departure;
+            queue.add(new Datagram(data, departure + delay));
+        }
+
+        private void forward() {
+            try {
+                while (true) {
+                    Datagram datagram = queue.take();
+                    socket.send(new DatagramPacket(datagram.data, datagram.data.length, target));
+                }
+            } catch (InterruptedException ignore) {
+                // closed
+            } catch (Throwable throwable) {
+                if (!socket.isClosed()) {
+                    LogUtils.error(TAG, throwable);
+                }
+            }
+        }
+
+        void close() {
+            thread.interrupt();
+        }
+    }
+
+    private static class Datagram implements Delayed {
+        final byte[] data;
+        final long time;
+
+        Datagram(byte[] data, long time) {
+            this.data = data;
+            this.time = time;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(time, ((Datagram) other).time);
+        }
+    }
+}
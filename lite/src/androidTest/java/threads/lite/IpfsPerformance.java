@@ -13,16 +13,31 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import threads.lite.cid.Cid;
 import threads.lite.core.Progress;
+import threads.lite.dag.Adder;
+import threads.lite.data.BLOCKS;
+import threads.lite.format.BasicMetrics;
+import threads.lite.format.BlockStore;
+import threads.lite.utils.Exchange;
+import threads.lite.utils.MetricsBlockStore;
+import threads.lite.utils.Reader;
+import threads.lite.utils.Stream;
+import threads.lite.utils.WriterStream;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
@@ -249,4 +264,134 @@ public class IpfsPerformance {
     }
 
 
+    @NonNull
+    private Cid importFile(@NonNull BlockStore blockStore, @NonNull File file,
+                           boolean parallel, boolean balanced) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            Adder adder = Stream.getFileAdder(blockStore);
+            adder.Parallel = parallel;
+            adder.BalancedLayout = balanced;
+            return adder.AddReader(new WriterStream(inputStream, new Progress() {
+                @Override
+                public void setProgress(int percent) {
+                }
+
+                @Override
+                public boolean doProgress() {
+                    return false;
+                }
+
+                @Override
+                public boolean isClosed() {
+                    return false;
+                }
+            }, file.length())).getCid();
+        }
+    }
+
+    @Test
+    public void test_import_parallel() throws Exception {
+
+        int packetSize = 10000;
+        long maxData = 5000;
+
+        File inputFile = createCacheFile();
+        for (int i = 0; i < maxData; i++) {
+            byte[] randomBytes = getRandomBytes(packetSize);
+            FileServer.insertRecord(inputFile, i, packetSize, randomBytes);
+        }
+        long size = inputFile.length();
+        double mb = size / (1024.0 * 1024.0);
+
+        BLOCKS blocks = BLOCKS.getInstance(context);
+        BlockStore blockStore = BlockStore.createBlockStore(blocks);
+
+        blocks.clear();
+        long now = System.currentTimeMillis();
+        Cid sequential = importFile(blockStore, inputFile, false, false);
+        long time = Math.max(1, System.currentTimeMillis() - now);
+        LogUtils.debug(TAG, "Import sequential : " + (mb * 1000.0 / time) + "[MB/s]");
+
+        blocks.clear();
+        now = System.currentTimeMillis();
+        Cid parallel = importFile(blockStore, inputFile, true, false);
+        time = Math.max(1, System.currentTimeMillis() - now);
+        LogUtils.debug(TAG, "Import parallel : " + (mb * 1000.0 / time) + "[MB/s]");
+
+        // the layout does not depend on the import mode
+        assertEquals(sequential, parallel);
+
+        IPFS ipfs = TestEnv.getTestInstance(context);
+        File temp = createCacheFile();
+        Cid cid = importFile(blockStore, inputFile, true, false);
+        ipfs.storeToFile(temp, cid, () -> false);
+        assertTrue(FileUtils.contentEquals(inputFile, temp));
+
+        assertTrue(temp.delete());
+        assertTrue(inputFile.delete());
+        blocks.clear();
+    }
+
+    private void seekFile(@NonNull BlockStore blockStore, @NonNull BasicMetrics metrics,
+                          @NonNull Cid cid, @NonNull File file, @NonNull String layout)
+            throws Exception {
+
+        int seeks = 200;
+        int size = 1000;
+        Random random = new Random(42);
+        Reader reader = Reader.getReader(() -> false, blockStore, new Exchange(blockStore), cid);
+        assertEquals(file.length(), reader.getSize());
+
+        long seeded = metrics.getSeeded();
+        long now = System.nanoTime();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int i = 0; i < seeks; i++) {
+                long offset = (long) (random.nextDouble() * (file.length() - size));
+                byte[] data = new byte[size];
+                int read = reader.readNextData(offset, size, data);
+                assertEquals(size, read);
+
+                byte[] expected = new byte[size];
+                raf.seek(offset);
+                raf.readFully(expected);
+                assertTrue(Arrays.equals(expected, data));
+            }
+        }
+        long time = System.nanoTime() - now;
+        LogUtils.debug(TAG, "Seek " + layout + " : " + (time / seeks / 1000) + "[us] " +
+                ((metrics.getSeeded() - seeded) / seeks / 1000) + "[kb] per seek");
+    }
+
+    @Test
+    public void test_seek_layouts() throws Exception {
+
+        int packetSize = 10000;
+        long maxData = 5000;
+
+        File inputFile = createCacheFile();
+        for (int i = 0; i < maxData; i++) {
+            byte[] randomBytes = getRandomBytes(packetSize);
+            FileServer.insertRecord(inputFile, i, packetSize, randomBytes);
+        }
+
+        BLOCKS blocks = BLOCKS.getInstance(context);
+        blocks.clear();
+        BasicMetrics metrics = new BasicMetrics();
+        BlockStore blockStore = new MetricsBlockStore(
+                BlockStore.createBlockStore(blocks), metrics);
+
+        Cid trickle = importFile(blockStore, inputFile, true, false);
+        Cid balanced = importFile(blockStore, inputFile, true, true);
+        assertNotEquals(trickle, balanced);
+
+        // the layout does not depend on the import mode
+        assertEquals(balanced, importFile(blockStore, inputFile, false, true));
+
+        seekFile(blockStore, metrics, trickle, inputFile, "trickle");
+        seekFile(blockStore, metrics, balanced, inputFile, "balanced");
+
+        assertTrue(inputFile.delete());
+        blocks.clear();
+    }
+
 }
@@ -0,0 +1,92 @@
+package threads.lite;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import net.luminis.quic.QuicClientConnectionImpl;
+import net.luminis.quic.TransportParameters;
+import net.luminis.quic.server.Server;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import threads.lite.cid.Multiaddr;
+import threads.lite.host.LiteHost;
+
+import static junit.framework.TestCase.assertNotNull;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class IpfsServerPerformance {
+    private static final String TAG = IpfsServerPerformance.class.getSimpleName();
+    private static Context context;
+
+    @BeforeClass
+    public static void setup() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void test_concurrent_handshakes() throws Exception {
+
+        int connections = 1000;
+
+        IPFS ipfs = TestEnv.getTestInstance(context);
+        LiteHost host = ipfs.getHost();
+        Server server = host.getServer();
+        assertNotNull(server);
+
+        Multiaddr multiaddr = new Multiaddr("/ip4/127.0.0.1" + "/udp/" + ipfs.getPort() + "/quic");
+
+        int threads = Thread.activeCount();
+        long datagrams = server.getReceivedDatagrams();
+        long start = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        List<Future<QuicClientConnectionImpl>> futures = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            futures.add(executor.submit(() -> {
+                QuicClientConnectionImpl conn = host.dial(multiaddr);
+                conn.connect(IPFS.CONNECT_TIMEOUT, IPFS.APRN,
+                        new TransportParameters(IPFS.GRACE_PERIOD, IPFS.MESSAGE_SIZE_MAX,
+                                IPFS.MAX_STREAMS, 0), null);
+                return conn;
+            }));
+        }
+
+        List<QuicClientConnectionImpl> conns = new ArrayList<>();
+        for (Future<QuicClientConnectionImpl> future : futures) {
+            try {
+                conns.add(future.get(30, TimeUnit.SECONDS));
+            } catch (Throwable throwable) {
+                LogUtils.error(TAG, throwable);
+            }
+        }
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        long received = server.getReceivedDatagrams() - datagrams;
+
+        LogUtils.debug(TAG, "Handshakes : " + conns.size() + " in " + time + " [ms] " +
+                (conns.size() * 1000L / time) + " [handshakes/s]");
+        LogUtils.debug(TAG, "Datagrams : " + received + " in " + time + " [ms] " +
+                (received * 1000L / time) + " [packets/s] shards " + server.getShards());
+        LogUtils.debug(TAG, "Threads : before " + threads + " with connections " +
+                Thread.activeCount());
+
+        for (QuicClientConnectionImpl conn : conns) {
+            conn.close();
+        }
+        executor.shutdown();
+
+        assertEquals(connections, conns.size());
+    }
+}
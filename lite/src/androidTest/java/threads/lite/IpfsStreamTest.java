@@ -9,15 +9,22 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import threads.lite.cid.Cid;
 import threads.lite.core.ClosedException;
 import threads.lite.utils.Link;
+import threads.lite.utils.Reader;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class IpfsStreamTest {
@@ -55,4 +62,49 @@ public class IpfsStreamTest {
 
 
     }
+
+    @Test
+    public void test_positional_read() throws Exception {
+        IPFS ipfs = TestEnv.getTestInstance(context);
+
+        byte[] content = new byte[3 * IPFS.CHUNK_SIZE + 1000];
+        Random random = new Random(42);
+        random.nextBytes(content);
+        Cid cid = ipfs.storeData(content);
+        assertNotNull(cid);
+
+        // contiguous reads
+        Reader reader = ipfs.getReader(cid, () -> false);
+        ByteBuffer buffer = ByteBuffer.allocate(content.length);
+        byte[] data = new byte[4096];
+        long offset = 0;
+        while (true) {
+            int read = reader.read(offset, ByteBuffer.wrap(data));
+            if (read < 0) {
+                break;
+            }
+            buffer.put(data, 0, read);
+            offset += read;
+        }
+        assertEquals(content.length, offset);
+        assertTrue(Arrays.equals(content, buffer.array()));
+
+        // random reads
+        for (int i = 0; i < 100; i++) {
+            int position = random.nextInt(content.length);
+            int size = Math.min(random.nextInt(2 * IPFS.CHUNK_SIZE), content.length - position);
+            ByteBuffer dst = ByteBuffer.allocate(size);
+            assertEquals(size, reader.read(position, dst));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, position, position + size),
+                    dst.array()));
+        }
+        assertEquals(-1, reader.read(content.length, ByteBuffer.allocate(10)));
+
+        // bulk stream reads
+        try (InputStream inputStream = ipfs.getInputStream(cid, () -> false)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            IPFS.copy(inputStream, outputStream);
+            assertTrue(Arrays.equals(content, outputStream.toByteArray()));
+        }
+    }
 }
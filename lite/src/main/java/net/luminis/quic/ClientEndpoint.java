@@ -0,0 +1,159 @@
+package net.luminis.quic;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import threads.lite.LogUtils;
+
+/**
+ * Client side endpoint which multiplexes the outgoing connections over a fixed number of UDP sockets. Each socket has
+ * one receiver thread, which hands the datagrams over to the connection owning the destination connection id of the
+ * (first) packet. The connections process them on the shared event-loop threads, so the number of threads depends
+ * on the number of sockets and cores, not on the number of connections.
+ */
+public class ClientEndpoint {
+    private static final String TAG = ClientEndpoint.class.getSimpleName();
+    public static final int DEFAULT_SOCKETS = Runtime.getRuntime().availableProcessors();
+    private static volatile ClientEndpoint defaultEndpoint;
+
+    private final DatagramSocket[] sockets;
+    private final Map<ByteBuffer, QuicClientConnectionImpl> connections = new ConcurrentHashMap<>();
+    // lengths of the registered connection ids, needed to read the id of a short header packet
+    private final Set<Integer> connectionIdLengths = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger(0);
+    private volatile boolean closing = false;
+
+    public ClientEndpoint(int numSockets) throws SocketException {
+        if (numSockets < 1) {
+            throw new IllegalArgumentException("At least one socket is required");
+        }
+        sockets = new DatagramSocket[numSockets];
+        for (int i = 0; i < numSockets; i++) {
+            sockets[i] = open();
+        }
+        for (int i = 0; i < numSockets; i++) {
+            DatagramSocket socket = sockets[i];
+            Thread receiver = new Thread(() -> receive(socket), "endpoint-receiver-" + (i + 1));
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+    }
+
+    // A socket of a datagram channel, so the sender can send from a direct buffer (without copying)
+    private static DatagramSocket open() throws SocketException {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(null);
+            return channel.socket();
+        } catch (IOException exception) {
+            LogUtils.error(TAG, "Datagram channel not usable, using socket " + exception);
+            return new DatagramSocket();
+        }
+    }
+
+    public static ClientEndpoint getDefault() throws SocketException {
+        if (defaultEndpoint == null) {
+            synchronized (ClientEndpoint.class) {
+                if (defaultEndpoint == null) {
+                    defaultEndpoint = new ClientEndpoint(DEFAULT_SOCKETS);
+                }
+            }
+        }
+        return defaultEndpoint;
+    }
+
+    /**
+     * Returns the socket for a new connection, the sockets are assigned round robin.
+     */
+    DatagramSocket nextSocket() {
+        return sockets[Math.floorMod(next.getAndIncrement(), sockets.length)];
+    }
+
+    void register(byte[] connectionId, QuicClientConnectionImpl connection) {
+        connectionIdLengths.add(connectionId.length);
+        connections.put(ByteBuffer.wrap(connectionId.clone()), connection);
+    }
+
+    boolean unregister(byte[] connectionId, QuicClientConnectionImpl connection) {
+        return connections.remove(ByteBuffer.wrap(connectionId), connection);
+    }
+
+    public int numConnections() {
+        return connections.size();
+    }
+
+    public void close() {
+        closing = true;
+        for (DatagramSocket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void receive(DatagramSocket socket) {
+        int counter = 0;
+        // reused, the raw packet holds a copy of the received data
+        byte[] receiveBuffer = new byte[Receiver.MAX_DATAGRAM_SIZE];
+        DatagramPacket datagram = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+        try {
+            while (!closing) {
+                datagram.setLength(receiveBuffer.length);
+                socket.receive(datagram);
+                RawPacket rawPacket = new RawPacket(datagram, Instant.now(), counter++);
+                QuicClientConnectionImpl connection = lookup(receiveBuffer, datagram.getLength());
+                if (connection != null) {
+                    connection.datagramReceived(rawPacket);
+                } else {
+                    LogUtils.debug(TAG, "Dropping datagram for unknown connection from " +
+                            datagram.getAddress() + ":" + datagram.getPort());
+                }
+            }
+        } catch (IOException exception) {
+            if (!closing) {
+                // fatal for the connections on this socket
+                LogUtils.error(TAG, exception);
+                for (QuicClientConnectionImpl connection : connections.values()) {
+                    if (connection.getSocket() == socket) {
+                        connection.abortConnection(exception);
+                    }
+                }
+            }
+        }
+    }
+
+    private QuicClientConnectionImpl lookup(byte[] data, int length) {
+        if (length < 1) {
+            return null;
+        }
+        if ((data[0] & 0x80) == 0x80) {
+            // long header: flags (1), version (4), dcid length (1), dcid
+            if (length < 6) {
+                return null;
+            }
+            int cidLength = data[5] & 0xff;
+            if (6 + cidLength > length) {
+                return null;
+            }
+            return connections.get(ByteBuffer.wrap(data, 6, cidLength));
+        }
+        // short header: flags (1), dcid, the length is only known by the receiver
+        for (int cidLength : connectionIdLengths) {
+            if (1 + cidLength <= length) {
+                QuicClientConnectionImpl connection =
+                        connections.get(ByteBuffer.wrap(data, 1, cidLength));
+                if (connection != null) {
+                    return connection;
+                }
+            }
+        }
+        return null;
+    }
+}
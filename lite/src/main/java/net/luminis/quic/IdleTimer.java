@@ -18,17 +18,18 @@
  */
 package net.luminis.quic;
 
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 
 import java.time.Instant;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntSupplier;
 
 public class IdleTimer {
 
-    private final Timer timer;
+    private volatile TimingWheel.Timer timer;
     private final int timerResolution;
     private final QuicConnectionImpl connection;
     private final Logger log;
@@ -48,7 +49,6 @@ public class IdleTimer {
         this.log = logger;
         this.timerResolution = timerResolution;
 
-        timer = new Timer(true);
         lastAction = Instant.now();
     }
 
@@ -56,12 +56,7 @@ public class IdleTimer {
         if (!enabled) {
             enabled = true;
             timeout = idleTimeoutInMillis;
-            timer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    checkIdle();
-                }
-            }, timerResolution, timerResolution);
+            scheduleCheck();
         } else {
             log.error("idle timeout was set already; can't be set twice on same connection");
         }
@@ -71,6 +66,10 @@ public class IdleTimer {
         this.ptoSupplier = ptoSupplier;
     }
 
+    private void scheduleCheck() {
+        timer = EventLoops.timers().schedule(this::checkIdle, timerResolution, TimeUnit.MILLISECONDS);
+    }
+
     private void checkIdle() {
         if (enabled) {
             Instant now = Instant.now();
@@ -80,10 +79,14 @@ public class IdleTimer {
                 // To avoid excessively small idle timeout periods, endpoints MUST increase the idle timeout period
                 // to be at least three times the current Probe Timeout (PTO)
                 if (lastAction.plusMillis(3 * currentPto).isBefore(now)) {
-                    timer.cancel();
-                    connection.silentlyCloseConnection(timeout + currentPto);
+                    enabled = false;
+                    // The wheel only dispatches, the connection is closed on the loop of its sender
+                    long idleTime = timeout + currentPto;
+                    connection.getSender().execute(() -> connection.silentlyCloseConnection(idleTime));
+                    return;
                 }
             }
+            scheduleCheck();
         }
     }
 
@@ -106,9 +109,15 @@ public class IdleTimer {
         }
     }
 
+    public Instant getLastAction() {
+        return lastAction;
+    }
+
     public void shutdown() {
-        if (enabled) {
-            timer.cancel();
+        enabled = false;
+        TimingWheel.Timer scheduled = timer;
+        if (scheduled != null) {
+            scheduled.cancel();
         }
     }
 }
@@ -18,14 +18,14 @@
  */
 package net.luminis.quic;
 
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.send.Sender;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static net.luminis.quic.EncryptionLevel.App;
@@ -38,9 +38,10 @@ public class KeepAliveActor {
     private final int peerIdleTimeout;
     private final Sender sender;
     private final Instant started;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final TimingWheel scheduler = EventLoops.timers();
     private final int pingInterval;
-    private volatile ScheduledFuture<?> scheduledTask;
+    private volatile TimingWheel.Timer scheduledTask;
+    private volatile boolean stopped;
 
     public KeepAliveActor(Version quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender) {
         this.quicVersion = quicVersion;
@@ -61,12 +62,16 @@ public class KeepAliveActor {
 
     private void scheduleNextPing() {
         Instant now = Instant.now();
-        if (Duration.between(started, now).compareTo(Duration.of(keepAliveTime - pingInterval, SECONDS)) < 0) {
-            scheduledTask = scheduler.schedule(() -> ping(), pingInterval, java.util.concurrent.TimeUnit.SECONDS);
+        if (!stopped && Duration.between(started, now).compareTo(Duration.of(keepAliveTime - pingInterval, SECONDS)) < 0) {
+            scheduledTask = scheduler.schedule(() -> ping(), pingInterval, TimeUnit.SECONDS);
         }
     }
 
     public void shutdown() {
-        scheduler.shutdown();
+        stopped = true;
+        TimingWheel.Timer task = scheduledTask;
+        if (task != null) {
+            task.cancel();
+        }
     }
 }
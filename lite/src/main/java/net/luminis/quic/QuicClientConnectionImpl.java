@@ -18,9 +18,12 @@
  */
 package net.luminis.quic;
 
+import net.luminis.quic.cc.CongestionControlAlgorithm;
 import net.luminis.quic.cid.ConnectionIdInfo;
 import net.luminis.quic.cid.DestinationConnectionIdRegistry;
 import net.luminis.quic.cid.SourceConnectionIdRegistry;
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.SerialExecutor;
 import net.luminis.quic.frame.AckFrame;
 import net.luminis.quic.frame.FrameProcessor3;
 import net.luminis.quic.frame.HandshakeDoneFrame;
@@ -113,10 +116,11 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     private final int port;
     private final QuicSessionTicket sessionTicket;
     private final TlsClientEngine tlsEngine;
-    private final DatagramSocket socket;
+    private final ClientEndpoint endpoint;
+    private volatile DatagramSocket socket;
     private final InetAddress serverAddress;
     private final SenderImpl sender;
-    private final Receiver receiver;
+    private final SerialExecutor receiverLoop = EventLoops.newSerialExecutor();
     private final StreamManager streamManager;
     private final X509Certificate clientCertificate;
     private final PrivateKey clientCertificateKey;
@@ -134,13 +138,15 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     private boolean ignoreVersionNegotiation;
     private volatile EarlyDataStatus earlyDataStatus = None;
     private Integer clientHelloEnlargement;
-    private volatile Thread receiverThread;
+    private int receivedPacketCounter = 0;
     private volatile boolean processedRetryPacket = false;
 
     private QuicClientConnectionImpl(String host, int port, QuicSessionTicket sessionTicket, Version quicVersion, Logger log,
-                                     String proxyHost, Path secretsFile, Integer initialRtt, Integer cidLength,
+                                     String proxyHost, Path secretsFile, Integer initialRtt,
+                                     CongestionControlAlgorithm congestionControl, Integer cidLength,
                                      List<TlsConstants.CipherSuite> cipherSuites,
-                                     X509Certificate clientCertificate, PrivateKey clientCertificateKey) throws UnknownHostException, SocketException {
+                                     X509Certificate clientCertificate, PrivateKey clientCertificateKey,
+                                     ClientEndpoint endpoint) throws UnknownHostException, SocketException {
         super(quicVersion, Role.Client, secretsFile, log);
         log.info("Creating connection with " + host + ":" + port + " with " + quicVersion);
         this.host = host;
@@ -151,16 +157,16 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         this.clientCertificate = clientCertificate;
         this.clientCertificateKey = clientCertificateKey;
 
-        socket = new DatagramSocket();
+        this.endpoint = endpoint;
+        socket = endpoint.nextSocket();
 
         idleTimer = new IdleTimer(this, log);
         sender = new SenderImpl(quicVersion, getMaxPacketSize(), socket, new InetSocketAddress(serverAddress, port),
-                this, initialRtt, log);
+                this, initialRtt, congestionControl, log);
         idleTimer.setPtoSupplier(sender::getPto);
         ackGenerator = sender.getGlobalAckGenerator();
         registerProcessor(ackGenerator);
 
-        receiver = new Receiver(socket, log, this::abortConnection);
         streamManager = new StreamManager(this, Role.Client, log, 10, 10);
         sourceConnectionIds = new SourceConnectionIdRegistry(cidLength, log);
         destConnectionIds = new DestinationConnectionIdRegistry(log);
@@ -240,9 +246,9 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         log.info(String.format("Original destination connection id: %s (scid: %s)", bytesToHex(destConnectionIds.getCurrent()), bytesToHex(sourceConnectionIds.getCurrent())));
         generateInitialKeys();
 
-        receiver.start();
+        LogUtils.debug(TAG, "Instances " + INSTANCES.incrementAndGet());
+        endpoint.register(sourceConnectionIds.getCurrent(), this);
         sender.start(connectionSecrets);
-        startReceiverLoop();
 
         startHandshake(applicationProtocol, !earlyData.isEmpty());
 
@@ -326,40 +332,36 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         }
     }
 
-    private void startReceiverLoop() {
-        receiverThread = new Thread(this::receiveAndProcessPackets, "receiver-loop");
-        receiverThread.setDaemon(true);
-        receiverThread.start();
+    /**
+     * Called by the endpoint (on its receiver thread) for each datagram addressed to this connection, the datagrams
+     * are processed one at a time on the shared event-loop threads.
+     */
+    void datagramReceived(RawPacket rawPacket) {
+        receiverLoop.execute(() -> processDatagram(rawPacket));
     }
 
-
-    private void receiveAndProcessPackets() {
-        Thread currentThread = Thread.currentThread();
-        int receivedPacketCounter = 0;
-
+    private void processDatagram(RawPacket rawPacket) {
+        if (connectionState == Status.Closed) {
+            return;
+        }
         try {
-            LogUtils.debug(TAG, "Instances " + INSTANCES.incrementAndGet());
-            while (!currentThread.isInterrupted()) {
-                RawPacket rawPacket = receiver.get(15);
-                if (rawPacket != null) {
-                    Duration processDelay = Duration.between(rawPacket.getTimeReceived(), Instant.now());
-                    log.raw("Start processing packet " + ++receivedPacketCounter + " (" + rawPacket.getLength() + " bytes)", rawPacket.getData(), 0, rawPacket.getLength());
-                    log.debug("Processing delay for packet #" + receivedPacketCounter + ": " + processDelay.toMillis() + " ms");
-
-                    parseAndProcessPackets(receivedPacketCounter, rawPacket.getTimeReceived(), rawPacket.getData(), null);
-                    sender.datagramProcessed(receiver.hasMore());
-                }
-            }
-        } catch (InterruptedException e) {
-            log.debug("Terminating receiver loop because of interrupt");
+            receivedPacketCounter++;
+            Duration processDelay = Duration.between(rawPacket.getTimeReceived(), Instant.now());
+            log.raw("Start processing packet " + receivedPacketCounter + " (" + rawPacket.getLength() + " bytes)", rawPacket.getData(), 0, rawPacket.getLength());
+            log.debug("Processing delay for packet #" + receivedPacketCounter + ": " + processDelay.toMillis() + " ms");
+
+            parseAndProcessPackets(receivedPacketCounter, rawPacket.getTimeReceived(), rawPacket.getData(), null);
+            sender.datagramProcessed(false);
         } catch (Exception error) {
-            log.error("Terminating receiver loop because of error", error);
+            log.error("Terminating connection because of error", error);
             abortConnection(error);
-        } finally {
-            LogUtils.debug(TAG, "Instances " + INSTANCES.decrementAndGet());
         }
     }
 
+    DatagramSocket getSocket() {
+        return socket;
+    }
+
     private void generateInitialKeys() {
         connectionSecrets.computeInitialKeys(destConnectionIds.getCurrent());
     }
@@ -619,23 +621,21 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     protected void terminate() {
         super.terminate();
         handshakeFinishedCondition.countDown();
-        receiver.shutdown();
-        socket.close();
-        if (receiverThread != null) {
-            receiverThread.interrupt();
+        boolean registered = false;
+        for (ConnectionIdInfo cid : sourceConnectionIds.getAll().values()) {
+            registered |= endpoint.unregister(cid.getConnectionId(), this);
+        }
+        if (registered) {
+            LogUtils.debug(TAG, "Instances " + INSTANCES.decrementAndGet());
         }
     }
 
     public void changeAddress() {
-        try {
-            DatagramSocket newSocket = new DatagramSocket();
-            sender.changeAddress(newSocket);
-            receiver.changeAddress(newSocket);
-            log.info("Changed local address to " + newSocket.getLocalPort());
-        } catch (SocketException e) {
-            // Fairly impossible, as we created a socket on an ephemeral port
-            log.error("Changing local address failed", e);
-        }
+        // moves to the next socket of the endpoint, a single socket endpoint keeps the address
+        DatagramSocket newSocket = endpoint.nextSocket();
+        socket = newSocket;
+        sender.changeAddress(newSocket);
+        log.info("Changed local address to " + newSocket.getLocalPort());
     }
 
     public void updateKeys() {
@@ -794,6 +794,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
         for (int i = 0; i < count; i++) {
             ConnectionIdInfo cid = sourceConnectionIds.generateNew();
+            endpoint.register(cid.getConnectionId(), this);
             newConnectionIds[i] = cid.getConnectionId();
             log.debug("New generated source connection id", cid.getConnectionId());
             sender.send(new NewConnectionIdFrame(quicVersion, cid.getSequenceNumber(), retirePriorTo, cid.getConnectionId()), App);
@@ -957,7 +958,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
     @Override
     public InetSocketAddress getRemoteAddress() {
-        return (InetSocketAddress) socket.getRemoteSocketAddress();
+        // the socket is shared, so it is not connected to the server
+        return new InetSocketAddress(serverAddress, port);
     }
 
     @Override
@@ -1015,6 +1017,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
         Builder initialRtt(int initialRtt);
 
+        Builder congestionControl(CongestionControlAlgorithm congestionControl);
+
         Builder cipherSuite(TlsConstants.CipherSuite cipherSuite);
 
         Builder noServerCertificateCheck();
@@ -1024,6 +1028,8 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         Builder clientCertificate(X509Certificate certificate);
 
         Builder clientCertificateKey(PrivateKey privateKey);
+
+        Builder endpoint(ClientEndpoint endpoint);
     }
 
     private static class BuilderImpl implements Builder {
@@ -1036,11 +1042,13 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         private String proxyHost;
         private Path secretsFile;
         private Integer initialRtt;
+        private CongestionControlAlgorithm congestionControl = CongestionControlAlgorithm.NewReno;
         private Integer connectionIdLength;
         private boolean omitCertificateCheck;
         private Integer quantumReadinessTest;
         private X509Certificate clientCertificate;
         private PrivateKey clientCertificateKey;
+        private ClientEndpoint endpoint;
 
         @Override
         public QuicClientConnectionImpl build() throws SocketException, UnknownHostException {
@@ -1056,10 +1064,18 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             if (cipherSuites.isEmpty()) {
                 cipherSuites.add(TlsConstants.CipherSuite.TLS_AES_128_GCM_SHA256);
             }
+            if (connectionIdLength != null && connectionIdLength == 0) {
+                // the endpoint finds the connection of a datagram by its connection id
+                throw new IllegalArgumentException("Connection ID length must be larger than 0.");
+            }
+            if (endpoint == null) {
+                endpoint = ClientEndpoint.getDefault();
+            }
 
             QuicClientConnectionImpl quicConnection =
                     new QuicClientConnectionImpl(host, port, sessionTicket, quicVersion, log, proxyHost, secretsFile,
-                            initialRtt, connectionIdLength, cipherSuites, clientCertificate, clientCertificateKey);
+                            initialRtt, congestionControl, connectionIdLength, cipherSuites, clientCertificate, clientCertificateKey,
+                            endpoint);
 
             if (omitCertificateCheck) {
                 quicConnection.trustAll();
@@ -1140,6 +1156,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             return this;
         }
 
+        @Override
+        public Builder congestionControl(CongestionControlAlgorithm congestionControl) {
+            this.congestionControl = congestionControl;
+            return this;
+        }
+
         @Override
         public Builder cipherSuite(TlsConstants.CipherSuite cipherSuite) {
             cipherSuites.add(cipherSuite);
@@ -1169,5 +1191,11 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             this.clientCertificateKey = privateKey;
             return this;
         }
+
+        @Override
+        public Builder endpoint(ClientEndpoint endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
     }
 }
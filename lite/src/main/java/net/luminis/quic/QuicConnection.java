@@ -22,6 +22,7 @@ import net.luminis.quic.stream.QuicStream;
 
 import java.net.InetSocketAddress;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
@@ -53,4 +54,10 @@ public interface QuicConnection {
     boolean isConnected();
 
     InetSocketAddress getRemoteAddress();
+
+    /**
+     * Returns the time a packet was last received from the peer (or an ack-eliciting packet was sent), i.e. the
+     * last activity that restarted the idle timer.
+     */
+    Instant getLastActivity();
 }
@@ -18,7 +18,8 @@
  */
 package net.luminis.quic;
 
-import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.Keys;
 import net.luminis.quic.frame.AckFrame;
@@ -62,9 +63,6 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
@@ -89,7 +87,7 @@ public abstract class QuicConnectionImpl implements QuicConnection, FrameProcess
     protected final List<CryptoStream> cryptoStreams = new ArrayList<>();
     private final Role role;
     private final RateLimiter closeFramesSendRateLimiter;
-    private final ScheduledExecutorService scheduler;
+    private final TimingWheel scheduler;
     protected volatile TransportParameters transportParams;
     protected volatile HandshakeState handshakeState = HandshakeState.Initial;
     protected List<HandshakeStateListener> handshakeStateListeners = new CopyOnWriteArrayList<>();
@@ -115,7 +113,7 @@ public abstract class QuicConnectionImpl implements QuicConnection, FrameProcess
 
         connectionState = Status.Idle;
         closeFramesSendRateLimiter = new ProgressivelyIncreasingRateLimiter();
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("scheduler"));
+        scheduler = EventLoops.timers();
     }
 
     public static int getMaxPacketSize() {
@@ -135,6 +133,12 @@ public abstract class QuicConnectionImpl implements QuicConnection, FrameProcess
         return Status.Connected == connectionState;
     }
 
+    @Override
+    public Instant getLastActivity() {
+        IdleTimer timer = idleTimer;
+        return timer != null ? timer.getLastAction() : null;
+    }
+
     public void addHandshakeStateListener(RecoveryManager recoveryManager) {
         handshakeStateListeners.add(recoveryManager);
     }
@@ -603,7 +607,6 @@ public abstract class QuicConnectionImpl implements QuicConnection, FrameProcess
         idleTimer.shutdown();
         getSender().shutdown();
         connectionState = Status.Closed;
-        scheduler.shutdown();
     }
 
     protected int quicError(TlsProtocolException tlsError) {
@@ -640,11 +643,13 @@ public abstract class QuicConnectionImpl implements QuicConnection, FrameProcess
     }
 
     private void schedule(Runnable command, int delay, TimeUnit unit) {
-        try {
-            scheduler.schedule(command, delay, unit);
-        } catch (RejectedExecutionException rejected) {
-            // Can happen when already terminated; don't bother
-        }
+        // the scheduler is shared, commands of a terminated connection are skipped; the command runs on the loop of
+        // the sender, not on the thread of the scheduler
+        scheduler.schedule(() -> getSender().execute(() -> {
+            if (connectionState != Status.Closed) {
+                command.run();
+            }
+        }), delay, unit);
     }
 
     @Override
@@ -22,23 +22,36 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.Arrays;
 
 /**
  * Wraps a datagram in order to keep additional data like the time the datagram was received or sent.
  */
 public class RawPacket {
 
-    private final DatagramPacket receivedPacket;
+    private final InetAddress address;
+    private final int port;
     private final Instant timeReceived;
     private final int number;
     private final ByteBuffer data;
 
+    /**
+     * Creates a raw packet with a copy of the received data, so the datagram (buffer) can be reused for receiving the
+     * next datagram.
+     */
     public RawPacket(DatagramPacket receivedPacket, Instant timeReceived, int number) {
-        this.receivedPacket = receivedPacket;
+        this(Arrays.copyOfRange(receivedPacket.getData(), receivedPacket.getOffset(),
+                receivedPacket.getOffset() + receivedPacket.getLength()), receivedPacket.getLength(),
+                receivedPacket.getAddress(), receivedPacket.getPort(), timeReceived, number);
+    }
+
+    public RawPacket(byte[] data, int length, InetAddress address, int port, Instant timeReceived, int number) {
+        this.address = address;
+        this.port = port;
         this.timeReceived = timeReceived;
         this.number = number;
 
-        data = ByteBuffer.wrap(receivedPacket.getData(), 0, receivedPacket.getLength());
+        this.data = ByteBuffer.wrap(data, 0, length);
     }
 
     public Instant getTimeReceived() {
@@ -58,10 +71,10 @@ public class RawPacket {
     }
 
     public InetAddress getAddress() {
-        return receivedPacket.getAddress();
+        return address;
     }
 
     public int getPort() {
-        return receivedPacket.getPort();
+        return port;
     }
 }
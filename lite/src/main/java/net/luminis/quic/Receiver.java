@@ -100,10 +100,13 @@ public class Receiver {
             int counter = 0;
             LogUtils.debug(TAG, "Instances " + INSTANCES.incrementAndGet());
 
+            // The receive buffer is reused, each datagram is copied into an array of its own (exact) size, as the
+            // packets are decrypted in place and the frames refer to the decrypted data.
+            byte[] receiveBuffer = new byte[MAX_DATAGRAM_SIZE];
+            DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
             while (!isClosing) {
-                byte[] receiveBuffer = new byte[MAX_DATAGRAM_SIZE];
-                DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
                 try {
+                    receivedPacket.setLength(receiveBuffer.length);
                     socket.receive(receivedPacket);
 
                     Instant timeReceived = Instant.now();
@@ -20,6 +20,8 @@ package net.luminis.quic;
 
 import net.luminis.quic.send.SendStatistics;
 
+import java.util.Locale;
+
 public class Statistics {
 
     private final SendStatistics senderStatistics;
@@ -33,7 +35,11 @@ public class Statistics {
         return "datagrams sent: " + senderStatistics.datagramsSent() +
                 "\npackets send: " + senderStatistics.packetsSent() +
                 "\nbytes sent: " + senderStatistics.bytesSent() +
-                "\npackets lost: " + senderStatistics.lostPackets();
+                "\npackets lost: " + senderStatistics.lostPackets() +
+                "\npackets per datagram: " + String.format(Locale.ENGLISH, "%.2f", senderStatistics.packetsPerDatagram()) +
+                "\ndatagrams per flush: " + String.format(Locale.ENGLISH, "%.2f", senderStatistics.datagramsPerFlush()) +
+                "\npacing delays: " + senderStatistics.pacingDelays() + " (" +
+                senderStatistics.pacingDelayTotal() / Long.max(1, senderStatistics.pacingDelays()) + " us average)";
 
     }
 }
@@ -99,7 +99,7 @@ public class AbstractCongestionController implements CongestionController {
         }
     }
 
-    public synchronized boolean canSend(int bytes) {
+    public boolean canSend(int bytes) {
         return bytesInFlight + bytes < congestionWindow;
     }
 
@@ -0,0 +1,308 @@
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Model-based congestion controller, following the design of BBR
+ * (https://datatracker.ietf.org/doc/html/draft-cardwell-iccrg-bbr-congestion-control-00).
+ * <p>
+ * Instead of reacting to loss, the controller estimates the bottleneck bandwidth (the maximum delivery rate over the
+ * last 10 round trips) and the round-trip propagation time (the minimum rtt over the last 10 seconds) from the
+ * acknowledgements. The sender paces with a multiple ("gain") of the bandwidth and the congestion window is a
+ * multiple of the estimated bandwidth-delay product. The gains depend on the state:
+ * - Startup: doubles the sending rate every round trip, until the bandwidth does not grow anymore
+ * - Drain: drains the queue that was created in startup
+ * - ProbeBW: cycles the pacing gain, to probe for more bandwidth (1.25) and to drain the queue it creates (0.75)
+ * - ProbeRTT: reduces the data in flight to a minimum for 200 ms, when the minimum rtt was not seen for 10 seconds
+ * <p>
+ * Simplifications: delivery rate samples are not marked as application limited and loss does not reduce the window
+ * (BBR v1 behaviour).
+ */
+public class BbrCongestionController extends AbstractCongestionController {
+
+    // "BBRHighGain = 2/ln(2)": the smallest gain that allows the sending rate to double each round
+    private static final double HIGH_GAIN = 2.885;
+    private static final double[] PACING_GAIN_CYCLE = {1.25, 0.75, 1, 1, 1, 1, 1, 1};
+    private static final int BANDWIDTH_FILTER_LENGTH = 10;    // round trips
+    private static final long MIN_RTT_FILTER_LENGTH = 10_000_000_000L;    // nanoseconds
+    private static final long PROBE_RTT_DURATION = 200_000_000L;    // nanoseconds
+    private static final int MAX_DATAGRAM_SIZE = 1200;
+    private static final long MINIMUM_WINDOW = 4 * MAX_DATAGRAM_SIZE;
+
+    private final RttEstimator rttEstimator;
+    private final Map<QuicPacket, SendState> sendStates = new IdentityHashMap<>();
+    // Maximum delivery rate (bytes per second) per round trip, indexed by round count
+    private final long[] bandwidthSamples = new long[BANDWIDTH_FILTER_LENGTH];
+    // All times in nanoseconds (System.nanoTime)
+    private long delivered;
+    private long deliveredTime;
+    private long firstSentTime;
+    private long roundCount;
+    private long nextRoundDelivered;
+    private long bandwidth;
+    private long minRtt = Long.MAX_VALUE;
+    private long minRttTime;
+    private State state = State.Startup;
+    private double pacingGain = HIGH_GAIN;
+    private double cwndGain = HIGH_GAIN;
+    private boolean filledPipe;
+    private long fullBandwidth;
+    private int fullBandwidthCount;
+    private int cycleIndex;
+    private long cycleStart;
+    private long probeRttDone;
+    private boolean probeRttRoundDone;
+    private long priorCongestionWindow;
+    private volatile long pacingRate;
+
+    public BbrCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.rttEstimator = rttEstimator;
+        long now = System.nanoTime();
+        deliveredTime = now;
+        firstSentTime = now;
+        minRttTime = now;
+    }
+
+    @Override
+    public synchronized void registerInFlight(QuicPacket sentPacket) {
+        long now = System.nanoTime();
+        if (bytesInFlight == 0) {
+            // Nothing in flight: the delivery rate is measured from now on (and not from the last ack)
+            deliveredTime = now;
+            firstSentTime = now;
+        }
+        sendStates.put(sentPacket, new SendState(delivered, deliveredTime, firstSentTime, now));
+        super.registerInFlight(sentPacket);
+    }
+
+    @Override
+    public synchronized void registerAcked(List<? extends PacketInfo> acknowlegdedPackets) {
+        if (acknowlegdedPackets.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long ackedBytes = 0;
+        long rateSample = 0;
+        boolean roundStart = false;
+        boolean minRttExpired = now - minRttTime > MIN_RTT_FILTER_LENGTH;
+        for (PacketInfo packetInfo : acknowlegdedPackets) {
+            SendState sendState = sendStates.remove(packetInfo.packet());
+            if (sendState == null) {
+                continue;
+            }
+            int size = packetInfo.packet().getSize();
+            ackedBytes += size;
+            delivered += size;
+            deliveredTime = now;
+            firstSentTime = sendState.sentTime;
+
+            // The interval is the longest of the send and the ack interval, so ack compression does not lead to
+            // overestimating the bandwidth
+            long interval = Long.max(sendState.sentTime - sendState.firstSentTime, now - sendState.deliveredTime);
+            if (interval > 0) {
+                rateSample = Long.max(rateSample, (delivered - sendState.delivered) * 1_000_000_000L / interval);
+            }
+            long rtt = now - sendState.sentTime;
+            if (rtt <= minRtt || minRttExpired) {
+                minRtt = rtt;
+                minRttTime = now;
+                minRttExpired = false;
+            }
+            if (sendState.delivered >= nextRoundDelivered) {
+                nextRoundDelivered = delivered;
+                roundStart = true;
+            }
+        }
+        super.registerAcked(acknowlegdedPackets);
+        if (ackedBytes == 0) {
+            return;
+        }
+
+        updateBandwidth(rateSample, roundStart);
+        updateState(now, roundStart);
+        updateCongestionWindow(ackedBytes);
+        updatePacingRate();
+    }
+
+    @Override
+    public synchronized void registerLost(List<? extends PacketInfo> lostPackets) {
+        lostPackets.forEach(packetInfo -> sendStates.remove(packetInfo.packet()));
+        super.registerLost(lostPackets);
+    }
+
+    @Override
+    public synchronized void discard(List<? extends PacketInfo> discardedPackets) {
+        discardedPackets.forEach(packetInfo -> sendStates.remove(packetInfo.packet()));
+        super.discard(discardedPackets);
+    }
+
+    @Override
+    public synchronized void reset() {
+        sendStates.clear();
+        super.reset();
+    }
+
+    @Override
+    public long getPacingRate() {
+        long rate = pacingRate;
+        if (rate == 0) {
+            // No bandwidth estimate yet: use the initial window and rtt
+            return (long) (HIGH_GAIN * congestionWindow * 1000 / Integer.max(1, rttEstimator.getSmoothedRtt()));
+        }
+        return rate;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void updateBandwidth(long rateSample, boolean roundStart) {
+        if (roundStart) {
+            roundCount++;
+            bandwidthSamples[(int) (roundCount % BANDWIDTH_FILTER_LENGTH)] = 0;
+        }
+        int index = (int) (roundCount % BANDWIDTH_FILTER_LENGTH);
+        bandwidthSamples[index] = Long.max(bandwidthSamples[index], rateSample);
+        long max = 0;
+        for (long sample : bandwidthSamples) {
+            max = Long.max(max, sample);
+        }
+        bandwidth = max;
+    }
+
+    private void updateState(long now, boolean roundStart) {
+        if (roundStart && !filledPipe) {
+            // The pipe is full when the bandwidth did not grow with at least 25% in three rounds
+            if (bandwidth >= fullBandwidth * 5 / 4) {
+                fullBandwidth = bandwidth;
+                fullBandwidthCount = 0;
+            } else if (++fullBandwidthCount >= 3) {
+                filledPipe = true;
+            }
+        }
+
+        switch (state) {
+            case Startup:
+                if (filledPipe) {
+                    enterState(State.Drain, 1 / HIGH_GAIN, HIGH_GAIN);
+                }
+                break;
+            case Drain:
+                if (bytesInFlight <= bandwidthDelayProduct()) {
+                    enterProbeBandwidth(now);
+                }
+                break;
+            case ProbeBW:
+                boolean cycleDone = now - cycleStart > minRtt;
+                if (pacingGain < 1) {
+                    // Stop draining early when the queue is drained
+                    cycleDone |= bytesInFlight <= bandwidthDelayProduct();
+                }
+                if (cycleDone) {
+                    cycleIndex = (cycleIndex + 1) % PACING_GAIN_CYCLE.length;
+                    cycleStart = now;
+                    pacingGain = PACING_GAIN_CYCLE[cycleIndex];
+                }
+                break;
+            case ProbeRTT:
+                if (probeRttDone == 0 && bytesInFlight <= MINIMUM_WINDOW) {
+                    probeRttDone = now + PROBE_RTT_DURATION;
+                    probeRttRoundDone = false;
+                    nextRoundDelivered = delivered;
+                } else if (probeRttDone != 0) {
+                    probeRttRoundDone |= roundStart;
+                    if (probeRttRoundDone && now > probeRttDone) {
+                        minRttTime = now;
+                        congestionWindow = Long.max(congestionWindow, priorCongestionWindow);
+                        if (filledPipe) {
+                            enterProbeBandwidth(now);
+                        } else {
+                            enterState(State.Startup, HIGH_GAIN, HIGH_GAIN);
+                        }
+                    }
+                }
+                break;
+        }
+
+        if (state != State.ProbeRTT && now - minRttTime > MIN_RTT_FILTER_LENGTH) {
+            priorCongestionWindow = congestionWindow;
+            probeRttDone = 0;
+            enterState(State.ProbeRTT, 1, 1);
+        }
+    }
+
+    private void enterProbeBandwidth(long now) {
+        // Start at a random phase, but not in the draining phase
+        int index = ThreadLocalRandom.current().nextInt(PACING_GAIN_CYCLE.length - 1);
+        cycleIndex = index == 0 ? 0 : index + 1;
+        cycleStart = now;
+        enterState(State.ProbeBW, PACING_GAIN_CYCLE[cycleIndex], 2);
+    }
+
+    private void enterState(State newState, double newPacingGain, double newCwndGain) {
+        log.cc("BBR state " + state + " -> " + newState + "; bandwidth: " + bandwidth + " B/s, min rtt: "
+                + minRtt / 1000 + " us");
+        state = newState;
+        pacingGain = newPacingGain;
+        cwndGain = newCwndGain;
+    }
+
+    private long bandwidthDelayProduct() {
+        if (bandwidth == 0 || minRtt == Long.MAX_VALUE) {
+            return initialWindowSize;
+        }
+        return bandwidth * minRtt / 1_000_000_000L;
+    }
+
+    private void updateCongestionWindow(long ackedBytes) {
+        if (state == State.ProbeRTT) {
+            congestionWindow = MINIMUM_WINDOW;
+            return;
+        }
+        long target = Long.max(MINIMUM_WINDOW, (long) (cwndGain * bandwidthDelayProduct()));
+        if (filledPipe) {
+            congestionWindow = Long.min(congestionWindow + ackedBytes, target);
+        } else if (congestionWindow < target || delivered < initialWindowSize) {
+            congestionWindow += ackedBytes;
+        }
+        congestionWindow = Long.max(congestionWindow, MINIMUM_WINDOW);
+    }
+
+    private void updatePacingRate() {
+        long rate = (long) (pacingGain * bandwidth);
+        // In startup, the pacing rate is not decreased by a (temporarily) lower bandwidth estimate
+        if (filledPipe || rate > pacingRate) {
+            pacingRate = rate;
+        }
+    }
+
+    public enum State {
+        Startup,
+        Drain,
+        ProbeBW,
+        ProbeRTT
+    }
+
+    private static class SendState {
+        final long delivered;
+        final long deliveredTime;
+        final long firstSentTime;
+        final long sentTime;
+
+        SendState(long delivered, long deliveredTime, long firstSentTime, long sentTime) {
+            this.delivered = delivered;
+            this.deliveredTime = deliveredTime;
+            this.firstSentTime = firstSentTime;
+            this.sentTime = sentTime;
+        }
+    }
+}
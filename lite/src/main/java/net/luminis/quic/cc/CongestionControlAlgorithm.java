@@ -0,0 +1,26 @@
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.recovery.RttEstimator;
+
+/**
+ * The congestion control algorithms that can be selected for a connection. Congestion control is a local (sender)
+ * matter, so it is not negotiated with the peer.
+ */
+public enum CongestionControlAlgorithm {
+
+    NewReno,
+    Cubic,
+    Bbr;
+
+    public CongestionController create(Logger log, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        switch (this) {
+            case Cubic:
+                return new CubicCongestionController(log, eventListener, rttEstimator);
+            case Bbr:
+                return new BbrCongestionController(log, eventListener, rttEstimator);
+            default:
+                return new NewRenoCongestionController(log, eventListener);
+        }
+    }
+}
@@ -42,4 +42,13 @@ public interface CongestionController {
     void discard(List<? extends PacketInfo> packetStatusStream);
 
     long remainingCwnd();
+
+    /**
+     * Returns the rate (in bytes per second) with which the sender should pace packets, or 0 when the sender should
+     * not pace (i.e. send as much as the congestion window allows).
+     * @return
+     */
+    default long getPacingRate() {
+        return 0;
+    }
 }
@@ -0,0 +1,92 @@
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.recovery.RttEstimator;
+
+/**
+ * Congestion controller that uses the CUBIC window increase function (https://www.rfc-editor.org/rfc/rfc9438) in
+ * congestion avoidance mode. Slow start and recovery are the same as NewReno (RFC 9438 section 4.8 and 4.9), but the
+ * window is reduced with a factor 0.7 (instead of 0.5) on loss and grows (in time, not per round trip) back to the
+ * window at which the loss occurred and beyond, which makes it much better suited for paths with a large
+ * bandwidth-delay product.
+ * Unlike NewReno, this controller paces: with 1.25 times the window per smoothed rtt (2 times in slow start).
+ */
+public class CubicCongestionController extends NewRenoCongestionController {
+
+    // https://www.rfc-editor.org/rfc/rfc9438#section-5
+    // "C SHOULD be set to 0.4."
+    private static final double C = 0.4;
+    // "beta_cubic SHOULD be set to 0.7"
+    private static final double BETA = 0.7;
+    // https://www.rfc-editor.org/rfc/rfc9438#section-4.3
+    private static final double ALPHA = 3 * (1 - BETA) / (1 + BETA);
+
+    private final RttEstimator rttEstimator;
+    // All windows in segments (of kMaxDatagramSize), all times in seconds
+    private double windowMax;
+    private double k;
+    private double renoWindow;
+    private long epochStart = -1;
+
+    public CubicCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.rttEstimator = rttEstimator;
+    }
+
+    @Override
+    protected long congestionAvoidance(long congestionWindow, int ackedBytes) {
+        long now = System.nanoTime();
+        double window = (double) congestionWindow / kMaxDatagramSize;
+        if (epochStart < 0) {
+            // https://www.rfc-editor.org/rfc/rfc9438#section-4.2
+            // "K is the time period that the function takes to increase the congestion window size at the beginning of
+            //  the current congestion avoidance stage to W_max if there are no further congestion events"
+            epochStart = now;
+            if (windowMax <= window) {
+                windowMax = window;
+                k = 0;
+            } else {
+                k = Math.cbrt((windowMax - window) / C);
+            }
+            renoWindow = window;
+        }
+        double t = (now - epochStart) / 1e9 + rttEstimator.getSmoothedRtt() / 1000.0;
+        double target = C * Math.pow(t - k, 3) + windowMax;
+        // https://www.rfc-editor.org/rfc/rfc9438#section-4.4
+        // "the target value [...] MUST be no less than cwnd and no greater than 1.5 * cwnd"
+        target = Math.min(Math.max(target, window), 1.5 * window);
+
+        // https://www.rfc-editor.org/rfc/rfc9438#section-4.3
+        // "W_est [...] estimate of the congestion window size that AIMD would achieve"; "If W_cubic(t) is less than
+        //  W_est, then the protocol is in the Reno-friendly region and cwnd SHOULD be set to W_est at each reception
+        //  of a new ACK."
+        renoWindow += ALPHA * ackedBytes / congestionWindow;
+        if (renoWindow > target) {
+            return (long) (renoWindow * kMaxDatagramSize);
+        }
+        return congestionWindow + (long) ((target - window) * ackedBytes / window);
+    }
+
+    @Override
+    protected long reduceWindow(long congestionWindow) {
+        double window = (double) congestionWindow / kMaxDatagramSize;
+        // https://www.rfc-editor.org/rfc/rfc9438#section-4.7
+        // "fast convergence": release bandwidth for new flows when the window did not reach the previous maximum
+        if (window < windowMax) {
+            windowMax = window * (1 + BETA) / 2;
+        } else {
+            windowMax = window;
+        }
+        epochStart = -1;
+        return (long) (congestionWindow * BETA);
+    }
+
+    @Override
+    public long getPacingRate() {
+        // https://www.rfc-editor.org/rfc/rfc9002#section-7.7
+        // "rate = N * congestion_window / smoothed_rtt"; "Using a value for N that is small, but at least 1 (for
+        //  example, 1.25) ensures that variations in RTT do not result in underutilization of the congestion window."
+        double gain = getMode() == Mode.SlowStart ? 2 : 1.25;
+        return (long) (gain * congestionWindow * 1000 / Integer.max(1, rttEstimator.getSmoothedRtt()));
+    }
+}
@@ -76,7 +76,7 @@ public class NewRenoCongestionController extends AbstractCongestionController im
                     congestionWindow += p.getSize();
                 } else {
                     // i.e. mode is congestion avoidance
-                    congestionWindow += kMaxDatagramSize * p.getSize() / congestionWindow;
+                    congestionWindow = congestionAvoidance(congestionWindow, p.getSize());
                 }
             });
             if (congestionWindow != previousCwnd) {
@@ -90,7 +90,7 @@ public class NewRenoCongestionController extends AbstractCongestionController im
     }
 
     @Override
-    public void registerLost(List<? extends PacketInfo> lostPackets) {
+    public synchronized void registerLost(List<? extends PacketInfo> lostPackets) {
         super.registerLost(lostPackets);
 
         if (!lostPackets.isEmpty()) {
@@ -102,7 +102,7 @@ public class NewRenoCongestionController extends AbstractCongestionController im
     private void fireCongestionEvent(Instant timeSent) {
         if (timeSent.isAfter(congestionRecoveryStartTime)) {
             congestionRecoveryStartTime = Instant.now();
-            congestionWindow /= kLossReductionFactor;
+            congestionWindow = reduceWindow(congestionWindow);
             if (congestionWindow < kMinimumWindow) {
                 congestionWindow = kMinimumWindow;
             }
@@ -111,6 +111,25 @@ public class NewRenoCongestionController extends AbstractCongestionController im
         }
     }
 
+    /**
+     * Returns the new congestion window when the given number of bytes is acknowledged in congestion avoidance mode.
+     * @param congestionWindow
+     * @param ackedBytes
+     * @return
+     */
+    protected long congestionAvoidance(long congestionWindow, int ackedBytes) {
+        return congestionWindow + kMaxDatagramSize * ackedBytes / congestionWindow;
+    }
+
+    /**
+     * Returns the new congestion window after a congestion event (i.e. packet loss).
+     * @param congestionWindow
+     * @return
+     */
+    protected long reduceWindow(long congestionWindow) {
+        return congestionWindow / kLossReductionFactor;
+    }
+
     public Mode getMode() {
         if (congestionWindow < slowStartThreshold) {
             return Mode.SlowStart;
@@ -0,0 +1,38 @@
+package net.luminis.quic.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads shared by all connections: a pool of event-loop threads which runs the packet processing and the sending
+ * of the connections (serialized per connection, see {@link SerialExecutor}), and a timing wheel for their timers
+ * (loss detection, idle timeout, keep alive, delayed sends and pacing, see {@link TimingWheel}). The number of threads
+ * depends on the number of cores, not on the number of connections.
+ */
+public class EventLoops {
+
+    public static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService loops = Executors.newFixedThreadPool(THREADS,
+            new DaemonThreadFactory("event-loop"));
+    private static final TimingWheel timers = new TimingWheel("timer", 1, TimeUnit.MILLISECONDS);
+
+    private EventLoops() {
+    }
+
+    public static ExecutorService loops() {
+        return loops;
+    }
+
+    public static TimingWheel timers() {
+        return timers;
+    }
+
+    /**
+     * Creates an executor which runs its tasks one at a time, in order, on the shared event-loop threads.
+     */
+    public static SerialExecutor newSerialExecutor() {
+        return new SerialExecutor(loops);
+    }
+}
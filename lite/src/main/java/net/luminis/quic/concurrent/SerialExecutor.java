@@ -0,0 +1,54 @@
+package net.luminis.quic.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import threads.lite.LogUtils;
+
+/**
+ * Executes the submitted tasks one at a time and in submission order on a (shared) delegate executor, so the state
+ * which is only touched by these tasks is confined like it would be to a dedicated thread.
+ */
+public class SerialExecutor implements Executor {
+    private static final String TAG = SerialExecutor.class.getSimpleName();
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor delegate;
+    private boolean running; // guarded by tasks
+
+    public SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        delegate.execute(this::drain);
+    }
+
+    private void drain() {
+        // a bounded number of tasks per turn, so one busy connection does not starve the others
+        for (int i = 0; i < 64; i++) {
+            Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                LogUtils.error(TAG, throwable);
+            }
+        }
+        delegate.execute(this::drain);
+    }
+}
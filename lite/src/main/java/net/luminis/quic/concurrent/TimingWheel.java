@@ -0,0 +1,281 @@
+package net.luminis.quic.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import threads.lite.LogUtils;
+
+/**
+ * Hierarchical timing wheel (as in "Hashed and Hierarchical Timing Wheels", Varghese and Lauck) which runs the timers
+ * of all connections (loss detection, probe timeout, delayed ack and pacing, idle timeout, keep alive) with a single
+ * thread.
+ * <p>
+ * Time is divided in ticks; a timer expires at the first tick boundary at or after its deadline, so it never fires
+ * early. There are four wheels of 256 slots each: a timer that expires within 256 ticks is put in the slot of its
+ * tick in the first wheel, a timer that expires later is put in a coarser wheel, and moved ("cascaded") to the finer
+ * wheels when its time comes closer. Each slot is a doubly linked list, so scheduling and cancelling a timer are
+ * O(1). The thread only wakes up every tick when there are timers in the first wheel; otherwise it sleeps until the
+ * next cascade.
+ * <p>
+ * The tasks run on the thread of the wheel, so they must be short (e.g. hand over work to an event loop).
+ */
+public class TimingWheel {
+    private static final String TAG = TimingWheel.class.getSimpleName();
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickNanos;
+    private final long start;
+    private final Slot[][] wheels = new Slot[LEVELS][WHEEL_SIZE];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // Guarded by lock
+    private long nextTick;
+    private int firstWheelSize;
+    private int size;
+    private long wakeUpTick = Long.MAX_VALUE;
+
+    public TimingWheel(String name, long tickDuration, TimeUnit unit) {
+        tickNanos = unit.toNanos(tickDuration);
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick duration must be larger than 0");
+        }
+        for (Slot[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Slot();
+            }
+        }
+        start = System.nanoTime();
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules the task to run (once) after the given delay.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return the timer, which can be used to cancel it
+     */
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - start + Long.max(0, unit.toNanos(delay));
+        // Round up, a timer never expires before its deadline
+        long deadlineTick = (deadline + tickNanos - 1) / tickNanos;
+        Timer timer = new Timer(this, task);
+        lock.lock();
+        try {
+            timer.deadlineTick = deadlineTick;
+            add(timer);
+            size++;
+            if (timer.deadlineTick < wakeUpTick) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the number of scheduled timers.
+     *
+     * @return
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean cancel(Timer timer) {
+        lock.lock();
+        try {
+            if (timer.slot == null) {
+                // expired or cancelled already
+                return false;
+            }
+            remove(timer);
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with lock held
+    private void add(Timer timer) {
+        long deadlineTick = Long.max(timer.deadlineTick, nextTick);
+        long ticks = deadlineTick - nextTick;
+        if (ticks > MAX_TICKS) {
+            ticks = MAX_TICKS;
+            deadlineTick = nextTick + ticks;
+        }
+        timer.deadlineTick = deadlineTick;
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        Slot slot = wheels[level][(int) ((deadlineTick >> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        timer.slot = slot;
+        timer.level = level;
+        timer.next = null;
+        timer.prev = slot.tail;
+        if (slot.tail == null) {
+            slot.head = timer;
+        } else {
+            slot.tail.next = timer;
+        }
+        slot.tail = timer;
+        if (level == 0) {
+            firstWheelSize++;
+        }
+    }
+
+    // Must be called with lock held
+    private void remove(Timer timer) {
+        Slot slot = timer.slot;
+        if (timer.prev == null) {
+            slot.head = timer.next;
+        } else {
+            timer.prev.next = timer.next;
+        }
+        if (timer.next == null) {
+            slot.tail = timer.prev;
+        } else {
+            timer.next.prev = timer.prev;
+        }
+        if (timer.level == 0) {
+            firstWheelSize--;
+        }
+        timer.slot = null;
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    // Must be called with lock held; moves the timers of the slot to the finer wheels, returns the index of the slot
+    private int cascade(int level) {
+        int index = (int) ((nextTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Slot slot = wheels[level][index];
+        Timer timer = slot.head;
+        slot.head = null;
+        slot.tail = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            add(timer);
+            timer = next;
+        }
+        return index;
+    }
+
+    // Must be called with lock held; processes the ticks up to the given tick, adds the expired timers to the list
+    private void advance(long currentTick, List<Timer> expired) {
+        while (nextTick <= currentTick) {
+            int index = (int) (nextTick & WHEEL_MASK);
+            if (index == 0) {
+                for (int level = 1; level < LEVELS && cascade(level) == 0; level++) {
+                    // cascade the next (coarser) wheel too, when this one wrapped around
+                }
+            }
+            nextTick++;
+            Slot slot = wheels[0][index];
+            Timer timer = slot.head;
+            while (timer != null) {
+                Timer next = timer.next;
+                remove(timer);
+                size--;
+                expired.add(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private void run() {
+        List<Timer> expired = new ArrayList<>();
+        while (true) {
+            lock.lock();
+            try {
+                while (true) {
+                    long currentTick = (System.nanoTime() - start) / tickNanos;
+                    advance(currentTick, expired);
+                    if (!expired.isEmpty()) {
+                        break;
+                    }
+                    // Wake up for the next tick when a timer can expire soon, otherwise at the next cascade
+                    if (size == 0) {
+                        wakeUpTick = Long.MAX_VALUE;
+                    } else if (firstWheelSize > 0) {
+                        wakeUpTick = nextTick;
+                    } else {
+                        wakeUpTick = (nextTick + WHEEL_MASK) & ~WHEEL_MASK;
+                    }
+                    long waitNanos = wakeUpTick == Long.MAX_VALUE ? Long.MAX_VALUE :
+                            wakeUpTick * tickNanos - (System.nanoTime() - start);
+                    if (waitNanos > 0) {
+                        try {
+                            changed.awaitNanos(waitNanos);
+                        } catch (InterruptedException ignore) {
+                            // the thread of the wheel is never interrupted
+                        }
+                    }
+                }
+                wakeUpTick = nextTick;
+            } finally {
+                lock.unlock();
+            }
+
+            for (Timer timer : expired) {
+                try {
+                    timer.task.run();
+                } catch (Throwable throwable) {
+                    LogUtils.error(TAG, throwable);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    private static class Slot {
+        Timer head;
+        Timer tail;
+    }
+
+    /**
+     * A scheduled task.
+     */
+    public static class Timer {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        // Guarded by the lock of the wheel
+        private long deadlineTick;
+        private int level;
+        private Slot slot;
+        private Timer prev;
+        private Timer next;
+
+        private Timer(TimingWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timer.
+         *
+         * @return true when the timer is cancelled; false when it expired (the task is running or has run) or was
+         * cancelled before
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
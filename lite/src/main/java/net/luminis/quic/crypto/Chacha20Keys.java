@@ -29,6 +29,7 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
 
 import javax.crypto.AEADBadTagException;
@@ -88,6 +89,16 @@ public class Chacha20Keys extends Keys {
         return writeCipher;
     }
 
+    @Override
+    protected AlgorithmParameterSpec createAeadParameterSpec(byte[] nonce) {
+        return new IvParameterSpec(nonce);
+    }
+
+    @Override
+    public byte[] createHeaderProtectionMask(byte[] data, int sampleOffset) {
+        return createHeaderProtectionMask(Arrays.copyOfRange(data, sampleOffset, sampleOffset + 16));
+    }
+
     @Override
     public byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce) {
         try {
@@ -32,12 +32,14 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
 
 import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -67,6 +69,10 @@ public class Keys {
     private int keyUpdateCounter = 0;
     private boolean possibleKeyUpdateInProgresss = false;
     private volatile Keys peerKeys;
+    // Scratch buffers for the in-place packet protection methods; like the ciphers, an instance is used by one thread at
+    // a time (the sender for the own keys, the receiver for the peer keys).
+    private final byte[] nonce = new byte[12];
+    private final byte[] mask = new byte[16];
 
     public Keys(Version quicVersion, Role nodeRole, Logger log) {
         this.nodeRole = nodeRole;
@@ -343,6 +349,76 @@ public class Keys {
         }
     }
 
+    /**
+     * Encrypts the message in place, the authentication tag is appended to the message. The array must have room for the
+     * tag (16 bytes) after the message.
+     *
+     * @return the length of the encrypted message, including the tag
+     */
+    public int aeadEncrypt(byte[] data, int associatedDataOffset, int associatedDataLength, int messageOffset, int messageLength, long packetNumber) {
+        Cipher aeadCipher = getWriteCipher();
+        try {
+            aeadCipher.init(Cipher.ENCRYPT_MODE, getWriteKeySpec(), createAeadParameterSpec(computeNonce(packetNumber)));
+            aeadCipher.updateAAD(data, associatedDataOffset, associatedDataLength);
+            return aeadCipher.doFinal(data, messageOffset, messageLength, data, messageOffset);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decrypts the message (including the authentication tag) in place.
+     *
+     * @return the length of the decrypted message
+     */
+    public int aeadDecrypt(byte[] data, int associatedDataOffset, int associatedDataLength, int messageOffset, int messageLength, long packetNumber) throws DecryptionException {
+        Cipher aeadCipher = getWriteCipher();
+        try {
+            aeadCipher.init(Cipher.DECRYPT_MODE, getWriteKeySpec(), createAeadParameterSpec(computeNonce(packetNumber)));
+            aeadCipher.updateAAD(data, associatedDataOffset, associatedDataLength);
+            return aeadCipher.doFinal(data, messageOffset, messageLength, data, messageOffset);
+        } catch (AEADBadTagException decryptError) {
+            throw new DecryptionException();
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            LogUtils.error(TAG, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected AlgorithmParameterSpec createAeadParameterSpec(byte[] nonce) {
+        // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
+        return new GCMParameterSpec(128, nonce);
+    }
+
+    private byte[] computeNonce(long packetNumber) {
+        // https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
+        // "The 64 bits of the reconstructed QUIC packet number in network byte order are left-padded with zeros to the
+        //  size of the IV. The exclusive OR of the padded packet number and the IV forms the AEAD nonce"
+        byte[] iv = getWriteIV();
+        System.arraycopy(iv, 0, nonce, 0, nonce.length);
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (packetNumber >>> (8 * i));
+        }
+        return nonce;
+    }
+
+    /**
+     * Creates the header protection mask from the 16 byte sample starting at the given offset. The returned array is
+     * reused by the next call.
+     */
+    public byte[] createHeaderProtectionMask(byte[] data, int sampleOffset) {
+        Cipher hpCipher = getHeaderProtectionCipher();
+        try {
+            hpCipher.doFinal(data, sampleOffset, 16, mask, 0);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            throw new RuntimeException(e);
+        }
+        return mask;
+    }
+
     public byte[] createHeaderProtectionMask(byte[] sample) {
         Cipher hpCipher = getHeaderProtectionCipher();
         byte[] mask;
@@ -21,12 +21,27 @@ package net.luminis.quic.frame;
 
 import net.luminis.quic.packet.QuicPacket;
 
+import java.nio.ByteBuffer;
 import java.time.Instant;
 
 public abstract class QuicFrame {
 
     public abstract byte[] getBytes();
 
+    /**
+     * Returns the length of the serialized frame.
+     */
+    public int getFrameLength() {
+        return getBytes().length;
+    }
+
+    /**
+     * Writes the serialized frame into the given buffer.
+     */
+    public void serialize(ByteBuffer buffer) {
+        buffer.put(getBytes());
+    }
+
     // https://tools.ietf.org/html/draft-ietf-quic-recovery-33#section-2
     // "All frames other than ACK, PADDING, and CONNECTION_CLOSE are considered ack-eliciting."
     public boolean isAckEliciting() {
@@ -25,6 +25,7 @@ import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.stream.StreamElement;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
@@ -39,7 +40,11 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
     private int offset;
     private int length;
     private byte[] streamData;
+    // start of the data in streamData, which (for received frames) is the decrypted packet payload
+    private int dataOffset;
     private boolean isFinal;
+    // Serialized frame header, the data is only copied when the frame is serialized into a packet
+    private byte[] frameHeader;
     private byte[] frameData;
 
     public StreamFrame() {
@@ -62,15 +67,29 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
     }
 
     public StreamFrame(Version quicVersion, int streamId, int streamOffset, byte[] applicationData, int dataOffset, int dataLength, boolean fin) {
+        init(streamId, streamOffset, Arrays.copyOfRange(applicationData, dataOffset, dataOffset + dataLength), 0, dataLength, fin);
+    }
+
+    /**
+     * Creates a stream frame that refers to the given data instead of copying it. The data must not be modified as
+     * long as the frame can be sent (or retransmitted).
+     */
+    public static StreamFrame withDataReference(int streamId, int streamOffset, byte[] data, int dataOffset, int dataLength, boolean fin) {
+        StreamFrame frame = new StreamFrame();
+        frame.init(streamId, streamOffset, data, dataOffset, dataLength, fin);
+        return frame;
+    }
+
+    private void init(int streamId, int streamOffset, byte[] data, int dataOffset, int dataLength, boolean fin) {
         streamType = Stream.of(StreamType.values()).filter(t -> t.value == (streamId & 0x03)).findFirst().get();
         this.streamId = streamId;
         this.offset = streamOffset;
-        this.streamData = new byte[dataLength];
-        ByteBuffer.wrap(streamData).put(applicationData, dataOffset, dataLength);  // Not necessary, but for testing.
+        this.streamData = data;
+        this.dataOffset = dataOffset;
         this.length = dataLength;
         isFinal = fin;
 
-        ByteBuffer buffer = ByteBuffer.allocate(1 + 3 * 4 + applicationData.length);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 3 * 8);
         byte baseType = (byte) 0x08;
         byte frameType = (byte) (baseType | 0x04 | 0x02 | 0x00);  // OFF-bit, LEN-bit, (no) FIN-bit
         if (fin) {
@@ -80,11 +99,18 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
         VariableLengthInteger.encode(streamId, buffer);
         VariableLengthInteger.encode(offset, buffer);
         VariableLengthInteger.encode(length, buffer);
-        buffer.put(applicationData, dataOffset, dataLength);
 
-        frameData = new byte[buffer.position()];
+        frameHeader = new byte[buffer.position()];
         buffer.rewind();
-        buffer.get(frameData);
+        buffer.get(frameHeader);
+    }
+
+    /**
+     * Returns the length of the header (type, stream id, offset and length) of a stream frame with the given values.
+     */
+    public static int headerLength(int streamId, int streamOffset, int dataLength) {
+        return 1 + VariableLengthInteger.bytesNeeded(streamId) + VariableLengthInteger.bytesNeeded(streamOffset)
+                + VariableLengthInteger.bytesNeeded(dataLength);
     }
 
     static public int maxOverhead() {
@@ -113,18 +139,44 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
             length = buffer.limit() - buffer.position();
         }
 
-        streamData = new byte[length];
-        buffer.get(streamData);
-        log.decrypted("Stream data", streamData);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (buffer.hasArray()) {
+            // Refer to the data in the (decrypted) packet instead of copying it.
+            streamData = buffer.array();
+            dataOffset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+        } else {
+            streamData = new byte[length];
+            dataOffset = 0;
+            buffer.get(streamData);
+        }
 
         return this;
     }
 
     @Override
     public byte[] getBytes() {
+        if (frameData == null && frameHeader != null) {
+            frameData = new byte[frameHeader.length + length];
+            System.arraycopy(frameHeader, 0, frameData, 0, frameHeader.length);
+            System.arraycopy(streamData, dataOffset, frameData, frameHeader.length, length);
+        }
         return frameData;
     }
 
+    @Override
+    public int getFrameLength() {
+        return frameHeader.length + length;
+    }
+
+    @Override
+    public void serialize(ByteBuffer buffer) {
+        buffer.put(frameHeader);
+        buffer.put(streamData, dataOffset, length);
+    }
+
     @Override
     public String toString() {
         return "StreamFrame[" + streamId + "(" + streamType.abbrev + ")" + "," + offset + "," + length + (isFinal ? ",f" : "") + "]";
@@ -139,7 +191,7 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
                 offset == that.offset &&
                 length == that.length &&
                 isFinal == that.isFinal &&
-                Arrays.equals(streamData, that.streamData);
+                Arrays.equals(getStreamData(), that.getStreamData());
     }
 
     @Override
@@ -169,7 +221,15 @@ public class StreamFrame extends QuicFrame implements StreamElement, Comparable<
     }
 
     public byte[] getStreamData() {
-        return streamData;
+        if (dataOffset == 0 && streamData.length == length) {
+            return streamData;
+        }
+        return Arrays.copyOfRange(streamData, dataOffset, dataOffset + length);
+    }
+
+    @Override
+    public void copyStreamData(int position, ByteBuffer target, int count) {
+        target.put(streamData, dataOffset + position, count);
     }
 
     @Override
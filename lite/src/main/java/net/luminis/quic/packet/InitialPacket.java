@@ -54,9 +54,8 @@ public class InitialPacket extends LongHeaderPacket {
     }
 
     public static boolean isInitial(ByteBuffer data) {
-        data.mark();
-        int flags = data.get();
-        data.rewind();
+        // The buffer is not moved, it can be positioned after a packet that is already parsed
+        int flags = data.get(data.position());
         return (flags & 0xf0) == 0b1100_0000;
     }
 
@@ -155,7 +154,7 @@ public class InitialPacket extends LongHeaderPacket {
     }
 
     public void ensureSize(int minimumSize) {
-        int payloadSize = frames.stream().mapToInt(f -> f.getBytes().length).sum();
+        int payloadSize = frames.stream().mapToInt(f -> f.getFrameLength()).sum();
         int estimatedPacketLength = 1 + 4 + 1
                 + destinationConnectionId.length + sourceConnectionId.length + (token != null ? token.length : 1)
                 + 2 + 1 + payloadSize + 16;   // 16 is what encryption adds, note that final length might be larger due to multi-byte packet length
@@ -89,7 +89,7 @@ public abstract class LongHeaderPacket extends QuicPacket {
     public byte[] generatePacketBytes(Long packetNumber, Keys keys) {
         this.packetNumber = packetNumber;
 
-        ByteBuffer packetBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        ByteBuffer packetBuffer = packetBuffer();
         generateFrameHeaderInvariant(packetBuffer);
         generateAdditionalFields(packetBuffer);
         byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
@@ -112,7 +112,7 @@ public abstract class LongHeaderPacket extends QuicPacket {
 
     @Override
     public int estimateLength(int additionalPayload) {
-        int payloadLength = getFrames().stream().mapToInt(f -> f.getBytes().length).sum() + additionalPayload;
+        int payloadLength = getFrames().stream().mapToInt(f -> f.getFrameLength()).sum() + additionalPayload;
         return 1
                 + 4
                 + 1 + destinationConnectionId.length
@@ -59,6 +59,9 @@ import java.util.List;
 abstract public class QuicPacket {
 
     protected static final int MAX_PACKET_SIZE = 1500;
+    // Buffers for generating packets, reused for all packets generated on the same (sender) thread
+    private static final ThreadLocal<ByteBuffer> packetBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_PACKET_SIZE));
+    private static final ThreadLocal<ByteBuffer> payloadBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_PACKET_SIZE));
 
     protected Version quicVersion;
     protected long packetNumber = -1;
@@ -141,6 +144,10 @@ abstract public class QuicPacket {
         // "When removing packet protection, an endpoint
         //   first removes the header protection."
 
+        // The packet is unprotected and decrypted in place, the buffer must be backed by an array and the packet must
+        // start at position 0 of the buffer.
+        byte[] data = buffer.array();
+        int packetStart = buffer.arrayOffset();
         int currentPosition = buffer.position();
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.2:
         // "The same number of bytes are always sampled, but an allowance needs
@@ -148,22 +155,16 @@ abstract public class QuicPacket {
         //   the length of the Packet Number field.  In sampling the packet
         //   ciphertext, the Packet Number field is assumed to be 4 bytes long
         //   (its maximum possible encoded length)."
-        if (buffer.remaining() < 4) {
-            throw new InvalidPacketException();
-        }
-        buffer.position(currentPosition + 4);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.2:
         // "This algorithm samples 16 bytes from the packet ciphertext."
-        if (buffer.remaining() < 16) {
+        if (buffer.remaining() < 4 + 16) {
             throw new InvalidPacketException();
         }
-        byte[] sample = new byte[16];
-        buffer.get(sample);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
         // "Header protection is applied after packet protection is applied (see
         //   Section 5.3).  The ciphertext of the packet is sampled and used as
         //   input to an encryption algorithm."
-        byte[] mask = createHeaderProtectionMask(sample, serverSecrets);
+        byte[] mask = serverSecrets.createHeaderProtectionMask(data, packetStart + currentPosition + 4);
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1
         // "The output of this algorithm is a 5 byte mask which is applied to the
         //   protected header fields using exclusive OR.  The least significant
@@ -178,40 +179,30 @@ abstract public class QuicPacket {
             decryptedFlags = (byte) (flags ^ mask[0] & 0x1f);
         }
         setUnprotectedHeader(decryptedFlags);
-        buffer.position(currentPosition);
 
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
         // "pn_length = (packet[0] & 0x03) + 1"
         int protectedPackageNumberLength = (decryptedFlags & 0x03) + 1;
-        byte[] protectedPackageNumber = new byte[protectedPackageNumberLength];
-        buffer.get(protectedPackageNumber);
-
-        byte[] unprotectedPacketNumber = new byte[protectedPackageNumberLength];
+        long truncatedPacketNumber = 0;
         for (int i = 0; i < protectedPackageNumberLength; i++) {
             // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.1:
             // " ...and the packet number is
             //   masked with the remaining bytes.  Any unused bytes of mask that might
             //   result from a shorter packet number encoding are unused."
-            unprotectedPacketNumber[i] = (byte) (protectedPackageNumber[i] ^ mask[1 + i]);
+            int index = packetStart + currentPosition + i;
+            data[index] = (byte) (data[index] ^ mask[1 + i]);
+            truncatedPacketNumber = (truncatedPacketNumber << 8) | (data[index] & 0xff);
         }
-        packetNumber = bytesToInt(unprotectedPacketNumber);
-        packetNumber = decodePacketNumber(packetNumber, largestPacketNumber, protectedPackageNumberLength * 8);
+        packetNumber = decodePacketNumber(truncatedPacketNumber, largestPacketNumber, protectedPackageNumberLength * 8);
         log.decrypted("Unprotected packet number: " + packetNumber);
 
-        currentPosition = buffer.position();
         // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.3
         // "The associated data, A, for the AEAD is the contents of the QUIC
         //   header, starting from the flags byte in either the short or long
         //   header, up to and including the unprotected packet number."
-        byte[] frameHeader = new byte[buffer.position()];
-        buffer.position(0);
-        buffer.get(frameHeader);
-        frameHeader[0] = decryptedFlags;
-        buffer.position(currentPosition);
-
-        // Copy unprotected (decrypted) packet number in frame header, before decrypting payload.
-        System.arraycopy(unprotectedPacketNumber, 0, frameHeader, frameHeader.length - (protectedPackageNumberLength), protectedPackageNumberLength);
-        log.encrypted("Frame header", frameHeader);
+        // The unprotected flags and packet number replace the protected ones, so the header can be used as is.
+        data[packetStart] = decryptedFlags;
+        int headerLength = currentPosition + protectedPackageNumberLength;
 
         // "The input plaintext, P, for the AEAD is the payload of the QUIC
         //   packet, as described in [QUIC-TRANSPORT]."
@@ -220,16 +211,18 @@ abstract public class QuicPacket {
         if (encryptedPayloadLength < 1) {
             throw new InvalidPacketException();
         }
-        byte[] payload = new byte[encryptedPayloadLength];
-        buffer.get(payload, 0, encryptedPayloadLength);
-        log.encrypted("Encrypted payload", payload);
+        buffer.position(headerLength + encryptedPayloadLength);
 
-        byte[] frameBytes = decryptPayload(payload, frameHeader, packetNumber, serverSecrets);
-        log.decrypted("Decrypted payload", frameBytes);
+        if (this instanceof ShortHeaderPacket) {
+            serverSecrets.checkKeyPhase(((ShortHeaderPacket) this).keyPhaseBit);
+        }
+        int payloadLength = serverSecrets.aeadDecrypt(data, packetStart, headerLength,
+                packetStart + headerLength, encryptedPayloadLength, packetNumber);
 
+        // The frames refer to the decrypted payload (e.g. the data of stream frames), so it is not copied
         frames = new ArrayList<>();
         try {
-            parseFrames(frameBytes, log);
+            parseFrames(ByteBuffer.wrap(data, packetStart + headerLength, payloadLength).slice(), log);
         } catch (InvalidIntegerEncodingException e) {
             throw new InvalidPacketException();
         }
@@ -238,66 +231,7 @@ abstract public class QuicPacket {
     protected void setUnprotectedHeader(byte decryptedFlags) {
     }
 
-    byte[] createHeaderProtectionMask(byte[] sample, Keys secrets) {
-        return createHeaderProtectionMask(sample, 4, secrets);
-    }
-
-    byte[] createHeaderProtectionMask(byte[] ciphertext, int encodedPacketNumberLength, Keys secrets) {
-        // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4
-        // "The same number of bytes are always sampled, but an allowance needs
-        //   to be made for the endpoint removing protection, which will not know
-        //   the length of the Packet Number field.  In sampling the packet
-        //   ciphertext, the Packet Number field is assumed to be 4 bytes long
-        //   (its maximum possible encoded length)."
-        int sampleOffset = 4 - encodedPacketNumberLength;
-        byte[] sample = new byte[16];
-        System.arraycopy(ciphertext, sampleOffset, sample, 0, 16);
-
-        return secrets.createHeaderProtectionMask(sample);
-    }
-
-    byte[] encryptPayload(byte[] message, byte[] associatedData, long packetNumber, Keys secrets) {
-
-        // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
-        // "The nonce, N, is formed by combining the packet
-        //   protection IV with the packet number.  The 64 bits of the
-        //   reconstructed QUIC packet number in network byte order are left-
-        //   padded with zeros to the size of the IV.  The exclusive OR of the
-        //   padded packet number and the IV forms the AEAD nonce"
-        byte[] writeIV = secrets.getWriteIV();
-        ByteBuffer nonceInput = ByteBuffer.allocate(writeIV.length);
-        for (int i = 0; i < nonceInput.capacity() - 8; i++)
-            nonceInput.put((byte) 0x00);
-        nonceInput.putLong(packetNumber);
-
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return secrets.aeadEncrypt(associatedData, message, nonce);
-    }
-
-    byte[] decryptPayload(byte[] message, byte[] associatedData, long packetNumber, Keys secrets) throws DecryptionException {
-        ByteBuffer nonceInput = ByteBuffer.allocate(12);
-        nonceInput.putInt(0);
-        nonceInput.putLong(packetNumber);
-
-        if (this instanceof ShortHeaderPacket) {
-            secrets.checkKeyPhase(((ShortHeaderPacket) this).keyPhaseBit);
-        }
-
-        byte[] writeIV = secrets.getWriteIV();
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return secrets.aeadDecrypt(associatedData, message, nonce);
-    }
-
-    protected void parseFrames(byte[] frameBytes, Logger log) throws InvalidIntegerEncodingException {
-        ByteBuffer buffer = ByteBuffer.wrap(frameBytes);
+    protected void parseFrames(ByteBuffer buffer, Logger log) throws InvalidIntegerEncodingException {
 
         while (buffer.remaining() > 0) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-16#section-12.4
@@ -395,9 +329,23 @@ abstract public class QuicPacket {
         packetNumber = pn;
     }
 
+    /**
+     * Returns a buffer that can be used to assemble the bytes of a packet; the buffer is reused by the next packet that
+     * is generated on the same thread.
+     */
+    protected static ByteBuffer packetBuffer() {
+        ByteBuffer buffer = packetBuffer.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Serializes the frames into a buffer that is reused by the next packet that is generated on the same thread.
+     */
     protected ByteBuffer generatePayloadBytes(int encodedPacketNumberLength) {
-        ByteBuffer frameBytes = ByteBuffer.allocate(MAX_PACKET_SIZE);
-        frames.stream().forEachOrdered(frame -> frameBytes.put(frame.getBytes()));
+        ByteBuffer frameBytes = payloadBuffer.get();
+        frameBytes.clear();
+        frames.stream().forEachOrdered(frame -> frame.serialize(frameBytes));
         int serializeFramesLength = frameBytes.position();
         // https://tools.ietf.org/html/draft-ietf-quic-tls-27#section-5.4.2
         // "To ensure that sufficient data is available for sampling, packets are
@@ -412,13 +360,16 @@ abstract public class QuicPacket {
         if (encodedPacketNumberLength + serializeFramesLength < 4) {
             Padding padding = new Padding(4 - encodedPacketNumberLength - frameBytes.position());
             frames.add(padding);
-            frameBytes.put(padding.getBytes());
+            padding.serialize(frameBytes);
         }
         frameBytes.flip();
         return frameBytes;
     }
 
     protected void protectPacketNumberAndPayload(ByteBuffer packetBuffer, int packetNumberSize, ByteBuffer payload, int paddingSize, Keys clientSecrets) {
+        // The payload is encrypted and the header is protected in place, the packet buffer must be backed by an array.
+        byte[] data = packetBuffer.array();
+        int packetStart = packetBuffer.arrayOffset();
         int packetNumberPosition = packetBuffer.position() - packetNumberSize;
 
         // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
@@ -426,26 +377,25 @@ abstract public class QuicPacket {
         //   header, starting from the flags octet in either the short or long
         //   header, up to and including the unprotected packet number."
         int additionalDataSize = packetBuffer.position();
-        byte[] additionalData = new byte[additionalDataSize];
-        packetBuffer.flip();  // Prepare for reading from start
-        packetBuffer.get(additionalData);  // Position is now where it was at start of this method.
-        packetBuffer.limit(packetBuffer.capacity());  // Ensure we can continue writing
-
-        byte[] paddedPayload = new byte[payload.limit() + paddingSize];
-        payload.get(paddedPayload, 0, payload.limit());
-        byte[] encryptedPayload = encryptPayload(paddedPayload, additionalData, packetNumber, clientSecrets);
-        packetBuffer.put(encryptedPayload);
-
-        byte[] protectedPacketNumber;
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        byte[] mask = createHeaderProtectionMask(encryptedPayload, encodedPacketNumber.length, clientSecrets);
-
-        protectedPacketNumber = new byte[encodedPacketNumber.length];
-        for (int i = 0; i < encodedPacketNumber.length; i++) {
-            protectedPacketNumber[i] = (byte) (encodedPacketNumber[i] ^ mask[1 + i]);
+        int payloadLength = payload.remaining() + paddingSize;
+        packetBuffer.put(payload);
+        for (int i = 0; i < paddingSize; i++) {
+            packetBuffer.put((byte) 0x00);
         }
+        int encryptedLength = clientSecrets.aeadEncrypt(data, packetStart, additionalDataSize,
+                packetStart + additionalDataSize, payloadLength, packetNumber);
+        packetBuffer.position(additionalDataSize + encryptedLength);
 
-        byte flags = packetBuffer.get(0);
+        // https://tools.ietf.org/html/draft-ietf-quic-tls-17#section-5.4.2
+        // "In sampling the packet ciphertext, the Packet Number field is assumed to be 4 bytes long"
+        byte[] mask = clientSecrets.createHeaderProtectionMask(data, packetStart + packetNumberPosition + 4);
+
+        for (int i = 0; i < packetNumberSize; i++) {
+            int index = packetStart + packetNumberPosition + i;
+            data[index] = (byte) (data[index] ^ mask[1 + i]);
+        }
+
+        byte flags = data[packetStart];
         if ((flags & 0x80) == 0x80) {
             // Long header: 4 bits masked
             flags ^= mask[0] & 0x0f;
@@ -453,12 +403,7 @@ abstract public class QuicPacket {
             // Short header: 5 bits masked
             flags ^= mask[0] & 0x1f;
         }
-        packetBuffer.put(0, flags);
-
-        int currentPosition = packetBuffer.position();
-        packetBuffer.position(packetNumberPosition);
-        packetBuffer.put(protectedPacketNumber);
-        packetBuffer.position(currentPosition);
+        data[packetStart] = flags;
     }
 
     public void addFrame(QuicFrame frame) {
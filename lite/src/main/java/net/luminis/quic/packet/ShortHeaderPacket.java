@@ -108,7 +108,7 @@ public class ShortHeaderPacket extends QuicPacket {
         return 1
                 + destinationConnectionId.length
                 + 1  // packet number length: will usually be just 1, actual value cannot be computed until packet number is known
-                + getFrames().stream().mapToInt(f -> f.getBytes().length).sum() + additionalPayload
+                + getFrames().stream().mapToInt(f -> f.getFrameLength()).sum() + additionalPayload
                 // https://tools.ietf.org/html/draft-ietf-quic-tls-27#section-5.4.2
                 // "The ciphersuites defined in [TLS13] - (...) - have 16-byte expansions..."
                 + 16;
@@ -128,7 +128,7 @@ public class ShortHeaderPacket extends QuicPacket {
     public byte[] generatePacketBytes(Long packetNumber, Keys keys) {
         this.packetNumber = packetNumber;
 
-        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        ByteBuffer buffer = packetBuffer();
         byte flags;
         // https://tools.ietf.org/html/draft-ietf-quic-transport-17#section-17.3
         // "|0|1|S|R|R|K|P P|"
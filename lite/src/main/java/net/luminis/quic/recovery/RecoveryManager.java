@@ -26,7 +26,8 @@ import net.luminis.quic.HandshakeStateListener;
 import net.luminis.quic.PnSpace;
 import net.luminis.quic.Role;
 import net.luminis.quic.cc.CongestionController;
-import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.frame.AckFrame;
 import net.luminis.quic.frame.Padding;
 import net.luminis.quic.frame.PingFrame;
@@ -45,14 +46,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -67,15 +62,16 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
     private final LossDetector[] lossDetectors = new LossDetector[PnSpace.values().length];
     private final Sender sender;
     private final Logger log;
-    private final ScheduledExecutorService scheduler;
+    private final TimingWheel scheduler;
+    private final Executor executor;
     private int receiverMaxAckDelay;
-    private volatile ScheduledFuture<?> lossDetectionTimer;
+    private volatile TimingWheel.Timer lossDetectionTimer;
     private volatile int ptoCount;
     private volatile Instant timerExpiration;
     private volatile HandshakeState handshakeState = HandshakeState.Initial;
     private volatile boolean hasBeenReset = false;
 
-    public RecoveryManager(FrameProcessorRegistry processorRegistry, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Logger logger) {
+    public RecoveryManager(FrameProcessorRegistry processorRegistry, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Executor executor, Logger logger) {
         this.role = role;
         this.rttEstimater = rttEstimater;
         for (PnSpace pnSpace : PnSpace.values()) {
@@ -85,15 +81,14 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
         log = logger;
 
         processorRegistry.registerProcessor(this);
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("loss-detection"));
-        lossDetectionTimer = new NullScheduledFuture();
+        scheduler = EventLoops.timers();
+        this.executor = executor;
     }
 
     void setLossDetectionTimer() {
         PnSpaceTime earliestLossTime = getEarliestLossTime(LossDetector::getLossTime);
         Instant lossTime = earliestLossTime != null ? earliestLossTime.lossTime : null;
         if (lossTime != null) {
-            lossDetectionTimer.cancel(false);
             int timeout = (int) Duration.between(Instant.now(), lossTime).toMillis();
             lossDetectionTimer = reschedule(() -> lossDetectionTimeout(), timeout);
         } else {
@@ -119,7 +114,6 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
                             + (ackElicitingInFlight ? "ackElicitingInFlight " : "")
                             + "| RTT:" + rttEstimater.getSmoothedRtt() + "/" + rttEstimater.getRttVar(), ptoTimeAndSpace.lossTime);
 
-                    lossDetectionTimer.cancel(false);
                     lossDetectionTimer = reschedule(() -> lossDetectionTimeout(), timeout);
                 }
             } else {
@@ -174,36 +168,7 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
     }
 
     private void lossDetectionTimeout() {
-        // Because cancelling the ScheduledExecutor task quite often fails, double check whether the timer should expire.
-        Instant expiration = timerExpiration;
-        if (expiration == null) {
-            // Timer was cancelled, but it still fired; ignore
-            log.warn("Loss detection timeout: Timer was cancelled.");
-            return;
-        } else if (Instant.now().isBefore(expiration)) {
-            // Old timer task was cancelled, but it still fired; just ignore.
-            log.warn("Scheduled task running early: " + Duration.between(Instant.now(), expiration) + "(" + expiration + ")");
-            // Apparently, sleep is less precise than time measurement; and adding an extra ms is necessary to avoid that after the sleep, it's still too early
-            long remainingWaitTime = Duration.between(Instant.now(), expiration).toMillis() + 1;
-            if (remainingWaitTime > 0) {  // Time goes on, so remaining time could have become negative in the mean time
-                try {
-                    Thread.sleep(remainingWaitTime);
-                } catch (InterruptedException e) {
-                }
-            }
-            expiration = timerExpiration;
-            if (expiration == null) {
-                log.warn("Delayed task: timer expiration is now null, cancelled");
-                return;
-            } else if (Instant.now().isBefore(expiration)) {
-                log.warn("Delayed task is now still before timer expiration, probably rescheduled in the meantime; " + Duration.between(Instant.now(), timerExpiration) + "(" + timerExpiration + ")");
-                return;
-            } else {
-                log.warn("Delayed task running now");
-            }
-        } else {
-            log.recovery("%s loss detection timeout handler running", Instant.now());
-        }
+        log.recovery("%s loss detection timeout handler running", Instant.now());
 
         PnSpaceTime earliestLossTime = getEarliestLossTime(LossDetector::getLossTime);
         Instant lossTime = earliestLossTime != null ? earliestLossTime.lossTime : null;
@@ -321,34 +286,41 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
         return earliestLossTime;
     }
 
-    ScheduledFuture<?> reschedule(Runnable runnable, int timeout) {
-        if (!lossDetectionTimer.cancel(false)) {
-            log.debug("Cancelling loss detection timer failed");
-        }
-        timerExpiration = Instant.now().plusMillis(timeout);
-        if( scheduler.isShutdown()){
-            LogUtils.debug(TAG, "Scheduler is shutdown");
+    TimingWheel.Timer reschedule(Runnable runnable, int timeout) {
+        cancelTimer();
+        Instant expiration = Instant.now().plusMillis(timeout);
+        timerExpiration = expiration;
+        if (hasBeenReset) {
+            // the scheduler is shared, recovery is stopped for this connection only
             return null;
         }
-        if( scheduler.isTerminated()){
-            LogUtils.debug(TAG, "Scheduler is terminated");
-            return null;
-        }
-        return scheduler.schedule(() -> {
+        // The wheel only dispatches, the loss detection (and the sending of probes) runs on the executor
+        return scheduler.schedule(() -> executor.execute(() -> {
             try {
-                runnable.run();
+                // A timer that is cancelled just when it expires still runs; it is ignored when it is rescheduled
+                // or unscheduled in the meantime
+                if (!hasBeenReset && timerExpiration == expiration) {
+                    runnable.run();
+                }
             } catch (Exception error) {
                 LogUtils.error(TAG, "Runtime exception occurred while processing scheduled task "+ error);
             }
-        }, timeout, TimeUnit.MILLISECONDS);
+        }), timeout, TimeUnit.MILLISECONDS);
 
     }
 
     void unschedule() {
-        lossDetectionTimer.cancel(true);
+        cancelTimer();
         timerExpiration = null;
     }
 
+    private void cancelTimer() {
+        TimingWheel.Timer timer = lossDetectionTimer;
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
     public void onAckReceived(AckFrame ackFrame, PnSpace pnSpace, Instant timeReceived) {
         if (!hasBeenReset) {
             if (ptoCount > 0) {
@@ -386,7 +358,6 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
         if (!hasBeenReset) {
             hasBeenReset = true;
             unschedule();
-            scheduler.shutdown();
             for (PnSpace pnSpace : PnSpace.values()) {
                 lossDetectors[pnSpace.ordinal()].reset();
             }
@@ -427,12 +398,9 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
     }
 
     private void repeatSend(int count, Runnable task) {
+        // Each probe is queued as a separate request and sent in its own packet, no need to wait in between
         for (int i = 0; i < count; i++) {
             task.run();
-            try {
-                Thread.sleep(1);  // Use a small delay when sending multiple packets
-            } catch (InterruptedException e) {
-            }
         }
     }
 
@@ -442,43 +410,6 @@ public class RecoveryManager implements FrameProcessor2<AckFrame>, HandshakeStat
         return timeFormatter.format(localTimeNow);
     }
 
-    private static class NullScheduledFuture implements ScheduledFuture<Void> {
-        @Override
-        public int compareTo(Delayed o) {
-            return 0;
-        }
-
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return 0;
-        }
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return false;
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return false;
-        }
-
-        @Override
-        public boolean isDone() {
-            return false;
-        }
-
-        @Override
-        public Void get() throws InterruptedException, ExecutionException {
-            return null;
-        }
-
-        @Override
-        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            return null;
-        }
-    }
-
     static class PnSpaceTime {
         public PnSpace pnSpace;
         public Instant lossTime;
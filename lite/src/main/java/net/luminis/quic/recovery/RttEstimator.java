@@ -70,7 +70,9 @@ public class RttEstimator {
 
         int previousSmoothed = smoothedRtt;
 
-        int rttSample = Duration.between(timeSent, timeReceived).getNano() / 1_000_000;
+        // Samples are truncated at millisecond precision; a sample of 0 (e.g. on loopback) would leave the estimator at
+        // its initial value.
+        int rttSample = (int) Long.max(1, Duration.between(timeSent, timeReceived).toMillis());
         if (rttSample < minRtt)
             minRtt = rttSample;
         // Adjust for ack delay if it's plausible. Because times are truncated at millisecond precision,
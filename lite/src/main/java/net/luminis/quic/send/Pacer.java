@@ -0,0 +1,45 @@
+package net.luminis.quic.send;
+
+/**
+ * Spreads the packets that are subject to congestion control over time, with a token bucket: tokens (bytes) are added
+ * with the pacing rate, up to a limited burst; a packet can be sent when there are enough tokens for it.
+ * Not thread safe: must only be used by the (serialized) send turns of the sender.
+ */
+public class Pacer {
+
+    private final long maxBurst;
+    private long tokens;
+    private long lastUpdate;
+
+    public Pacer(int maxPacketSize, int burstPackets) {
+        maxBurst = (long) maxPacketSize * burstPackets;
+        tokens = maxBurst;
+        lastUpdate = System.nanoTime();
+    }
+
+    /**
+     * Returns the time (in nanoseconds) to wait before a packet of the given size can be sent with the given rate.
+     * @param rate  pacing rate in bytes per second, 0 for no pacing
+     * @param size
+     * @return
+     */
+    public long delay(long rate, int size) {
+        long now = System.nanoTime();
+        // Limit the interval, to prevent overflow after a long idle period (the bucket will be full anyway)
+        long elapsed = Long.min(now - lastUpdate, 1_000_000_000L);
+        lastUpdate = now;
+        if (rate <= 0) {
+            tokens = maxBurst;
+            return 0;
+        }
+        tokens = Long.min(maxBurst, tokens + rate * elapsed / 1_000_000_000L);
+        if (tokens >= size) {
+            return 0;
+        }
+        return (size - tokens) * 1_000_000_000L / rate;
+    }
+
+    public void sent(int bytes) {
+        tokens -= bytes;
+    }
+}
@@ -24,12 +24,19 @@ public class SendStatistics {
     private final long packetsSent;
     private final long bytesSent;
     private final long lostPackets;
+    private final long flushes;
+    private final long pacingDelays;
+    private final long pacingDelayTotal;
 
-    public SendStatistics(int datagramsSent, long packetsSent, long bytesSent, long lostPackets) {
+    public SendStatistics(int datagramsSent, long packetsSent, long bytesSent, long lostPackets,
+                          long flushes, long pacingDelays, long pacingDelayTotal) {
         this.datagramsSent = datagramsSent;
         this.packetsSent = packetsSent;
         this.bytesSent = bytesSent;
         this.lostPackets = lostPackets;
+        this.flushes = flushes;
+        this.pacingDelays = pacingDelays;
+        this.pacingDelayTotal = pacingDelayTotal;
     }
 
     public int datagramsSent() {
@@ -47,4 +54,44 @@ public class SendStatistics {
     public long packetsSent() {
         return packetsSent;
     }
+
+    /**
+     * Returns the number of send turns that sent at least one datagram.
+     * @return
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * Returns the number of times sending was delayed by the pacer.
+     * @return
+     */
+    public long pacingDelays() {
+        return pacingDelays;
+    }
+
+    /**
+     * Returns the sum of the pacing delays, in microseconds.
+     * @return
+     */
+    public long pacingDelayTotal() {
+        return pacingDelayTotal;
+    }
+
+    /**
+     * Returns the average number of packets per datagram, i.e. per send system call.
+     * @return
+     */
+    public double packetsPerDatagram() {
+        return datagramsSent == 0 ? 0 : (double) packetsSent / datagramsSent;
+    }
+
+    /**
+     * Returns the average number of datagrams sent in one send turn.
+     * @return
+     */
+    public double datagramsPerFlush() {
+        return flushes == 0 ? 0 : (double) datagramsSent / flushes;
+    }
 }
@@ -19,13 +19,17 @@
 package net.luminis.quic.send;
 
 import net.luminis.quic.*;
+import net.luminis.quic.cc.CongestionControlAlgorithm;
 import net.luminis.quic.cc.CongestionControlEventListener;
 import net.luminis.quic.cc.CongestionController;
-import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.SerialExecutor;
+import net.luminis.quic.concurrent.TimingWheel;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.Keys;
 import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.packet.RetryPacket;
 
 import net.luminis.quic.recovery.RecoveryManager;
@@ -37,9 +41,12 @@ import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -67,16 +74,26 @@ import static java.lang.Long.max;
  * - probe request
  * - delayed ack timeout
  * - congestion controller becoming unblocked due to timer-induced loss detection
+ * - pacing delay passed (when the congestion controller requires pacing)
+ *
+ * The sender has no thread of its own: each of these conditions submits a send turn to a serial executor on the
+ * shared event-loop threads, and a timer on the shared timing wheel triggers the turn for delayed sends.
  */
 public class SenderImpl implements Sender, CongestionControlEventListener {
     private static final String TAG = SenderImpl.class.getSimpleName();
     private static final AtomicInteger INSTANCES = new AtomicInteger(0);
+    // Number of packets that can be sent in a burst when pacing
+    private static final int PACING_BURST = 10;
     private final int maxPacketSize;
     private volatile DatagramSocket socket;
     private final InetSocketAddress peerAddress;
     private final QuicConnectionImpl connection;
     private final CongestionController congestionController;
     private final RttEstimator rttEstimater;
+    private final Pacer pacer;
+    // Reused for every datagram; direct when the socket has a channel, so sending does not copy the data
+    private final ByteBuffer sendBuffer;
+    private DatagramPacket datagram;
     private final Logger log;
 
     private final SendRequestQueue[] sendRequestQueue = new SendRequestQueue[EncryptionLevel.values().length];
@@ -84,13 +101,13 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private final GlobalAckGenerator globalAckGenerator;
     private final RecoveryManager recoveryManager;
     private final IdleTimer idleTimer;
-    private final Thread senderThread;
+    private final SerialExecutor loop = EventLoops.newSerialExecutor();
     private final boolean[] discardedSpaces = new boolean[PnSpace.values().length];
     private ConnectionSecrets connectionSecrets;
-    private final Object condition = new Object();
-    private boolean signalled;
+    private final AtomicBoolean signalled = new AtomicBoolean(false);
+    private volatile TimingWheel.Timer delayedSend;
 
-    // Using thread-confinement strategy for concurrency control: only the sender thread created in this class accesses these members
+    // Using confinement strategy for concurrency control: only the (serialized) send turns access these members
     private volatile boolean running;
     private volatile boolean stopped;
     private volatile int receiverMaxAckDelay;
@@ -100,10 +117,20 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private AtomicInteger subsequentZeroDelays = new AtomicInteger();
     private volatile boolean lastDelayWasZero = false;
     private volatile int antiAmplificationLimit = -1;
+    private volatile long pacingDelay;
+    private volatile long flushes;
+    private volatile long pacingDelays;
+    private volatile long pacingDelayTotal;
 
 
     public SenderImpl(Version version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
                       QuicConnectionImpl connection, Integer initialRtt, Logger log) {
+        this(version, maxPacketSize, socket, peerAddress, connection, initialRtt, CongestionControlAlgorithm.NewReno, log);
+    }
+
+    public SenderImpl(Version version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
+                      QuicConnectionImpl connection, Integer initialRtt,
+                      CongestionControlAlgorithm congestionControl, Logger log) {
         this.maxPacketSize = maxPacketSize;
         this.socket = socket;
         this.peerAddress = peerAddress;
@@ -118,22 +145,24 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         globalAckGenerator = new GlobalAckGenerator(this);
         packetAssembler = new GlobalPacketAssembler(version, sendRequestQueue, globalAckGenerator);
 
-        congestionController = new NewRenoCongestionController(log, this);
         rttEstimater = (initialRtt == null)? new RttEstimator(log): new RttEstimator(log, initialRtt);
+        congestionController = congestionControl.create(log, this, rttEstimater);
+        pacer = new Pacer(maxPacketSize, PACING_BURST);
+        sendBuffer = socket.getChannel() != null ?
+                ByteBuffer.allocateDirect(maxPacketSize) : ByteBuffer.allocate(maxPacketSize);
 
-        recoveryManager = new RecoveryManager(connection, connection.getRole(), rttEstimater, congestionController, this, log);
+        recoveryManager = new RecoveryManager(connection, connection.getRole(), rttEstimater, congestionController, this, loop, log);
         connection.addHandshakeStateListener(recoveryManager);
 
         idleTimer = connection.getIdleTimer();
-
-        senderThread = new Thread(() -> sendLoop(), "sender-loop");
-        senderThread.setDaemon(true);
     }
 
     public void start(ConnectionSecrets secrets) {
         connectionSecrets = secrets;
-        senderThread.start();
-
+        LogUtils.debug(TAG, "Instances " + INSTANCES.incrementAndGet());
+        running = true;
+        signalled.set(true);
+        loop.execute(this::sendTurn);
     }
 
     @Override
@@ -174,7 +203,7 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
             // must be sent.
             // However, given the current implementation of packetProcessed (i.e. it always wakes up the sender loop),
             // it is not necessary to do this with a ...
-            // senderThread.interrupt
+            // wakeUpSenderLoop
             // ... because packetProcessed will ensure the new period is computed.
         }
     }
@@ -222,6 +251,14 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     public void flush() {
         wakeUpSenderLoop();
     }
+
+    /**
+     * Runs the task on the (serial) loop of the sender, e.g. a timer task of the connection, which must not run on
+     * the thread of the timing wheel.
+     */
+    public void execute(Runnable task) {
+        loop.execute(task);
+    }
     
     public void changeAddress(DatagramSocket newSocket) {
         socket = newSocket;
@@ -260,8 +297,14 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 //        assert(stopped);  // Stopped should have be called before.
         // Stop cannot be called here (again), because it would drop ConnectionCloseFrame still waiting to be sent.
 
-        running = false;
-        senderThread.interrupt();
+        if (running) {
+            running = false;
+            LogUtils.debug(TAG, "Instances " + INSTANCES.decrementAndGet());
+        }
+        TimingWheel.Timer scheduled = delayedSend;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
 
     }
 
@@ -274,60 +317,87 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         wakeUpSenderLoop();
     }
 
-    private void sendLoop() {
+    private void sendTurn() {
+        signalled.set(false);
+        if (!running) {
+            return;
+        }
         try {
-            LogUtils.debug(TAG, "Instances " + INSTANCES.incrementAndGet());
-            running = true;
-            while (running) {
-                boolean interrupted = false;
-                synchronized (condition) {
-                    try {
-                        if (! signalled) {
-                            long timeout = determineMinimalDelay();
-                            if (timeout > 0) {
-                                condition.wait(timeout);
-                            }
-                        }
-                        signalled = false;
-                    }
-                    catch (InterruptedException e) {
-                        interrupted = true;
-                        log.debug("Sender thread is interrupted; shutting down? " + running);
-                    }
-                }
-                if (! interrupted) {
-                    sendIfAny();
-                }
-            }
+            sendIfAny();
+            scheduleDelayedSend();
         }
         catch (Throwable fatalError) {
             if (running) {
-                log.error("Sender thread aborted with exception", fatalError);
+                log.error("Sender aborted with exception", fatalError);
                 connection.abortConnection(fatalError);
             }
             else {
                 log.warn("Ignoring " + fatalError + " because sender is shutting down.");
             }
-        } finally {
-            LogUtils.debug(TAG, "Instances " + INSTANCES.decrementAndGet());
+        }
+    }
+
+    private void scheduleDelayedSend() {
+        TimingWheel.Timer previous = delayedSend;
+        if (previous != null) {
+            previous.cancel();
+        }
+        long timeout = determineMinimalDelay();
+        long pacing = pacingDelay;
+        if (pacing > 0 && pacing < TimeUnit.MILLISECONDS.toNanos(timeout)) {
+            // The wheel rounds the delay up to its tick (1 ms); the pacer lets the tokens of the extra time be sent
+            // in a burst (of at most PACING_BURST packets)
+            delayedSend = EventLoops.timers().schedule(this::wakeUpSenderLoop, pacing, TimeUnit.NANOSECONDS);
+        }
+        else if (timeout > 0) {
+            delayedSend = EventLoops.timers().schedule(this::wakeUpSenderLoop, timeout, TimeUnit.MILLISECONDS);
+        }
+        else {
+            wakeUpSenderLoop();
         }
     }
 
     void sendIfAny() throws IOException {
         List<SendItem> items;
+        long delay;
+        int datagramsBefore = datagramsSent;
         do {
-            items = assemblePacket();
+            long pacingRate = congestionController.getPacingRate();
+            delay = pacer.delay(pacingRate, maxPacketSize);
+            if (delay > 0) {
+                // Until the pacing delay has passed, only send what is not subject to congestion control (acks, probes)
+                items = assemblePacket(0);
+            }
+            else {
+                items = assemblePacket((int) congestionController.remainingCwnd());
+            }
             if (!items.isEmpty()) {
+                long bytesSentBefore = bytesSent;
                 send(items);
+                if (pacingRate > 0 && items.stream().anyMatch(item -> item.getPacket().isInflightPacket())) {
+                    pacer.sent((int) (bytesSent - bytesSentBefore));
+                }
             }
         }
         while (!items.isEmpty());
+
+        if (datagramsSent != datagramsBefore) {
+            flushes++;
+        }
+        // Only wait for the pacer when there is something left to send
+        if (delay > 0 && Arrays.stream(sendRequestQueue).anyMatch(SendRequestQueue::hasRequests)) {
+            pacingDelay = delay;
+            pacingDelays++;
+            pacingDelayTotal += delay / 1000;
+        }
+        else {
+            pacingDelay = 0;
+        }
     }
 
     private void wakeUpSenderLoop() {
-        synchronized (condition) {
-            signalled = true;
-            condition.notify();
+        if (!signalled.getAndSet(true) && running) {
+            loop.execute(this::sendTurn);
         }
     }
 
@@ -367,30 +437,41 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     void send(List<SendItem> itemsToSend) throws IOException {
-        byte[] datagramData = new byte[maxPacketSize];
-        ByteBuffer buffer = ByteBuffer.wrap(datagramData);
-        try {
-            itemsToSend.stream()
-                    .map(item -> item.getPacket())
-                    .forEach(packet -> {
-                        Keys keys = connectionSecrets.getOwnSecrets(packet.getEncryptionLevel());
-                        byte[] packetData = packet.generatePacketBytes(packet.getPacketNumber(), keys);
-                        buffer.put(packetData);
-                        log.raw("packet sent, pn: " + packet.getPacketNumber(), packetData);
-                    });
-        }
-        catch (BufferOverflowException bufferOverflow) {
-            log.error("Buffer overflow while generating datagram for " + itemsToSend);
-            // rethrow
-            throw bufferOverflow;
+        Instant timeSent;
+        int datagramLength;
+        // Send turns are serialized, but a retry packet is sent from outside
+        synchronized (sendBuffer) {
+            sendBuffer.clear();
+            try {
+                for (SendItem item : itemsToSend) {
+                    QuicPacket packet = item.getPacket();
+                    Keys keys = connectionSecrets.getOwnSecrets(packet.getEncryptionLevel());
+                    byte[] packetData = packet.generatePacketBytes(packet.getPacketNumber(), keys);
+                    sendBuffer.put(packetData);
+                    log.raw("packet sent, pn: " + packet.getPacketNumber(), packetData);
+                }
+            }
+            catch (BufferOverflowException bufferOverflow) {
+                log.error("Buffer overflow while generating datagram for " + itemsToSend);
+                // rethrow
+                throw bufferOverflow;
+            }
+            datagramLength = sendBuffer.position();
+            sendBuffer.flip();
+
+            timeSent = Instant.now();
+            DatagramSocket currentSocket = socket;
+            DatagramChannel channel = currentSocket.getChannel();
+            if (channel != null) {
+                channel.send(sendBuffer, peerAddress);
+            }
+            else {
+                currentSocket.send(datagram(datagramLength));
+            }
         }
-        DatagramPacket datagram = new DatagramPacket(datagramData, buffer.position(), peerAddress.getAddress(), peerAddress.getPort());
-
-        Instant timeSent = Instant.now();
-        socket.send(datagram);
         datagramsSent++;
         packetsSent += itemsToSend.size();
-        bytesSent += buffer.position();
+        bytesSent += datagramLength;
 
         itemsToSend.stream()
                 .forEach(item -> {
@@ -403,8 +484,22 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
     }
 
-    private List<SendItem> assemblePacket() {
-        int remainingCwnd = (int) congestionController.remainingCwnd();
+    private DatagramPacket datagram(int length) {
+        if (datagram == null) {
+            datagram = new DatagramPacket(new byte[maxPacketSize], 0, peerAddress);
+        }
+        if (sendBuffer.hasArray()) {
+            datagram.setData(sendBuffer.array(), 0, length);
+        }
+        else {
+            // Socket was replaced by one without a channel
+            sendBuffer.get(datagram.getData(), 0, length);
+            datagram.setLength(length);
+        }
+        return datagram;
+    }
+
+    private List<SendItem> assemblePacket(int remainingCwnd) {
         int currentMaxPacketSize = maxPacketSize;
         if (antiAmplificationLimit >= 0) {
             if (bytesSent < antiAmplificationLimit) {
@@ -436,7 +531,8 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     public SendStatistics getStatistics() {
-        return new SendStatistics(datagramsSent, packetsSent, bytesSent, recoveryManager.getLost());
+        return new SendStatistics(datagramsSent, packetsSent, bytesSent, recoveryManager.getLost(),
+                flushes, pacingDelays, pacingDelayTotal);
     }
 
     public int getPto() {
@@ -465,7 +561,7 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     public InetSocketAddress getRemoteAddress() {
-        return (InetSocketAddress) socket.getRemoteSocketAddress();
+        return peerAddress;
     }
 }
 
@@ -47,28 +47,41 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import threads.lite.LogUtils;
 
 /**
  * Simple QUIC server.
+ *
+ * The server can receive on several sockets bound to the same port (SO_REUSEPORT), each with its own receive loop; the
+ * kernel distributes the datagrams over the sockets by client address. The received datagrams are processed by the
+ * connection actors on the shared event-loop threads (see {@link ServerConnectionActor}).
  */
 public class Server implements ServerConnectionRegistry {
 
+    /**
+     * Default number of sockets (receive loops) used when the server binds the port itself.
+     */
+    public static final int RECEIVE_SHARDS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
     private static final int MINIMUM_LONG_HEADER_LENGTH = 1 + 4 + 1 + 0 + 1 + 0;
     private static final int CONNECTION_ID_LENGTH = 4;
 
-    private final Receiver receiver;
+    private final List<Receiver> receivers = new ArrayList<>();
     private final Logger log;
     private final List<Version> supportedVersions;
     private final List<Integer> supportedVersionIds;
@@ -79,6 +92,7 @@ public class Server implements ServerConnectionRegistry {
     private final Map<ConnectionSource, ServerConnectionProxy> currentConnections;
     private final TlsServerEngineFactory tlsEngineFactory;
     private final ApplicationProtocolRegistry applicationProtocolRegistry;
+    private final AtomicLong receivedDatagrams = new AtomicLong(0);
 
     public Server(int port, InputStream certificateFile, InputStream certificateKeyFile, List<Version> supportedVersions, boolean requireRetry, File dir) throws Exception {
         this(new DatagramSocket(port), certificateFile, certificateKeyFile, supportedVersions, requireRetry, dir);
@@ -86,7 +100,7 @@ public class Server implements ServerConnectionRegistry {
 
     public Server(int port, String protocol, InputStream certificateFile, InputStream certificateKeyFile, List<Version> supportedVersions,
                   boolean requireRetry, ApplicationProtocolConnectionFactory factory) throws Exception {
-        this(new DatagramSocket(port), protocol, certificateFile, certificateKeyFile, supportedVersions, requireRetry, factory);
+        this(bind(port, RECEIVE_SHARDS), protocol, certificateFile, certificateKeyFile, supportedVersions, requireRetry, factory);
     }
 
     public Server(DatagramSocket socket, InputStream certificateFile, InputStream certificateKeyFile, List<Version> supportedVersions, boolean requireRetry, File dir) throws Exception {
@@ -115,14 +129,23 @@ public class Server implements ServerConnectionRegistry {
         }
 
         currentConnections = new ConcurrentHashMap<>();
-        receiver = new Receiver(serverSocket, log, exception -> System.exit(9));
+        receivers.add(new Receiver(serverSocket, log, exception -> System.exit(9)));
         log.info("Kwik server " + KwikVersion.getVersion() + " started; supported application protcols: "
                 + applicationProtocolRegistry.getRegisteredApplicationProtocols());
     }
 
     public Server(DatagramSocket socket, String protocol, InputStream certificateFile, InputStream certificateKeyFile,
                   List<Version> supportedVersions, boolean requireRetry, ApplicationProtocolConnectionFactory factory) throws Exception {
-        serverSocket = socket;
+        this(Collections.singletonList(socket), protocol, certificateFile, certificateKeyFile, supportedVersions, requireRetry, factory);
+    }
+
+    /**
+     * Creates a server which receives on all the given sockets, which must be bound to the same port. Outgoing datagrams
+     * are sent with the first socket.
+     */
+    public Server(List<DatagramSocket> sockets, String protocol, InputStream certificateFile, InputStream certificateKeyFile,
+                  List<Version> supportedVersions, boolean requireRetry, ApplicationProtocolConnectionFactory factory) throws Exception {
+        serverSocket = sockets.get(0);
         this.supportedVersions = supportedVersions;
         this.requireRetry = requireRetry;
 
@@ -146,7 +169,9 @@ public class Server implements ServerConnectionRegistry {
 
 
         currentConnections = new ConcurrentHashMap<>();
-        receiver = new Receiver(serverSocket, log, exception -> LogUtils.error(LogUtils.TAG, exception));
+        for (DatagramSocket socket : sockets) {
+            receivers.add(new Receiver(socket, log, exception -> LogUtils.error(LogUtils.TAG, exception)));
+        }
         LogUtils.error(LogUtils.TAG, "Kwik server " + KwikVersion.getVersion() + " started; supported application protcols: "
                 + applicationProtocolRegistry.getRegisteredApplicationProtocols());
     }
@@ -206,18 +231,76 @@ public class Server implements ServerConnectionRegistry {
         new Server(port, new FileInputStream(certificateFile), new FileInputStream(certificateKeyFile), supportedVersions, requireRetry, wwwDir).start();
     }
 
+    /**
+     * Binds the given number of sockets to the port with SO_REUSEPORT. Falls back to a single socket when the platform
+     * does not support SO_REUSEPORT (e.g. Android, which does not expose the option).
+     */
+    public static List<DatagramSocket> bind(int port, int count) throws IOException {
+        SocketOption<Boolean> reusePort = reusePortOption();
+        if (count > 1 && reusePort != null) {
+            List<DatagramSocket> sockets = new ArrayList<>();
+            try {
+                for (int i = 0; i < count; i++) {
+                    DatagramChannel channel = DatagramChannel.open();
+                    sockets.add(channel.socket());
+                    channel.setOption(reusePort, true);
+                    // with port 0 the first socket determines the port of the others
+                    channel.bind(new InetSocketAddress(i == 0 ? port : sockets.get(0).getLocalPort()));
+                }
+                return sockets;
+            } catch (IOException | UnsupportedOperationException exception) {
+                LogUtils.error(LogUtils.TAG, "SO_REUSEPORT not usable, using single socket " + exception);
+                for (DatagramSocket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+        return Collections.singletonList(new DatagramSocket(port));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() {
+        try {
+            // Only available since Java 9
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (ReflectiveOperationException notSupported) {
+            return null;
+        }
+    }
+
     public void start() {
-        receiver.start();
+        for (int i = 0; i < receivers.size(); i++) {
+            Receiver receiver = receivers.get(i);
+            receiver.start();
 
-        new Thread(this::receiveLoop, "server receive loop").start();
+            String name = receivers.size() > 1 ? "server receive loop-" + (i + 1) : "server receive loop";
+            new Thread(() -> receiveLoop(receiver), name).start();
+        }
     }
 
 
     public void shutdown() {
-        receiver.shutdown();
+        for (Receiver receiver : receivers) {
+            receiver.shutdown();
+        }
         // TODO
     }
 
+    /**
+     * Number of sockets the server receives on.
+     */
+    public int getShards() {
+        return receivers.size();
+    }
+
+    public long getReceivedDatagrams() {
+        return receivedDatagrams.get();
+    }
+
+    public long getCreatedConnections() {
+        return serverConnectionFactory.getCreatedConnections();
+    }
+
 
 
     private void registerApplicationLayerProtocols(String protocol, ApplicationProtocolConnectionFactory factory) {
@@ -257,7 +340,7 @@ public class Server implements ServerConnectionRegistry {
         });
     }
 
-    private void receiveLoop() {
+    private void receiveLoop(Receiver receiver) {
         while (true) {
             try {
                 RawPacket rawPacket = receiver.get((int) Duration.ofDays(10 * 365).getSeconds());
@@ -272,6 +355,7 @@ public class Server implements ServerConnectionRegistry {
     }
 
     void process(RawPacket rawPacket) {
+        receivedDatagrams.incrementAndGet();
         ByteBuffer data = rawPacket.getData();
         int flags = data.get();
         data.rewind();
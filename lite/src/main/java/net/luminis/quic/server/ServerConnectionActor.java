@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2021 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server;
+
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.SerialExecutor;
+import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.QuicPacket;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import threads.lite.LogUtils;
+
+/**
+ * Proxy for server connection that ensures that all processing of received datagrams is executed serially, in order of
+ * arrival. The datagrams are queued in a mailbox which is processed on the shared event-loop threads (see
+ * {@link EventLoops}), so the methods that execute as part of processing received datagrams can still use
+ * thread-confinement strategy for concurrency control, while the number of threads does not grow with the number of
+ * connections.
+ */
+public class ServerConnectionActor implements ServerConnectionProxy {
+
+    private final ServerConnectionImpl serverConnection;
+    private final SerialExecutor mailbox;
+    private volatile boolean terminated;
+
+
+    public ServerConnectionActor(ServerConnectionImpl serverConnection, InitialPacket firstInitialPacket, Instant firstPacketReceived, ByteBuffer firstDatagram) {
+        this.serverConnection = serverConnection;
+        mailbox = EventLoops.newSerialExecutor();
+        if (firstInitialPacket != null) {
+            mailbox.execute(() -> process(0, firstPacketReceived, firstDatagram, firstInitialPacket));
+        }
+    }
+
+    @Override
+    public byte[] getOriginalDestinationConnectionId() {
+        return serverConnection.getOriginalDestinationConnectionId();
+    }
+
+    @Override
+    public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data) {
+        if (!terminated) {
+            mailbox.execute(() -> process(datagramNumber, timeReceived, data, null));
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return serverConnection.isClosed();
+    }
+
+    @Override
+    public void terminate() {
+        // Datagrams still in the mailbox are dropped
+        terminated = true;
+    }
+
+    private void process(int datagramNumber, Instant timeReceived, ByteBuffer data, QuicPacket parsedPacket) {
+        if (terminated) {
+            return;
+        }
+        try {
+            serverConnection.parseAndProcessPackets(datagramNumber, timeReceived, data, parsedPacket);
+        } catch (Exception error) {
+            LogUtils.error(LogUtils.TAG, error);
+            // Of course, this should never happen. But if it does, there is no point in going on with this connection.
+            terminated = true;
+            serverConnection.abortConnection(error);
+        }
+    }
+}
@@ -22,6 +22,8 @@ import net.luminis.quic.DecryptionException;
 import net.luminis.quic.InvalidPacketException;
 import net.luminis.quic.Role;
 import net.luminis.quic.Version;
+import net.luminis.quic.concurrent.EventLoops;
+import net.luminis.quic.concurrent.SerialExecutor;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.Keys;
 import net.luminis.quic.log.Logger;
@@ -32,9 +34,6 @@ import net.luminis.tls.util.ByteUtils;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,15 +43,15 @@ import java.util.concurrent.TimeUnit;
  */
 public class ServerConnectionCandidate implements ServerConnectionProxy {
 
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private static final ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Candidates parse their initial packets in parallel on the shared event-loop threads, but each one in order
+    private final SerialExecutor executor = EventLoops.newSerialExecutor();
     private final Version quicVersion;
     private final InetSocketAddress clientAddress;
     private final byte[] dcid;
     private final ServerConnectionFactory serverConnectionFactory;
     private final ServerConnectionRegistry connectionRegistry;
     private final Logger log;
-    private volatile ServerConnectionThread registeredConnection;
+    private volatile ServerConnectionActor registeredConnection;
 
 
     public ServerConnectionCandidate(Version version, InetSocketAddress clientAddress, byte[] scid, byte[] dcid,
@@ -73,7 +72,7 @@ public class ServerConnectionCandidate implements ServerConnectionProxy {
     @Override
     public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data) {
         // Execute packet parsing on separate thread, to make this method return a.s.a.p.
-        executor.submit(() -> {
+        executor.execute(() -> {
             // If duplicate initial packets are arriving faster than they are processed, serialized processing (per connection candidate)
             synchronized (this) {
                 if (registeredConnection != null) {
@@ -89,7 +88,8 @@ public class ServerConnectionCandidate implements ServerConnectionProxy {
 
                     // Packet is valid. This is the moment to create a real server connection and continue processing.
                     if (registeredConnection == null) {
-                        data.rewind();
+                        // The packet is unprotected and decrypted in place, so it cannot be parsed again; the
+                        // buffer is passed positioned after it, to continue with the remaining (coalesced) packets
                         createAndRegisterServerConnection(initialPacket, timeReceived, data);
                     }
                 } catch (InvalidPacketException | DecryptionException cannotParsePacket) {
@@ -101,7 +101,7 @@ public class ServerConnectionCandidate implements ServerConnectionProxy {
                     // delayed until connection setup is over.
                     // The delay should be longer then the maximum connection timeout clients (are likely to) use.
                     // It can be fairly large because the removal is only needed to avoid unused connection candidates pile up.
-                    scheduledExecutor.schedule(() -> {
+                    EventLoops.timers().schedule(() -> {
                                 // But only if no connection is created in the meantime (which will do the cleanup)
                                 if (registeredConnection == null) {
                                     connectionRegistry.deregisterConnection(this, dcid);
@@ -122,8 +122,8 @@ public class ServerConnectionCandidate implements ServerConnectionProxy {
         log.info("Creating new connection with version " + quicVersion + " for odcid " + ByteUtils.bytesToHex(originalDcid)
                 + " with " + clientAddress.getAddress().getHostAddress() + ": " + ByteUtils.bytesToHex(connection.getConnectionId()));
 
-        // Pass the initial packet for processing, so it is processed on the server thread (enabling thread confinement concurrency strategy)
-        registeredConnection = new ServerConnectionThread(connection, initialPacket, timeReceived, data);
+        // Pass the initial packet for processing, so it is processed by the connection actor (enabling thread confinement concurrency strategy)
+        registeredConnection = new ServerConnectionActor(connection, initialPacket, timeReceived, data);
 
         // Register new connection with the new connection id (the one generated by the server)
         connectionRegistry.registerConnection(registeredConnection, connection.getConnectionId());
@@ -25,6 +25,7 @@ import net.luminis.tls.handshake.TlsServerEngineFactory;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 
@@ -39,6 +40,7 @@ public class ServerConnectionFactory {
     private final SecureRandom randomGenerator;
     private final Consumer<byte[]> closeCallback;
     private final boolean requireRetry;
+    private final AtomicLong createdConnections = new AtomicLong(0);
 
     public ServerConnectionFactory(int connectionIdLength, DatagramSocket serverSocket, TlsServerEngineFactory tlsServerEngineFactory,
                                    boolean requireRetry, ApplicationProtocolRegistry applicationProtocolRegistry, int initalRtt, Consumer<byte[]> closeCallback, Logger log) {
@@ -64,10 +66,15 @@ public class ServerConnectionFactory {
         // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-7.2
         // "A server MUST set the Destination Connection ID it uses for sending packets based on the first received Initial packet."
         byte[] dcid = originalScid;
+        createdConnections.incrementAndGet();
         return new ServerConnectionImpl(version, serverSocket, clientAddress, connectionId, dcid, originalDcid,
                 tlsServerEngineFactory, requireRetry, applicationProtocolRegistry, initalRtt, closeCallback, log);
     }
 
+    public long getCreatedConnections() {
+        return createdConnections.get();
+    }
+
     private byte[] generateNewConnectionId() {
         byte[] connectionId = new byte[connectionIdLength];
         randomGenerator.nextBytes(connectionId);
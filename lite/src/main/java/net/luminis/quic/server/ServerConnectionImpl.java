@@ -333,13 +333,21 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
 
     @Override
     protected QuicPacket parsePacket(ByteBuffer data) throws MissingKeysException, DecryptionException, InvalidPacketException {
+        // The packet is unprotected and decrypted in place, so a copy is kept to parse it again with other keys
+        int start = data.position();
+        byte[] protectedData = null;
+        if (retryRequired && (data.get(start) & 0b1111_0000) == 0b1100_0000) {
+            protectedData = new byte[data.remaining()];
+            data.duplicate().get(protectedData);
+        }
         try {
             return super.parsePacket(data);
         } catch (DecryptionException decryptionException) {
-            if (retryRequired && (data.get(0) & 0b1111_0000) == 0b1100_0000) {
+            if (protectedData != null) {
                 // If retry packet has been sent, but lost, client will send another initial with keys based on odcid
                 try {
-                    data.rewind();
+                    data.position(start);
+                    data.duplicate().put(protectedData);
                     connectionSecrets.computeInitialKeys(originalDcid);
                     return super.parsePacket(data);
                 } finally {
@@ -353,7 +361,7 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
 
     @Override
     public void parseAndProcessPackets(int datagram, Instant timeReceived, ByteBuffer data, QuicPacket parsedPacket) {
-        if (InitialPacket.isInitial(data) && data.limit() < 1200) {
+        if (parsedPacket == null && InitialPacket.isInitial(data) && data.limit() < 1200) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-34#section-14.1
             // "A server MUST discard an Initial packet that is carried in a UDP datagram with a payload that is smaller
             //  than the smallest allowed maximum datagram size of 1200 bytes."
@@ -368,7 +376,8 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         //  payload bytes received in datagrams that are uniquely attributed to a single connection. This includes
         //  datagrams that contain packets that are successfully processed and datagrams that contain packets that
         //  are all discarded."
-        bytesReceived += data.remaining();
+        // The first datagram is passed positioned after its (already parsed) initial packet
+        bytesReceived += parsedPacket != null ? data.limit() : data.remaining();
         if (!addressValidated) {
             sender.setAntiAmplificationLimit(3 * (int) bytesReceived);
         }
@@ -19,15 +19,15 @@
 package net.luminis.quic.stream;
 
 import java.nio.ByteBuffer;
-import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 
+/**
+ * Receiving side of a stream. Frames can be added by one thread (the receiver) while the stream is read by another
+ * (the reader), without locking; see {@link ReassemblyBuffer}.
+ */
 public class BaseStream {
 
-    private final SortedSet<StreamElement> frames = new TreeSet<>();
-    private int processedToOffset = 0;
+    private final ReassemblyBuffer buffer = new ReassemblyBuffer();
 
     /**
      * Add a stream frame to this stream. The frame can contain any number of bytes positioned anywhere in the stream;
@@ -37,13 +37,8 @@ public class BaseStream {
      * @return true if the frame is adds bytes to this stream; false if the frame does not add bytes to the stream
      * (because the frame is a duplicate or its stream bytes where already received with previous frames).
      */
-    protected synchronized boolean add(StreamElement frame) {
-        if (frame.getUpToOffset() > processedToOffset) {
-            frames.add(frame);
-            return true;
-        } else {
-            return false;
-        }
+    protected boolean add(StreamElement frame) {
+        return buffer.add(frame);
     }
 
     /**
@@ -51,30 +46,11 @@ public class BaseStream {
      *
      * @return
      */
-    protected synchronized int bytesAvailable() {
-        if (isStreamEnd(processedToOffset)) {
+    protected int bytesAvailable() {
+        if (isStreamEnd(buffer.readOffset())) {
             return -1;
         }
-        if (frames.isEmpty()) {
-            return 0;
-        } else {
-            int available = 0;
-            int countedUpTo = processedToOffset;
-            Iterator<StreamElement> iterator = frames.iterator();
-
-            while (iterator.hasNext()) {
-                StreamElement nextFrame = iterator.next();
-                if (nextFrame.getOffset() <= countedUpTo) {
-                    if (nextFrame.getUpToOffset() > countedUpTo) {
-                        available += nextFrame.getUpToOffset() - countedUpTo;
-                        countedUpTo = nextFrame.getUpToOffset();
-                    }
-                } else {
-                    break;
-                }
-            }
-            return available;
-        }
+        return buffer.bytesAvailable();
     }
 
 
@@ -86,36 +62,11 @@ public class BaseStream {
      * @param buffer
      * @return
      */
-    protected synchronized int read(ByteBuffer buffer) {
-        if (isStreamEnd(processedToOffset)) {
+    protected int read(ByteBuffer buffer) {
+        if (isStreamEnd(this.buffer.readOffset())) {
             return -1;
         }
-        if (frames.isEmpty()) {
-            return 0;
-        } else {
-            int read = 0;
-            int readUpTo = processedToOffset;
-            Iterator<StreamElement> iterator = frames.iterator();
-
-            while (iterator.hasNext() && buffer.remaining() > 0) {
-                StreamElement nextFrame = iterator.next();
-                if (nextFrame.getOffset() <= readUpTo) {
-                    if (nextFrame.getUpToOffset() > readUpTo) {
-                        int available = nextFrame.getOffset() - readUpTo + nextFrame.getLength();
-                        int bytesToRead = Integer.min(buffer.limit() - buffer.position(), available);
-                        buffer.put(nextFrame.getStreamData(), readUpTo - nextFrame.getOffset(), bytesToRead);
-                        readUpTo += bytesToRead;
-                        read += bytesToRead;
-                    }
-                } else {
-                    break;
-                }
-            }
-
-            processedToOffset += read;
-            removeParsedFrames();
-            return read;
-        }
+        return this.buffer.read(buffer);
     }
 
     /**
@@ -129,24 +80,12 @@ public class BaseStream {
         return false;
     }
 
-    private void removeParsedFrames() {
-        Iterator<StreamElement> iterator = frames.iterator();
-        while (iterator.hasNext()) {
-            if (iterator.next().getUpToOffset() <= processedToOffset) {
-                iterator.remove();
-            } else {
-                break;
-            }
-        }
-    }
-
     /**
      * Returns the position in the stream up to where stream bytes are read.
      *
      * @return
      */
-    protected synchronized long readOffset() {
-        return processedToOffset;
+    protected long readOffset() {
+        return buffer.readOffset();
     }
 }
-
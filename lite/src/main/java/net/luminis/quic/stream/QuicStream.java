@@ -116,6 +116,17 @@ public class QuicStream extends BaseStream {
         return outputStream;
     }
 
+    /**
+     * Writes the remaining bytes of the given buffer to the stream without copying them; the stream takes ownership
+     * of the buffer, so the caller must not modify its data afterwards. Blocks when the stream cannot buffer more data.
+     *
+     * @param data
+     * @throws IOException
+     */
+    public void write(ByteBuffer data) throws IOException {
+        outputStream.write(data);
+    }
+
     /**
      * Adds a newly received frame to the stream.
      * <p>
@@ -124,12 +135,15 @@ public class QuicStream extends BaseStream {
      * @param frame
      */
     void add(StreamFrame frame) {
-        synchronized (addMonitor) {
-            super.add(frame);
-            if (frame.isFinal()) {
-                lastOffset = frame.getUpToOffset();
+        boolean added = super.add(frame);
+        if (frame.isFinal()) {
+            lastOffset = frame.getUpToOffset();
+        }
+        if (added || frame.isFinal()) {
+            // The frame is handed over without locking, the monitor is only needed to wake up a blocked reader
+            synchronized (addMonitor) {
+                addMonitor.notifyAll();
             }
-            addMonitor.notifyAll();
         }
     }
 
@@ -236,30 +250,32 @@ public class QuicStream extends BaseStream {
                     throw new ConnectionIssue("Connection aborted");
                 }
 
-                synchronized (addMonitor) {
-                    try {
-                        blocking = Thread.currentThread();
-
-                        int bytesRead = QuicStream.this.read(ByteBuffer.wrap(buffer, offset, len));
-                        if (bytesRead > 0) {
-                            updateAllowedFlowControl(bytesRead);
-                            return bytesRead;
-                        } else if (bytesRead < 0) {
-                            // End of stream
-                            return -1;
-                        }
+                blocking = Thread.currentThread();
+                try {
+                    int bytesRead = QuicStream.this.read(ByteBuffer.wrap(buffer, offset, len));
+                    if (bytesRead > 0) {
+                        updateAllowedFlowControl(bytesRead);
+                        return bytesRead;
+                    } else if (bytesRead < 0) {
+                        // End of stream
+                        return -1;
+                    }
 
-                        // Nothing read: block until bytes can be read, read timeout or abort
-                        try {
-                            addMonitor.wait(waitTimeout);
-                        } catch (InterruptedException e) {
-                            if (aborted) {
-                                throw new ConnectionIssue("Connection aborted");
+                    // Nothing read: block until bytes can be read, read timeout or abort
+                    synchronized (addMonitor) {
+                        // Check again while holding the monitor, a frame that is added in the meantime is not missed
+                        if (bytesAvailable() == 0) {
+                            try {
+                                addMonitor.wait(waitTimeout);
+                            } catch (InterruptedException e) {
+                                if (aborted) {
+                                    throw new ConnectionIssue("Connection aborted");
+                                }
                             }
                         }
-                    } finally {
-                        blocking = null;
                     }
+                } finally {
+                    blocking = null;
                 }
 
                 if (bytesAvailable() <= 0) {
@@ -305,10 +321,14 @@ public class QuicStream extends BaseStream {
         private final ReentrantLock bufferLock;
         private final Condition notFull;
         // Send queue contains stream bytes to send in order. The position of the first byte buffer in the queue determines the next byte(s) to send.
+        // The queue is bounded by the flow control credit plus the max buffer size, see waitForBufferSpace.
         private final Queue<ByteBuffer> sendQueue = new ConcurrentLinkedDeque<>();
         // Current offset is the offset of the next byte in the stream that will be sent.
-        // Thread safety: only used by sender thread, so no synchronization needed.
-        private int currentOffset;
+        // Thread safety: only written by sender thread, read by the caller to determine the buffer space.
+        private volatile int currentOffset;
+        // Flow control limit as last seen by the sender; the caller must not call the flow controller while holding
+        // the buffer lock, because the flow controller calls streamNotBlocked while holding its own lock.
+        private volatile long knownFlowControlLimit;
         // Closed indicates whether the OutputStream is closed, meaning that no more bytes can be written by caller.
         // Thread safety: only use by caller
         private boolean closed;
@@ -336,31 +356,52 @@ public class QuicStream extends BaseStream {
                 throw new IOException("already closed");
             }
 
-            if (len > maxBufferSize) {
-                // Buffering all would break the contract (because this method copies _all_ data) but splitting and
-                // writing smaller chunks (and waiting for each individual chunk to be buffered successfully) does not.
-                int halfBuffersize = maxBufferSize / 2;
-                int times = len / halfBuffersize;
-                for (int i = 0; i < times; i++) {
-                    // Each individual write will probably block, but by splitting the writes in half buffer sizes
-                    // avoids that the buffer needs to be emptied completely before a new block can be added (which
-                    // could have severed negative impact on performance as the sender might have to wait for the caller
-                    // to fill the buffer again).
-                    write(data, off + i * halfBuffersize, halfBuffersize);
-                }
-                int rest = len % halfBuffersize;
-                if (rest > 0) {
-                    write(data, off + times * halfBuffersize, rest);
-                }
-                return;
+            // The data is copied (the caller may reuse the array), in parts when not all data fits in the buffer
+            while (len > 0) {
+                int count = waitForBufferSpace(len);
+                enqueue(ByteBuffer.wrap(Arrays.copyOfRange(data, off, off + count)));
+                off += count;
+                len -= count;
             }
+        }
 
-            int availableBufferSpace = maxBufferSize - bufferedBytes.get();
-            if (len > availableBufferSpace) {
-                // Wait for enough buffer space to become available
+        /**
+         * Writes the remaining bytes of the given buffer without copying them: the stream frames refer to the buffer,
+         * so the caller hands over the buffer and must not modify its data anymore.
+         * @param data
+         * @throws IOException
+         */
+        public void write(ByteBuffer data) throws IOException {
+            if (closed) {
+                throw new IOException("already closed");
+            }
+
+            while (data.hasRemaining()) {
+                int count = waitForBufferSpace(data.remaining());
+                ByteBuffer part = data.slice();
+                part.limit(count);
+                data.position(data.position() + count);
+                enqueue(part);
+            }
+        }
+
+        /**
+         * Waits until (part of) the given number of bytes can be buffered. Bytes that the peer allows to be sent (flow
+         * control credit) can always be buffered, as they will be sent right away; on top of that, at most the send
+         * buffer size is buffered. So a slow peer, granting little credit, blocks the writer.
+         * @param count
+         * @return the number of bytes that can be buffered, at least one
+         * @throws InterruptedIOException
+         */
+        private int waitForBufferSpace(int count) throws InterruptedIOException {
+            // Do not wait until all is buffered, as the buffer would have to be emptied completely before new data
+            // can be added, which could leave the sender waiting for the writer
+            int minimum = Integer.max(1, Integer.min(count, maxBufferSize / 2));
+            int space = bufferSpace();
+            if (space < minimum) {
                 bufferLock.lock();
                 try {
-                    while (maxBufferSize - bufferedBytes.get() < len) {
+                    while ((space = bufferSpace()) < minimum) {
                         try {
                             notFull.await();
                         } catch (InterruptedException e) {
@@ -371,9 +412,21 @@ public class QuicStream extends BaseStream {
                     bufferLock.unlock();
                 }
             }
+            return Integer.min(count, space);
+        }
 
-            sendQueue.add(ByteBuffer.wrap(Arrays.copyOfRange(data, off, off + len)));
-            bufferedBytes.getAndAdd(len);
+        private int bufferSpace() {
+            long credit = Long.max(0, knownFlowControlLimit - currentOffset);
+            return (int) Long.min(Integer.MAX_VALUE, credit + maxBufferSize - bufferedBytes.get());
+        }
+
+        private void enqueue(ByteBuffer data) {
+            sendQueue.add(data);
+            bufferedBytes.getAndAdd(data.remaining());
+            queueSendRequest();
+        }
+
+        private void queueSendRequest() {
             synchronized (lock) {
                 if (!sendRequestQueued) {
                     sendRequestQueued = true;
@@ -403,12 +456,7 @@ public class QuicStream extends BaseStream {
             if (!closed) {
                 sendQueue.add(END_OF_STREAM_MARKER);
                 closed = true;
-                synchronized (lock) {
-                    if (!sendRequestQueued) {
-                        sendRequestQueued = true;
-                        connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, true);
-                    }
-                }
+                queueSendRequest();
             }
         }
 
@@ -420,29 +468,44 @@ public class QuicStream extends BaseStream {
             if (!sendQueue.isEmpty()) {
                 int flowControlLimit = (int) (flowController.getFlowControlLimit(QuicStream.this));
                 assert (flowControlLimit >= currentOffset);
+                knownFlowControlLimit = Long.max(knownFlowControlLimit, flowControlLimit);
 
                 int maxBytesToSend = bufferedBytes.get();
                 if (flowControlLimit > currentOffset || maxBytesToSend == 0) {
-                    int nrOfBytes = 0;
-                    StreamFrame dummy = new StreamFrame(quicVersion, streamId, currentOffset, new byte[0], false);
-                    maxBytesToSend = Integer.min(maxBytesToSend, maxFrameSize - dummy.getBytes().length - 1);  // Take one byte extra for length field var int
+                    // Take one byte extra for length field var int
+                    maxBytesToSend = Integer.min(maxBytesToSend, maxFrameSize - StreamFrame.headerLength(streamId, currentOffset, 0) - 1);
                     int maxAllowedByFlowControl = (int) (flowController.increaseFlowControlLimit(QuicStream.this, currentOffset + maxBytesToSend) - currentOffset);
                     maxBytesToSend = Integer.min(maxAllowedByFlowControl, maxBytesToSend);
 
-                    byte[] dataToSend = new byte[maxBytesToSend];
+                    // The frame refers to the written data if it is taken from one buffer; only when it spans multiple
+                    // (small) writes, the data is gathered in a new array.
+                    byte[] dataToSend = null;
+                    int dataOffset = 0;
+                    boolean gathered = false;
+                    int nrOfBytes = 0;
                     boolean finalFrame = false;
-                    while (nrOfBytes < maxBytesToSend && !sendQueue.isEmpty()) {
+                    while (nrOfBytes < maxBytesToSend && !sendQueue.isEmpty() && sendQueue.peek() != END_OF_STREAM_MARKER) {
                         ByteBuffer buffer = sendQueue.peek();
-                        int position = nrOfBytes;
-                        if (buffer.remaining() <= maxBytesToSend - nrOfBytes) {
-                            // All bytes remaining in buffer will fit in stream frame
-                            nrOfBytes += buffer.remaining();
-                            buffer.get(dataToSend, position, buffer.remaining());
-                            sendQueue.poll();
+                        int count = Integer.min(buffer.remaining(), maxBytesToSend - nrOfBytes);
+                        if (nrOfBytes == 0 && buffer.hasArray()) {
+                            dataToSend = buffer.array();
+                            dataOffset = buffer.arrayOffset() + buffer.position();
+                            buffer.position(buffer.position() + count);
                         } else {
-                            // Just part of the buffer will fit in (and will fill up) the stream frame
-                            buffer.get(dataToSend, position, maxBytesToSend - nrOfBytes);
-                            nrOfBytes = maxBytesToSend;  // Short form of: nrOfBytes += (maxBytesToSend - nrOfBytes)
+                            if (!gathered) {
+                                byte[] gather = new byte[maxBytesToSend];
+                                if (nrOfBytes > 0) {
+                                    System.arraycopy(dataToSend, dataOffset, gather, 0, nrOfBytes);
+                                }
+                                dataToSend = gather;
+                                dataOffset = 0;
+                                gathered = true;
+                            }
+                            buffer.get(dataToSend, nrOfBytes, count);
+                        }
+                        nrOfBytes += count;
+                        if (!buffer.hasRemaining()) {
+                            sendQueue.poll();
                         }
                     }
                     if (!sendQueue.isEmpty() && sendQueue.peek() == END_OF_STREAM_MARKER) {
@@ -462,11 +525,10 @@ public class QuicStream extends BaseStream {
                         bufferLock.unlock();
                     }
 
-                    if (nrOfBytes < maxBytesToSend) {
-                        // This can happen when not enough data is buffer to fill a stream frame, or length field is 1 byte (instead of 2 that was counted for)
-                        dataToSend = Arrays.copyOfRange(dataToSend, 0, nrOfBytes);
+                    if (dataToSend == null) {
+                        dataToSend = new byte[0];
                     }
-                    StreamFrame streamFrame = new StreamFrame(quicVersion, streamId, currentOffset, dataToSend, finalFrame);
+                    StreamFrame streamFrame = StreamFrame.withDataReference(streamId, currentOffset, dataToSend, dataOffset, nrOfBytes, finalFrame);
                     currentOffset += nrOfBytes;
 
                     if (!sendQueue.isEmpty()) {
@@ -496,6 +558,14 @@ public class QuicStream extends BaseStream {
             // Stream might have been blocked (or it might have filled the flow control window exactly), queue send request
             // and let sendFrame method determine whether there is more to send or not.
             connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, false);
+            // More credit means more buffer space for the writer
+            knownFlowControlLimit = Long.max(knownFlowControlLimit, flowController.getFlowControlLimit(QuicStream.this));
+            bufferLock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                bufferLock.unlock();
+            }
         }
 
         private void retransmitStreamFrame(QuicFrame frame) {
@@ -0,0 +1,133 @@
+package net.luminis.quic.stream;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reassembles stream data that is received out of order.
+ * <p>
+ * Elements that cannot be delivered yet (because of a gap) are kept in an interval map, keyed by stream offset.
+ * Elements that extend the contiguous part of the stream are appended to a queue that is read by the consumer. The
+ * data itself is not buffered: the elements refer to the (decrypted) packet data, which is copied once, directly into
+ * the buffer of the reader.
+ * <p>
+ * Thread safety: there must be at most one producer (calling add) and one consumer (calling read) at a time, the
+ * producer and consumer can be different threads. The handoff between the two is lock-free.
+ */
+public class ReassemblyBuffer {
+
+    // Owned by the producer: elements that start beyond the contiguous end, keyed by offset
+    private final TreeMap<Integer, StreamElement> outOfOrder = new TreeMap<>();
+    // Owned by the producer: last node of the queue
+    private Node tail;
+    // Owned by the consumer: node before the first node with unread data
+    private Node head;
+    // End of the contiguous data that is handed over to the consumer; written by producer only
+    private volatile int contiguousEnd;
+    // Offset up to where the data is read; written by consumer only
+    private volatile int readOffset;
+
+    public ReassemblyBuffer() {
+        head = new Node(null);
+        tail = head;
+    }
+
+    /**
+     * Adds a stream element, which can contain any number of bytes positioned anywhere in the stream.
+     *
+     * @param element
+     * @return true if the element adds bytes to the stream; false if all bytes were already received
+     */
+    public boolean add(StreamElement element) {
+        int end = contiguousEnd;
+        if (element.getUpToOffset() <= end) {
+            return false;
+        }
+        if (element.getOffset() > end) {
+            StreamElement existing = outOfOrder.get(element.getOffset());
+            if (existing != null && existing.getUpToOffset() >= element.getUpToOffset()) {
+                return false;
+            }
+            outOfOrder.put(element.getOffset(), element);
+            return true;
+        }
+
+        end = append(element);
+        // Deliver the elements that are contiguous now
+        Map.Entry<Integer, StreamElement> first;
+        while ((first = outOfOrder.firstEntry()) != null && first.getKey() <= end) {
+            outOfOrder.pollFirstEntry();
+            if (first.getValue().getUpToOffset() > end) {
+                end = append(first.getValue());
+            }
+        }
+        return true;
+    }
+
+    private int append(StreamElement element) {
+        Node node = new Node(element);
+        // Publish the node before the end, so the consumer finds the node for every byte that is available
+        tail.next = node;
+        tail = node;
+        contiguousEnd = element.getUpToOffset();
+        return element.getUpToOffset();
+    }
+
+    /**
+     * Returns the number of bytes that can be read.
+     *
+     * @return
+     */
+    public int bytesAvailable() {
+        return contiguousEnd - readOffset;
+    }
+
+    /**
+     * Reads as much bytes as possible (limited by the space in the given buffer or the number of bytes available).
+     * Does not block.
+     *
+     * @param buffer
+     * @return the number of bytes read
+     */
+    public int read(ByteBuffer buffer) {
+        int offset = readOffset;
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            Node next = head.next;
+            if (next == null) {
+                break;
+            }
+            StreamElement element = next.element;
+            int count = Integer.min(buffer.remaining(), element.getUpToOffset() - offset);
+            element.copyStreamData(offset - element.getOffset(), buffer, count);
+            offset += count;
+            read += count;
+            if (offset == element.getUpToOffset()) {
+                // Let the element (and the packet data it refers to) be garbage collected
+                next.element = null;
+                head = next;
+            }
+        }
+        readOffset = offset;
+        return read;
+    }
+
+    /**
+     * Returns the offset up to where the data is read.
+     *
+     * @return
+     */
+    public int readOffset() {
+        return readOffset;
+    }
+
+    private static class Node {
+        StreamElement element;
+        volatile Node next;
+
+        Node(StreamElement element) {
+            this.element = element;
+        }
+    }
+}
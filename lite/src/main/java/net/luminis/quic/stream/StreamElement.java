@@ -18,6 +18,7 @@
  */
 package net.luminis.quic.stream;
 
+import java.nio.ByteBuffer;
 
 public interface StreamElement extends Comparable<StreamElement> {
 
@@ -27,5 +28,15 @@ public interface StreamElement extends Comparable<StreamElement> {
 
     byte[] getStreamData();
 
+    /**
+     * Copies (part of) the stream data to the given buffer, without creating an intermediate copy of the data.
+     * @param position  position in the stream data (relative to the offset of this element)
+     * @param target  buffer to copy to
+     * @param count  number of bytes to copy
+     */
+    default void copyStreamData(int position, ByteBuffer target, int count) {
+        target.put(getStreamData(), position, count);
+    }
+
     int getUpToOffset();
 }
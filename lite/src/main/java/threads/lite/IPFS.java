@@ -45,6 +45,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import identify.pb.IdentifyOuterClass;
 import threads.lite.cid.Cid;
@@ -56,8 +57,16 @@ import threads.lite.core.Progress;
 import threads.lite.core.TimeoutCloseable;
 import threads.lite.crypto.PrivKey;
 import threads.lite.crypto.Rsa;
+import threads.lite.dag.BlockService;
+import threads.lite.dag.DagFetcher;
+import threads.lite.dag.DagService;
 import threads.lite.data.BLOCKS;
+import threads.lite.data.FileStorage;
+import threads.lite.data.PINS;
+import threads.lite.data.Pins;
+import threads.lite.data.Storage;
 import threads.lite.dht.Routing;
+import threads.lite.format.BasicMetrics;
 import threads.lite.format.BlockStore;
 import threads.lite.format.Node;
 import threads.lite.host.LiteHost;
@@ -66,13 +75,20 @@ import threads.lite.host.PeerInfo;
 import threads.lite.ipns.Ipns;
 import threads.lite.push.Push;
 import threads.lite.push.PushService;
+import threads.lite.utils.CachingBlockStore;
+import threads.lite.utils.Chunker;
+import threads.lite.utils.GarbageCollector;
 import threads.lite.utils.Link;
 import threads.lite.utils.LinkCloseable;
+import threads.lite.utils.NodeCache;
+import threads.lite.utils.Path;
+import threads.lite.utils.PathCache;
 import threads.lite.utils.ProgressStream;
 import threads.lite.utils.Reachable;
 import threads.lite.utils.Reader;
 import threads.lite.utils.ReaderProgress;
 import threads.lite.utils.ReaderStream;
+import threads.lite.utils.ResolvedPath;
 import threads.lite.utils.Resolver;
 import threads.lite.utils.Stream;
 import threads.lite.utils.WriterStream;
@@ -100,10 +116,13 @@ public class IPFS {
     public static final String APRN = "libp2p";
 
     public static final int DEFAULT_PORT = 5001;
-    public static final int PRELOAD = 25;
-    public static final int PRELOAD_DIST = 5;
+    public static final int READ_AHEAD_MIN = 2;
+    public static final int READ_AHEAD_INITIAL = 5;
+    public static final int READ_AHEAD_MAX = 64;
+    public static final long READ_AHEAD_STALL = 20; // 20 ms
     public static final int CHUNK_SIZE = 262144;
     public static final int BLOCK_SIZE_LIMIT = 1048576; // 1 MB
+    public static final int HAMT_SHARDING_SIZE = 262144; // 256 KiB, switch to a sharded directory
     public static final long RESOLVE_MAX_TIME = 30000; // 30 sec
     public static final boolean SEND_DONT_HAVES = false;
     public static final boolean BITSWAP_ENGINE_ACTIVE = true;
@@ -113,6 +132,10 @@ public class IPFS {
     public static final int GRACE_PERIOD = 5;
     public static final int RESOLVE_TIMEOUT = 1000; // 1 sec
     public static final long WANTS_WAIT_TIMEOUT = 500; // 500 ms
+    public static final long BITSWAP_TICK = 20; // 20 ms
+    public static final int BITSWAP_SEND_THREADS = 8;
+    public static final long BLOCKER_CHECK_INTERVAL = 25; // 25 ms
+    public static final int BITSWAP_SEND_QUEUE_SIZE = 64;
     public static final boolean EVALUATE_PEER = false;
     public static final short PRIORITY_URGENT = 1;
     public static final short PRIORITY_HIGH = 5;
@@ -149,16 +172,40 @@ public class IPFS {
     public static final boolean BITSWAP_REQUEST_ACTIVE = true;
     public static final int BITSWAP_GRACE_PERIOD = 30;
     public static final int RELAY_GRACE_PERIOD = 60;
+    public static final int CONNECTION_GRACE_PERIOD = 30; // 30 sec, idle timeout of a new connection
+    public static final int CONNECTIONS_LOW_WATER = 32;
+    public static final int CONNECTIONS_HIGH_WATER = 64;
+    public static final long CONNECTIONS_TRIM_INTERVAL = 5; // 5 sec
+    public static final long DIAL_STAGGER = 250; // 250 ms, delay before the next address is dialed
     public static final long DHT_SEND_READ_TIMEOUT = 2;
     public static final int MIN_STREAMS = 0;
     public static final int DHT_STREAM_SIZE_LIMIT = 20480;
     public static final int IDENTITY_STREAM_SIZE_LIMIT = 10000;
     public static final boolean BITSWAP_SUPPORT_LOAD_PROVIDERS = true;
+    public static final long SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+    public static final float SEGMENT_GARBAGE_RATIO = 0.5f;
+    public static final long BLOCK_CACHE_SIZE = 16 * 1024 * 1024; // 16 MB
+    public static final int BLOCK_CACHE_ENTRIES = 8192;
+    public static final int IMPORT_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int IMPORT_QUEUE_SIZE = 16; // 16 chunks (4 MB) read ahead
+    public static final int IMPORT_BATCH_SIZE = 32;
+    public static final int IMPORT_WRITE_QUEUE_SIZE = 4; // 4 batches
+    public static final int IMPORT_READ_THREADS = 4; // imports that read ahead at the same time
+    public static final int IMPORT_WRITE_THREADS = 2;
+    public static final int GC_BATCH_SIZE = 1024; // blocks marked or swept between pauses
+    public static final long GC_BATCH_PAUSE = 5; // 5 ms, rate limit of the garbage collector
+    public static final double GC_FALSE_POSITIVE_RATE = 0.01; // garbage kept by a collection
+    public static final int DAG_FETCH_CONCURRENCY = 16; // blocks requested at the same time
+    public static final int DAG_FETCH_THREADS = 32; // requests of all fetches at the same time
+    public static final long DAG_FETCH_JOURNAL_INTERVAL = 1000; // 1 sec, progress of a fetch saved
+    public static final long NODE_CACHE_SIZE = 4 * 1024 * 1024; // 4 MB, decoded nodes kept
+    public static final int PATH_CACHE_ENTRIES = 4096; // resolved paths kept
 
 
     private static final String PRIVATE_KEY = "privateKey";
     private static final String PUBLIC_KEY = "publicKey";
     private static final String CONCURRENCY_KEY = "concurrencyKey";
+    private static final String FILE_STORAGE_KEY = "fileStorageKey";
     private static final String TAG = IPFS.class.getSimpleName();
     private static final String PREF_KEY = IPFS.TAG;
     private static final boolean BOOTSTRAP_ENHANCE_SWARM = false;
@@ -190,7 +237,24 @@ public class IPFS {
     }
 
     @NonNull
-    private final BLOCKS blocks;
+    private final Storage blocks;
+    @NonNull
+    private final Pins pins;
+    @NonNull
+    private final GarbageCollector collector;
+    @NonNull
+    private final CachingBlockStore cache;
+    private final BlockStore blockstore;
+    @NonNull
+    private final File fetches;
+    @NonNull
+    private final NodeCache nodeCache = new NodeCache(NODE_CACHE_SIZE);
+    @NonNull
+    private final PathCache pathCache = new PathCache(PATH_CACHE_ENTRIES);
+    @NonNull
+    private final DagService dags;
+    @NonNull
+    private final BasicMetrics metrics = new BasicMetrics();
     @NonNull
     private final LiteHost host;
     @NonNull
@@ -203,7 +267,11 @@ public class IPFS {
     private IPFS(@NonNull Context context) throws Exception {
 
 
-        blocks = BLOCKS.getInstance(context);
+        if (isFileStorage(context)) {
+            blocks = FileStorage.getInstance(context);
+        } else {
+            blocks = BLOCKS.getInstance(context);
+        }
 
         KeyPair keypair = getKeyPair(context);
 
@@ -217,8 +285,19 @@ public class IPFS {
         int alpha = getConcurrencyValue(context);
 
 
-        BlockStore blockstore = BlockStore.createBlockStore(blocks);
+        pins = PINS.getInstance(context);
+        collector = new GarbageCollector(blocks, pins, metrics);
+        cache = new CachingBlockStore(BlockStore.createBlockStore(blocks), metrics,
+                BLOCK_CACHE_SIZE, BLOCK_CACHE_ENTRIES);
+        blockstore = collector.createBlockStore(cache);
         this.host = new LiteHost(selfSignedCertificate, privateKey, blockstore, alpha);
+        this.dags = nodeCache.createDagService(DagService.createDagService(
+                BlockService.createBlockService(blockstore, host.getBitSwap())));
+
+        fetches = new File(context.getFilesDir(), DagFetcher.class.getSimpleName());
+        if (!fetches.exists() && !fetches.mkdirs()) {
+            throw new IOException("Failed to create " + fetches.getAbsolutePath());
+        }
 
     }
 
@@ -245,6 +324,21 @@ public class IPFS {
     }
 
 
+    // selects the block storage of the instance, takes effect on the next start
+    public static boolean isFileStorage(@NonNull Context context) {
+        Objects.requireNonNull(context);
+        SharedPreferences sharedPref = context.getSharedPreferences(PREF_KEY, Context.MODE_PRIVATE);
+        return sharedPref.getBoolean(FILE_STORAGE_KEY, false);
+    }
+
+    public static void setFileStorage(@NonNull Context context, boolean fileStorage) {
+        Objects.requireNonNull(context);
+        SharedPreferences sharedPref = context.getSharedPreferences(PREF_KEY, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = sharedPref.edit();
+        editor.putBoolean(FILE_STORAGE_KEY, fileStorage);
+        editor.apply();
+    }
+
     @SuppressWarnings("UnusedReturnValue")
     public static long copy(InputStream source, OutputStream sink) throws IOException {
         long nread = 0L;
@@ -474,14 +568,122 @@ public class IPFS {
         }
     }
 
+    // unpins the cid and starts a collection in the background, its blocks are removed when
+    // no other pin references them (to remove many cids, unpin them and run gc once)
     public void rm(@NonNull Cid cid) {
+        unpin(cid);
+        gc();
+    }
+
+    // the blocks of a pinned cid are kept by the garbage collector, a recursive pin keeps
+    // the whole DAG (as far as it is stored)
+    public void pin(@NonNull Cid cid, boolean recursive) {
         try {
-            Stream.removeCid(() -> false, blocks, cid);
+            collector.pin(() -> false, cid, recursive);
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
         }
     }
 
+    // pins the cid recursively and fetches its DAG, an interrupted fetch is continued
+    // by the next pin (or fetch) of the cid
+    public void pin(@NonNull Cid cid, @NonNull Closeable closeable) throws ClosedException {
+        pin(cid, true);
+        fetch(cid, closeable);
+    }
+
+    // fetches the whole DAG of the cid in parallel, returns false when blocks are missing.
+    // The fetched blocks are kept during the fetch, to keep them for a following read (e.g.
+    // a download) too, call holdBlocks before and releaseBlocks after it (or pin the cid)
+    public boolean fetch(@NonNull Cid cid, @NonNull Closeable closeable) throws ClosedException {
+        DagFetcher fetcher = new DagFetcher(blockstore, host.getBitSwap(),
+                DAG_FETCH_CONCURRENCY, DagFetcher.getJournal(fetches, cid));
+        holdBlocks();
+        try {
+            return fetcher.fetch(closeable, cid);
+        } finally {
+            releaseBlocks();
+        }
+    }
+
+    public boolean fetch(@NonNull Cid cid, @NonNull Progress progress) throws ClosedException {
+        DagFetcher fetcher = new DagFetcher(blockstore, host.getBitSwap(),
+                DAG_FETCH_CONCURRENCY, DagFetcher.getJournal(fetches, cid));
+        holdBlocks();
+        try {
+            return fetcher.fetch(progress, cid);
+        } finally {
+            releaseBlocks();
+        }
+    }
+
+    // the blocks stored, found or read from now on are not removed by the garbage collector
+    // until releaseBlocks is called (a temporary pin, not stored)
+    public void holdBlocks() {
+        collector.begin();
+    }
+
+    public void releaseBlocks() {
+        collector.end();
+    }
+
+    public void unpin(@NonNull Cid cid) {
+        pins.unpin(cid);
+    }
+
+    public boolean isPinned(@NonNull Cid cid) {
+        return pins.isPinned(cid);
+    }
+
+    @NonNull
+    public List<Cid> getPins(boolean recursive) {
+        return pins.getPins(recursive);
+    }
+
+    // removes the blocks which are not pinned in the background, the reclaimed bytes and
+    // the pause are reported to the metrics
+    public void gc() {
+        collector.start(() -> {
+            clearCaches();
+            clearJournals(false);
+        });
+    }
+
+    // the cached blocks, nodes and resolved paths of the swept blocks are dropped
+    private void clearCaches() {
+        cache.clear();
+        nodeCache.clear();
+        pathCache.clear();
+    }
+
+    // the journal of an interrupted fetch refers to the fetched part, which is swept by a
+    // collection when the root is not pinned (the fetch starts at the root again), all
+    // removes the journals of the pinned roots (and the partly written ones) too
+    private void clearJournals(boolean all) {
+        File[] journals = fetches.listFiles();
+        if (journals != null) {
+            for (File journal : journals) {
+                if (!all) {
+                    String name = journal.getName();
+                    try {
+                        if (name.endsWith(".tmp") || pins.isPinned(Cid.decode(name))) {
+                            continue;
+                        }
+                    } catch (Throwable throwable) {
+                        LogUtils.error(TAG, throwable);
+                    }
+                }
+                if (!journal.delete()) {
+                    LogUtils.error(TAG, "Failed to delete " + journal.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    public boolean isCollecting() {
+        return collector.isCollecting();
+    }
+
     @NonNull
     public Cid storeData(@NonNull byte[] data) throws IOException {
 
@@ -514,12 +716,48 @@ public class IPFS {
     }
 
 
+    // the blocks of an add are kept by a collection until its root is pinned (recursive),
+    // the lock is only held for the pin
+    private void pinAdded(@NonNull Cid cid) {
+        Lock lock = collector.getLock();
+        lock.lock();
+        try {
+            pin(cid, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the stored content is pinned (recursive), unpin (or rm) the cid when it is no
+    // longer used
     @NonNull
     public Cid storeInputStream(@NonNull InputStream inputStream,
                                 @NonNull Progress progress, long size) {
 
-        return Stream.write(blocks, new WriterStream(inputStream, progress, size));
+        collector.begin();
+        try {
+            Cid cid = Stream.write(blockstore, new WriterStream(inputStream, progress, size));
+            pinAdded(cid);
+            return cid;
+        } finally {
+            collector.end();
+        }
+    }
+
+    @NonNull
+    public Cid storeInputStream(@NonNull InputStream inputStream,
+                                @NonNull Progress progress, long size,
+                                @NonNull Chunker chunker) {
 
+        collector.begin();
+        try {
+            Cid cid = Stream.write(blockstore, chunker,
+                    new WriterStream(inputStream, progress, size));
+            pinAdded(cid);
+            return cid;
+        } finally {
+            collector.end();
+        }
     }
 
     @NonNull
@@ -617,32 +855,48 @@ public class IPFS {
         }
     }
 
+    // the new directory is pinned as stored content, the old one is not unpinned
     @Nullable
     public Cid rmLinkFromDir(@NonNull Cid dir, String name) {
+        collector.begin();
         try {
-            return Stream.removeLinkFromDir(blocks, () -> false, dir, name);
+            Cid cid = Stream.removeLinkFromDir(blockstore, () -> false, dir, name);
+            pinAdded(cid);
+            return cid;
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
+        } finally {
+            collector.end();
         }
         return null;
     }
 
     @Nullable
     public Cid addLinkToDir(@NonNull Cid dir, @NonNull String name, @NonNull Cid link) {
+        collector.begin();
         try {
-            return Stream.addLinkToDir(blocks, () -> false, dir, name, link);
+            Cid cid = Stream.addLinkToDir(blockstore, () -> false, dir, name, link);
+            pinAdded(cid);
+            return cid;
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
+        } finally {
+            collector.end();
         }
         return null;
     }
 
     @Nullable
     public Cid createEmptyDir() {
+        collector.begin();
         try {
-            return Stream.createEmptyDir(blocks);
+            Cid cid = Stream.createEmptyDir(blockstore);
+            pinAdded(cid);
+            return cid;
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
+        } finally {
+            collector.end();
         }
         return null;
     }
@@ -700,20 +954,23 @@ public class IPFS {
     @Nullable
     public Node resolveNode(@NonNull Cid root, @NonNull List<String> path, @NonNull Closeable closeable) throws ClosedException {
 
-        String resultPath = IPFS_PATH + root.String();
-        for (String name : path) {
-            resultPath = resultPath.concat("/").concat(name);
+        try {
+            PathCache.Entry entry = resolvePath(root, path, closeable);
+            return dags.getNode(closeable, entry.getCid(), true);
+        } catch (ClosedException closedException) {
+            throw closedException;
+        } catch (Throwable ignore) {
+            // common exception to not resolve a a path
         }
-
-        return resolveNode(resultPath, closeable);
-
+        return null;
     }
 
     @Nullable
     public Node resolveNode(@NonNull String path, @NonNull Closeable closeable) throws ClosedException {
 
         try {
-            return Resolver.resolveNode(closeable, blocks, host.getBitSwap(), path);
+            ResolvedPath split = Path.splitAbsPath(Path.create(path));
+            return resolveNode(split.getCid(), split.getRest(), closeable);
         } catch (ClosedException closedException) {
             throw closedException;
         } catch (Throwable ignore) {
@@ -722,6 +979,25 @@ public class IPFS {
         return null;
     }
 
+    // the path below the root is resolved once, afterwards the result is taken from the
+    // cache (the content of a cid never changes); a failed resolve is not cached
+    @NonNull
+    private PathCache.Entry resolvePath(@NonNull Cid root, @NonNull List<String> path,
+                                        @NonNull Closeable closeable) throws ClosedException {
+        PathCache.Entry entry = pathCache.get(root, path);
+        if (entry == null) {
+            String resultPath = IPFS_PATH + root.String();
+            for (String name : path) {
+                resultPath = resultPath.concat("/").concat(name);
+            }
+            Node node = Resolver.resolveNode(closeable, dags, Path.create(resultPath));
+            Objects.requireNonNull(node);
+            entry = PathCache.Entry.create(node);
+            pathCache.put(root, path, entry);
+        }
+        return entry;
+    }
+
     public void bootstrap() {
 
         synchronized (IPFS.TAG.intern()) {
@@ -779,6 +1055,18 @@ public class IPFS {
 
     public void clearDatabase() {
         blocks.clear();
+        clearCaches();
+        clearJournals(true);
+    }
+
+    @NonNull
+    public BasicMetrics getMetrics() {
+        return metrics;
+    }
+
+    @NonNull
+    public Storage getStorage() {
+        return blocks;
     }
 
 
@@ -803,23 +1091,22 @@ public class IPFS {
     public Cid resolve(@NonNull Cid root, @NonNull List<String> path,
                        @NonNull Closeable closeable) throws ClosedException {
 
-        String resultPath = IPFS_PATH + root.String();
-        for (String name : path) {
-            resultPath = resultPath.concat("/").concat(name);
+        try {
+            return resolvePath(root, path, closeable).getCid();
+        } catch (ClosedException closedException) {
+            throw closedException;
+        } catch (Throwable ignore) {
+            // common use case not resolve a a path
         }
-
-        return resolve(resultPath, closeable);
-
+        return null;
     }
 
     @Nullable
     public Cid resolve(@NonNull String path, @NonNull Closeable closeable) throws ClosedException {
 
         try {
-            Node node = Resolver.resolveNode(closeable, blocks, host.getBitSwap(), path);
-            if (node != null) {
-                return node.getCid();
-            }
+            ResolvedPath split = Path.splitAbsPath(Path.create(path));
+            return resolve(split.getCid(), split.getRest(), closeable);
         } catch (ClosedException closedException) {
             throw closedException;
         } catch (Throwable ignore) {
@@ -838,8 +1125,7 @@ public class IPFS {
 
         boolean result;
         try {
-            BlockStore blockstore = BlockStore.createBlockStore(blocks);
-            result = Stream.isDir(closeable, blockstore, host.getBitSwap(), cid);
+            result = resolvePath(cid, Collections.emptyList(), closeable).isDir();
         } catch (ClosedException closedException) {
             throw closedException;
         } catch (Throwable e) {
@@ -902,7 +1188,6 @@ public class IPFS {
 
         List<Link> infoList = new ArrayList<>();
         try {
-            BlockStore blockstore = BlockStore.createBlockStore(blocks);
             Stream.ls(new LinkCloseable() {
 
                 @Override
@@ -914,7 +1199,7 @@ public class IPFS {
                 public void info(@NonNull Link link) {
                     infoList.add(link);
                 }
-            }, blockstore, host.getBitSwap(), cid, resolveChildren);
+            }, dags, cid, resolveChildren);
 
         } catch (ClosedException closedException) {
             throw closedException;
@@ -926,7 +1211,6 @@ public class IPFS {
 
     @NonNull
     public Reader getReader(@NonNull Cid cid, @NonNull Closeable closeable) throws ClosedException {
-        BlockStore blockstore = BlockStore.createBlockStore(blocks);
         return Reader.getReader(closeable, blockstore, host.getBitSwap(), cid);
     }
 
@@ -5,11 +5,9 @@ import androidx.annotation.Nullable;
 
 import net.luminis.quic.ConnectionIssue;
 import net.luminis.quic.QuicClientConnection;
-import net.luminis.quic.stream.QuicStream;
 
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import threads.lite.IPFS;
 import threads.lite.LogUtils;
@@ -20,7 +18,6 @@ import threads.lite.core.ClosedException;
 import threads.lite.format.Block;
 import threads.lite.format.BlockStore;
 import threads.lite.host.LiteHost;
-import threads.lite.utils.DataHandler;
 
 
 public class BitSwap implements Interface {
@@ -33,7 +30,7 @@ public class BitSwap implements Interface {
     private final BitSwapEngine engine;
     @NonNull
     private final LiteHost host;
-    private final ConcurrentHashMap<PeerId, QuicClientConnection> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PeerId, BitSwapChannel> channels = new ConcurrentHashMap<>();
 
 
     public BitSwap(@NonNull BlockStore blockstore, @NonNull LiteHost host) {
@@ -57,7 +54,7 @@ public class BitSwap implements Interface {
     public void reset() {
         contentManager.reset();
 
-        for (PeerId peerId : connections.keySet()) {
+        for (PeerId peerId : channels.keySet()) {
             removeConnection(peerId);
         }
 
@@ -99,30 +96,20 @@ public class BitSwap implements Interface {
     }
 
 
-    private QuicClientConnection getConnection(@NonNull Closeable closeable, @NonNull PeerId peerId)
+    // the connection is shared with the other protocols (see ConnectionManager)
+    QuicClientConnection getConnection(@NonNull Closeable closeable, @NonNull PeerId peerId)
             throws ClosedException, ConnectionIssue {
-        QuicClientConnection conn = connections.get(peerId);
-        if (conn != null && conn.isConnected()) {
-            LogUtils.verbose(TAG, "Reuse connection " + peerId.toBase58());
-            return conn;
-        }
-        conn = host.connect(closeable, peerId, IPFS.CONNECT_TIMEOUT,
+        return host.connect(closeable, peerId, IPFS.CONNECT_TIMEOUT,
                 IPFS.BITSWAP_GRACE_PERIOD, IPFS.MAX_STREAMS, IPFS.MESSAGE_SIZE_MAX);
-
-        LogUtils.debug(TAG, "New connection " + peerId.toBase58());
-        conn.setPeerInitiatedStreamCallback(quicStream ->
-                new BitSwapStream(quicStream, peerId, this));
-
-        connections.put(peerId, conn);
-        return conn;
     }
 
     private void removeConnection(@NonNull PeerId peerId) {
         LogUtils.debug(TAG, "Remove connection " + peerId.toBase58());
-        QuicClientConnection conn = connections.remove(peerId);
-        if (conn != null) {
-            conn.close();
+        BitSwapChannel channel = channels.remove(peerId);
+        if (channel != null) {
+            channel.close();
         }
+        host.getConnectionManager().remove(peerId);
     }
 
     public void writeMessage(@NonNull Closeable closeable, @NonNull PeerId peerId,
@@ -133,32 +120,15 @@ public class BitSwap implements Interface {
             boolean success = false;
 
             long time = System.currentTimeMillis();
-            QuicClientConnection conn = getConnection(closeable, peerId);
-
-
             try {
-                QuicStream quicStream = conn.createStream(true,
-                        IPFS.CREATE_STREAM_TIMEOUT, TimeUnit.SECONDS);
-                BitSwapSend bitSwapSend = new BitSwapSend(quicStream, readTimeout, TimeUnit.SECONDS);
-
-                // TODO streamChannel.updatePriority(new QuicStreamPriority(priority, false));
-
-                bitSwapSend.writeAndFlush(DataHandler.writeToken(
-                        IPFS.STREAM_PROTOCOL, IPFS.BITSWAP_PROTOCOL));
-                bitSwapSend.writeAndFlush(DataHandler.encode(message.ToProtoV1()));
-                bitSwapSend.closeOutputStream();
-                bitSwapSend.reading();
-
+                BitSwapChannel channel = channels.computeIfAbsent(peerId,
+                        id -> new BitSwapChannel(this, id));
+                channel.writeMessage(closeable, message, readTimeout);
                 success = true;
             } catch (ConnectionIssue exception) {
                 LogUtils.error(TAG, exception);
                 removeConnection(peerId);
                 throw exception;
-            } catch (Throwable throwable) {
-                removeConnection(peerId);
-                LogUtils.error(TAG, throwable);
-                throw new ConnectionIssue();
-
             } finally {
                 LogUtils.debug(TAG, "Send took " + success + " " +
                         peerId.toBase58() + " " + (System.currentTimeMillis() - time));
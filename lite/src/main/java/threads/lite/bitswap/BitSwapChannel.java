@@ -0,0 +1,134 @@
+package threads.lite.bitswap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.luminis.quic.ConnectionIssue;
+import net.luminis.quic.QuicClientConnection;
+import net.luminis.quic.stream.QuicStream;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.PeerId;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.utils.DataHandler;
+
+// Long-lived outbound bitswap stream to a peer. The protocol is negotiated once, afterwards
+// the length-prefixed messages are pipelined on the stream. When the stream (or the
+// connection) fails, the stream is opened again.
+public class BitSwapChannel {
+
+    private static final String TAG = BitSwapChannel.class.getSimpleName();
+
+    @NonNull
+    private final BitSwap bitSwap;
+    @NonNull
+    private final PeerId peerId;
+    // bounds the number of messages which are waiting to be written on the stream
+    private final Semaphore queue = new Semaphore(IPFS.BITSWAP_SEND_QUEUE_SIZE);
+    @Nullable
+    private QuicClientConnection connection;
+    @Nullable
+    private QuicStream stream;
+
+    public BitSwapChannel(@NonNull BitSwap bitSwap, @NonNull PeerId peerId) {
+        this.bitSwap = bitSwap;
+        this.peerId = peerId;
+    }
+
+    public void writeMessage(@NonNull Closeable closeable, @NonNull BitSwapMessage message,
+                             int readTimeout) throws ClosedException, ConnectionIssue {
+
+        byte[] data = DataHandler.encode(message.ToProtoV1());
+
+        try {
+            if (!queue.tryAcquire(IPFS.CONNECT_TIMEOUT, TimeUnit.SECONDS)) {
+                throw new ConnectionIssue("Send queue full " + peerId.toBase58());
+            }
+        } catch (InterruptedException interruptedException) {
+            throw new ClosedException();
+        }
+
+        try {
+            synchronized (this) {
+                boolean reuse = stream != null;
+                try {
+                    write(closeable, data, readTimeout);
+                } catch (ClosedException closedException) {
+                    throw closedException;
+                } catch (Throwable throwable) {
+                    if (!reuse) {
+                        throw throwable;
+                    }
+                    // the long-lived stream failed, try once again with a fresh one
+                    LogUtils.debug(TAG, "Reopen stream " + peerId.toBase58() + " " + throwable);
+                    close();
+                    write(closeable, data, readTimeout);
+                }
+            }
+        } catch (ClosedException closedException) {
+            throw closedException;
+        } catch (ConnectionIssue connectionIssue) {
+            close();
+            throw connectionIssue;
+        } catch (Throwable throwable) {
+            close();
+            LogUtils.error(TAG, throwable);
+            throw new ConnectionIssue();
+        } finally {
+            queue.release();
+        }
+    }
+
+    private void write(@NonNull Closeable closeable, @NonNull byte[] data, int readTimeout)
+            throws Exception {
+        // the encoded message is not modified (a retry writes it again), the stream can take it without a copy
+        open(closeable, readTimeout).write(ByteBuffer.wrap(data));
+    }
+
+    @NonNull
+    private QuicStream open(@NonNull Closeable closeable, int readTimeout) throws Exception {
+
+        QuicClientConnection conn = bitSwap.getConnection(closeable, peerId);
+        if (stream != null && conn == connection) {
+            return stream;
+        }
+        close();
+
+        long time = System.currentTimeMillis();
+        QuicStream quicStream = conn.createStream(true,
+                IPFS.CREATE_STREAM_TIMEOUT, TimeUnit.SECONDS);
+        BitSwapSend bitSwapSend = new BitSwapSend(quicStream, readTimeout, TimeUnit.SECONDS);
+
+        // TODO streamChannel.updatePriority(new QuicStreamPriority(priority, false));
+
+        bitSwapSend.writeAndFlush(DataHandler.writeToken(
+                IPFS.STREAM_PROTOCOL, IPFS.BITSWAP_PROTOCOL));
+        bitSwapSend.reading();
+
+        LogUtils.debug(TAG, "Negotiated stream " + peerId.toBase58() +
+                " took " + (System.currentTimeMillis() - time));
+
+        connection = conn;
+        stream = quicStream;
+        return stream;
+    }
+
+    public synchronized void close() {
+        try {
+            if (stream != null) {
+                stream.getOutputStream().close();
+            }
+        } catch (Throwable ignore) {
+            // ignore
+        } finally {
+            stream = null;
+            connection = null;
+        }
+    }
+}
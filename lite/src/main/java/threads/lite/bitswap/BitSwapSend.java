@@ -65,6 +65,6 @@ public class BitSwapSend {
                 }
             }
         }
-
+        throw new ProtocolIssue("Protocol not negotiated " + IPFS.BITSWAP_PROTOCOL);
     }
 }
@@ -2,58 +2,129 @@ package threads.lite.bitswap;
 
 import androidx.annotation.NonNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 import threads.lite.IPFS;
 import threads.lite.LogUtils;
 import threads.lite.cid.Cid;
 import threads.lite.core.Closeable;
+import threads.lite.format.Block;
 
+// Registry of the waiters for a block. Each subscription gets its own future, which is
+// completed when the block is released. A single shared timer checks the closeables
+// of all subscriptions and cancels the futures of closed ones, when no subscription
+// is left for a cid, the cancel hook is invoked. A cid must be subscribed before it is
+// wanted, otherwise a cancel between the want and the subscribe cancels the new want.
+// The timer is started with the first subscription and stopped by reset.
 public class Blocker {
     private static final String TAG = Blocker.class.getSimpleName();
 
+    private final ConcurrentHashMap<Cid, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer; // guarded by this
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    @NonNull
+    private final Consumer<Cid> cancelled;
 
-    public void subscribe(@NonNull Cid cid, @NonNull Closeable closeable) {
-
-        String key = "B" + cid.String();
-        long start = System.currentTimeMillis();
-        synchronized (key.intern()) {
-            try {
-                // Calling wait() will block this thread until another thread
-                // calls notify() on the object.
-                LogUtils.verbose(TAG, "Lock " + cid.String());
-                Thread thread = new Thread(() -> {
-                    try {
-                        while (true) {
-                            if (closeable.isClosed()) {
-                                release(cid);
-                                break;
-                            }
-                            Thread.sleep(25);
-                        }
-                    } catch (InterruptedException e) {
-                        release(cid);
-                    }
-                });
-                thread.start();
-                key.intern().wait(IPFS.WANTS_WAIT_TIMEOUT);
-                thread.interrupt();
-            } catch (Throwable throwable) {
-                LogUtils.error(TAG, throwable);
-            } finally {
-                LogUtils.verbose(TAG, "Lock Finish " + cid.String() +
-                        " took " + (System.currentTimeMillis() - start));
+    public Blocker(@NonNull Consumer<Cid> cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    @NonNull
+    public CompletableFuture<Block> subscribe(@NonNull Cid cid, @NonNull Closeable closeable) {
+        Subscription subscription = new Subscription(closeable);
+        subscriptions.compute(cid, (key, list) -> {
+            if (list == null) {
+                list = new ArrayList<>();
+            }
+            list.add(subscription);
+            return list;
+        });
+        schedule();
+        return subscription.future;
+    }
+
+    public void release(@NonNull Cid cid, @NonNull Block block) {
+        List<Subscription> list = subscriptions.remove(cid);
+        if (list != null) {
+            for (Subscription subscription : list) {
+                subscription.future.complete(block);
+            }
+        }
+    }
+
+    public void reset() {
+        for (Cid cid : subscriptions.keySet()) {
+            List<Subscription> list = subscriptions.remove(cid);
+            if (list != null) {
+                for (Subscription subscription : list) {
+                    subscription.future.cancel(false);
+                }
             }
         }
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdownNow();
+                timer = null;
+            }
+            scheduled.set(false);
+        }
     }
 
-    public void release(@NonNull Cid cid) {
+    private void schedule() {
+        if (!scheduled.getAndSet(true)) {
+            synchronized (this) {
+                if (timer == null) {
+                    timer = Executors.newSingleThreadScheduledExecutor();
+                }
+                timer.schedule(this::check, IPFS.BLOCKER_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void check() {
+        scheduled.set(false);
         try {
-            String key = "B" + cid.String();
-            synchronized (key.intern()) {
-                key.intern().notify();
+            for (Cid cid : subscriptions.keySet()) {
+                // the cancel hook is invoked within the compute, a concurrent subscribe of
+                // the cid waits for it (and wants the cid again afterwards)
+                subscriptions.computeIfPresent(cid, (key, list) -> {
+                    list.removeIf(subscription -> {
+                        if (subscription.closeable.isClosed()) {
+                            subscription.future.cancel(false);
+                            return true;
+                        }
+                        return false;
+                    });
+                    if (list.isEmpty()) {
+                        cancelled.accept(key);
+                        return null;
+                    }
+                    return list;
+                });
+            }
+        } catch (Throwable throwable) {
+            LogUtils.error(TAG, throwable);
+        } finally {
+            if (!subscriptions.isEmpty()) {
+                schedule();
             }
-        } catch (Throwable ignore) {
-            // ignore
         }
     }
 
+    private static class Subscription {
+        final Closeable closeable;
+        final CompletableFuture<Block> future = new CompletableFuture<>();
+
+        Subscription(@NonNull Closeable closeable) {
+            this.closeable = closeable;
+        }
+    }
 }
@@ -2,21 +2,18 @@ package threads.lite.bitswap;
 
 import androidx.annotation.NonNull;
 
-import net.luminis.quic.ConnectionIssue;
-
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import bitswap.pb.MessageOuterClass;
 import threads.lite.IPFS;
 import threads.lite.LogUtils;
 import threads.lite.cid.Cid;
@@ -37,31 +34,19 @@ public class ContentManager {
     private final ExecutorService providers = Executors.newFixedThreadPool(8);
     private final ConcurrentSkipListSet<PeerId> peers = new ConcurrentSkipListSet<>();
     private final ConcurrentSkipListSet<Cid> loads = new ConcurrentSkipListSet<>();
-    private final ConcurrentHashMap<Cid, ConcurrentLinkedDeque<PeerId>> matches = new ConcurrentHashMap<>();
-    private final Blocker blocker = new Blocker();
-    private final BitSwap bitSwap;
+    private final WantScheduler scheduler;
+    private final Blocker blocker;
 
     public ContentManager(@NonNull BitSwap bitSwap, @NonNull BlockStore blockStore, @NonNull LiteHost host) {
-        this.bitSwap = bitSwap;
+        this.scheduler = new WantScheduler(bitSwap, peers);
+        this.blocker = new Blocker(scheduler::cancel);
         this.blockStore = blockStore;
         this.host = host;
     }
 
 
     public void haveReceived(@NonNull PeerId peer, @NonNull List<Cid> cids) {
-
-        for (Cid cid : cids) {
-
-            ConcurrentLinkedDeque<PeerId> res = matches.get(cid);
-            if (res != null) {
-                res.add(peer);
-
-                LogUtils.info(TAG, "HaveReceived " + cid.String() + " " + peer.toBase58());
-
-                peers.add(peer);
-
-            }
-        }
+        scheduler.haveReceived(peer, cids);
     }
 
     public void reset() {
@@ -70,99 +55,48 @@ public class ContentManager {
         try {
             loads.clear();
             peers.clear();
-            matches.clear();
+            blocker.reset();
+            scheduler.reset();
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
         }
     }
 
-    public void runHaveMessage(@NonNull Closeable closeable, @NonNull PeerId peer,
-                               @NonNull List<Cid> cids) {
-        new Thread(() -> {
-            long start = System.currentTimeMillis();
-            boolean success = false;
-            try {
-                if (closeable.isClosed()) {
-                    return;
-                }
-                sendHaveMessage(closeable, peer, cids);
-                success = true;
-            } catch (ClosedException ignore) {
-                // ignore
-            } catch (Throwable throwable) {
-                peers.remove(peer);
-                LogUtils.debug(TAG, "Priority Peer " + peer.toBase58() + " " +
-                        throwable.getClass().getName());
-            } finally {
-                LogUtils.debug(TAG, "Priority Peer " + success + " " +
-                        peer.toBase58() + " took " + (System.currentTimeMillis() - start));
-            }
-        }).start();
-    }
-
 
     public Block runWantHaves(@NonNull Closeable closeable, @NonNull Cid cid) throws ClosedException {
 
-        matches.put(cid, new ConcurrentLinkedDeque<>());
-
-        long enter = System.currentTimeMillis();
+        if (closeable.isClosed()) {
+            throw new ClosedException();
+        }
 
-        Set<PeerId> haves = new HashSet<>();
-        Set<PeerId> wants = new HashSet<>();
         peers.addAll(host.getPeers());
 
         LogUtils.verbose(TAG, peers.toString());
 
-        while (matches.containsKey(cid)) {
-
-            if (closeable.isClosed()) {
-                throw new ClosedException();
-            }
+        // subscribed before wanted, a cancel of the blocker does not cancel the want
+        CompletableFuture<Block> future = blocker.subscribe(cid, closeable);
+        scheduler.want(cid);
 
-            for (PeerId peer : peers) {
-                if (!haves.contains(peer)) {
-                    haves.add(peer);
-                    runHaveMessage(closeable, peer, Collections.singletonList(cid));
-                }
-            }
-
-            ConcurrentLinkedDeque<PeerId> set = matches.get(cid);
-            if (set != null) {
-                PeerId peer = set.poll();
-                if (peer != null) {
-                    if (!wants.contains(peer)) {
-                        long start = System.currentTimeMillis();
-                        try {
-                            if (matches.containsKey(cid)) {
-                                sendWantsMessage(closeable, peer, Collections.singletonList(cid));
-                                wants.add(peer);
-                                haves.add(peer);
-                                blocker.subscribe(cid, closeable);
-                            }
-                        } catch (ClosedException closedException) {
-                            // ignore
-                        } catch (Throwable throwable) {
-                            LogUtils.error(TAG, throwable);
-                        } finally {
-                            LogUtils.debug(TAG, "Match Peer " +
-                                    peer.toBase58() + " took " + (System.currentTimeMillis() - start));
-                        }
-                    }
-                }
-            }
-
-            if (closeable.isClosed()) {
-                throw new ClosedException();
-            }
+        // the block might have been received before the subscription was done
+        Block block = blockStore.getBlock(cid);
+        if (block != null) {
+            blocker.release(cid, block);
+            scheduler.cancel(cid);
+        }
 
-            if (System.currentTimeMillis()
-                    > (enter + IPFS.BITSWAP_LOAD_PROVIDERS_REFRESH)) {
+        while (true) {
+            try {
+                // the future is cancelled by the blocker when the closeable is closed
+                return future.get(IPFS.BITSWAP_LOAD_PROVIDERS_REFRESH, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignore) {
                 loadProviders(closeable, cid);
-                enter = System.currentTimeMillis();
+            } catch (CancellationException cancellationException) {
+                throw new ClosedException();
+            } catch (InterruptedException | ExecutionException exception) {
+                LogUtils.error(TAG, exception);
+                throw new ClosedException();
             }
-
         }
-        return blockStore.getBlock(cid);
     }
 
 
@@ -173,12 +107,8 @@ public class ContentManager {
             LogUtils.info(TAG, "Block Received " + cid.String() + " " + peer.toBase58());
             blockStore.putBlock(block);
 
-            if (matches.containsKey(cid)) {
-                peers.add(peer);
-            }
-
-            matches.remove(cid);
-            blocker.release(cid);
+            blocker.release(cid, block);
+            scheduler.blockReceived(peer, cid);
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
         }
@@ -189,39 +119,42 @@ public class ContentManager {
 
         LogUtils.verbose(TAG, "LoadBlocks " + cids.size());
 
-        List<PeerId> handled = new ArrayList<>();
-
-        for (PeerId peer : peers) {
-            if (!handled.contains(peer)) {
-                handled.add(peer);
-                runHaveMessage(closeable, peer, cids);
+        List<Cid> wants = new ArrayList<>();
+        for (Cid cid : cids) {
+            if (!blockStore.hasBlock(cid)) {
+                wants.add(cid);
+            }
+        }
+        for (Cid cid : wants) {
+            blocker.subscribe(cid, closeable);
+        }
+        scheduler.want(wants);
+        // a block received before it was wanted is not wanted anymore
+        for (Cid cid : wants) {
+            if (blockStore.hasBlock(cid)) {
+                scheduler.cancel(cid);
             }
         }
     }
 
     public Block getBlock(@NonNull Closeable closeable, @NonNull Cid cid, boolean root) throws ClosedException {
-        try {
-            synchronized (cid.String().intern()) {
-                Block block = blockStore.getBlock(cid);
-                if (block == null) {
-                    AtomicBoolean done = new AtomicBoolean(false);
-                    LogUtils.info(TAG, "Block Get " + cid.String());
-
-                    if (root) {
-                        loadProviders(() -> closeable.isClosed() || done.get(), cid);
-                    }
-                    try {
-                        return runWantHaves(() -> closeable.isClosed() || done.get(), cid);
-                    } finally {
-                        done.set(true);
-                    }
-                }
-                return block;
+
+        // concurrent requests for the same cid share the want, no lock required
+        Block block = blockStore.getBlock(cid);
+        if (block == null) {
+            AtomicBoolean done = new AtomicBoolean(false);
+            LogUtils.info(TAG, "Block Get " + cid.String());
+
+            if (root) {
+                loadProviders(() -> closeable.isClosed() || done.get(), cid);
+            }
+            try {
+                return runWantHaves(closeable, cid);
+            } finally {
+                done.set(true);
             }
-        } finally {
-            blocker.release(cid);
-            LogUtils.info(TAG, "Block Release  " + cid.String());
         }
+        return block;
     }
 
     private void loadProviders(@NonNull Closeable closeable, @NonNull Cid cid) {
@@ -251,68 +184,7 @@ public class ContentManager {
     }
 
 
-    private void sendHaveMessage(@NonNull Closeable closeable,
-                                 @NonNull PeerId peer,
-                                 @NonNull List<Cid> wantHaves)
-            throws ClosedException, ConnectionIssue {
-        if (wantHaves.size() == 0) {
-            return;
-        }
-
-        int priority = Integer.MAX_VALUE;
-
-        BitSwapMessage message = BitSwapMessage.New(false);
-
-        for (Cid c : wantHaves) {
-
-            // Broadcast wants are sent as want-have
-            MessageOuterClass.Message.Wantlist.WantType wantType =
-                    MessageOuterClass.Message.Wantlist.WantType.Have;
-
-            message.AddEntry(c, priority, wantType, false);
-
-            priority--;
-        }
-
-        if (message.Empty()) {
-            return;
-        }
-        LogUtils.debug(TAG, "send HAVE Message " + peer.toBase58());
-        bitSwap.writeMessage(closeable, peer, message, IPFS.CONNECT_TIMEOUT, IPFS.PRIORITY_URGENT);
-
-
-    }
-
-    private void sendWantsMessage(@NonNull Closeable closeable,
-                                  @NonNull PeerId peer,
-                                  @NonNull List<Cid> wantBlocks)
-            throws ClosedException, ConnectionIssue {
-
-        if (wantBlocks.size() == 0) {
-            return;
-        }
-        BitSwapMessage message = BitSwapMessage.New(false);
-
-        int priority = Integer.MAX_VALUE;
-
-        for (Cid c : wantBlocks) {
-
-            message.AddEntry(c, priority,
-                    MessageOuterClass.Message.Wantlist.WantType.Block, true);
-
-            priority--;
-        }
-
-        if (message.Empty()) {
-            return;
-        }
-
-        LogUtils.debug(TAG, "send WANT Message " + peer.toBase58());
-        bitSwap.writeMessage(closeable, peer, message, IPFS.CONNECT_TIMEOUT, IPFS.PRIORITY_URGENT);
-
-    }
-
     public void receiveConnectionFailure(@NonNull PeerId peerId) {
-        peers.remove(peerId);
+        scheduler.peerFailure(peerId);
     }
 }
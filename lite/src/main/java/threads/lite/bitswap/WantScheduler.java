@@ -0,0 +1,323 @@
+package threads.lite.bitswap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import bitswap.pb.MessageOuterClass;
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.Cid;
+import threads.lite.cid.PeerId;
+import threads.lite.core.TimeoutCloseable;
+
+// The WantScheduler keeps one live wantlist per peer. All wants which are registered
+// within one tick are coalesced into a single (non full) BitSwapMessage per peer.
+// The waiters of a want are handled by the Blocker, which also cancels the want
+// when no waiter is interested anymore. The timer and the senders are started with the
+// first want and stopped by reset.
+public class WantScheduler {
+
+    private static final String TAG = WantScheduler.class.getSimpleName();
+
+    @NonNull
+    private final BitSwap bitSwap;
+    @NonNull
+    private final Set<PeerId> peers;
+    private final ConcurrentHashMap<Cid, Want> wants = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PeerId, PeerWants> wantlists = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    @Nullable
+    private ScheduledExecutorService timer; // guarded by this
+    @Nullable
+    private ExecutorService senders; // guarded by this
+
+    public WantScheduler(@NonNull BitSwap bitSwap, @NonNull Set<PeerId> peers) {
+        this.bitSwap = bitSwap;
+        this.peers = peers;
+    }
+
+    public void want(@NonNull Cid cid) {
+        wants.computeIfAbsent(cid, Want::new);
+        schedule();
+    }
+
+    public void want(@NonNull List<Cid> cids) {
+        for (Cid cid : cids) {
+            wants.computeIfAbsent(cid, Want::new);
+        }
+        schedule();
+    }
+
+    public void cancel(@NonNull Cid cid) {
+        if (wants.remove(cid) != null) {
+            cancel(cid, null);
+        }
+    }
+
+    public void haveReceived(@NonNull PeerId peer, @NonNull List<Cid> cids) {
+        boolean changed = false;
+        for (Cid cid : cids) {
+            Want want = wants.get(cid);
+            if (want != null) {
+                LogUtils.info(TAG, "HaveReceived " + cid.String() + " " + peer.toBase58());
+                want.haves.add(peer);
+                peers.add(peer);
+                changed = true;
+            }
+        }
+        if (changed) {
+            schedule();
+        }
+    }
+
+    public void blockReceived(@NonNull PeerId peer, @NonNull Cid cid) {
+        if (wants.remove(cid) != null) {
+            peers.add(peer);
+            cancel(cid, peer);
+        }
+    }
+
+    public void peerFailure(@NonNull PeerId peer) {
+        peers.remove(peer);
+        wantlists.remove(peer);
+        for (Want want : wants.values()) {
+            want.haves.remove(peer);
+            if (peer.equals(want.current)) {
+                want.current = null;
+            }
+        }
+    }
+
+    public void reset() {
+        wants.clear();
+        wantlists.clear();
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdownNow();
+                timer = null;
+            }
+            if (senders != null) {
+                senders.shutdownNow();
+                senders = null;
+            }
+            scheduled.set(false);
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled.getAndSet(true)) {
+            synchronized (this) {
+                if (timer == null) {
+                    timer = Executors.newSingleThreadScheduledExecutor();
+                }
+                timer.schedule(this::tick, IPFS.BITSWAP_TICK, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void send(@NonNull Runnable runnable) {
+        if (senders == null) {
+            senders = Executors.newFixedThreadPool(IPFS.BITSWAP_SEND_THREADS);
+        }
+        senders.execute(runnable);
+    }
+
+    private void tick() {
+        scheduled.set(false);
+        try {
+            long now = System.currentTimeMillis();
+            for (Want want : wants.values()) {
+
+                // Broadcast wants are sent as want-have
+                for (PeerId peer : peers) {
+                    getWantlist(peer).wantHave(want.cid);
+                }
+
+                // Only one want-block is outstanding per cid, next peer which has
+                // the block is asked when the previous one did not deliver in time
+                if (want.current == null || (now - want.sent) > IPFS.WANTS_WAIT_TIMEOUT) {
+                    PeerId peer = want.haves.poll();
+                    if (peer != null) {
+                        getWantlist(peer).wantBlock(want.cid);
+                        want.current = peer;
+                        want.sent = now;
+                    }
+                }
+            }
+
+            for (PeerWants wantlist : wantlists.values()) {
+                flush(wantlist);
+            }
+        } catch (Throwable throwable) {
+            LogUtils.error(TAG, throwable);
+        } finally {
+            if (!wants.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    @NonNull
+    private PeerWants getWantlist(@NonNull PeerId peer) {
+        return wantlists.computeIfAbsent(peer, PeerWants::new);
+    }
+
+    private void cancel(@NonNull Cid cid, @Nullable PeerId exclude) {
+        boolean changed = false;
+        for (PeerWants wantlist : wantlists.values()) {
+            if (!wantlist.peer.equals(exclude)) {
+                changed |= wantlist.cancel(cid);
+            } else {
+                wantlist.remove(cid);
+            }
+        }
+        if (changed) {
+            schedule();
+        }
+    }
+
+    private void flush(@NonNull PeerWants wantlist) {
+
+        // only one message in flight per peer, the rest is coalesced into the next tick
+        if (wantlist.sending.getAndSet(true)) {
+            return;
+        }
+        BitSwapMessage message = wantlist.createMessage();
+        if (message == null) {
+            wantlist.sending.set(false);
+            return;
+        }
+
+        send(() -> {
+            long start = System.currentTimeMillis();
+            boolean success = false;
+            try {
+                bitSwap.writeMessage(new TimeoutCloseable(IPFS.CONNECT_TIMEOUT), wantlist.peer,
+                        message, IPFS.CONNECT_TIMEOUT, IPFS.PRIORITY_URGENT);
+                success = true;
+            } catch (Throwable throwable) {
+                peerFailure(wantlist.peer);
+                LogUtils.debug(TAG, "Wantlist Peer " + wantlist.peer.toBase58() + " " +
+                        throwable.getClass().getName());
+            } finally {
+                wantlist.sending.set(false);
+                if (wantlist.hasPending()) {
+                    schedule();
+                }
+                LogUtils.debug(TAG, "Wantlist Peer " + success + " " + wantlist.peer.toBase58() +
+                        " entries " + message.Wantlist().size() +
+                        " took " + (System.currentTimeMillis() - start));
+            }
+        });
+    }
+
+    private static class Want {
+        final Cid cid;
+        // peers which reported a HAVE and were not yet asked for the block
+        final ConcurrentLinkedDeque<PeerId> haves = new ConcurrentLinkedDeque<>();
+        volatile PeerId current;
+        volatile long sent;
+
+        Want(@NonNull Cid cid) {
+            this.cid = cid;
+        }
+    }
+
+    private static class PeerWants {
+        final PeerId peer;
+        final AtomicBoolean sending = new AtomicBoolean(false);
+        // live wantlist, what the peer has been told (or will be told with the next message)
+        final Map<Cid, MessageOuterClass.Message.Wantlist.WantType> entries = new HashMap<>();
+        // changes which are not yet sent to the peer
+        final Map<Cid, MessageOuterClass.Message.Wantlist.WantType> pending = new LinkedHashMap<>();
+        final Set<Cid> cancels = new LinkedHashSet<>();
+        // wants which the peer was sent (and not cancelled)
+        final Set<Cid> sent = new HashSet<>();
+
+        PeerWants(@NonNull PeerId peer) {
+            this.peer = peer;
+        }
+
+        synchronized void wantHave(@NonNull Cid cid) {
+            if (!entries.containsKey(cid)) {
+                entries.put(cid, MessageOuterClass.Message.Wantlist.WantType.Have);
+                pending.put(cid, MessageOuterClass.Message.Wantlist.WantType.Have);
+                uncancel(cid);
+            }
+        }
+
+        synchronized void wantBlock(@NonNull Cid cid) {
+            if (entries.get(cid) != MessageOuterClass.Message.Wantlist.WantType.Block) {
+                entries.put(cid, MessageOuterClass.Message.Wantlist.WantType.Block);
+                pending.put(cid, MessageOuterClass.Message.Wantlist.WantType.Block);
+                uncancel(cid);
+            }
+        }
+
+        // a cancel which is not sent yet is dropped, the peer still has the sent want
+        private void uncancel(@NonNull Cid cid) {
+            if (cancels.remove(cid)) {
+                sent.add(cid);
+            }
+        }
+
+        synchronized boolean cancel(@NonNull Cid cid) {
+            entries.remove(cid);
+            pending.remove(cid);
+            // when the want was never sent, there is nothing to cancel (also when an
+            // upgrade to a want-block is pending, the sent want-have is cancelled)
+            if (sent.remove(cid)) {
+                cancels.add(cid);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void remove(@NonNull Cid cid) {
+            entries.remove(cid);
+            pending.remove(cid);
+            sent.remove(cid);
+        }
+
+        synchronized BitSwapMessage createMessage() {
+            if (pending.isEmpty() && cancels.isEmpty()) {
+                return null;
+            }
+            BitSwapMessage message = BitSwapMessage.New(false);
+            int priority = Integer.MAX_VALUE;
+            for (Map.Entry<Cid, MessageOuterClass.Message.Wantlist.WantType> entry :
+                    pending.entrySet()) {
+                boolean sendDontHave = entry.getValue() ==
+                        MessageOuterClass.Message.Wantlist.WantType.Block;
+                message.AddEntry(entry.getKey(), priority, entry.getValue(), sendDontHave);
+                sent.add(entry.getKey());
+                priority--;
+            }
+            for (Cid cid : cancels) {
+                message.Cancel(cid);
+            }
+            pending.clear();
+            cancels.clear();
+            return message;
+        }
+
+        synchronized boolean hasPending() {
+            return !pending.isEmpty() || !cancels.isEmpty();
+        }
+    }
+}
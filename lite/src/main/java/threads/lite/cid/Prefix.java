@@ -85,11 +85,12 @@ public class Prefix implements Builder {
         if (codec == this.Codec) {
             return this;
         }
-        Codec = codec;
+        // a copy (a value in go), the prefix is shared by the leaves hashed in parallel
+        Prefix prefix = new Prefix(codec, MhLength, MhType, Version);
         if (codec != Cid.DagProtobuf) {
-            Version = 1;
+            prefix.Version = 1;
         }
-        return this;
+        return prefix;
     }
 
     public byte[] bytes() {
@@ -3,13 +3,13 @@ package threads.lite.dag;
 
 import androidx.annotation.NonNull;
 
-import java.util.Arrays;
 import java.util.Objects;
 
-import threads.lite.IPFS;
 import threads.lite.cid.Builder;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
 import threads.lite.format.Node;
-import threads.lite.format.Reader;
+import threads.lite.utils.Chunker;
 import threads.lite.utils.Splitter;
 import threads.lite.utils.WriterStream;
 
@@ -17,7 +17,10 @@ public class Adder {
     @NonNull
     private final DagService dagService;
     public boolean RawLeaves;
+    public boolean Parallel = true;
+    public boolean BalancedLayout = false;
     public Builder builder;
+    public Chunker chunker = Chunker.DefaultSplitter();
 
     private Adder(@NonNull DagService dagService) {
         this.dagService = dagService;
@@ -29,28 +32,30 @@ public class Adder {
 
 
     public Node CreateEmptyDir() {
-        Directory dir = Directory.createDirectory();
+        Directory dir = Directory.createDirectory(dagService);
         dir.setCidBuilder(builder);
         Node fnd = dir.getNode();
         dagService.Add(fnd);
         return fnd;
     }
 
-    public Node AddLinkToDir(@NonNull Node dirNode, @NonNull String name, @NonNull Node link) {
-        Directory dir = Directory.createDirectoryFromNode(dirNode);
+    public Node AddLinkToDir(@NonNull Closeable closeable, @NonNull Node dirNode,
+                             @NonNull String name, @NonNull Node link) throws ClosedException {
+        Directory dir = Directory.createDirectoryFromNode(dagService, dirNode);
         Objects.requireNonNull(dir);
         dir.setCidBuilder(builder);
-        dir.addChild(name, link);
+        dir.addChild(closeable, name, link);
         Node fnd = dir.getNode();
         dagService.Add(fnd);
         return fnd;
     }
 
-    public Node RemoveChild(@NonNull Node dirNode, @NonNull String name) {
-        Directory dir = Directory.createDirectoryFromNode(dirNode);
+    public Node RemoveChild(@NonNull Closeable closeable, @NonNull Node dirNode,
+                            @NonNull String name) throws ClosedException {
+        Directory dir = Directory.createDirectoryFromNode(dagService, dirNode);
         Objects.requireNonNull(dir);
         dir.setCidBuilder(builder);
-        dir.removeChild(name);
+        dir.removeChild(closeable, name);
         Node fnd = dir.getNode();
         dagService.Add(fnd);
         return fnd;
@@ -60,38 +65,20 @@ public class Adder {
     @NonNull
     public Node AddReader(@NonNull final WriterStream reader) {
 
-        Splitter splitter = new Splitter() {
-
-            @Override
-            public Reader Reader() {
-                return reader;
-            }
-
-            @Override
-            public byte[] NextBytes() {
-
-                int size = IPFS.CHUNK_SIZE;
-                byte[] buf = new byte[size];
-                int read = reader.read(buf);
-                if (read < 0) {
-                    return null;
-                } else if (read < size) {
-                    return Arrays.copyOfRange(buf, 0, read);
-                } else {
-                    return buf;
-                }
-            }
-
-            @Override
-            public boolean Done() {
-                return reader.done();
-            }
-        };
+        Splitter splitter = chunker.NewSplitter(reader);
 
+        // the balanced layout starts with a File leaf, the trickle layout with a Raw one
         DagBuilderHelper db = new DagBuilderHelper(
-                dagService, builder, splitter, RawLeaves);
-
-        return Trickle.Layout(db);
+                dagService, builder, splitter, RawLeaves, Parallel, BalancedLayout ?
+                unixfs.pb.Unixfs.Data.DataType.File : unixfs.pb.Unixfs.Data.DataType.Raw);
+        try {
+            if (BalancedLayout) {
+                return Balanced.Layout(db);
+            }
+            return Trickle.Layout(db);
+        } finally {
+            db.Close();
+        }
     }
 
 }
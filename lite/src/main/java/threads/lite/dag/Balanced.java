@@ -0,0 +1,71 @@
+package threads.lite.dag;
+
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+import threads.lite.IPFS;
+import threads.lite.format.Node;
+
+// Balanced layout (see go-ipfs importer/balanced): all leaves are on the same depth,
+// so a seek fetches one node per level. The first leaf is the root of a single chunk
+// file, each time the DAG of a given depth is full it becomes the first child of a
+// new root with depth + 1.
+public class Balanced {
+
+    public static Node Layout(@NonNull DagBuilderHelper db) {
+        if (!db.PrepareNext()) {
+            // No data, return just an empty node.
+            Node root = db.NewEmptyLeafNode(unixfs.pb.Unixfs.Data.DataType.File);
+            db.Add(root);
+            return root;
+        }
+
+        Pair<Node, Integer> leaf = db.NewLeafDataNode(unixfs.pb.Unixfs.Data.DataType.File);
+        Objects.requireNonNull(leaf);
+        Node root = leaf.first;
+        long fileSize = leaf.second;
+
+        for (int depth = 1; db.PrepareNext(); depth++) {
+            // Add the old root as a child of the new root.
+            DagBuilderHelper.FSNodeOverDag newRoot =
+                    db.NewFSNodeOverDag(unixfs.pb.Unixfs.Data.DataType.File);
+            newRoot.AddChild(root, fileSize, db);
+
+            Pair<Node, Long> result = fillNodeRec(db, newRoot, depth);
+            root = result.first;
+            fileSize = result.second;
+        }
+        db.Add(root);
+        return root;
+    }
+
+    private static Pair<Node, Long> fillNodeRec(@NonNull DagBuilderHelper db,
+                                                @Nullable DagBuilderHelper.FSNodeOverDag node,
+                                                int depth) {
+        if (depth < 1) {
+            throw new RuntimeException("attempt to fillNode at depth < 1");
+        }
+        if (node == null) {
+            node = db.NewFSNodeOverDag(unixfs.pb.Unixfs.Data.DataType.File);
+        }
+
+        while (node.NumChildren() < IPFS.LINKS_PER_BLOCK && db.PrepareNext()) {
+            if (depth == 1) {
+                Pair<Node, Integer> leaf = db.NewLeafDataNode(
+                        unixfs.pb.Unixfs.Data.DataType.Raw);
+                Objects.requireNonNull(leaf);
+                node.AddChild(leaf.first, leaf.second, db);
+            } else {
+                Pair<Node, Long> child = fillNodeRec(db, null, depth - 1);
+                node.AddChild(child.first, child.second, db);
+            }
+        }
+        long nodeFileSize = node.FileSize();
+        Node filledNode = node.Commit();
+        return Pair.create(filledNode, nodeFileSize);
+    }
+}
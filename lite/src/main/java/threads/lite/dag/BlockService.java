@@ -34,6 +34,11 @@ public interface BlockService extends BlockGetter {
                 bs.putBlock(block);
             }
 
+            @Override
+            public void addBlocks(@NonNull List<Block> blocks) {
+                bs.putBlocks(blocks);
+            }
+
             @Override
             public void preload(@NonNull Closeable closeable, @NonNull List<Cid> cids) {
                 List<Cid> preload = new ArrayList<>();
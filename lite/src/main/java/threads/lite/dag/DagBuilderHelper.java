@@ -5,7 +5,21 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import threads.lite.IPFS;
+import threads.lite.LogUtils;
 import threads.lite.cid.Builder;
 import threads.lite.format.Node;
 import threads.lite.format.ProtoNode;
@@ -13,21 +27,61 @@ import threads.lite.format.RawNode;
 import threads.lite.utils.Splitter;
 
 
+// In parallel mode the import is a pipeline: a reader takes the chunks from the
+// splitter, the leaves are encoded and hashed and handed over in chunk order to the
+// layout (so the DAG is the same as in sequential mode), the nodes of the layout are
+// written in batches by a writer. The readers, hashers and writers are pools shared by
+// all imports, a folder upload does not start threads per file.
 public class DagBuilderHelper {
+    private static final String TAG = DagBuilderHelper.class.getSimpleName();
+    private static final ExecutorService READERS = Executors.newFixedThreadPool(
+            IPFS.IMPORT_READ_THREADS);
+    private static final ExecutorService HASHERS = Executors.newFixedThreadPool(
+            IPFS.IMPORT_THREADS);
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(
+            IPFS.IMPORT_WRITE_THREADS);
     private final DagService dagService;
     private final Builder builder;
     private final Splitter splitter;
     private final boolean rawLeaves;
+    private final boolean parallel;
+    @NonNull
+    private final unixfs.pb.Unixfs.Data.DataType firstLeafType;
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(IPFS.IMPORT_QUEUE_SIZE);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Semaphore writes = new Semaphore(IPFS.IMPORT_WRITE_QUEUE_SIZE);
+    private final List<Node> batch = new ArrayList<>();
+    private boolean done = false;
+    @Nullable
+    private Leaf pending; // chunk read ahead by PrepareNext
 
 
     public DagBuilderHelper(@NonNull DagService dagService,
                             @NonNull Builder builder,
                             @NonNull Splitter splitter,
                             boolean rawLeaves) {
+        this(dagService, builder, splitter, rawLeaves, false,
+                unixfs.pb.Unixfs.Data.DataType.Raw);
+    }
+
+    // the first leaf is prepared as firstLeafType (the balanced layout asks for a File
+    // leaf, it is the root of a single chunk file), all other leaves as Raw
+    public DagBuilderHelper(@NonNull DagService dagService,
+                            @NonNull Builder builder,
+                            @NonNull Splitter splitter,
+                            boolean rawLeaves,
+                            boolean parallel,
+                            @NonNull unixfs.pb.Unixfs.Data.DataType firstLeafType) {
         this.dagService = dagService;
         this.builder = builder;
         this.splitter = splitter;
         this.rawLeaves = rawLeaves;
+        this.parallel = parallel;
+        this.firstLeafType = firstLeafType;
+        if (parallel) {
+            READERS.execute(this::read);
+        }
     }
 
 
@@ -38,13 +92,43 @@ public class DagBuilderHelper {
     @Nullable
     public Pair<Node, Integer> NewLeafDataNode(@NonNull unixfs.pb.Unixfs.Data.DataType dataType) {
 
-        byte[] fileData = Next();
-        if (fileData != null) {
-            int dataSize = fileData.length;
+        Leaf leaf = pending != null ? pending : NextData();
+        pending = null;
+        if (leaf == null) {
+            return null;
+        }
+        // raw leaves do not depend on the type
+        if (leaf.node != null && (rawLeaves || dataType == leaf.type)) {
+            return Pair.create(leaf.node, leaf.data.length);
+        }
+        return Pair.create(NewLeafNode(leaf.data, dataType), leaf.data.length);
+    }
+
+    // a leaf without data, the root of an empty file
+    public Node NewEmptyLeafNode(@NonNull unixfs.pb.Unixfs.Data.DataType fsNodeType) {
+        if (rawLeaves) {
+            return RawNode.NewRawNodeWPrefix(new byte[0], builder);
+        }
+        return NewFSNodeOverDag(fsNodeType).Commit();
+    }
 
-            Node node = NewLeafNode(fileData, dataType);
+    // Reads the next chunk ahead (like prepareNext in go-ipfs), returns false when there is
+    // no more data. Unlike Done, the result is exact right after the last chunk.
+    public boolean PrepareNext() {
+        while (pending == null && !Done()) {
+            pending = NextData();
+        }
+        return pending != null;
+    }
 
-            return Pair.create(node, dataSize);
+    @Nullable
+    private Leaf NextData() {
+        if (parallel) {
+            return NextLeaf();
+        }
+        byte[] fileData = Next();
+        if (fileData != null) {
+            return new Leaf(null, unixfs.pb.Unixfs.Data.DataType.Raw, fileData);
         }
         return null;
     }
@@ -73,6 +157,74 @@ public class DagBuilderHelper {
         return splitter.NextBytes();
     }
 
+    // reader stage, runs until the splitter is exhausted or the helper is closed
+    private void read() {
+        try {
+            unixfs.pb.Unixfs.Data.DataType type = firstLeafType;
+            while (!closed.get()) {
+                byte[] data = splitter.NextBytes();
+                if (data == null) {
+                    offer(new Chunk(null, true));
+                    return;
+                }
+                unixfs.pb.Unixfs.Data.DataType leafType = type;
+                CompletableFuture<Leaf> leaf = CompletableFuture.supplyAsync(() -> {
+                    Node node = NewLeafNode(data, leafType);
+                    node.getCid(); // encodes and hashes the node
+                    return new Leaf(node, leafType, data);
+                }, HASHERS);
+                type = unixfs.pb.Unixfs.Data.DataType.Raw;
+                boolean last = splitter.Done();
+                offer(new Chunk(leaf, last));
+                if (last) {
+                    return;
+                }
+            }
+        } catch (Throwable throwable) {
+            CompletableFuture<Leaf> leaf = new CompletableFuture<>();
+            leaf.completeExceptionally(throwable);
+            try {
+                offer(new Chunk(leaf, true));
+            } catch (InterruptedException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    private void offer(@NonNull Chunk chunk) throws InterruptedException {
+        while (!closed.get()) {
+            if (chunks.offer(chunk, IPFS.BITSWAP_TICK, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    @Nullable
+    private Leaf NextLeaf() {
+        if (done) {
+            return null;
+        }
+        try {
+            Chunk chunk = chunks.take();
+            if (chunk.leaf == null) {
+                done = true;
+                return null;
+            }
+            if (chunk.last) {
+                done = true;
+            }
+            return chunk.leaf.join();
+        } catch (InterruptedException interruptedException) {
+            throw new RuntimeException(interruptedException);
+        } catch (CompletionException completionException) {
+            Throwable cause = completionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
     public void FillNodeLayer(@NonNull FSNodeOverDag node) {
 
         while ((node.NumChildren() < IPFS.LINKS_PER_BLOCK) && !Done()) {
@@ -85,13 +237,105 @@ public class DagBuilderHelper {
     }
 
     public void Add(@NonNull Node node) {
-        dagService.Add(node);
+        if (parallel) {
+            batch.add(node);
+            if (batch.size() >= IPFS.IMPORT_BATCH_SIZE) {
+                Flush();
+            }
+        } else {
+            dagService.Add(node);
+        }
+    }
+
+    // hands the batch over to the writer stage
+    private void Flush() {
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new RuntimeException(throwable);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Node> nodes = new ArrayList<>(batch);
+        batch.clear();
+        try {
+            writes.acquire();
+        } catch (InterruptedException interruptedException) {
+            throw new RuntimeException(interruptedException);
+        }
+        WRITERS.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    dagService.AddMany(nodes);
+                }
+            } catch (Throwable error) {
+                failure.compareAndSet(null, error);
+            } finally {
+                writes.release();
+            }
+        });
+    }
+
+    // Stops the reader and waits until all nodes are written (all write permits are back)
+    public void Close() {
+        if (!parallel || closed.getAndSet(true)) {
+            return;
+        }
+        chunks.clear();
+        try {
+            Flush();
+        } finally {
+            try {
+                while (!writes.tryAcquire(IPFS.IMPORT_WRITE_QUEUE_SIZE,
+                        IPFS.CONNECT_TIMEOUT, TimeUnit.SECONDS)) {
+                    LogUtils.info(TAG, "Waiting for block writes");
+                }
+            } catch (InterruptedException interruptedException) {
+                throw new RuntimeException(interruptedException);
+            }
+        }
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new RuntimeException(throwable);
+        }
     }
 
     public boolean Done() {
+        if (pending != null) {
+            return false;
+        }
+        if (parallel) {
+            return done;
+        }
         return splitter.Done();
     }
 
+    private static class Leaf {
+        @Nullable
+        final Node node; // the prepared leaf (parallel mode only)
+        @NonNull
+        final unixfs.pb.Unixfs.Data.DataType type; // the type of the prepared leaf
+        final byte[] data;
+
+        Leaf(@Nullable Node node, @NonNull unixfs.pb.Unixfs.Data.DataType type,
+             @NonNull byte[] data) {
+            this.node = node;
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private static class Chunk {
+        @Nullable
+        final CompletableFuture<Leaf> leaf; // null marks the end of the data
+        final boolean last;
+
+        Chunk(@Nullable CompletableFuture<Leaf> leaf, boolean last) {
+            this.leaf = leaf;
+            this.last = last;
+        }
+    }
+
     public static class FSNodeOverDag {
         private final ProtoNode dag;
         private final FSNode file;
@@ -0,0 +1,417 @@
+package threads.lite.dag;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.bitswap.Interface;
+import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.core.Progress;
+import threads.lite.format.Block;
+import threads.lite.format.BlockStore;
+import threads.lite.format.Decoder;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+
+// Fetches a complete DAG (e.g. for a recursive pin or a download), breadth first with at
+// most concurrency blocks requested at the same time. A block which is not stored is
+// requested from the exchange, which puts the want into the want scheduler of bitswap,
+// so the wants of the concurrent requests are sent together. A cid is only fetched once,
+// shared parts of the DAG are not traversed again. Raw leaves are not decoded.
+//
+// The pending cids (queued or requested) are written to a journal file, so a fetch which
+// is interrupted (closed) continues with the pending cids instead of the root. The
+// journal is removed when the fetch is complete. A fetcher is used for a single fetch,
+// fetches with the same journal (the same root) run one after the other.
+//
+// The requests of all fetches run on a shared pool. A fetch returns when its requests are
+// done, the requests end with the fetch (closed or failed).
+public class DagFetcher {
+    private static final String TAG = DagFetcher.class.getSimpleName();
+    private static final ExecutorService REQUESTS = Executors.newFixedThreadPool(
+            IPFS.DAG_FETCH_THREADS);
+    private static final Set<File> JOURNALS = new HashSet<>(); // guarded by JOURNALS
+
+    @NonNull
+    private final BlockStore blockStore;
+    @NonNull
+    private final Interface exchange;
+    private final int concurrency;
+    @Nullable
+    private final File journal;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean finished = false; // the fetch returns, its requests end
+    // guarded by lock
+    private final ArrayDeque<Cid> queue = new ArrayDeque<>();
+    private final Set<Cid> pending = new HashSet<>();
+    private final Set<Cid> visited = new HashSet<>();
+    private int requested = 0;
+    private boolean missing = false;
+    @Nullable
+    private Throwable failure = null;
+    private long blocks = 0; // all blocks of the DAG, stored before or fetched
+    private long bytes = 0;
+    private long fetchedBlocks = 0;
+    private long fetchedBytes = 0;
+    private long size = -1; // the cumulative size of the root, when it is known
+    private int progress = 0;
+    private long start;
+    private long end = -1;
+
+    // the journal is optional, without it an interrupted fetch starts at the root again
+    public DagFetcher(@NonNull BlockStore blockStore, @NonNull Interface exchange,
+                      int concurrency, @Nullable File journal) {
+        this.blockStore = blockStore;
+        this.exchange = exchange;
+        this.concurrency = concurrency;
+        this.journal = journal;
+    }
+
+    @NonNull
+    public static File getJournal(@NonNull File directory, @NonNull Cid root) {
+        return new File(directory, root.String());
+    }
+
+    @NonNull
+    private static List<Cid> readJournal(@NonNull File file) throws IOException {
+        List<Cid> cids = new ArrayList<>();
+        try (DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+            int size = inputStream.readInt();
+            for (int i = 0; i < size; i++) {
+                byte[] bytes = new byte[inputStream.readUnsignedShort()];
+                inputStream.readFully(bytes);
+                cids.add(new Cid(bytes));
+            }
+        }
+        return cids;
+    }
+
+    // written to a temporary file first, a torn journal never replaces a complete one
+    private static void writeJournal(@NonNull File file, @NonNull List<Cid> cids)
+            throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(tmp);
+             DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+            dataOutputStream.writeInt(cids.size());
+            for (Cid cid : cids) {
+                byte[] bytes = cid.bytes();
+                dataOutputStream.writeShort(bytes.length);
+                dataOutputStream.write(bytes);
+            }
+            dataOutputStream.flush();
+            outputStream.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to write " + file.getAbsolutePath());
+        }
+    }
+
+    // returns true when the whole DAG is stored; false when blocks are missing (only
+    // possible with an exchange which does not wait for blocks, e.g. the local one)
+    public boolean fetch(@NonNull Closeable closeable, @NonNull Cid root) throws ClosedException {
+        return fetch(closeable, root, null);
+    }
+
+    // as above, the progress is the part of the cumulative size of the root which is
+    // stored (a resumed fetch counts from the resume)
+    public boolean fetch(@NonNull Progress progress, @NonNull Cid root) throws ClosedException {
+        return fetch(progress, root, progress);
+    }
+
+    private boolean fetch(@NonNull Closeable closeable, @NonNull Cid root,
+                          @Nullable Progress progress) throws ClosedException {
+        if (journal == null) {
+            return run(closeable, root, progress);
+        }
+        synchronized (JOURNALS) {
+            while (!JOURNALS.add(journal)) {
+                if (closeable.isClosed()) {
+                    throw new ClosedException();
+                }
+                try {
+                    JOURNALS.wait(IPFS.BLOCKER_CHECK_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ClosedException();
+                }
+            }
+        }
+        try {
+            return run(closeable, root, progress);
+        } finally {
+            synchronized (JOURNALS) {
+                JOURNALS.remove(journal);
+                JOURNALS.notifyAll();
+            }
+        }
+    }
+
+    private boolean run(@NonNull Closeable closeable, @NonNull Cid root,
+                        @Nullable Progress progress) throws ClosedException {
+        List<Cid> cids = new ArrayList<>();
+        if (journal != null && journal.exists()) {
+            try {
+                cids = readJournal(journal);
+                LogUtils.info(TAG, "Fetch " + root.String() + " resumes " + cids.size());
+            } catch (Throwable throwable) {
+                LogUtils.error(TAG, throwable);
+                cids.clear();
+            }
+        }
+        if (cids.isEmpty()) {
+            cids.add(root);
+        } else if (progress != null) {
+            // the root is not requested again
+            Block block = blockStore.getBlock(root);
+            if (block != null) {
+                size = size(root, block);
+            }
+        }
+
+        Closeable requests = () -> closeable.isClosed() || finished;
+        lock.lock();
+        try {
+            start = System.currentTimeMillis();
+            for (Cid cid : cids) {
+                if (visited.add(cid)) {
+                    queue.add(cid);
+                    pending.add(cid);
+                }
+            }
+            long saved = start;
+            while (true) {
+                if (closeable.isClosed()) {
+                    throw new ClosedException();
+                }
+                if (failure != null) {
+                    throw new RuntimeException(failure);
+                }
+                if (queue.isEmpty() && requested == 0) {
+                    break;
+                }
+                if (!queue.isEmpty() && requested < concurrency) {
+                    Cid cid = queue.poll();
+                    requested++;
+                    REQUESTS.execute(() -> request(requests, cid, cid.equals(root)));
+                    continue;
+                }
+                if (progress != null && progress.doProgress()) {
+                    progress(progress);
+                }
+                long now = System.currentTimeMillis();
+                if (now - saved >= IPFS.DAG_FETCH_JOURNAL_INTERVAL) {
+                    saved = now;
+                    save();
+                    LogUtils.info(TAG, "Fetch " + root.String() + " " + this);
+                }
+                try {
+                    changed.await(IPFS.BLOCKER_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ClosedException();
+                }
+            }
+            end = System.currentTimeMillis();
+        } finally {
+            try {
+                finished = true;
+                while (requested > 0) {
+                    changed.awaitUninterruptibly();
+                }
+                if (end < 0 || missing) {
+                    save();
+                } else if (journal != null && journal.exists() && !journal.delete()) {
+                    LogUtils.error(TAG, "Failed to delete " + journal.getAbsolutePath());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (progress != null && !missing) {
+            progress.setProgress(100);
+        }
+        LogUtils.info(TAG, "Fetch " + root.String() + " done " + this);
+        return !missing;
+    }
+
+    private static long size(@NonNull Cid cid, @NonNull Block block) {
+        if (cid.getType() == Cid.Raw) {
+            return block.getRawData().length;
+        }
+        return Decoder.Decode(block).size();
+    }
+
+    // the caller holds the lock
+    private void progress(@NonNull Progress progress) {
+        if (size > 0) {
+            int percent = (int) Math.min(99, (bytes * 100.0f) / size);
+            if (this.progress < percent) {
+                this.progress = percent;
+                progress.setProgress(percent);
+            }
+        }
+    }
+
+    // the caller holds the lock
+    private void save() {
+        if (journal != null) {
+            try {
+                writeJournal(journal, new ArrayList<>(pending));
+            } catch (Throwable throwable) {
+                LogUtils.error(TAG, throwable);
+            }
+        }
+    }
+
+    private void request(@NonNull Closeable closeable, @NonNull Cid cid, boolean root) {
+        try {
+            if (closeable.isClosed()) {
+                throw new ClosedException();
+            }
+            Block block = blockStore.getBlock(cid);
+            boolean fetched = false;
+            if (block == null) {
+                block = exchange.getBlock(closeable, cid, root);
+                fetched = block != null;
+            }
+            List<Cid> links = new ArrayList<>();
+            if (block != null && cid.getType() != Cid.Raw) {
+                for (Link link : Decoder.Decode(block).getLinks()) {
+                    links.add(link.getCid());
+                }
+            }
+            long rootSize = block != null && root ? size(cid, block) : -1;
+            lock.lock();
+            try {
+                requested--;
+                if (block == null) {
+                    missing = true; // remains pending
+                } else {
+                    // the links are pending before the cid is done (see save)
+                    for (Cid link : links) {
+                        if (visited.add(link)) {
+                            queue.add(link);
+                            pending.add(link);
+                        }
+                    }
+                    pending.remove(cid);
+                    blocks++;
+                    bytes += block.getRawData().length;
+                    if (root) {
+                        size = rootSize;
+                    }
+                    if (fetched) {
+                        fetchedBlocks++;
+                        fetchedBytes += block.getRawData().length;
+                    }
+                }
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        } catch (Throwable throwable) {
+            lock.lock();
+            try {
+                requested--;
+                if (!(throwable instanceof ClosedException)) {
+                    failure = throwable;
+                }
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public long getBlocks() {
+        lock.lock();
+        try {
+            return blocks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFetchedBlocks() {
+        lock.lock();
+        try {
+            return fetchedBlocks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFetchedBytes() {
+        lock.lock();
+        try {
+            return fetchedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // fetched blocks per second
+    public double getBlockRate() {
+        lock.lock();
+        try {
+            return rate(fetchedBlocks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // fetched bytes per second
+    public double getByteRate() {
+        lock.lock();
+        try {
+            return rate(fetchedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the caller holds the lock
+    private double rate(long amount) {
+        long elapsed = (end < 0 ? System.currentTimeMillis() : end) - start;
+        return elapsed > 0 ? amount * 1000.0 / elapsed : 0.0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "DagFetcher{" +
+                    "blocks=" + blocks +
+                    ", fetchedBlocks=" + fetchedBlocks +
+                    ", fetchedBytes=" + fetchedBytes +
+                    ", pending=" + pending.size() +
+                    ", blocks/s=" + (long) rate(fetchedBlocks) +
+                    ", bytes/s=" + (long) rate(fetchedBytes) +
+                    '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -5,12 +5,16 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import threads.lite.IPFS;
@@ -35,14 +39,32 @@ public class DagReader {
     private final Visitor visitor;
     private final Walker dagWalker;
     private final NodeGetter nodeGetter;
-    private final Set<Cid> cids = new HashSet<>();
+    private final ReadAhead readAhead = new ReadAhead(
+            IPFS.READ_AHEAD_MIN, IPFS.READ_AHEAD_INITIAL, IPFS.READ_AHEAD_MAX);
+    // prefetched leaves which were not read yet
+    private final Map<Cid, Prefetch> inflight = new HashMap<>();
 
-    public DagReader(@NonNull Walker dagWalker, @NonNull NodeGetter nodeGetter, long size) {
-        this.dagWalker = dagWalker;
+    private DagReader(@NonNull Node node, @NonNull NodeGetter nodeGetter, long size) {
         this.nodeGetter = nodeGetter;
         this.size = size;
-        this.visitor = new Visitor(dagWalker.getRoot());
+        // all nodes of the walker are loaded through observe, so that the read-ahead
+        // window sees every leaf the reader gets and how long it had to wait for it
+        NodeGetter observer = new NodeGetter() {
+            @Nullable
+            @Override
+            public Node getNode(@NonNull Closeable closeable, @NonNull Cid cid, boolean root)
+                    throws ClosedException {
+                return observe(closeable, cid, root);
+            }
 
+            @Override
+            public void preload(@NonNull Closeable ctx, @NonNull List<Cid> cids) {
+                nodeGetter.preload(ctx, cids);
+            }
+        };
+        this.dagWalker = Walker.NewWalker(
+                NavigableIPLDNode.NewNavigableIPLDNode(node, observer));
+        this.visitor = new Visitor(dagWalker.getRoot());
     }
 
     public static DagReader create(@NonNull Node node, @NonNull NodeGetter serv) {
@@ -52,7 +74,7 @@ public class DagReader {
         if (node instanceof RawNode) {
             size = node.getData().length;
         } else if (node instanceof ProtoNode) {
-            FSNode fsNode = FSNode.createFSNodeFromBytes(node.getData());
+            FSNode fsNode = FSNode.extractFSNode(node);
 
             switch (fsNode.Type()) {
                 case Raw:
@@ -64,9 +86,30 @@ public class DagReader {
             throw new RuntimeException("type not supported");
         }
 
-        Walker dagWalker = Walker.NewWalker(NavigableIPLDNode.NewNavigableIPLDNode(node, serv));
-        return new DagReader(dagWalker, serv, size);
+        return new DagReader(node, serv, size);
+
+    }
+
+    @Nullable
+    private Node observe(@NonNull Closeable closeable, @NonNull Cid cid, boolean root)
+            throws ClosedException {
+        long start = System.nanoTime();
+        Node node = nodeGetter.getNode(closeable, cid, root);
+        long now = System.nanoTime();
+
+        Prefetch prefetch = inflight.remove(cid);
+        if (prefetch != null) {
+            prefetch.batch.done();
+        }
+        if (node != null && node.numLinks() == 0) {
+            readAhead.consumed(now, prefetch != null ? prefetch.issued : -1, now - start);
+        }
+        return node;
+    }
 
+    @NonNull
+    public ReadAhead getReadAhead() {
+        return readAhead;
     }
 
     public long getSize() {
@@ -77,11 +120,41 @@ public class DagReader {
         Pair<Stack<Stage>, Long> result = dagWalker.seek(closeable, offset);
         this.atomicLeft.set(result.second.intValue());
         this.visitor.reset(result.first);
+
+        // prefetches which are still in front of the reader are kept (e.g. the reader
+        // seeks forward within the current leaf), the others are cancelled
+        if (!inflight.isEmpty()) {
+            Set<Cid> ahead = new HashSet<>(lookahead(closeable, readAhead.getWindow()));
+            int cancelled = 0;
+            Iterator<Map.Entry<Cid, Prefetch>> iterator = inflight.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Cid, Prefetch> entry = iterator.next();
+                if (!ahead.contains(entry.getKey())) {
+                    iterator.remove();
+                    entry.getValue().batch.done();
+                    cancelled++;
+                }
+            }
+            readAhead.seek(cancelled);
+        } else {
+            readAhead.seek(0);
+        }
     }
 
     @Nullable
     public byte[] loadNextData(@NonNull Closeable closeable) throws ClosedException {
+        ByteBuffer buffer = loadNextBuffer(closeable);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
 
+    // the payload of the next leaf (from the seek position on), read-only and not copied
+    @Nullable
+    public ByteBuffer loadNextBuffer(@NonNull Closeable closeable) throws ClosedException {
 
         int left = atomicLeft.getAndSet(0);
         if (left > 0) {
@@ -89,11 +162,11 @@ public class DagReader {
 
             Node node = NavigableIPLDNode.extractIPLDNode(navigableNode);
 
-            if (node.getLinks().size() == 0) {
+            if (node.numLinks() == 0) {
 
-                byte[] data = FSNode.readUnixFSNodeData(node);
-
-                return Arrays.copyOfRange(data, left, data.length);
+                ByteBuffer data = FSNode.readUnixFSNodeBuffer(node);
+                data.position(left);
+                return data.slice();
             }
         }
 
@@ -104,41 +177,85 @@ public class DagReader {
             }
 
             Node node = NavigableIPLDNode.extractIPLDNode(visitedNode);
-            if (node.getLinks().size() > 0) {
+            if (node.numLinks() > 0) {
                 continue;
             }
 
-            return FSNode.readUnixFSNodeData(node);
+            return FSNode.readUnixFSNodeBuffer(node);
         }
 
     }
 
-    public void preloadData(@NonNull Closeable closeable) throws ClosedException {
-
-        List<Cid> preloads = new ArrayList<>();
+    // the next leaves in front of the reader
+    @NonNull
+    private List<Cid> lookahead(@NonNull Closeable closeable, int leaves) throws ClosedException {
+        List<Cid> result = new ArrayList<>();
         Seeker seeker = new Seeker();
         Stack<Stage> stack = visitor.copy();
-        int runs = 0;
-
-        int min = (cids.size() / IPFS.PRELOAD) + IPFS.PRELOAD_DIST;
-
-        int maxRuns = Math.min(min, IPFS.PRELOAD);
-
-        while (runs < maxRuns) {
+        while (result.size() < leaves) {
             Cid cid = seeker.next(closeable, stack);
             if (cid == null) {
                 break;
             }
-            if (!cids.contains(cid)) {
+            result.add(cid);
+        }
+        return result;
+    }
+
+    public void preloadData(@NonNull Closeable closeable) throws ClosedException {
+
+        int window = readAhead.getWindow();
+        if (inflight.size() >= window) {
+            return;
+        }
+
+        List<Cid> preloads = new ArrayList<>();
+        for (Cid cid : lookahead(closeable, window)) {
+            if (!inflight.containsKey(cid)) {
                 preloads.add(cid);
             }
-            runs++;
         }
 
-        if (preloads.size() >= IPFS.PRELOAD_DIST) {
-            cids.addAll(preloads);
-            nodeGetter.preload(closeable, preloads);
+        if (!preloads.isEmpty()) {
+            Batch batch = new Batch(preloads.size());
+            long issued = System.nanoTime();
+            for (Cid cid : preloads) {
+                inflight.put(cid, new Prefetch(issued, batch));
+            }
+            nodeGetter.preload(() -> closeable.isClosed() || batch.isCancelled(), preloads);
         }
 
     }
+
+    private static class Prefetch {
+        final long issued; // nanos
+        final Batch batch;
+
+        Prefetch(long issued, @NonNull Batch batch) {
+            this.issued = issued;
+            this.batch = batch;
+        }
+    }
+
+    // the leaves of one preload call, the call is cancelled when none of its leaves is
+    // in flight anymore (received or dropped by a seek)
+    private static class Batch {
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private int pending;
+
+        Batch(int pending) {
+            this.pending = pending;
+        }
+
+        void done() {
+            pending--;
+            if (pending == 0) {
+                cancelled.set(true);
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
 }
@@ -3,6 +3,7 @@ package threads.lite.dag;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import threads.lite.cid.Cid;
@@ -34,6 +35,11 @@ public interface DagService extends NodeGetter, NodeAdder {
             public void Add(@NonNull Node nd) {
                 // nothing to do here
             }
+
+            @Override
+            public void AddMany(@NonNull List<Node> nodes) {
+                // nothing to do here
+            }
         };
     }
 
@@ -59,6 +65,11 @@ public interface DagService extends NodeGetter, NodeAdder {
             public void Add(@NonNull Node nd) {
                 blockService.addBlock(nd);
             }
+
+            @Override
+            public void AddMany(@NonNull List<Node> nodes) {
+                blockService.addBlocks(new ArrayList<>(nodes));
+            }
         };
     }
 
@@ -3,7 +3,15 @@ package threads.lite.dag;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.List;
+import java.util.Objects;
+
+import threads.lite.IPFS;
 import threads.lite.cid.Builder;
+import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.format.Link;
 import threads.lite.format.Node;
 import threads.lite.format.ProtoNode;
 
@@ -17,18 +25,25 @@ public interface Directory {
         return Node.createNodeWithData(data);
     }
 
-    static Directory createDirectory() {
-        return new BasicDirectory(emptyDirNode());
+    static Directory createDirectory(@NonNull DagService dagService) {
+        return new DynamicDirectory(dagService, new BasicDirectory(emptyDirNode()));
     }
 
     @Nullable
-    static Directory createDirectoryFromNode(@NonNull Node node) {
+    static Directory createDirectoryFromNode(@NonNull DagService dagService, @NonNull Node node) {
+        if (!(node instanceof ProtoNode)) {
+            return null;
+        }
         ProtoNode protoNode = (ProtoNode) node;
-        FSNode fsNode = FSNode.createFSNodeFromBytes(protoNode.getData());
+        FSNode fsNode = FSNode.extractFSNode(protoNode);
 
-        if (fsNode.Type() == unixfs.pb.Unixfs.Data.DataType.Directory ||
-                fsNode.Type() == unixfs.pb.Unixfs.Data.DataType.HAMTShard) {
-            return new BasicDirectory((ProtoNode) protoNode.copy());
+        if (fsNode.Type() == unixfs.pb.Unixfs.Data.DataType.Directory) {
+            return new DynamicDirectory(dagService,
+                    new BasicDirectory((ProtoNode) protoNode.copy()));
+        }
+        if (fsNode.Type() == unixfs.pb.Unixfs.Data.DataType.HAMTShard) {
+            return new DynamicDirectory(dagService,
+                    new HAMTDirectory(HAMTShard.NewHamtFromDag(dagService, protoNode)));
         }
         return null;
     }
@@ -37,15 +52,32 @@ public interface Directory {
 
     Node getNode();
 
-    void addChild(@NonNull String name, @NonNull Node link);
+    void addChild(@NonNull Closeable closeable, @NonNull String name,
+                  @NonNull Node link) throws ClosedException;
+
+    void removeChild(@NonNull Closeable closeable, @NonNull String name) throws ClosedException;
 
-    void removeChild(@NonNull String name);
+    // the entries of the directory (for a sharded directory, all shards are loaded)
+    @NonNull
+    List<Link> getLinks(@NonNull Closeable closeable) throws ClosedException;
+
+    @Nullable
+    Link find(@NonNull Closeable closeable, @NonNull String name) throws ClosedException;
 
     class BasicDirectory implements Directory {
         private final ProtoNode protoNode;
+        // estimated size of the links, like go-unixfs: name and cid length
+        private long estimatedSize;
 
         BasicDirectory(@NonNull ProtoNode protoNode) {
             this.protoNode = protoNode;
+            for (Link link : protoNode.getLinks()) {
+                estimatedSize += linkSize(link.getName(), link.getCid());
+            }
+        }
+
+        private static long linkSize(@NonNull String name, @NonNull Cid cid) {
+            return name.length() + cid.bytes().length;
         }
 
         @Override
@@ -59,15 +91,155 @@ public interface Directory {
         }
 
         @Override
-        public void addChild(@NonNull String name, @NonNull Node link) {
-            protoNode.removeNodeLink(name);
+        public void addChild(@NonNull Closeable closeable, @NonNull String name,
+                             @NonNull Node link) {
+            removeChild(closeable, name);
             protoNode.addNodeLink(name, link);
+            estimatedSize += linkSize(name, link.getCid());
+        }
+
+        @Override
+        public void removeChild(@NonNull Closeable closeable, @NonNull String name) {
+            Link link = find(closeable, name);
+            if (link != null) {
+                protoNode.removeNodeLink(name);
+                estimatedSize -= linkSize(name, link.getCid());
+            }
+        }
+
+        @NonNull
+        @Override
+        public List<Link> getLinks(@NonNull Closeable closeable) {
+            return protoNode.getLinks();
+        }
+
+        @Nullable
+        @Override
+        public Link find(@NonNull Closeable closeable, @NonNull String name) {
+            for (int i = 0; i < protoNode.numLinks(); i++) {
+                Link link = protoNode.getLink(i);
+                if (Objects.equals(link.getName(), name)) {
+                    return link;
+                }
+            }
+            return null;
+        }
+
+        long getEstimatedSize() {
+            return estimatedSize;
+        }
+    }
+
+    class HAMTDirectory implements Directory {
+        private final HAMTShard shard;
+
+        HAMTDirectory(@NonNull HAMTShard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void setCidBuilder(@NonNull Builder cidBuilder) {
+            shard.setCidBuilder(cidBuilder);
+        }
+
+        @Override
+        public Node getNode() {
+            return shard.getNode();
+        }
+
+        @Override
+        public void addChild(@NonNull Closeable closeable, @NonNull String name,
+                             @NonNull Node link) throws ClosedException {
+            shard.Set(closeable, name, link);
+        }
+
+        @Override
+        public void removeChild(@NonNull Closeable closeable, @NonNull String name)
+                throws ClosedException {
+            shard.Remove(closeable, name);
+        }
+
+        @NonNull
+        @Override
+        public List<Link> getLinks(@NonNull Closeable closeable) throws ClosedException {
+            return shard.EnumLinks(closeable);
         }
 
+        @Nullable
         @Override
-        public void removeChild(@NonNull String name) {
-            protoNode.removeNodeLink(name);
+        public Link find(@NonNull Closeable closeable, @NonNull String name) throws ClosedException {
+            return shard.Find(closeable, name);
         }
     }
 
+    // switches a basic directory to a sharded directory, when it becomes too large
+    // for a single block (like go-unixfs, it does not switch back)
+    class DynamicDirectory implements Directory {
+        private final DagService dagService;
+        private Directory directory;
+        @Nullable
+        private Builder builder;
+
+        DynamicDirectory(@NonNull DagService dagService, @NonNull Directory directory) {
+            this.dagService = dagService;
+            this.directory = directory;
+        }
+
+        @Override
+        public void setCidBuilder(@NonNull Builder cidBuilder) {
+            builder = cidBuilder;
+            directory.setCidBuilder(cidBuilder);
+        }
+
+        @Override
+        public Node getNode() {
+            return directory.getNode();
+        }
+
+        @Override
+        public void addChild(@NonNull Closeable closeable, @NonNull String name,
+                             @NonNull Node link) throws ClosedException {
+            directory.addChild(closeable, name, link);
+            if (directory instanceof BasicDirectory &&
+                    ((BasicDirectory) directory).getEstimatedSize() > IPFS.HAMT_SHARDING_SIZE) {
+                directory = switchToSharding(closeable, (BasicDirectory) directory);
+            }
+        }
+
+        @NonNull
+        private Directory switchToSharding(@NonNull Closeable closeable,
+                                           @NonNull BasicDirectory basicDirectory)
+                throws ClosedException {
+            HAMTShard shard = HAMTShard.NewShard(dagService, HAMTShard.DefaultShardWidth);
+            if (builder != null) {
+                shard.setCidBuilder(builder);
+            }
+            List<Link> links = basicDirectory.getLinks(closeable);
+            for (Link link : links) {
+                if (closeable.isClosed()) {
+                    throw new ClosedException();
+                }
+                shard.SetLink(closeable, link.getName(), link);
+            }
+            return new HAMTDirectory(shard);
+        }
+
+        @Override
+        public void removeChild(@NonNull Closeable closeable, @NonNull String name)
+                throws ClosedException {
+            directory.removeChild(closeable, name);
+        }
+
+        @NonNull
+        @Override
+        public List<Link> getLinks(@NonNull Closeable closeable) throws ClosedException {
+            return directory.getLinks(closeable);
+        }
+
+        @Nullable
+        @Override
+        public Link find(@NonNull Closeable closeable, @NonNull String name) throws ClosedException {
+            return directory.find(closeable, name);
+        }
+    }
 }
@@ -4,6 +4,8 @@ import androidx.annotation.NonNull;
 
 import com.google.protobuf.ByteString;
 
+import java.nio.ByteBuffer;
+
 import threads.lite.format.Node;
 import threads.lite.format.ProtoNode;
 import threads.lite.format.RawNode;
@@ -25,6 +27,14 @@ public class FSNode {
         }
     }
 
+    private FSNode(@NonNull ByteBuffer content) {
+        try {
+            data = unixfs.pb.Unixfs.Data.parseFrom(content);
+        } catch (Throwable throwable) {
+            throw new RuntimeException();
+        }
+    }
+
 
     public static FSNode createFSNode(@NonNull unixfs.pb.Unixfs.Data.DataType dataType) {
         return new FSNode(dataType);
@@ -34,10 +44,15 @@ public class FSNode {
         return new FSNode(data);
     }
 
+    // the data of a decoded node is parsed in place, it is not copied out of the node first
+    public static FSNode createFSNodeFromBuffer(@NonNull ByteBuffer data) {
+        return new FSNode(data);
+    }
+
     public static byte[] readUnixFSNodeData(@NonNull Node node) {
 
         if (node instanceof ProtoNode) {
-            FSNode fsNode = createFSNodeFromBytes(node.getData());
+            FSNode fsNode = extractFSNode(node);
             switch (fsNode.Type()) {
                 case File:
                 case Raw:
@@ -54,9 +69,31 @@ public class FSNode {
 
     }
 
+    // the payload of a leaf as read-only buffer, without copying it
+    @NonNull
+    public static ByteBuffer readUnixFSNodeBuffer(@NonNull Node node) {
+
+        if (node instanceof ProtoNode) {
+            FSNode fsNode = extractFSNode(node);
+            switch (fsNode.Type()) {
+                case File:
+                case Raw:
+                    return fsNode.getDataBuffer();
+                default:
+                    throw new RuntimeException("found %s node in unexpected place " +
+                            fsNode.Type().name());
+            }
+        } else if (node instanceof RawNode) {
+            return ByteBuffer.wrap(node.getRawData()).asReadOnlyBuffer();
+        } else {
+            throw new RuntimeException("not supported type");
+        }
+
+    }
+
     public static FSNode extractFSNode(@NonNull Node node) {
         if (node instanceof ProtoNode) {
-            return createFSNodeFromBytes(node.getData());
+            return createFSNodeFromBuffer(((ProtoNode) node).getDataBuffer());
         }
         throw new RuntimeException("expected a ProtoNode as internal node");
 
@@ -71,6 +108,11 @@ public class FSNode {
         return data.getData().toByteArray();
     }
 
+    @NonNull
+    public ByteBuffer getDataBuffer() {
+        return data.getData().asReadOnlyByteBuffer().slice();
+    }
+
     public void setData(byte[] bytes) {
         updateFileSize(bytes.length - getData().length);
         data = data.toBuilder().setData(ByteString.copyFrom(bytes)).build();
@@ -105,6 +147,10 @@ public class FSNode {
     public long fanout() {
         return data.getFanout();
     }
+
+    public long hashType() {
+        return data.getHashType();
+    }
 }
 
 
@@ -0,0 +1,338 @@
+package threads.lite.dag;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+import threads.lite.cid.Builder;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+import threads.lite.format.ProtoNode;
+
+// HAMT sharded directory, compatible with go-unixfs (hamt package).
+// Every shard is a node with up to fanout links; the position of an entry is given
+// by the (murmur3) hash of its name, bitWidth bits per level. A link to a child shard
+// is named by the index only (hex, padded), a link to an entry by the index followed
+// by the name of the entry. Insert, lookup and remove only load and store the shards
+// on the path of the hash, O(log n).
+public class HAMTShard {
+    public static final long HashMurmur3 = 0x22;
+    public static final int DefaultShardWidth = 256;
+
+    @NonNull
+    private final DagService dagService;
+    private final int tableSize;
+    private final int bitWidth;
+    private final int maxPadLen;
+    // set bits are the indices which have a link, the links are in index order
+    private final BitSet bitfield;
+    private final List<Link> links;
+    @Nullable
+    private Builder builder;
+
+    private HAMTShard(@NonNull DagService dagService, int tableSize,
+                      @NonNull BitSet bitfield, @NonNull List<Link> links) {
+        if (tableSize <= 0 || Integer.bitCount(tableSize) != 1) {
+            throw new RuntimeException("hamt size should be a power of two");
+        }
+        this.dagService = dagService;
+        this.tableSize = tableSize;
+        this.bitWidth = Integer.numberOfTrailingZeros(tableSize);
+        this.maxPadLen = String.format(Locale.US, "%X", tableSize - 1).length();
+        this.bitfield = bitfield;
+        this.links = links;
+    }
+
+    public static HAMTShard NewShard(@NonNull DagService dagService, int size) {
+        return new HAMTShard(dagService, size, new BitSet(size), new ArrayList<>());
+    }
+
+    public static boolean IsShard(@NonNull Node node) {
+        if (node instanceof ProtoNode) {
+            try {
+                return FSNode.extractFSNode(node).Type() == unixfs.pb.Unixfs.Data.DataType.HAMTShard;
+            } catch (Throwable ignore) {
+                // not a unixfs node
+            }
+        }
+        return false;
+    }
+
+    public static HAMTShard NewHamtFromDag(@NonNull DagService dagService, @NonNull Node node) {
+        FSNode fsNode = FSNode.extractFSNode(node);
+        if (fsNode.Type() != unixfs.pb.Unixfs.Data.DataType.HAMTShard) {
+            throw new RuntimeException("node was not a dir shard");
+        }
+        if (fsNode.hashType() != HashMurmur3) {
+            throw new RuntimeException("only murmur3 supported as hash function");
+        }
+        int size = (int) fsNode.fanout();
+        HAMTShard shard = new HAMTShard(dagService, size, bitfieldFromBytes(size, fsNode.getData()),
+                node.getLinks());
+        shard.builder = ((ProtoNode) node).getCidBuilder();
+        return shard;
+    }
+
+    // the bitfield is stored as a big endian number (go-bitfield)
+    private static BitSet bitfieldFromBytes(int size, byte[] bytes) {
+        BitSet bitfield = new BitSet(size);
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[bytes.length - 1 - i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((value & (1 << bit)) != 0) {
+                    bitfield.set(i * 8 + bit);
+                }
+            }
+        }
+        return bitfield;
+    }
+
+    private byte[] bitfieldBytes() {
+        byte[] bytes = new byte[Math.max(1, tableSize / 8)];
+        for (int i = bitfield.nextSetBit(0); i >= 0; i = bitfield.nextSetBit(i + 1)) {
+            bytes[bytes.length - 1 - i / 8] |= 1 << (i % 8);
+        }
+        return bytes;
+    }
+
+    // first 64 bits of the 128 bit x64 murmur3 hash, big endian (as go-unixfs)
+    static byte[] hash(@NonNull String name) {
+        byte[] hash = Hashing.murmur3_128().hashBytes(name.getBytes(StandardCharsets.UTF_8)).asBytes();
+        byte[] result = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            result[i] = hash[7 - i];
+        }
+        return result;
+    }
+
+    public void setCidBuilder(@Nullable Builder builder) {
+        this.builder = builder;
+    }
+
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    // Node serializes the shard (child shards are stored already)
+    @NonNull
+    public ProtoNode getNode() {
+        byte[] data = unixfs.pb.Unixfs.Data.newBuilder()
+                .setType(unixfs.pb.Unixfs.Data.DataType.HAMTShard)
+                .setData(ByteString.copyFrom(bitfieldBytes()))
+                .setHashType(HashMurmur3)
+                .setFanout(tableSize)
+                .build().toByteArray();
+        ProtoNode node = Node.createNodeWithData(data);
+        node.setCidBuilder(builder);
+        for (Link link : links) {
+            node.addRawLink(link);
+        }
+        return node;
+    }
+
+    public void Set(@NonNull Closeable closeable, @NonNull String name, @NonNull Node node)
+            throws ClosedException {
+        SetLink(closeable, name, Link.createLink(node, name));
+    }
+
+    public void SetLink(@NonNull Closeable closeable, @NonNull String name, @NonNull Link link)
+            throws ClosedException {
+        modifyValue(closeable, new HashBits(hash(name)), name, link);
+    }
+
+    public void Remove(@NonNull Closeable closeable, @NonNull String name) throws ClosedException {
+        modifyValue(closeable, new HashBits(hash(name)), name, null);
+    }
+
+    // Find returns the link of the entry (with the name of the entry), loading only
+    // the shards on the path of the hash
+    @Nullable
+    public Link Find(@NonNull Closeable closeable, @NonNull String name) throws ClosedException {
+        HashBits hash = new HashBits(hash(name));
+        HAMTShard shard = this;
+        while (true) {
+            int index = hash.next(shard.bitWidth);
+            if (!shard.bitfield.get(index)) {
+                return null;
+            }
+            Link link = shard.links.get(shard.position(index));
+            if (shard.isShardLink(link)) {
+                shard = shard.loadChild(closeable, link);
+            } else if (shard.entryName(link).equals(name)) {
+                return Link.create(link.getCid().bytes(), name, link.getSize());
+            } else {
+                return null;
+            }
+        }
+    }
+
+    // EnumLinks returns all entries (with the names of the entries), in hash order
+    @NonNull
+    public List<Link> EnumLinks(@NonNull Closeable closeable) throws ClosedException {
+        List<Link> result = new ArrayList<>();
+        enumLinks(closeable, result);
+        return result;
+    }
+
+    private void enumLinks(@NonNull Closeable closeable, @NonNull List<Link> result)
+            throws ClosedException {
+        for (Link link : links) {
+            if (closeable.isClosed()) {
+                throw new ClosedException();
+            }
+            if (isShardLink(link)) {
+                loadChild(closeable, link).enumLinks(closeable, result);
+            } else {
+                result.add(Link.create(link.getCid().bytes(), entryName(link), link.getSize()));
+            }
+        }
+    }
+
+    // returns true when the shard is modified; value null removes the entry
+    private boolean modifyValue(@NonNull Closeable closeable, @NonNull HashBits hash,
+                                @NonNull String name, @Nullable Link value) throws ClosedException {
+        int index = hash.next(bitWidth);
+        int position = position(index);
+
+        if (!bitfield.get(index)) {
+            if (value == null) {
+                return false;
+            }
+            bitfield.set(index);
+            links.add(position, Link.create(value.getCid().bytes(),
+                    linkNamePrefix(index) + name, value.getSize()));
+            return true;
+        }
+
+        Link link = links.get(position);
+        if (isShardLink(link)) {
+            HAMTShard child = loadChild(closeable, link);
+            if (!child.modifyValue(closeable, hash, name, value)) {
+                return false;
+            }
+            if (value == null) {
+                // collapse a child shard which has no or a single entry left
+                if (child.links.isEmpty()) {
+                    bitfield.clear(index);
+                    links.remove(position);
+                    return true;
+                }
+                if (child.links.size() == 1 && !child.isShardLink(child.links.get(0))) {
+                    Link single = child.links.get(0);
+                    links.set(position, Link.create(single.getCid().bytes(),
+                            linkNamePrefix(index) + child.entryName(single), single.getSize()));
+                    return true;
+                }
+            }
+            links.set(position, storeChild(child, index));
+            return true;
+        }
+
+        String existing = entryName(link);
+        if (existing.equals(name)) {
+            if (value == null) {
+                bitfield.clear(index);
+                links.remove(position);
+            } else {
+                links.set(position, Link.create(value.getCid().bytes(), link.getName(),
+                        value.getSize()));
+            }
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+
+        // two entries at the same index: move both to a new child shard
+        HAMTShard child = new HAMTShard(dagService, tableSize, new BitSet(tableSize),
+                new ArrayList<>());
+        child.builder = builder;
+        HashBits existingHash = new HashBits(hash(existing));
+        existingHash.skip(hash.consumed);
+        child.modifyValue(closeable, existingHash, existing,
+                Link.create(link.getCid().bytes(), existing, link.getSize()));
+        child.modifyValue(closeable, hash, name, value);
+        links.set(position, storeChild(child, index));
+        return true;
+    }
+
+    @NonNull
+    private Link storeChild(@NonNull HAMTShard child, int index) {
+        ProtoNode node = child.getNode();
+        dagService.Add(node);
+        return Link.createLink(node, linkNamePrefix(index));
+    }
+
+    @NonNull
+    private HAMTShard loadChild(@NonNull Closeable closeable, @NonNull Link link)
+            throws ClosedException {
+        Node node = dagService.getNode(closeable, link.getCid(), true);
+        Objects.requireNonNull(node);
+        HAMTShard child = NewHamtFromDag(dagService, node);
+        if (child.tableSize != tableSize) {
+            throw new RuntimeException("child shard has a different width");
+        }
+        child.builder = builder;
+        return child;
+    }
+
+    private int position(int index) {
+        return bitfield.get(0, index).cardinality();
+    }
+
+    private boolean isShardLink(@NonNull Link link) {
+        return link.getName().length() == maxPadLen;
+    }
+
+    @NonNull
+    private String entryName(@NonNull Link link) {
+        return link.getName().substring(maxPadLen);
+    }
+
+    @NonNull
+    private String linkNamePrefix(int index) {
+        StringBuilder prefix = new StringBuilder(String.format(Locale.US, "%X", index));
+        while (prefix.length() < maxPadLen) {
+            prefix.insert(0, '0');
+        }
+        return prefix.toString();
+    }
+
+    // consumes the bits of the hash, most significant first
+    private static class HashBits {
+        private final byte[] bytes;
+        private int consumed;
+
+        HashBits(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        void skip(int bits) {
+            consumed += bits;
+        }
+
+        int next(int bits) {
+            if (consumed + bits > bytes.length * 8) {
+                throw new RuntimeException("sharded directory too deep");
+            }
+            int value = 0;
+            for (int i = 0; i < bits; i++) {
+                int bit = consumed + i;
+                value = (value << 1) | ((bytes[bit / 8] >> (7 - bit % 8)) & 1);
+            }
+            consumed += bits;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package threads.lite.dag;
+
+import androidx.annotation.NonNull;
+
+import threads.lite.IPFS;
+
+// Sizes the read-ahead window of a DagReader (the number of leaves prefetched in front
+// of the reader). The target is the bandwidth-delay product: the time a block takes to
+// arrive divided by the time the consumer takes per leaf (both smoothed), plus a
+// headroom. Like a TCP window the window is doubled when the reader stalls (a leaf was
+// not there when needed) and halved when prefetched leaves are thrown away by a seek.
+// Otherwise it moves by one leaf per window towards the target.
+public class ReadAhead {
+    private static final double ALPHA = 0.125; // gain of the smoothed values (as for the TCP rtt)
+    private static final int HEADROOM = 2;
+
+    private final int min;
+    private final int max;
+    private int window;
+    private double latency = -1; // ms, smoothed arrival latency of a block
+    private double interval = -1; // ms, smoothed consumer time per leaf
+    private long last = -1; // nanos, time the last leaf was handed out
+    private int consumed = 0; // leaves since the last adjustment
+    private long stalls = 0;
+    private long stallTime = 0; // ms
+    private long cancelled = 0;
+
+    public ReadAhead(int min, int initial, int max) {
+        this.min = min;
+        this.max = max;
+        this.window = Math.max(min, Math.min(max, initial));
+    }
+
+    private static double smooth(double value, double sample) {
+        if (value < 0) {
+            return sample;
+        }
+        return value + ALPHA * (sample - value);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    // A leaf was handed out at now (nanos) after waiting for it (nanos). The issued time
+    // is the time its prefetch was sent, -1 when it was not prefetched.
+    public synchronized void consumed(long now, long issued, long waited) {
+        boolean stalled = millis(waited) > IPFS.READ_AHEAD_STALL;
+
+        if (issued >= 0) {
+            double sample = millis(now - issued);
+            // without a stall the block arrived earlier, the sample is only an upper bound
+            if (stalled || latency < 0 || sample < latency) {
+                latency = smooth(latency, sample);
+            }
+        } else if (stalled) {
+            latency = smooth(latency, millis(waited));
+        }
+
+        if (last >= 0) {
+            interval = smooth(interval, Math.max(0.0, millis(now - last - waited)));
+        }
+        last = now;
+
+        if (stalled) {
+            stalls++;
+            stallTime += (long) millis(waited);
+            window = Math.min(max, Math.max(window * 2, target()));
+            consumed = 0;
+        } else if (++consumed >= window) {
+            consumed = 0;
+            int target = target();
+            if (window > target) {
+                window--;
+            } else if (window < target) {
+                window++;
+            }
+        }
+    }
+
+    // a seek threw away prefetched leaves
+    public synchronized void seek(int leaves) {
+        last = -1;
+        consumed = 0;
+        if (leaves > 0) {
+            cancelled += leaves;
+            window = Math.max(min, window / 2);
+        }
+    }
+
+    private int target() {
+        if (latency < 0 || interval < 0) {
+            return window;
+        }
+        double leaves = latency / Math.max(interval, 0.01);
+        return (int) Math.max(min, Math.min(max, Math.ceil(leaves) + HEADROOM));
+    }
+
+    public synchronized int getWindow() {
+        return window;
+    }
+
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    public synchronized long getStallTime() {
+        return stallTime;
+    }
+
+    public synchronized long getCancelled() {
+        return cancelled;
+    }
+
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "ReadAhead{" +
+                "window=" + window +
+                ", latency=" + latency +
+                ", interval=" + interval +
+                ", stalls=" + stalls +
+                ", stallTime=" + stallTime +
+                ", cancelled=" + cancelled +
+                '}';
+    }
+}
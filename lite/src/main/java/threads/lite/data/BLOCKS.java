@@ -6,7 +6,14 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.room.Room;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+
+import threads.lite.IPFS;
+import threads.lite.cid.Cid;
 
 
 public class BLOCKS implements Storage {
@@ -42,16 +49,22 @@ public class BLOCKS implements Storage {
         return INSTANCE;
     }
 
+    @NonNull
+    private static String getId(@NonNull Cid cid) {
+        return Dshelp.cidToDsKey(cid).getKey();
+    }
+
     @Nullable
     @Override
-    public byte[] getData(@NonNull String id) {
-        Block block = getBlock(id);
+    public byte[] getData(@NonNull Cid cid) {
+        Block block = getBlock(getId(cid));
         if (block != null) {
             return block.getData();
         }
         return null;
     }
 
+    @Override
     public void clear() {
         getBlocksDatabase().clearAllTables();
     }
@@ -73,23 +86,91 @@ public class BLOCKS implements Storage {
         getBlocksDatabase().blockDao().insertBlock(block);
     }
 
-    public void deleteBlock(@NonNull String id) {
+    @Override
+    public void deleteBlock(@NonNull Cid cid) {
         //LogUtils.error(TAG, "deleteBlock " +  id);
-        getBlocksDatabase().blockDao().deleteBlock(id);
+        getBlocksDatabase().blockDao().deleteBlock(getId(cid));
     }
 
     @Override
-    public int sizeBlock(@NonNull String id) {
-        return (int) getBlockSize(id);
+    public int sizeBlock(@NonNull Cid cid) {
+        return (int) getBlockSize(getId(cid));
     }
 
-    public void insertBlock(@NonNull String id, @NonNull byte[] bytes) {
+    @Override
+    public void insertBlock(@NonNull Cid cid, @NonNull byte[] bytes) {
         //LogUtils.error(TAG, "insertBlock " +  id);
-        storeBlock(createBlock(id, bytes));
+        storeBlock(createBlock(getId(cid), bytes));
+    }
+
+    @Override
+    public void insertBlocks(@NonNull List<threads.lite.format.Block> blocks) {
+        List<Block> list = new ArrayList<>();
+        for (threads.lite.format.Block block : blocks) {
+            list.add(createBlock(getId(block.getCid()), block.getRawData()));
+        }
+        getBlocksDatabase().blockDao().insertBlocks(list);
+    }
+
+    @Override
+    public boolean hasBlock(@NonNull Cid cid) {
+        return getBlocksDatabase().blockDao().hasBlock(getId(cid));
+    }
+
+    @Override
+    public int numBlocks() {
+        return getBlocksDatabase().blockDao().numBlocks();
+    }
+
+    @NonNull
+    @Override
+    public byte[] getKey(@NonNull Cid cid) {
+        return getId(cid).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // pages through the ids in key order, a page is a short query (reads are not blocked)
+    @NonNull
+    @Override
+    public Iterator<byte[]> keys() {
+        return new Iterator<byte[]>() {
+            private List<String> page = new ArrayList<>();
+            private int position = 0;
+            private String after = "";
+            private boolean last = false;
+
+            @Override
+            public boolean hasNext() {
+                if (position == page.size() && !last) {
+                    page = getBlocksDatabase().blockDao().getIds(after, IPFS.GC_BATCH_SIZE);
+                    position = 0;
+                    last = page.size() < IPFS.GC_BATCH_SIZE;
+                    if (!page.isEmpty()) {
+                        after = page.get(page.size() - 1);
+                    }
+                }
+                return position < page.size();
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(position++).getBytes(StandardCharsets.US_ASCII);
+            }
+        };
     }
 
-    public boolean hasBlock(@NonNull String id) {
-        return getBlocksDatabase().blockDao().hasBlock(id);
+    @Override
+    public int deleteKey(@NonNull byte[] key) {
+        String id = new String(key, StandardCharsets.US_ASCII);
+        BlockDao blockDao = getBlocksDatabase().blockDao();
+        if (!blockDao.hasBlock(id)) {
+            return -1;
+        }
+        int size = (int) blockDao.getBlockSize(id);
+        blockDao.deleteBlock(id);
+        return size;
     }
 
     public long getBlockSize(@NonNull String id) {
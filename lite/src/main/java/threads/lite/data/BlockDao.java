@@ -13,6 +13,9 @@ public interface BlockDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertBlock(Block block);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertBlocks(List<Block> blocks);
+
     @Query("DELETE FROM Block WHERE id = :id")
     void deleteBlock(String id);
 
@@ -27,4 +30,10 @@ public interface BlockDao {
 
     @Query("SELECT * FROM Block")
     List<Block> getBlocks();
+
+    @Query("SELECT id FROM Block WHERE id > :after ORDER BY id LIMIT :limit")
+    List<String> getIds(String after, int limit);
+
+    @Query("SELECT COUNT(*) FROM Block")
+    int numBlocks();
 }
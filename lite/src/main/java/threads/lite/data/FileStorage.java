@@ -0,0 +1,633 @@
+package threads.lite.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.Cid;
+
+// Block storage on append-only segment files. A block is appended as a record to the
+// active segment, a delete appends a tombstone record. The in-memory index is keyed by the
+// raw multihash bytes and points to the live records. Segments are memory mapped, so a
+// block can be read without copying it (see getBuffer).
+//
+// Records are not forced to disk on every write, on open the segments are replayed to
+// rebuild the index and a torn record at the end of the last segment is truncated.
+// Sealed segments, which contain mostly deleted records, are rewritten by compact().
+//
+// Record layout: type (1) | key length (2) | data length (4) | crc32 of key and data (4) |
+// key | data
+public class FileStorage implements Storage {
+
+    private static final String TAG = FileStorage.class.getSimpleName();
+    private static final String SUFFIX = ".seg";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_SIZE = 11;
+    // the active segment is mapped again when it has grown by this amount
+    private static final long REMAP_SIZE = 4 * 1024 * 1024; // 4 MB
+    private static volatile FileStorage INSTANCE = null;
+
+    @NonNull
+    private final File directory;
+    private final long segmentSize;
+    private final ConcurrentHashMap<ByteBuffer, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    // readers hold the read lock, segments are only closed under the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    @NonNull
+    private Segment active; // guarded by this
+
+    private FileStorage(@NonNull File directory, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.active = recover();
+    }
+
+    @NonNull
+    public static FileStorage getInstance(@NonNull Context context) {
+
+        if (INSTANCE == null) {
+            synchronized (FileStorage.class) {
+                if (INSTANCE == null) {
+                    try {
+                        INSTANCE = open(new File(context.getFilesDir(),
+                                FileStorage.class.getSimpleName()), IPFS.SEGMENT_SIZE);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    @NonNull
+    public static FileStorage open(@NonNull File directory, long segmentSize) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory.getAbsolutePath());
+        }
+        return new FileStorage(directory, segmentSize);
+    }
+
+    // the multihash of a cid v1 follows the version and codec varints
+    @NonNull
+    private static ByteBuffer key(@NonNull Cid cid) {
+        byte[] bytes = cid.bytes();
+        if (cid.getVersion() == 0) {
+            return ByteBuffer.wrap(bytes);
+        }
+        int offset = skipVarint(bytes, skipVarint(bytes, 0));
+        return ByteBuffer.wrap(bytes, offset, bytes.length - offset).slice();
+    }
+
+    private static int skipVarint(@NonNull byte[] bytes, int offset) {
+        while (offset < bytes.length && (bytes[offset] & 0x80) != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+
+    private static int crc(@NonNull byte[] key, @NonNull byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(key);
+        crc32.update(data);
+        return (int) crc32.getValue();
+    }
+
+    private static int crc(@NonNull ByteBuffer buffer, int position, int length,
+                           @NonNull byte[] scratch) {
+        CRC32 crc32 = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.position(position);
+        while (length > 0) {
+            int read = Math.min(length, scratch.length);
+            data.get(scratch, 0, read);
+            crc32.update(scratch, 0, read);
+            length -= read;
+        }
+        return (int) crc32.getValue();
+    }
+
+    private static int segmentId(@NonNull File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @NonNull
+    private Segment recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        List<File> list = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (segmentId(file) >= 0) {
+                    list.add(file);
+                }
+            }
+        }
+        list.sort((o1, o2) -> Integer.compare(segmentId(o1), segmentId(o2)));
+
+        byte[] scratch = new byte[8192];
+        for (int i = 0; i < list.size(); i++) {
+            File file = list.get(i);
+            Segment segment = new Segment(segmentId(file), file);
+            segments.put(segment.id, segment);
+            replay(segment, i == list.size() - 1, scratch);
+        }
+        if (segments.isEmpty()) {
+            return createSegment(0);
+        }
+        Segment last = segments.lastEntry().getValue();
+        last.channel.position(last.size);
+        return last;
+    }
+
+    private void replay(@NonNull Segment segment, boolean last, @NonNull byte[] scratch)
+            throws IOException {
+
+        long size = segment.channel.size();
+        MappedByteBuffer map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        int position = 0;
+        while (position + HEADER_SIZE <= size) {
+            byte type = map.get(position);
+            int keyLength = map.getShort(position + 1) & 0xFFFF;
+            int length = map.getInt(position + 3);
+            int crc = map.getInt(position + 7);
+            if ((type != PUT && type != DELETE) || length < 0 ||
+                    position + HEADER_SIZE + keyLength + (long) length > size) {
+                break;
+            }
+            if (crc != crc(map, position + HEADER_SIZE, keyLength + length, scratch)) {
+                break;
+            }
+
+            byte[] key = new byte[keyLength];
+            ByteBuffer buffer = map.duplicate();
+            buffer.position(position + HEADER_SIZE);
+            buffer.get(key);
+
+            int record = HEADER_SIZE + keyLength + length;
+            if (type == PUT) {
+                release(index.put(ByteBuffer.wrap(key),
+                        new Location(segment.id, position, keyLength, length)));
+            } else {
+                release(index.remove(ByteBuffer.wrap(key)));
+                segment.garbage += record;
+            }
+            position += record;
+        }
+
+        if (position < size) {
+            if (last) {
+                LogUtils.error(TAG, "Truncate torn record " + segment.file.getName() +
+                        " at " + position);
+                segment.channel.truncate(position);
+                map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            } else {
+                LogUtils.error(TAG, "Corrupted record " + segment.file.getName() +
+                        " at " + position);
+            }
+        }
+        segment.size = position;
+        segment.mapped = map;
+    }
+
+    // the record of the location is not used anymore
+    private void release(@Nullable Location location) {
+        if (location != null) {
+            Segment segment = segments.get(location.segment);
+            if (segment != null) {
+                segment.garbage += location.record();
+            }
+        }
+    }
+
+    @NonNull
+    private Segment createSegment(int id) throws IOException {
+        File file = new File(directory, id + SUFFIX);
+        Segment segment = new Segment(id, file);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    // the caller holds the monitor
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active.map();
+        active = createSegment(active.id + 1);
+    }
+
+    // the caller holds the monitor
+    @NonNull
+    private Location append(byte type, @NonNull ByteBuffer key, @NonNull ByteBuffer data,
+                            int crc) throws IOException {
+        int keyLength = key.remaining();
+        int length = data.remaining();
+        long record = HEADER_SIZE + keyLength + (long) length;
+        if (active.size > 0 && active.size + record > segmentSize) {
+            roll();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(type);
+        header.putShort((short) keyLength);
+        header.putInt(length);
+        header.putInt(crc);
+        header.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[]{header, key.duplicate(), data.duplicate()};
+        long written = 0;
+        while (written < record) {
+            written += active.channel.write(buffers);
+        }
+
+        Location location = new Location(active.id, (int) active.size, keyLength, length);
+        active.size += record;
+        return location;
+    }
+
+    @Override
+    public void insertBlock(@NonNull Cid cid, @NonNull byte[] bytes) {
+        ByteBuffer key = key(cid);
+        if (index.containsKey(key)) {
+            return; // content addressed, the data is the same
+        }
+        byte[] keyBytes = new byte[key.remaining()];
+        key.duplicate().get(keyBytes);
+        synchronized (this) {
+            try {
+                if (!index.containsKey(key)) {
+                    Location location = append(PUT, key, ByteBuffer.wrap(bytes),
+                            crc(keyBytes, bytes));
+                    index.put(ByteBuffer.wrap(keyBytes), location);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void insertBlocks(@NonNull List<threads.lite.format.Block> blocks) {
+        for (threads.lite.format.Block block : blocks) {
+            insertBlock(block.getCid(), block.getRawData());
+        }
+    }
+
+    // Returns a read-only view on the data of the block, for sealed segments (and the mapped
+    // part of the active segment) the view is a slice of the memory mapped file.
+    @Nullable
+    public ByteBuffer getBuffer(@NonNull Cid cid) {
+        ByteBuffer key = key(cid);
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = Objects.requireNonNull(segments.get(location.segment));
+            return segment.read(location.data(), location.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public byte[] getData(@NonNull Cid cid) {
+        ByteBuffer buffer = getBuffer(cid);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Override
+    public void deleteBlock(@NonNull Cid cid) {
+        delete(key(cid));
+    }
+
+    @NonNull
+    @Override
+    public byte[] getKey(@NonNull Cid cid) {
+        ByteBuffer key = key(cid);
+        byte[] bytes = new byte[key.remaining()];
+        key.get(bytes);
+        return bytes;
+    }
+
+    // the keys of the index, the iteration does not block inserts and deletes
+    @NonNull
+    @Override
+    public Iterator<byte[]> keys() {
+        Iterator<ByteBuffer> iterator = index.keySet().iterator();
+        return new Iterator<byte[]>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                return copy(iterator.next()).array();
+            }
+        };
+    }
+
+    @Override
+    public int deleteKey(@NonNull byte[] key) {
+        return delete(ByteBuffer.wrap(key));
+    }
+
+    private int delete(@NonNull ByteBuffer key) {
+        boolean compact = false;
+        Location location;
+        synchronized (this) {
+            location = index.remove(key);
+            if (location == null) {
+                return -1;
+            }
+            try {
+                byte[] keyBytes = new byte[key.remaining()];
+                key.duplicate().get(keyBytes);
+                byte[] empty = new byte[0];
+                Location tombstone = append(DELETE, key, ByteBuffer.wrap(empty),
+                        crc(keyBytes, empty));
+                active.garbage += tombstone.record();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            release(location);
+            Segment segment = segments.get(location.segment);
+            if (segment != null && segment != active && segment.isGarbage()) {
+                compact = true;
+            }
+        }
+        if (compact && !compacting.getAndSet(true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (Throwable throwable) {
+                    LogUtils.error(TAG, throwable);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+        return location.length;
+    }
+
+    @Override
+    public int sizeBlock(@NonNull Cid cid) {
+        Location location = index.get(key(cid));
+        if (location == null) {
+            return -1;
+        }
+        return location.length;
+    }
+
+    @Override
+    public boolean hasBlock(@NonNull Cid cid) {
+        return index.containsKey(key(cid));
+    }
+
+    @Override
+    public synchronized void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for (Segment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            active = createSegment(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the segments with a garbage ratio above IPFS.SEGMENT_GARBAGE_RATIO.
+    // The live records are appended to the active segment, afterwards the old segment
+    // is removed.
+    public synchronized void compact() throws IOException {
+        if (active.isGarbage()) {
+            roll();
+        }
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment != active && segment.isGarbage()) {
+                compact(segment);
+            }
+        }
+    }
+
+    private void compact(@NonNull Segment segment) throws IOException {
+
+        long time = System.currentTimeMillis();
+        // tombstones are only required when an older segment still has the put record
+        boolean older = segments.firstKey() < segment.id;
+        MappedByteBuffer map = segment.map();
+
+        int position = 0;
+        while (position < segment.size) {
+            byte type = map.get(position);
+            int keyLength = map.getShort(position + 1) & 0xFFFF;
+            int length = map.getInt(position + 3);
+            int crc = map.getInt(position + 7);
+
+            ByteBuffer key = map.duplicate();
+            key.position(position + HEADER_SIZE);
+            key.limit(position + HEADER_SIZE + keyLength);
+            key = key.slice();
+
+            if (type == PUT) {
+                Location location = index.get(key);
+                if (location != null && location.segment == segment.id &&
+                        location.position == position) {
+                    ByteBuffer data = map.duplicate();
+                    data.position(position + HEADER_SIZE + keyLength);
+                    data.limit(position + HEADER_SIZE + keyLength + length);
+                    index.put(copy(key), append(PUT, key, data.slice(), crc));
+                }
+            } else if (older && !index.containsKey(key)) {
+                Location tombstone = append(DELETE, key, ByteBuffer.allocate(0), crc);
+                active.garbage += tombstone.record();
+            }
+            position += HEADER_SIZE + keyLength + length;
+        }
+        active.channel.force(false);
+
+        lock.writeLock().lock();
+        try {
+            segments.remove(segment.id);
+            segment.delete();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LogUtils.info(TAG, "Compact " + segment.file.getName() + " reclaimed " +
+                segment.garbage + " took " + (System.currentTimeMillis() - time));
+    }
+
+    @NonNull
+    private ByteBuffer copy(@NonNull ByteBuffer key) {
+        byte[] bytes = new byte[key.remaining()];
+        key.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    // sum of the segment files in bytes
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public int numBlocks() {
+        return index.size();
+    }
+
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(IPFS.CONNECT_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        synchronized (this) {
+            lock.writeLock().lock();
+            try {
+                active.channel.force(false);
+                for (Segment segment : segments.values()) {
+                    segment.channel.close();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static class Location {
+        final int segment;
+        final int position;
+        final int keyLength;
+        final int length;
+
+        Location(int segment, int position, int keyLength, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.keyLength = keyLength;
+            this.length = length;
+        }
+
+        int data() {
+            return position + HEADER_SIZE + keyLength;
+        }
+
+        int record() {
+            return HEADER_SIZE + keyLength + length;
+        }
+    }
+
+    private static class Segment {
+        final int id;
+        final File file;
+        final FileChannel channel;
+        volatile long size;
+        volatile MappedByteBuffer mapped;
+        long garbage;
+
+        Segment(int id, @NonNull File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        boolean isGarbage() {
+            return size > 0 && garbage >= size * IPFS.SEGMENT_GARBAGE_RATIO;
+        }
+
+        @NonNull
+        synchronized MappedByteBuffer map() throws IOException {
+            MappedByteBuffer map = mapped;
+            if (map == null || map.capacity() < size) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mapped = map;
+            }
+            return map;
+        }
+
+        @NonNull
+        ByteBuffer read(int position, int length) throws IOException {
+            MappedByteBuffer map = mapped;
+            if (map == null || position + length > map.capacity()) {
+                if (map == null || size - map.capacity() >= REMAP_SIZE) {
+                    map = map();
+                } else {
+                    // recently written data of the active segment
+                    ByteBuffer buffer = ByteBuffer.allocate(length);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("Unexpected end of " + file.getName());
+                        }
+                    }
+                    buffer.flip();
+                    return buffer.asReadOnlyBuffer();
+                }
+            }
+            ByteBuffer buffer = map.duplicate();
+            buffer.position(position);
+            buffer.limit(position + length);
+            return buffer.slice();
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            if (!file.delete()) {
+                LogUtils.error(TAG, "Failed to delete " + file.getName());
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Segment{" + id + " size=" + size + " garbage=" + garbage + "}";
+        }
+    }
+}
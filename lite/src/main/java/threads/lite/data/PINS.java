@@ -0,0 +1,101 @@
+package threads.lite.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import threads.lite.cid.Cid;
+
+
+public class PINS implements Pins {
+    private static PINS INSTANCE = null;
+    private final PinsDatabase pinsDatabase;
+
+    private PINS(PINS.Builder builder) {
+        this.pinsDatabase = builder.pinsDatabase;
+    }
+
+    @NonNull
+    private static PINS createPins(@NonNull PinsDatabase pinsDatabase) {
+
+        return new PINS.Builder()
+                .pinsDatabase(pinsDatabase)
+                .build();
+    }
+
+    public static PINS getInstance(@NonNull Context context) {
+
+        if (INSTANCE == null) {
+            synchronized (PINS.class) {
+                if (INSTANCE == null) {
+                    // no destructive migration, the pins protect the blocks of the user
+                    PinsDatabase pinsDatabase = Room.databaseBuilder(context, PinsDatabase.class,
+                            PinsDatabase.class.getSimpleName()).
+                            allowMainThreadQueries().build();
+
+                    INSTANCE = PINS.createPins(pinsDatabase);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    @NonNull
+    public PinsDatabase getPinsDatabase() {
+        return pinsDatabase;
+    }
+
+    @Override
+    public synchronized void pin(@NonNull Cid cid, boolean recursive) {
+        PinDao pinDao = getPinsDatabase().pinDao();
+        Pin pin = pinDao.getPin(cid.String());
+        if (pin != null && (pin.isRecursive() || !recursive)) {
+            return;
+        }
+        pinDao.insertPin(Pin.createPin(cid.String(), recursive));
+    }
+
+    @Override
+    public void unpin(@NonNull Cid cid) {
+        getPinsDatabase().pinDao().deletePin(cid.String());
+    }
+
+    @Override
+    public boolean isPinned(@NonNull Cid cid) {
+        return getPinsDatabase().pinDao().getPin(cid.String()) != null;
+    }
+
+    @NonNull
+    @Override
+    public List<Cid> getPins(boolean recursive) {
+        List<Cid> cids = new ArrayList<>();
+        for (String cid : getPinsDatabase().pinDao().getPins(recursive)) {
+            cids.add(Cid.decode(cid));
+        }
+        return cids;
+    }
+
+    @Override
+    public void clear() {
+        getPinsDatabase().clearAllTables();
+    }
+
+    static class Builder {
+        PinsDatabase pinsDatabase = null;
+
+        PINS build() {
+
+            return new PINS(this);
+        }
+
+        Builder pinsDatabase(@NonNull PinsDatabase pinsDatabase) {
+
+            this.pinsDatabase = pinsDatabase;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package threads.lite.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity
+public class Pin {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "cid")
+    private final String cid;
+    @ColumnInfo(name = "recursive")
+    private final boolean recursive;
+
+    Pin(@NonNull String cid, boolean recursive) {
+        this.cid = cid;
+        this.recursive = recursive;
+    }
+
+    public static Pin createPin(@NonNull String cid, boolean recursive) {
+        return new Pin(cid, recursive);
+    }
+
+    @NonNull
+    public String getCid() {
+        return cid;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+}
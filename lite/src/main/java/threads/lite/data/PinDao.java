@@ -0,0 +1,24 @@
+package threads.lite.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PinDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertPin(Pin pin);
+
+    @Query("DELETE FROM Pin WHERE cid = :cid")
+    void deletePin(String cid);
+
+    @Query("SELECT * FROM Pin WHERE cid = :cid")
+    Pin getPin(String cid);
+
+    @Query("SELECT cid FROM Pin WHERE recursive = :recursive")
+    List<String> getPins(boolean recursive);
+}
@@ -0,0 +1,24 @@
+package threads.lite.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import threads.lite.cid.Cid;
+
+// The pin set, the roots of the blocks which are kept by the garbage collector.
+// A recursive pin keeps the whole DAG, a direct pin only the block itself. A cid is
+// pinned once, a recursive pin replaces a direct pin (but not the other way around).
+public interface Pins {
+
+    void pin(@NonNull Cid cid, boolean recursive);
+
+    void unpin(@NonNull Cid cid);
+
+    boolean isPinned(@NonNull Cid cid);
+
+    @NonNull
+    List<Cid> getPins(boolean recursive);
+
+    void clear();
+}
@@ -0,0 +1,10 @@
+package threads.lite.data;
+
+import androidx.room.RoomDatabase;
+
+@androidx.room.Database(entities = {Pin.class}, version = 1, exportSchema = false)
+public abstract class PinsDatabase extends RoomDatabase {
+
+    public abstract PinDao pinDao();
+
+}
@@ -3,16 +3,39 @@ package threads.lite.data;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Iterator;
+import java.util.List;
+
+import threads.lite.cid.Cid;
+
 
 public interface Storage {
-    void insertBlock(@NonNull String id, @NonNull byte[] bytes);
+    void insertBlock(@NonNull Cid cid, @NonNull byte[] bytes);
+
+    void insertBlocks(@NonNull List<threads.lite.format.Block> blocks);
 
     @Nullable
-    byte[] getData(@NonNull String id);
+    byte[] getData(@NonNull Cid cid);
+
+    void deleteBlock(@NonNull Cid cid);
+
+    int sizeBlock(@NonNull Cid cid);
+
+    boolean hasBlock(@NonNull Cid cid);
+
+    void clear();
+
+    int numBlocks();
 
-    void deleteBlock(@NonNull String id);
+    // the key of the block in the store, as returned by keys()
+    @NonNull
+    byte[] getKey(@NonNull Cid cid);
 
-    int sizeBlock(@NonNull String id);
+    // iterates over the keys of the stored blocks, without a snapshot of the key space
+    // (blocks inserted or deleted during the iteration may or may not be returned)
+    @NonNull
+    Iterator<byte[]> keys();
 
-    boolean hasBlock(@NonNull String id);
+    // deletes the block with the key, returns the size of the deleted block or -1
+    int deleteKey(@NonNull byte[] key);
 }
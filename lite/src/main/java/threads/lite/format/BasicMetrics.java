@@ -0,0 +1,114 @@
+package threads.lite.format;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BasicMetrics implements Metrics {
+
+    private final AtomicLong leeched = new AtomicLong(0);
+    private final AtomicLong seeded = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong evicted = new AtomicLong(0);
+    private final AtomicLong collections = new AtomicLong(0);
+    private final AtomicLong collected = new AtomicLong(0);
+    private final AtomicLong reclaimed = new AtomicLong(0);
+    private final AtomicLong pause = new AtomicLong(0);
+
+    @Override
+    public void leeching(int amount) {
+        leeched.addAndGet(amount);
+    }
+
+    @Override
+    public void seeding(int amount) {
+        seeded.addAndGet(amount);
+    }
+
+    @Override
+    public void cacheHit() {
+        hits.incrementAndGet();
+    }
+
+    @Override
+    public void cacheMiss() {
+        misses.incrementAndGet();
+    }
+
+    @Override
+    public void cacheEviction(int amount) {
+        evictions.incrementAndGet();
+        evicted.addAndGet(amount);
+    }
+
+    @Override
+    public void garbageCollected(int blocks, long amount, long pause) {
+        collections.incrementAndGet();
+        collected.addAndGet(blocks);
+        reclaimed.addAndGet(amount);
+        this.pause.accumulateAndGet(pause, Math::max);
+    }
+
+    public long getLeeched() {
+        return leeched.get();
+    }
+
+    public long getSeeded() {
+        return seeded.get();
+    }
+
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    public long getCacheEvictions() {
+        return evictions.get();
+    }
+
+    // evicted bytes
+    public long getCacheEvicted() {
+        return evicted.get();
+    }
+
+    public long getCollections() {
+        return collections.get();
+    }
+
+    // removed blocks
+    public long getCollected() {
+        return collected.get();
+    }
+
+    // reclaimed bytes
+    public long getReclaimed() {
+        return reclaimed.get();
+    }
+
+    // longest pause (ms) of a collection
+    public long getCollectionPause() {
+        return pause.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BasicMetrics{" +
+                "leeched=" + leeched +
+                ", seeded=" + seeded +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", evicted=" + evicted +
+                ", collections=" + collections +
+                ", collected=" + collected +
+                ", reclaimed=" + reclaimed +
+                ", pause=" + pause +
+                '}';
+    }
+}
@@ -5,7 +5,6 @@ import androidx.annotation.NonNull;
 import java.util.List;
 
 import threads.lite.cid.Cid;
-import threads.lite.data.Dshelp;
 import threads.lite.data.Storage;
 
 public interface BlockStore {
@@ -15,15 +14,13 @@ public interface BlockStore {
         return new BlockStore() {
             @Override
             public boolean hasBlock(@NonNull Cid cid) {
-                String key = Dshelp.cidToDsKey(cid).getKey();
-                return storage.hasBlock(key);
+                return storage.hasBlock(cid);
             }
 
             @Override
             public Block getBlock(@NonNull Cid cid) {
 
-                String key = Dshelp.cidToDsKey(cid).getKey();
-                byte[] data = storage.getData(key);
+                byte[] data = storage.getData(cid);
                 if (data == null) {
                     return null;
                 }
@@ -32,19 +29,21 @@ public interface BlockStore {
 
             @Override
             public void putBlock(@NonNull Block block) {
-                String key = Dshelp.cidToDsKey(block.getCid()).getKey();
-                storage.insertBlock(key, block.getRawData());
+                storage.insertBlock(block.getCid(), block.getRawData());
+            }
+
+            @Override
+            public void putBlocks(@NonNull List<Block> blocks) {
+                storage.insertBlocks(blocks);
             }
 
             @Override
             public int getSize(@NonNull Cid cid) {
-                String key = Dshelp.cidToDsKey(cid).getKey();
-                return storage.sizeBlock(key);
+                return storage.sizeBlock(cid);
             }
 
             public void deleteBlock(@NonNull Cid cid) {
-                String key = Dshelp.cidToDsKey(cid).getKey();
-                storage.deleteBlock(key);
+                storage.deleteBlock(cid);
             }
 
             @Override
@@ -67,6 +66,8 @@ public interface BlockStore {
 
     void putBlock(@NonNull Block block);
 
+    void putBlocks(@NonNull List<Block> blocks);
+
     int getSize(@NonNull Cid cid);
 }
 
@@ -4,4 +4,14 @@ public interface Metrics {
     void leeching(int amount);
 
     void seeding(int amount);
+
+    void cacheHit();
+
+    void cacheMiss();
+
+    void cacheEviction(int amount);
+
+    // a garbage collection removed the number of blocks, pause is the time (ms) adds
+    // were blocked
+    void garbageCollected(int blocks, long amount, long pause);
 }
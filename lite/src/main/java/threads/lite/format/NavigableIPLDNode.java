@@ -2,8 +2,6 @@ package threads.lite.format;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
 import threads.lite.cid.Cid;
@@ -15,12 +13,10 @@ public class NavigableIPLDNode implements NavigableNode {
 
     private final Node node;
     private final NodeGetter nodeGetter;
-    private final List<Cid> cids = new ArrayList<>();
 
     private NavigableIPLDNode(@NonNull Node node, @NonNull NodeGetter nodeGetter) {
         this.node = node;
         this.nodeGetter = nodeGetter;
-        fillLinkCids(node);
     }
 
     public static NavigableIPLDNode NewNavigableIPLDNode(
@@ -40,14 +36,6 @@ public class NavigableIPLDNode implements NavigableNode {
         return node;
     }
 
-    private void fillLinkCids(@NonNull Node node) {
-        List<Link> links = node.getLinks();
-
-        for (Link link : links) {
-            cids.add(link.getCid());
-        }
-    }
-
     @Override
     public NavigableNode fetchChild(@NonNull Closeable ctx, int childIndex) throws ClosedException {
         Node child = getPromiseValue(ctx, childIndex);
@@ -59,7 +47,7 @@ public class NavigableIPLDNode implements NavigableNode {
 
     @Override
     public Cid getChild(int index) {
-        return cids.get(index);
+        return node.getLink(index).getCid();
     }
 
     @Override
@@ -69,12 +57,12 @@ public class NavigableIPLDNode implements NavigableNode {
 
     @Override
     public int childTotal() {
-        return GetIPLDNode().getLinks().size();
+        return GetIPLDNode().numLinks();
     }
 
 
     private Node getPromiseValue(Closeable ctx, int childIndex) throws ClosedException {
-        return nodeGetter.getNode(ctx, cids.get(childIndex), false);
+        return nodeGetter.getNode(ctx, getChild(childIndex), false);
 
     }
 
@@ -1,7 +1,5 @@
 package threads.lite.format;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -36,6 +34,12 @@ public interface Node extends Block, Resolver {
 
     List<Link> getLinks();
 
+    // the number of links, without creating them
+    int numLinks();
+
+    @NonNull
+    Link getLink(int index);
+
     Cid getCid();
 
     byte[] getData();
@@ -44,7 +48,8 @@ public interface Node extends Block, Resolver {
 
     void setCidBuilder(@Nullable Builder builder);
 
-    Pair<Link, List<String>> resolveLink(@NonNull List<String> path);
+    @NonNull
+    ResolvedLink resolveLink(@NonNull List<String> path);
 
     long size();
 }
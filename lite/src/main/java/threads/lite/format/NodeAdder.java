@@ -2,6 +2,10 @@ package threads.lite.format;
 
 import androidx.annotation.NonNull;
 
+import java.util.List;
+
 public interface NodeAdder {
     void Add(@NonNull Node nd);
+
+    void AddMany(@NonNull List<Node> nodes);
 }
@@ -1,12 +1,12 @@
 package threads.lite.format;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.protobuf.ByteString;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -19,10 +19,18 @@ import threads.lite.cid.Builder;
 import threads.lite.cid.Cid;
 
 
+// A decoded node is a view over its encoding: only the offsets of the fields are read, a
+// link is created when it is accessed (by index) and names are compared as bytes. The
+// encoding is kept, so the cid is never encoded again. The view is immutable and shared
+// by the copies of the node, the first change of a node turns it into a list of links
+// (copy on write), which is encoded again when needed.
 public class ProtoNode implements Node {
     private static final String TAG = ProtoNode.class.getSimpleName();
-    private final List<Link> links = Collections.synchronizedList(new ArrayList<>());
     public Cid cached;
+    @Nullable
+    private View view;
+    @Nullable
+    private List<Link> links;
     private byte[] data;
     private byte[] encoded;
     private Builder builder;
@@ -34,8 +42,9 @@ public class ProtoNode implements Node {
         this.data = data;
     }
 
+    @NonNull
     @Override
-    public Pair<Link, List<String>> resolveLink(@NonNull List<String> path) {
+    public ResolvedLink resolveLink(@NonNull List<String> path) {
 
         if (path.size() == 0) {
             throw new RuntimeException("end of path, no more links to resolve");
@@ -44,14 +53,24 @@ public class ProtoNode implements Node {
         Link lnk = getNodeLink(name);
         List<String> left = new ArrayList<>(path);
         left.remove(name);
-        return Pair.create(lnk, left);
+        return new ResolvedLink(lnk, left);
     }
 
     @NonNull
     private Link getNodeLink(@NonNull String name) {
-        for (Link link : links) {
-            if (Objects.equals(link.getName(), name)) {
-                return new Link(link.getCid(), link.getName(), link.getSize());
+        View view = this.view;
+        if (view != null) {
+            int index = view.find(name.getBytes(StandardCharsets.UTF_8));
+            if (index >= 0) {
+                return view.create(index);
+            }
+        } else if (links != null) {
+            synchronized (links) {
+                for (Link link : links) {
+                    if (Objects.equals(link.getName(), name)) {
+                        return new Link(link.getCid(), link.getName(), link.getSize());
+                    }
+                }
             }
         }
         throw new RuntimeException("" + name + " not found");
@@ -60,20 +79,8 @@ public class ProtoNode implements Node {
     public void unmarshal(byte[] encoded) {
 
         try {
-
-            Merkledag.PBNode pbNode = Merkledag.PBNode.parseFrom(encoded);
-            List<Merkledag.PBLink> pbLinks = pbNode.getLinksList();
-            for (Merkledag.PBLink pbLink : pbLinks) {
-                links.add(Link.create(pbLink.getHash().toByteArray(), pbLink.getName(),
-                        pbLink.getTsize()));
-            }
-
-            links.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));
-
-            this.data = pbNode.getData().toByteArray();
-
+            this.view = new View(encoded);
             this.encoded = encoded;
-
         } catch (Throwable throwable) {
             LogUtils.error(TAG, throwable);
         }
@@ -83,37 +90,85 @@ public class ProtoNode implements Node {
     public long size() {
         byte[] b = encodeProtobuf();
         long size = b.length;
-        for (Link link : links) {
-            size += link.getSize();
+        View view = this.view;
+        if (view != null) {
+            for (int i = 0; i < view.count(); i++) {
+                size += view.size(i);
+            }
+        } else if (links != null) {
+            synchronized (links) {
+                for (Link link : links) {
+                    size += link.getSize();
+                }
+            }
         }
         return size;
     }
 
     @Override
     public List<Link> getLinks() {
+        View view = this.view;
+        if (view != null) {
+            List<Link> result = new ArrayList<>(view.count());
+            for (int i = 0; i < view.count(); i++) {
+                result.add(view.link(i));
+            }
+            return result;
+        }
+        if (links == null) {
+            return new ArrayList<>();
+        }
         return new ArrayList<>(links);
     }
 
     @Override
-    public Cid getCid() {
-        if (encoded != null && cached.isDefined()) {
-            return cached;
+    public int numLinks() {
+        View view = this.view;
+        if (view != null) {
+            return view.count();
         }
-        byte[] data = getRawData();
+        return links == null ? 0 : links.size();
+    }
 
-        if (encoded != null && cached.isDefined()) {
-            return cached;
+    @NonNull
+    @Override
+    public Link getLink(int index) {
+        View view = this.view;
+        if (view != null) {
+            return view.link(index);
+        }
+        if (links == null) {
+            throw new IndexOutOfBoundsException("no links");
         }
-        cached = getCidBuilder().sum(data);
+        return links.get(index);
+    }
+
+    @Override
+    public Cid getCid() {
+        encodeProtobuf();
         return cached;
     }
 
     @Override
     public byte[] getData() {
+        if (data == null && view != null) {
+            data = view.data();
+        }
         return data;
     }
 
+    // the data as read-only buffer, for a decoded node without copying it
+    @NonNull
+    public ByteBuffer getDataBuffer() {
+        View view = this.view;
+        if (view != null) {
+            return view.dataBuffer();
+        }
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
     public void setData(byte[] fileData) {
+        mutable();
         encoded = null;
         cached = Cid.Undef();
         data = fileData;
@@ -124,6 +179,25 @@ public class ProtoNode implements Node {
         return encodeProtobuf();
     }
 
+    // copy on write, the links of the view are created once before the first change
+    @NonNull
+    private List<Link> mutable() {
+        if (links == null) {
+            View view = this.view;
+            List<Link> list = new ArrayList<>();
+            if (view != null) {
+                for (int i = 0; i < view.count(); i++) {
+                    list.add(view.link(i));
+                }
+                if (data == null) {
+                    data = view.data();
+                }
+            }
+            links = Collections.synchronizedList(list);
+            this.view = null;
+        }
+        return links;
+    }
 
     // Marshal encodes a *Node instance into a new byte slice.
     // The conversion uses an intermediate PBNode.
@@ -131,6 +205,7 @@ public class ProtoNode implements Node {
 
         Merkledag.PBNode.Builder pbn = Merkledag.PBNode.newBuilder();
 
+        List<Link> links = mutable();
         links.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));// keep links sorted
 
         synchronized (links) {
@@ -156,13 +231,12 @@ public class ProtoNode implements Node {
 
     private byte[] encodeProtobuf() {
 
-        links.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));// keep links sorted
         if (encoded == null) {
             cached = Cid.Undef();
             encoded = marshal();
         }
 
-        if (!cached.isDefined()) {
+        if (cached == null || !cached.isDefined()) {
             cached = getCidBuilder().sum(encoded);
         }
 
@@ -193,13 +267,21 @@ public class ProtoNode implements Node {
 
         ProtoNode protoNode = new ProtoNode();
 
-        protoNode.data = Arrays.copyOf(getData(), getData().length);
-
-
-        synchronized (links) {
-            if (links.size() > 0) {
-                protoNode.links.addAll(links);
+        View view = this.view;
+        if (view != null) {
+            // the view is shared, the copy is changed on write
+            protoNode.view = view;
+            protoNode.encoded = view.encoded;
+            protoNode.cached = Cid.Undef();
+        } else {
+            protoNode.data = Arrays.copyOf(getData(), getData().length);
+            List<Link> list = new ArrayList<>();
+            if (links != null) {
+                synchronized (links) {
+                    list.addAll(links);
+                }
             }
+            protoNode.links = Collections.synchronizedList(list);
         }
         protoNode.builder = builder;
 
@@ -209,6 +291,7 @@ public class ProtoNode implements Node {
     }
 
     public void removeNodeLink(@NonNull String name) {
+        List<Link> links = mutable();
         encoded = null;
         synchronized (links) {
             for (Link link : links) {
@@ -230,7 +313,8 @@ public class ProtoNode implements Node {
 
     }
 
-    private void addRawLink(@NonNull Link link) {
+    public void addRawLink(@NonNull Link link) {
+        List<Link> links = mutable();
         encoded = null;
 
         synchronized (links) {
@@ -238,10 +322,264 @@ public class ProtoNode implements Node {
         }
     }
 
+    @NonNull
     @Override
-    public Pair<Object, List<String>> resolve(@NonNull List<String> path) {
-        Pair<Link, List<String>> res = resolveLink(path);
-        return Pair.create(res.first, res.second);
+    public ResolvedLink resolve(@NonNull List<String> path) {
+        return resolveLink(path);
     }
 
+    // reads the protobuf wire format (merkledag.pb), fields are located, not copied
+    private static final class Cursor {
+        private final byte[] bytes;
+        private int position;
+        private int end;
+
+        private Cursor(@NonNull byte[] bytes) {
+            this.bytes = bytes;
+            this.position = 0;
+            this.end = bytes.length;
+        }
+
+        private boolean hasMore() {
+            return position < end;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= end) {
+                    throw new RuntimeException("truncated varint");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new RuntimeException("malformed varint");
+        }
+
+        private int length() {
+            long length = varint();
+            if (length < 0 || length > end - position) {
+                throw new RuntimeException("truncated field");
+            }
+            return (int) length;
+        }
+
+        private void advance(int length) {
+            if (length > end - position) {
+                throw new RuntimeException("truncated field");
+            }
+            position += length;
+        }
+
+        private void skip(int wireType) {
+            switch (wireType) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    advance(8);
+                    break;
+                case 2:
+                    advance(length());
+                    break;
+                case 5:
+                    advance(4);
+                    break;
+                default:
+                    throw new RuntimeException("unsupported wire type " + wireType);
+            }
+        }
+    }
+
+    // the offsets of the fields of an encoded node, the links are in the order of their
+    // names (as the encoding, otherwise a permutation is kept)
+    private static final class View {
+        private static final int DATA = 1;
+        private static final int LINKS = 2;
+        private static final int HASH = 1;
+        private static final int NAME = 2;
+        private static final int TSIZE = 3;
+
+        @NonNull
+        private final byte[] encoded;
+        private final int dataOffset;
+        private final int dataLength;
+        private final int[] hashOffsets;
+        private final int[] hashLengths;
+        private final int[] nameOffsets;
+        private final int[] nameLengths;
+        private final long[] sizes;
+        @Nullable
+        private final int[] order;
+
+        private View(@NonNull byte[] encoded) {
+            this.encoded = encoded;
+
+            // the first pass counts the links
+            int count = 0;
+            int dataOffset = 0;
+            int dataLength = 0;
+            Cursor cursor = new Cursor(encoded);
+            while (cursor.hasMore()) {
+                long key = cursor.varint();
+                int field = (int) (key >>> 3);
+                int wireType = (int) (key & 0x7);
+                if (wireType == 2 && (field == DATA || field == LINKS)) {
+                    int length = cursor.length();
+                    if (field == DATA) {
+                        dataOffset = cursor.position;
+                        dataLength = length;
+                    } else {
+                        count++;
+                    }
+                    cursor.advance(length);
+                } else {
+                    cursor.skip(wireType);
+                }
+            }
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.hashOffsets = new int[count];
+            this.hashLengths = new int[count];
+            this.nameOffsets = new int[count];
+            this.nameLengths = new int[count];
+            this.sizes = new long[count];
+
+            int index = 0;
+            cursor = new Cursor(encoded);
+            while (cursor.hasMore()) {
+                long key = cursor.varint();
+                int field = (int) (key >>> 3);
+                int wireType = (int) (key & 0x7);
+                if (wireType == 2 && field == LINKS) {
+                    int length = cursor.length();
+                    int end = cursor.end;
+                    cursor.end = cursor.position + length;
+                    readLink(cursor, index++);
+                    cursor.end = end;
+                } else {
+                    cursor.skip(wireType);
+                }
+            }
+
+            int[] order = null;
+            for (int i = 1; i < count; i++) {
+                if (compare(i - 1, i) > 0) {
+                    order = sort(count);
+                    break;
+                }
+            }
+            this.order = order;
+        }
+
+        private void readLink(@NonNull Cursor cursor, int index) {
+            while (cursor.hasMore()) {
+                long key = cursor.varint();
+                int field = (int) (key >>> 3);
+                int wireType = (int) (key & 0x7);
+                if (wireType == 2 && (field == HASH || field == NAME)) {
+                    int length = cursor.length();
+                    if (field == HASH) {
+                        hashOffsets[index] = cursor.position;
+                        hashLengths[index] = length;
+                    } else {
+                        nameOffsets[index] = cursor.position;
+                        nameLengths[index] = length;
+                    }
+                    cursor.advance(length);
+                } else if (wireType == 0 && field == TSIZE) {
+                    sizes[index] = cursor.varint();
+                } else {
+                    cursor.skip(wireType);
+                }
+            }
+        }
+
+        // the names are compared as bytes (unsigned), which is the order of the code points
+        private int compare(int a, int b) {
+            int length = Math.min(nameLengths[a], nameLengths[b]);
+            for (int i = 0; i < length; i++) {
+                int x = encoded[nameOffsets[a] + i] & 0xFF;
+                int y = encoded[nameOffsets[b] + i] & 0xFF;
+                if (x != y) {
+                    return x - y;
+                }
+            }
+            return nameLengths[a] - nameLengths[b];
+        }
+
+        @NonNull
+        private int[] sort(int count) {
+            Integer[] indexes = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, this::compare); // stable
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = indexes[i];
+            }
+            return order;
+        }
+
+        private int count() {
+            return sizes.length;
+        }
+
+        private int raw(int index) {
+            return order == null ? index : order[index];
+        }
+
+        private long size(int index) {
+            return sizes[raw(index)];
+        }
+
+        @NonNull
+        private Link link(int index) {
+            return create(raw(index));
+        }
+
+        // the index of the first link with the name (index of the encoding), -1 otherwise
+        private int find(@NonNull byte[] name) {
+            for (int i = 0; i < count(); i++) {
+                if (nameLengths[i] == name.length) {
+                    int offset = nameOffsets[i];
+                    boolean equal = true;
+                    for (int j = 0; j < name.length; j++) {
+                        if (encoded[offset + j] != name[j]) {
+                            equal = false;
+                            break;
+                        }
+                    }
+                    if (equal) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // the link at the index of the encoding
+        @NonNull
+        private Link create(int raw) {
+            byte[] hash = Arrays.copyOfRange(encoded, hashOffsets[raw],
+                    hashOffsets[raw] + hashLengths[raw]);
+            String name = nameLengths[raw] == 0 ? "" : new String(encoded, nameOffsets[raw],
+                    nameLengths[raw], StandardCharsets.UTF_8);
+            return new Link(new Cid(hash), name, sizes[raw]);
+        }
+
+        @NonNull
+        private byte[] data() {
+            return Arrays.copyOfRange(encoded, dataOffset, dataOffset + dataLength);
+        }
+
+        @NonNull
+        private ByteBuffer dataBuffer() {
+            return ByteBuffer.wrap(encoded, dataOffset, dataLength).slice().asReadOnlyBuffer();
+        }
+    }
 }
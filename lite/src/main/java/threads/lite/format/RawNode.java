@@ -1,7 +1,5 @@
 package threads.lite.format;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -53,8 +51,9 @@ public class RawNode implements Node {
         throw new RuntimeException("TODO");
     }
 
+    @NonNull
     @Override
-    public Pair<Link, List<String>> resolveLink(@NonNull List<String> path) {
+    public ResolvedLink resolveLink(@NonNull List<String> path) {
         throw new RuntimeException("not supported here");
     }
 
@@ -68,6 +67,17 @@ public class RawNode implements Node {
         return new ArrayList<>();
     }
 
+    @Override
+    public int numLinks() {
+        return 0;
+    }
+
+    @NonNull
+    @Override
+    public Link getLink(int index) {
+        throw new IndexOutOfBoundsException("raw nodes have no links");
+    }
+
     @Override
     public Cid getCid() {
         return block.getCid();
@@ -83,8 +93,9 @@ public class RawNode implements Node {
         return block.getRawData();
     }
 
+    @NonNull
     @Override
-    public Pair<Object, List<String>> resolve(@NonNull List<String> path) {
+    public ResolvedLink resolve(@NonNull List<String> path) {
         throw new RuntimeException("not supported here");
     }
 }
@@ -2,4 +2,6 @@ package threads.lite.format;
 
 public interface Reader {
     int read(byte[] bytes);
+
+    int read(byte[] bytes, int offset, int length);
 }
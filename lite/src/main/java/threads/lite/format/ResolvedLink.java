@@ -0,0 +1,30 @@
+package threads.lite.format;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+// the result of resolving the first segment of a path, the link (null when the node has
+// no link with the name) and the rest of the path below it
+public class ResolvedLink {
+    @Nullable
+    private final Link link;
+    @NonNull
+    private final List<String> rest;
+
+    public ResolvedLink(@Nullable Link link, @NonNull List<String> rest) {
+        this.link = link;
+        this.rest = rest;
+    }
+
+    @Nullable
+    public Link getLink() {
+        return link;
+    }
+
+    @NonNull
+    public List<String> getRest() {
+        return rest;
+    }
+}
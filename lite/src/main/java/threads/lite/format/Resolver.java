@@ -1,13 +1,12 @@
 package threads.lite.format;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 
 import java.util.List;
 
 public interface Resolver {
 
-    Pair<Object, List<String>> resolve(@NonNull List<String> path);
+    @NonNull
+    ResolvedLink resolve(@NonNull List<String> path);
 
 }
@@ -138,14 +138,14 @@ public class Walker {
 
         Node node = NavigableIPLDNode.extractIPLDNode(visitedNode);
 
-        if (node.getLinks().size() > 0) {
+        if (node.numLinks() > 0) {
             // Internal node, should be a `mdag.ProtoNode` containing a
             // `unixfs.FSNode` (see the `balanced` package for more details).
             FSNode fsNode = FSNode.extractFSNode(node);
 
             // If there aren't enough size hints don't seek
             // (see the `io.EOF` handling error comment below).
-            if (fsNode.numChildren() != node.getLinks().size()) {
+            if (fsNode.numChildren() != node.numLinks()) {
                 throw new RuntimeException("ErrSeekNotSupported");
             }
 
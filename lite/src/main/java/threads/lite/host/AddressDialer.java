@@ -0,0 +1,278 @@
+package threads.lite.host;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.luminis.quic.ConnectionIssue;
+import net.luminis.quic.QuicClientConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.Multiaddr;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.utils.Histogram;
+
+// Dials the addresses of a peer in parallel, staggered like "happy eyeballs" (RFC 8305):
+// the next address is tried when the previous attempt failed or did not succeed within
+// the stagger delay. The first successful handshake wins, the other attempts are
+// cancelled (interrupted) and their connections closed. The outcome per address is
+// remembered, so addresses which worked (fast) before are tried first next time.
+public class AddressDialer {
+    private static final String TAG = AddressDialer.class.getSimpleName();
+    private static final int MAX_STATS = 1024;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "dial");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Multiaddr, Stats> stats = new LinkedHashMap<Multiaddr, Stats>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Multiaddr, Stats> eldest) {
+            return size() > MAX_STATS;
+        }
+    };
+    private final long stagger;
+    // number of attempts started per dial
+    private final Histogram attempts = new Histogram(1, 2, 3, 4, 6, 8, 12, 16);
+    // time in ms until the first connection of a successful dial
+    private final Histogram timeToConnect = new Histogram(
+            10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000);
+
+    public AddressDialer(long stagger) {
+        this.stagger = stagger;
+    }
+
+    @NonNull
+    public QuicClientConnection dial(@NonNull Closeable closeable,
+                                     @NonNull List<Multiaddr> addresses,
+                                     @NonNull Handshake handshake)
+            throws ConnectionIssue, ClosedException {
+
+        if (addresses.isEmpty()) {
+            throw new ConnectionIssue();
+        }
+        List<Multiaddr> ordered = order(addresses);
+        Race race = new Race();
+        ExecutorCompletionService<QuicClientConnection> completion =
+                new ExecutorCompletionService<>(executor);
+        List<Future<QuicClientConnection>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        long nextStart = start;
+        int next = 0;
+        int pending = 0;
+        try {
+            while (true) {
+                if (closeable.isClosed()) {
+                    throw new ClosedException();
+                }
+                long now = System.currentTimeMillis();
+                if (next < ordered.size() && (pending == 0 || now >= nextStart)) {
+                    Multiaddr address = ordered.get(next++);
+                    futures.add(completion.submit(() -> attempt(race, address, handshake)));
+                    pending++;
+                    nextStart = now + stagger;
+                }
+
+                long wait = IPFS.BITSWAP_TICK;
+                if (next < ordered.size()) {
+                    wait = Math.max(1, Math.min(wait, nextStart - now));
+                }
+                Future<QuicClientConnection> done = completion.poll(wait, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                pending--;
+                try {
+                    QuicClientConnection connection = done.get();
+                    race.taken();
+                    timeToConnect.record(System.currentTimeMillis() - start);
+                    return connection;
+                } catch (ExecutionException ignore) {
+                    // failed or lost, the next address is started right away
+                    nextStart = 0;
+                }
+                if (pending == 0 && next == ordered.size()) {
+                    throw new ConnectionIssue();
+                }
+            }
+        } catch (InterruptedException interruptedException) {
+            throw new ClosedException();
+        } finally {
+            attempts.record(next);
+            race.finish();
+            for (Future<QuicClientConnection> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @NonNull
+    private QuicClientConnection attempt(@NonNull Race race, @NonNull Multiaddr address,
+                                         @NonNull Handshake handshake) throws Exception {
+        long start = System.currentTimeMillis();
+        QuicClientConnection connection;
+        try {
+            connection = handshake.connect(address);
+        } catch (Throwable throwable) {
+            if (!race.isFinished()) {
+                failure(address);
+                if (!(throwable instanceof TimeoutException)) {
+                    LogUtils.error(TAG, "Failure " + throwable + " " + address + " " +
+                            (System.currentTimeMillis() - start));
+                }
+            } else {
+                // cancelled, another attempt won (or the dial was closed)
+                LogUtils.debug(TAG, "Cancelled attempt " + address + " " + throwable);
+            }
+            throw throwable;
+        }
+        success(address, System.currentTimeMillis() - start);
+        if (!race.win(connection)) {
+            LogUtils.debug(TAG, "Close connection of lost attempt " + address);
+            connection.close();
+            throw new CancellationException();
+        }
+        return connection;
+    }
+
+    // addresses which succeeded before first (fastest first), then the unknown ones in
+    // their given order, then the ones which failed before
+    @NonNull
+    List<Multiaddr> order(@NonNull List<Multiaddr> addresses) {
+        Map<Multiaddr, Stats> snapshot = new LinkedHashMap<>();
+        synchronized (stats) {
+            for (Multiaddr address : addresses) {
+                Stats value = stats.get(address);
+                if (value != null) {
+                    snapshot.put(address, value.copy());
+                }
+            }
+        }
+        List<Multiaddr> result = new ArrayList<>(addresses);
+        Collections.sort(result, Comparator.comparingInt(
+                (Multiaddr address) -> rank(snapshot.get(address))).thenComparingLong(
+                address -> {
+                    Stats value = snapshot.get(address);
+                    return value != null ? value.latency : 0L;
+                }));
+        return result;
+    }
+
+    private static int rank(@Nullable Stats value) {
+        if (value == null) {
+            return 1;
+        }
+        return value.successes > value.failures ? 0 : 2;
+    }
+
+    private void success(@NonNull Multiaddr address, long latency) {
+        synchronized (stats) {
+            Stats value = stats.get(address);
+            if (value == null) {
+                value = new Stats();
+                value.latency = latency;
+                stats.put(address, value);
+            } else {
+                // exponential moving average
+                value.latency = (value.latency * 7 + latency) / 8;
+            }
+            value.successes++;
+        }
+    }
+
+    private void failure(@NonNull Multiaddr address) {
+        synchronized (stats) {
+            Stats value = stats.get(address);
+            if (value == null) {
+                value = new Stats();
+                stats.put(address, value);
+            }
+            value.failures++;
+        }
+    }
+
+    @NonNull
+    public Histogram getAttempts() {
+        return attempts;
+    }
+
+    @NonNull
+    public Histogram getTimeToConnect() {
+        return timeToConnect;
+    }
+
+    public interface Handshake {
+        // creates a connection to the address and does the handshake (blocking),
+        // an interrupt aborts the handshake
+        @NonNull
+        QuicClientConnection connect(@NonNull Multiaddr address) throws Exception;
+    }
+
+    private static class Stats {
+        int successes;
+        int failures;
+        long latency;
+
+        Stats copy() {
+            Stats copy = new Stats();
+            copy.successes = successes;
+            copy.failures = failures;
+            copy.latency = latency;
+            return copy;
+        }
+    }
+
+    // decides which attempt wins, after the dial is finished all attempts lose
+    private static class Race {
+        private boolean finished;
+        private QuicClientConnection winner;
+
+        synchronized boolean win(@NonNull QuicClientConnection connection) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            winner = connection;
+            return true;
+        }
+
+        synchronized boolean isFinished() {
+            return finished;
+        }
+
+        // a winner which was not taken by the dial (e.g. it was closed meanwhile) is closed
+        void finish() {
+            QuicClientConnection connection;
+            synchronized (this) {
+                finished = true;
+                connection = winner;
+                winner = null;
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        }
+
+        synchronized void taken() {
+            winner = null;
+        }
+    }
+}
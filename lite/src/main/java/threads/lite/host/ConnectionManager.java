@@ -0,0 +1,266 @@
+package threads.lite.host;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.luminis.quic.ConnectionIssue;
+import net.luminis.quic.QuicClientConnection;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.PeerId;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+
+// Holds one outgoing connection per peer, which is shared by all protocols (dht, bitswap,
+// identify, relay). Concurrent connects to the same peer wait for a single dial.
+// Connections which were not used within their grace period are closed, and when more
+// than highWater connections are open, the least recently used ones are closed until
+// lowWater connections are left (like the basic connection manager of go-libp2p).
+// Packets sent or received on a connection (e.g. of a running stream) count as a use.
+public class ConnectionManager {
+    private static final String TAG = ConnectionManager.class.getSimpleName();
+
+    private final ConcurrentHashMap<PeerId, Entry> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<PeerId, CompletableFuture<QuicClientConnection>> dials =
+            new ConcurrentHashMap<>();
+    private final int lowWater;
+    private final int highWater;
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong reuses = new AtomicLong(0);
+    private final AtomicLong handshakes = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public ConnectionManager(int lowWater, int highWater) {
+        this.lowWater = lowWater;
+        this.highWater = highWater;
+    }
+
+    // Returns the connection to the peer, a new one is only dialed when there is no live
+    // connection and no other dial to the peer in progress. The grace period (seconds)
+    // keeps the connection open at least that long after this call.
+    @NonNull
+    public QuicClientConnection connect(@NonNull Closeable closeable, @NonNull PeerId peerId,
+                                        int gracePeriod, @NonNull Dialer dialer)
+            throws ConnectionIssue, ClosedException {
+
+        requests.incrementAndGet();
+        while (true) {
+            if (closeable.isClosed()) {
+                throw new ClosedException();
+            }
+            Entry entry = connections.get(peerId);
+            if (entry != null) {
+                if (entry.connection.isConnected()) {
+                    entry.touch(gracePeriod);
+                    reuses.incrementAndGet();
+                    return entry.connection;
+                }
+                connections.remove(peerId, entry);
+            }
+
+            CompletableFuture<QuicClientConnection> future = new CompletableFuture<>();
+            CompletableFuture<QuicClientConnection> dial = dials.putIfAbsent(peerId, future);
+            if (dial == null) {
+                return dial(closeable, peerId, gracePeriod, dialer, future);
+            }
+
+            QuicClientConnection connection = await(closeable, dial);
+            if (connection != null) {
+                Entry shared = connections.get(peerId);
+                if (shared != null && shared.connection == connection) {
+                    shared.touch(gracePeriod);
+                }
+                reuses.incrementAndGet();
+                return connection;
+            }
+            // the dial was aborted by the closeable of the other caller, try again
+        }
+    }
+
+    @NonNull
+    private QuicClientConnection dial(@NonNull Closeable closeable, @NonNull PeerId peerId,
+                                      int gracePeriod, @NonNull Dialer dialer,
+                                      @NonNull CompletableFuture<QuicClientConnection> future)
+            throws ConnectionIssue, ClosedException {
+        try {
+            QuicClientConnection connection = dialer.dial(closeable, peerId);
+            handshakes.incrementAndGet();
+            Entry entry = new Entry(connection);
+            entry.touch(gracePeriod);
+            Entry previous = connections.put(peerId, entry);
+            if (previous != null && previous.connection != connection) {
+                previous.connection.close();
+            }
+            future.complete(connection);
+            trim();
+            return connection;
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            dials.remove(peerId, future);
+        }
+    }
+
+    // waits for the dial of another caller, returns null when it was closed by its caller
+    @Nullable
+    private QuicClientConnection await(@NonNull Closeable closeable,
+                                       @NonNull CompletableFuture<QuicClientConnection> dial)
+            throws ConnectionIssue, ClosedException {
+        while (true) {
+            if (closeable.isClosed()) {
+                throw new ClosedException();
+            }
+            try {
+                return dial.get(IPFS.BITSWAP_TICK, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignore) {
+                // check the closeable again
+            } catch (InterruptedException interruptedException) {
+                throw new ClosedException();
+            } catch (ExecutionException executionException) {
+                Throwable cause = executionException.getCause();
+                if (cause instanceof ConnectionIssue) {
+                    throw (ConnectionIssue) cause;
+                }
+                if (cause instanceof ClosedException) {
+                    return null;
+                }
+                throw new ConnectionIssue();
+            }
+        }
+    }
+
+    // closes and removes the connection to the peer (e.g. after a protocol failure)
+    public void remove(@NonNull PeerId peerId) {
+        Entry entry = connections.remove(peerId);
+        if (entry != null) {
+            entry.connection.close();
+        }
+    }
+
+    public void clear() {
+        for (PeerId peerId : new ArrayList<>(connections.keySet())) {
+            remove(peerId);
+        }
+    }
+
+    // Closes the connections which are idle for longer than their grace period, and when
+    // there are still more than highWater, the least recently used down to lowWater
+    public void trim() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<PeerId, Entry>> candidates = new ArrayList<>();
+        for (Map.Entry<PeerId, Entry> entry : connections.entrySet()) {
+            Entry value = entry.getValue();
+            value.active(value.connection.getLastActivity());
+            if (!value.connection.isConnected()) {
+                connections.remove(entry.getKey(), value);
+            } else if (value.expires <= now) {
+                evict(entry.getKey(), value);
+            } else {
+                candidates.add(entry);
+            }
+        }
+
+        if (candidates.size() > highWater) {
+            candidates.sort((a, b) -> Long.compare(a.getValue().used, b.getValue().used));
+            int surplus = candidates.size() - lowWater;
+            for (int i = 0; i < surplus; i++) {
+                evict(candidates.get(i).getKey(), candidates.get(i).getValue());
+            }
+        }
+    }
+
+    private void evict(@NonNull PeerId peerId, @NonNull Entry entry) {
+        if (connections.remove(peerId, entry)) {
+            LogUtils.debug(TAG, "Evict connection " + peerId.toBase58());
+            evictions.incrementAndGet();
+            entry.connection.close();
+        }
+    }
+
+    public int numConnections() {
+        return connections.size();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    // ratio of the connects which were served without a handshake of their own
+    public double getReuseRatio() {
+        long total = requests.get();
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) reuses.get() / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ConnectionManager{" +
+                "connections=" + connections.size() +
+                ", requests=" + requests.get() +
+                ", handshakes=" + handshakes.get() +
+                ", reuseRatio=" + getReuseRatio() +
+                ", evictions=" + evictions.get() +
+                '}';
+    }
+
+    public interface Dialer {
+        @NonNull
+        QuicClientConnection dial(@NonNull Closeable closeable, @NonNull PeerId peerId)
+                throws ConnectionIssue, ClosedException;
+    }
+
+    private static class Entry {
+        @NonNull
+        final QuicClientConnection connection;
+        volatile long used;
+        volatile long expires;
+        long gracePeriod; // [ms] the longest of the connects
+
+        Entry(@NonNull QuicClientConnection connection) {
+            this.connection = connection;
+        }
+
+        synchronized void touch(int gracePeriod) {
+            used = System.currentTimeMillis();
+            this.gracePeriod = Math.max(this.gracePeriod, gracePeriod * 1000L);
+            expires = Math.max(expires, used + gracePeriod * 1000L);
+        }
+
+        // the connection was used by packets since the last touch, the grace period is
+        // extended from then on
+        synchronized void active(@Nullable Instant activity) {
+            if (activity != null && activity.toEpochMilli() > used) {
+                used = activity.toEpochMilli();
+                expires = Math.max(expires, used + gracePeriod);
+            }
+        }
+    }
+}
@@ -44,10 +44,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.TrustManager;
@@ -128,8 +129,8 @@ public class LiteHost {
             return new X509Certificate[0];
         }
     };
-    private static int failure = 0;
-    private static int success = 0;
+    private static final AtomicInteger failure = new AtomicInteger(0);
+    private static final AtomicInteger success = new AtomicInteger(0);
     @NonNull
     public final List<ConnectionHandler> handlers = new ArrayList<>();
     @NonNull
@@ -153,6 +154,14 @@ public class LiteHost {
     @NonNull
     private final Set<PeerId> swarm = ConcurrentHashMap.newKeySet();
     @NonNull
+    private final ConnectionManager connectionManager = new ConnectionManager(
+            IPFS.CONNECTIONS_LOW_WATER, IPFS.CONNECTIONS_HIGH_WATER);
+    @NonNull
+    private final AddressDialer addressDialer = new AddressDialer(IPFS.DIAL_STAGGER);
+    @NonNull
+    private final ScheduledExecutorService trimmer =
+            Executors.newSingleThreadScheduledExecutor();
+    @NonNull
     public final AtomicBoolean inet6 = new AtomicBoolean(false);
     @Nullable
     private Push push;
@@ -170,6 +179,8 @@ public class LiteHost {
                 new Ipns(), alpha, IPFS.DHT_BUCKET_SIZE);
 
         this.bitSwap = new BitSwap(blockstore, this);
+        trimmer.scheduleWithFixedDelay(connectionManager::trim, IPFS.CONNECTIONS_TRIM_INTERVAL,
+                IPFS.CONNECTIONS_TRIM_INTERVAL, TimeUnit.SECONDS);
         int port = IPFS.DEFAULT_PORT;
         if (!isLocalPortFree(port)) {
             port = nextFreePort();
@@ -249,6 +260,21 @@ public class LiteHost {
         return routing;
     }
 
+    @NonNull
+    public ConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    @NonNull
+    public AddressDialer getAddressDialer() {
+        return addressDialer;
+    }
+
+    @Nullable
+    public Server getServer() {
+        return server;
+    }
+
     @NonNull
     public BitSwap getBitSwap() {
         return bitSwap;
@@ -608,6 +634,9 @@ public class LiteHost {
         return result.get();
     }
 
+    // The connection is shared by all protocols, so the transport parameters of a new
+    // connection are the largest ones any protocol needs. The idle timeout is the time the
+    // pooled connection is kept at least.
     @NonNull
     public QuicClientConnection connect(@NonNull Closeable closeable,
                                         @NonNull PeerId peerId,
@@ -617,6 +646,22 @@ public class LiteHost {
                                         int initialMaxStreamData)
             throws ConnectionIssue, ClosedException {
 
+        return connectionManager.connect(closeable, peerId, maxIdleTimeoutInSeconds,
+                (dialCloseable, dialPeerId) -> dial(dialCloseable, dialPeerId, timeout,
+                        Math.max(maxIdleTimeoutInSeconds, IPFS.CONNECTION_GRACE_PERIOD),
+                        Math.max(initialMaxStreams, IPFS.MAX_STREAMS),
+                        Math.max(initialMaxStreamData, IPFS.MESSAGE_SIZE_MAX)));
+    }
+
+    @NonNull
+    private QuicClientConnection dial(@NonNull Closeable closeable,
+                                      @NonNull PeerId peerId,
+                                      int timeout,
+                                      int maxIdleTimeoutInSeconds,
+                                      int initialMaxStreams,
+                                      int initialMaxStreamData)
+            throws ConnectionIssue, ClosedException {
+
 
         if (closeable.isClosed()) {
             throw new ClosedException();
@@ -627,21 +672,20 @@ public class LiteHost {
         List<Multiaddr> multiaddrs = prepareAddresses(peerId);
 
         if (multiaddrs.isEmpty()) {
-            LogUtils.debug(TAG, "Run false" + " Success " + success + " " +
-                    "Failure " + failure + " " + "/p2p/" + peerId.toBase58() + " " +
+            LogUtils.debug(TAG, "Run false" + " Success " + success.get() + " " +
+                    "Failure " + failure.get() + " " + "/p2p/" + peerId.toBase58() + " " +
                     "No address");
             throw new ConnectionIssue();
         }
 
+        List<Multiaddr> candidates = new ArrayList<>();
         for (Multiaddr address : multiaddrs) {
-
-            if (ipv6 && !address.has(Protocol.Type.IP6)) {
-                continue;
-            }
-            if (!ipv6 && address.has(Protocol.Type.IP6)) {
-                continue;
+            if (ipv6 == address.has(Protocol.Type.IP6)) {
+                candidates.add(address);
             }
+        }
 
+        QuicClientConnection connection = addressDialer.dial(closeable, candidates, address -> {
             long start = System.currentTimeMillis();
             boolean run = false;
             try {
@@ -651,35 +695,23 @@ public class LiteHost {
                         new TransportParameters(maxIdleTimeoutInSeconds, initialMaxStreamData,
                                 initialMaxStreams, 0), null);
 
-
-                //quicClientConnection.setPeerInitiatedStreamCallback(quicStream ->
-                //       new StreamHandler(quicClientConnection, quicStream, peerId, LiteHost.this));
-
-                handleConnection(peerId, quicClientConnection, false);
+                quicClientConnection.setPeerInitiatedStreamCallback(quicStream ->
+                        new StreamHandler(quicClientConnection, quicStream, peerId, LiteHost.this));
                 run = true;
                 return quicClientConnection;
-            } catch (TimeoutException ignore) {
-                // nothing to do here
-            } catch (Throwable throwable) {
-                LogUtils.error(TAG, "Failure " + throwable + " " +
-                        address + " " + (System.currentTimeMillis() - start));
             } finally {
-                if (run) {
-                    success++;
-                } else {
-                    failure++;
-                }
+                // a failure is logged by the address dialer (not the cancelled attempts)
+                int successes = run ? success.incrementAndGet() : success.get();
+                int failures = run ? failure.get() : failure.incrementAndGet();
 
-                LogUtils.debug(TAG, "Run " + run + " Success " + success + " " +
-                        "Failure " + failure +
+                LogUtils.debug(TAG, "Run " + run + " Success " + successes + " " +
+                        "Failure " + failures +
                         " Peer " + peerId.toBase58() + " " +
                         address + " " + (System.currentTimeMillis() - start));
             }
-
-        }
-
-        throw new ConnectionIssue();
-
+        });
+        handleConnection(peerId, connection, false);
+        return connection;
     }
 
     public void push(@NonNull PeerId peerId, @NonNull byte[] content) {
@@ -753,6 +785,9 @@ public class LiteHost {
 
     public void shutdown() {
         try {
+            bitSwap.reset(); // stops the want scheduler and the blocker
+            trimmer.shutdownNow();
+            connectionManager.clear();
             if (server != null) {
                 server.shutdown();
             }
@@ -2,6 +2,7 @@ package threads.lite.host;
 
 import androidx.annotation.NonNull;
 
+import net.luminis.quic.ConnectionIssue;
 import net.luminis.quic.QuicConnection;
 import net.luminis.quic.stream.QuicStream;
 
@@ -9,6 +10,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import bitswap.pb.MessageOuterClass;
@@ -36,6 +38,7 @@ public class StreamHandler {
     private final InputStream inputStream;
     private final OutputStream outputStream;
     private final AtomicBoolean init = new AtomicBoolean(false);
+    private final Set<String> handled = new HashSet<>();
     private volatile String protocol = null;
     private long time = System.currentTimeMillis();
 
@@ -62,6 +65,11 @@ public class StreamHandler {
                 channelRead0(data);
             }
 
+        } catch (ConnectionIssue connectionIssue) {
+            if (IPFS.BITSWAP_PROTOCOL.equals(protocol)) {
+                host.getBitSwap().receiveConnectionFailure(peerId);
+            }
+            exceptionCaught(connectionIssue);
         } catch (Throwable throwable) {
             exceptionCaught(throwable);
         }
@@ -95,64 +103,69 @@ public class StreamHandler {
         try {
             reader.load(msg);
 
-            if (reader.isDone()) {
-                for (String token : reader.getTokens()) {
+            for (String token : reader.getTokens()) {
+
+                // tokens are only handled once, the stream might contain more messages
+                if (!handled.add(token)) {
+                    continue;
+                }
+
+                LogUtils.debug(TAG, "Token " + token + " StreamId " + streamId + " PeerId " + peerId);
+
+                switch (token) {
+                    case IPFS.STREAM_PROTOCOL:
+                        if (!init.getAndSet(true)) {
+                            writeAndFlush(DataHandler.writeToken(IPFS.STREAM_PROTOCOL));
+                        }
+                        break;
+                    case IPFS.PUSH_PROTOCOL:
+                        protocol = token;
+                        writeAndFlush(DataHandler.writeToken(IPFS.PUSH_PROTOCOL));
+                        break;
+                    case IPFS.BITSWAP_PROTOCOL:
+                        protocol = token;
+                        writeAndFlush(DataHandler.writeToken(IPFS.BITSWAP_PROTOCOL));
+                        time = System.currentTimeMillis();
+                        break;
+                    case IPFS.IDENTITY_PROTOCOL:
+                        protocol = token;
+                        writeAndFlush(DataHandler.writeToken(IPFS.IDENTITY_PROTOCOL));
+
+                        IdentifyOuterClass.Identify response =
+                                host.createIdentity(connection.getRemoteAddress());
+
+                        writeAndFlush(DataHandler.encode(response));
+                        return;
+                    default:
+                        LogUtils.debug(TAG, "Ignore " + token +
+                                " StreamId " + streamId + " PeerId " + peerId);
+                        writeAndFlush(DataHandler.writeToken(IPFS.NA));
+                        closeOutputStream();
+                        return;
+                }
+            }
 
-                    LogUtils.debug(TAG, "Token " + token + " StreamId " + streamId + " PeerId " + peerId);
+            for (byte[] message : reader.takeMessages()) {
+                if (protocol != null) {
+                    switch (protocol) {
+                        case IPFS.BITSWAP_PROTOCOL:
+                            host.forwardMessage(peerId,
+                                    MessageOuterClass.Message.parseFrom(message));
 
-                    protocol = token;
-                    switch (token) {
-                        case IPFS.STREAM_PROTOCOL:
-                            if (!init.getAndSet(true)) {
-                                writeAndFlush(DataHandler.writeToken(IPFS.STREAM_PROTOCOL));
-                            }
+                            LogUtils.debug(TAG, "Time " + (System.currentTimeMillis() - time) +
+                                    " StreamId " + streamId + " PeerId " + peerId);
                             break;
                         case IPFS.PUSH_PROTOCOL:
-                            writeAndFlush(DataHandler.writeToken(IPFS.PUSH_PROTOCOL));
+                            host.push(peerId, message);
                             break;
-                        case IPFS.BITSWAP_PROTOCOL:
-                            writeAndFlush(DataHandler.writeToken(IPFS.BITSWAP_PROTOCOL));
-                            time = System.currentTimeMillis();
-                            break;
-                        case IPFS.IDENTITY_PROTOCOL:
-                            writeAndFlush(DataHandler.writeToken(IPFS.IDENTITY_PROTOCOL));
-
-                            IdentifyOuterClass.Identify response =
-                                    host.createIdentity(connection.getRemoteAddress());
-
-                            writeAndFlush(DataHandler.encode(response));
-                            return;
                         default:
-                            LogUtils.debug(TAG, "Ignore " + token +
-                                    " StreamId " + streamId + " PeerId " + peerId);
-                            writeAndFlush(DataHandler.writeToken(IPFS.NA));
-                            closeOutputStream();
-                            return;
+                            throw new Exception("StreamHandler invalid protocol");
                     }
+                } else {
+                    throw new Exception("StreamHandler invalid protocol");
                 }
-                byte[] message = reader.getMessage();
-
-                if (message != null) {
-                    if (protocol != null) {
-                        switch (protocol) {
-                            case IPFS.BITSWAP_PROTOCOL:
-                                host.forwardMessage(peerId,
-                                        MessageOuterClass.Message.parseFrom(message));
-
-                                LogUtils.debug(TAG, "Time " + (System.currentTimeMillis() - time) +
-                                        " StreamId " + streamId + " PeerId " + peerId);
-                                break;
-                            case IPFS.PUSH_PROTOCOL:
-                                host.push(peerId, message);
-                                break;
-                            default:
-                                throw new Exception("StreamHandler invalid protocol");
-                        }
-                    } else {
-                        throw new Exception("StreamHandler invalid protocol");
-                    }
-                }
-            } else {
+            }
+            if (!reader.isDone()) {
                 LogUtils.debug(TAG, "Iteration " + protocol + " " + reader.hasRead() + " "
                         + reader.expectedBytes() + " StreamId " + streamId + " PeerId " + peerId +
                         " Tokens " + reader.getTokens().toString());
@@ -0,0 +1,109 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import threads.lite.format.Reader;
+
+// Content defined chunking with a cyclic polynomial (buzhash) over a window of 32 bytes,
+// same sizes and same rolling hash as the go-ipfs buzhash chunker. A chunk ends when the
+// low 17 bits of the hash are zero (128 KB on average after the minimum), but not before
+// 128 KB and not after 512 KB. The window is not copied, the byte leaving it is read from
+// the buffer.
+// The byte hash table is generated here and is NOT the table of go-ipfs, so the chunks
+// (and the cids) differ from a go-ipfs import with the buzhash chunker, the content is
+// only deduplicated with content chunked by this splitter.
+public class BuzhashSplitter implements Splitter {
+    public static final int MIN = 128 << 10; // 128 KB
+    public static final int MAX = 512 << 10; // 512 KB
+    private static final int MASK = (1 << 17) - 1;
+    private static final int WINDOW_SIZE = 32;
+    private static final int[] TABLE = createTable();
+
+    private final Reader reader;
+    private final byte[] buf = new byte[MAX];
+    private int buffered = 0; // bytes of the next chunk already in buf
+    private boolean eof = false;
+    private boolean done = false;
+
+    public BuzhashSplitter(@NonNull Reader reader) {
+        this.reader = reader;
+    }
+
+    // random values (splitmix64 with a fixed seed), the same for every run, a change of
+    // the table changes the chunks of all content (see ChunkerTest)
+    private static int[] createTable() {
+        int[] table = new int[256];
+        long seed = 0x6275_7a68_6173_68L;
+        for (int i = 0; i < table.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = (int) (z ^ (z >>> 31));
+        }
+        return table;
+    }
+
+    @Override
+    public Reader Reader() {
+        return reader;
+    }
+
+    @Override
+    public byte[] NextBytes() {
+        if (done) {
+            return null;
+        }
+        fill();
+
+        if (buffered < MIN) {
+            done = true;
+            if (buffered == 0) {
+                return null;
+            }
+            byte[] result = Arrays.copyOf(buf, buffered);
+            buffered = 0;
+            return result;
+        }
+
+        int state = 0;
+        for (int i = MIN - WINDOW_SIZE; i < MIN; i++) {
+            state = Integer.rotateLeft(state, 1) ^ TABLE[buf[i] & 0xFF];
+        }
+
+        int max = buffered - WINDOW_SIZE - 1;
+        int i = MIN - WINDOW_SIZE;
+        for (; i <= max; i++) {
+            if ((state & MASK) == 0) {
+                break;
+            }
+            // rotating by the window size is the identity for 32 bit
+            state = Integer.rotateLeft(state, 1) ^
+                    TABLE[buf[i] & 0xFF] ^ TABLE[buf[i + WINDOW_SIZE] & 0xFF];
+        }
+        i += WINDOW_SIZE;
+
+        byte[] result = Arrays.copyOf(buf, i);
+        buffered -= i;
+        System.arraycopy(buf, i, buf, 0, buffered);
+        return result;
+    }
+
+    private void fill() {
+        while (!eof && buffered < buf.length) {
+            int read = reader.read(buf, buffered, buf.length - buffered);
+            if (read < 0) {
+                eof = true;
+            } else {
+                buffered += read;
+            }
+        }
+    }
+
+    @Override
+    public boolean Done() {
+        return done;
+    }
+}
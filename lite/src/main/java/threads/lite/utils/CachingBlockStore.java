@@ -0,0 +1,278 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import threads.lite.cid.Cid;
+import threads.lite.format.Block;
+import threads.lite.format.BlockStore;
+import threads.lite.format.Metrics;
+
+// Segmented LRU cache in front of a block store. Blocks enter the probation segment on a
+// load, a second hit promotes them to the protected segment, which holds at most
+// PROTECTED_RATIO of the capacity (in bytes). Blocks which were only read once (e.g.
+// a stream over a large file) are evicted before the frequently used ones (e.g. the
+// internal nodes of a DAG).
+// Next to the blocks, the sizes of known blocks and the cids of known missing blocks are
+// remembered (bounded by the number of entries), so that getSize and hasBlock do not
+// touch the store or load the data.
+public class CachingBlockStore implements BlockStore {
+
+    private static final float PROTECTED_RATIO = 0.8f;
+
+    private final BlockStore blockstore;
+    private final Metrics metrics;
+    private final long capacity;
+    private final long protectedCapacity;
+    private final LinkedHashMap<Cid, Block> probation =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Cid, Block> protect =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Cid, Integer> sizes;
+    private final LinkedHashMap<Cid, Boolean> missing;
+    private long probationSize = 0; // guarded by this
+    private long protectedSize = 0; // guarded by this
+    // incremented on every write, a loaded value is only cached when no write happened
+    // in the meantime
+    private long generation = 0; // guarded by this
+
+    public CachingBlockStore(@NonNull BlockStore blockstore, @NonNull Metrics metrics,
+                             long capacity, int entries) {
+        this.blockstore = blockstore;
+        this.metrics = metrics;
+        this.capacity = capacity;
+        this.protectedCapacity = (long) (capacity * PROTECTED_RATIO);
+        this.sizes = new LinkedHashMap<Cid, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Cid, Integer> eldest) {
+                return size() > entries;
+            }
+        };
+        this.missing = new LinkedHashMap<Cid, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Cid, Boolean> eldest) {
+                return size() > entries;
+            }
+        };
+    }
+
+    @Override
+    public boolean hasBlock(@NonNull Cid cid) {
+        long gen;
+        synchronized (this) {
+            if (probation.containsKey(cid) || protect.containsKey(cid) ||
+                    sizes.containsKey(cid)) {
+                metrics.cacheHit();
+                return true;
+            }
+            if (missing.containsKey(cid)) {
+                metrics.cacheHit();
+                return false;
+            }
+            gen = generation;
+        }
+        metrics.cacheMiss();
+        boolean result = blockstore.hasBlock(cid);
+        if (!result) {
+            synchronized (this) {
+                if (gen == generation) {
+                    missing.put(cid, Boolean.TRUE);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Block getBlock(@NonNull Cid cid) {
+        long gen;
+        synchronized (this) {
+            Block block = lookup(cid);
+            if (block != null) {
+                metrics.cacheHit();
+                return block;
+            }
+            if (missing.containsKey(cid)) {
+                metrics.cacheHit();
+                return null;
+            }
+            gen = generation;
+        }
+        metrics.cacheMiss();
+        Block block = blockstore.getBlock(cid);
+        synchronized (this) {
+            if (gen == generation) {
+                if (block == null) {
+                    missing.put(cid, Boolean.TRUE);
+                } else {
+                    admit(block);
+                }
+            }
+        }
+        return block;
+    }
+
+    @Override
+    public void deleteBlock(@NonNull Cid cid) {
+        blockstore.deleteBlock(cid);
+        synchronized (this) {
+            generation++;
+            invalidate(cid);
+        }
+    }
+
+    @Override
+    public void deleteBlocks(@NonNull List<Cid> cids) {
+        blockstore.deleteBlocks(cids);
+        synchronized (this) {
+            generation++;
+            for (Cid cid : cids) {
+                invalidate(cid);
+            }
+        }
+    }
+
+    // written blocks are not cached (an import would flush the cache), only their size
+    @Override
+    public void putBlock(@NonNull Block block) {
+        blockstore.putBlock(block);
+        synchronized (this) {
+            generation++;
+            missing.remove(block.getCid());
+            sizes.put(block.getCid(), block.getRawData().length);
+        }
+    }
+
+    @Override
+    public void putBlocks(@NonNull List<Block> blocks) {
+        blockstore.putBlocks(blocks);
+        synchronized (this) {
+            generation++;
+            for (Block block : blocks) {
+                missing.remove(block.getCid());
+                sizes.put(block.getCid(), block.getRawData().length);
+            }
+        }
+    }
+
+    @Override
+    public int getSize(@NonNull Cid cid) {
+        long gen;
+        synchronized (this) {
+            Block block = lookup(cid);
+            if (block != null) {
+                metrics.cacheHit();
+                return block.getRawData().length;
+            }
+            Integer size = sizes.get(cid);
+            if (size != null) {
+                metrics.cacheHit();
+                return size;
+            }
+            gen = generation;
+        }
+        metrics.cacheMiss();
+        int size = blockstore.getSize(cid);
+        if (size > 0) {
+            synchronized (this) {
+                if (gen == generation) {
+                    sizes.put(cid, size);
+                }
+            }
+        }
+        return size;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        probation.clear();
+        protect.clear();
+        sizes.clear();
+        missing.clear();
+        probationSize = 0;
+        protectedSize = 0;
+    }
+
+    public synchronized long size() {
+        return probationSize + protectedSize;
+    }
+
+    // the caller holds the monitor
+    @Nullable
+    private Block lookup(@NonNull Cid cid) {
+        Block block = protect.get(cid);
+        if (block != null) {
+            return block;
+        }
+        block = probation.remove(cid);
+        if (block != null) {
+            // second hit, promote to the protected segment
+            int length = block.getRawData().length;
+            probationSize -= length;
+            protect.put(cid, block);
+            protectedSize += length;
+
+            // demote the least recently used protected blocks
+            Iterator<Map.Entry<Cid, Block>> iterator = protect.entrySet().iterator();
+            while (protectedSize > protectedCapacity && iterator.hasNext()) {
+                Map.Entry<Cid, Block> entry = iterator.next();
+                if (entry.getKey().equals(cid)) {
+                    break;
+                }
+                iterator.remove();
+                int demoted = entry.getValue().getRawData().length;
+                protectedSize -= demoted;
+                probation.put(entry.getKey(), entry.getValue());
+                probationSize += demoted;
+            }
+            evict();
+        }
+        return block;
+    }
+
+    // the caller holds the monitor
+    private void admit(@NonNull Block block) {
+        int length = block.getRawData().length;
+        if (length > capacity) {
+            return;
+        }
+        if (probation.containsKey(block.getCid()) || protect.containsKey(block.getCid())) {
+            return;
+        }
+        probation.put(block.getCid(), block);
+        probationSize += length;
+        sizes.put(block.getCid(), length);
+        evict();
+    }
+
+    // the caller holds the monitor
+    private void evict() {
+        Iterator<Map.Entry<Cid, Block>> iterator = probation.entrySet().iterator();
+        while (probationSize + protectedSize > capacity && iterator.hasNext()) {
+            Map.Entry<Cid, Block> entry = iterator.next();
+            iterator.remove();
+            int length = entry.getValue().getRawData().length;
+            probationSize -= length;
+            metrics.cacheEviction(length);
+        }
+    }
+
+    // the caller holds the monitor
+    private void invalidate(@NonNull Cid cid) {
+        Block block = probation.remove(cid);
+        if (block != null) {
+            probationSize -= block.getRawData().length;
+        }
+        block = protect.remove(cid);
+        if (block != null) {
+            protectedSize -= block.getRawData().length;
+        }
+        sizes.remove(cid);
+        missing.remove(cid);
+    }
+}
@@ -0,0 +1,68 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import threads.lite.IPFS;
+import threads.lite.format.Reader;
+
+// Creates the splitter for an import, the names follow the go-ipfs chunker option
+// ("size-<size>", "rabin", "rabin-<avg>", "rabin-<min>-<avg>-<max>", "buzhash")
+public interface Chunker {
+
+    static Chunker Size(int size) {
+        if (size <= 0 || size > IPFS.BLOCK_SIZE_LIMIT) {
+            throw new RuntimeException("chunker size out of range " + size);
+        }
+        return reader -> new SizeSplitter(reader, size);
+    }
+
+    static Chunker Rabin(int avg) {
+        return Rabin(avg / 3, avg, avg + (avg / 2));
+    }
+
+    static Chunker Rabin(int min, int avg, int max) {
+        if (min < RabinSplitter.WINDOW_SIZE || min > avg || avg > max ||
+                max > IPFS.BLOCK_SIZE_LIMIT) {
+            throw new RuntimeException("invalid rabin chunker sizes " +
+                    min + "-" + avg + "-" + max);
+        }
+        return reader -> new RabinSplitter(reader, min, avg, max);
+    }
+
+    static Chunker Buzhash() {
+        return BuzhashSplitter::new;
+    }
+
+    static Chunker DefaultSplitter() {
+        return Size(IPFS.CHUNK_SIZE);
+    }
+
+    @NonNull
+    static Chunker FromString(@NonNull String chunker) {
+        try {
+            if (chunker.isEmpty() || chunker.equals("default")) {
+                return DefaultSplitter();
+            } else if (chunker.startsWith("size-")) {
+                return Size(Integer.parseInt(chunker.substring(5)));
+            } else if (chunker.equals("rabin")) {
+                return Rabin(IPFS.CHUNK_SIZE);
+            } else if (chunker.startsWith("rabin-")) {
+                String[] sizes = chunker.substring(6).split("-");
+                if (sizes.length == 1) {
+                    return Rabin(Integer.parseInt(sizes[0]));
+                } else if (sizes.length == 3) {
+                    return Rabin(Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]),
+                            Integer.parseInt(sizes[2]));
+                }
+            } else if (chunker.equals("buzhash")) {
+                return Buzhash();
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new RuntimeException("invalid chunker " + chunker, numberFormatException);
+        }
+        throw new RuntimeException("unrecognized chunker option " + chunker);
+    }
+
+    @NonNull
+    Splitter NewSplitter(@NonNull Reader reader);
+}
@@ -4,12 +4,12 @@ import androidx.annotation.NonNull;
 
 import com.google.protobuf.MessageLite;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import threads.lite.IPFS;
@@ -21,12 +21,13 @@ import threads.lite.core.ProtocolIssue;
 
 public class DataHandler {
     private static final String TAG = DataHandler.class.getSimpleName();
-    private final Set<String> tokens = new HashSet<>();
+    private final Set<String> tokens = new LinkedHashSet<>();
     private final Set<String> expected;
     private final int maxLength;
     private ByteArrayOutputStream temp = new ByteArrayOutputStream();
     private boolean isDone = false;
     private byte[] message = null;
+    private final List<byte[]> messages = new ArrayList<>();
     private int expectedLength;
 
     public DataHandler(Set<String> expected, int maxLength) {
@@ -35,31 +36,6 @@ public class DataHandler {
         this.maxLength = maxLength;
     }
 
-    private static int copy(InputStream source, OutputStream sink, int length) throws IOException {
-        int nread = 0;
-        byte[] buf = new byte[length];
-        int n;
-        while ((n = source.read(buf)) > 0) {
-            sink.write(buf, 0, n);
-            nread += n;
-            if (nread == length) {
-                break;
-            }
-        }
-        return nread;
-    }
-
-    private static int copy(InputStream source, OutputStream sink) throws IOException {
-        int nread = 0;
-        byte[] buf = new byte[4096];
-        int n;
-        while ((n = source.read(buf)) > 0) {
-            sink.write(buf, 0, n);
-            nread += n;
-        }
-        return nread;
-    }
-
     public static byte[] encode(@NonNull MessageLite message) {
         return encode(message.toByteArray());
     }
@@ -110,6 +86,15 @@ public class DataHandler {
         return tokens;
     }
 
+    // Returns all messages which are completely read since the last call and removes
+    // them from the handler (required for streams which contain more then one message)
+    @NonNull
+    public List<byte[]> takeMessages() {
+        List<byte[]> result = new ArrayList<>(messages);
+        messages.clear();
+        return result;
+    }
+
     public void load(@NonNull byte[] data)
             throws IOException, ProtocolIssue, DataLimitIssue {
 
@@ -122,58 +107,79 @@ public class DataHandler {
             return;
         }
 
+        // only the not yet consumed bytes are in temp, so each byte is parsed only once
+        byte[] buffer = temp.toByteArray();
+        int offset = 0;
+        while (offset < buffer.length) {
+
+            int index = offset;
+            int length = 0;
+            int shift = 0;
+            boolean complete = false;
+            while (index < buffer.length) {
+                int b = buffer[index++] & 0xff;
+                length |= (b & 0x7f) << shift;
+                if (b < 0x80) {
+                    complete = true;
+                    break;
+                }
+                shift += 7;
+                if (shift > 28) {
+                    throw new DataLimitIssue("invalid length prefix");
+                }
+            }
+            if (!complete) {
+                break;
+            }
 
-        try (InputStream inputStream = new ByteArrayInputStream(temp.toByteArray())) {
-            expectedLength = (int) Multihash.readVarint(inputStream);
-
+            expectedLength = length;
             if (expectedLength > maxLength) {
                 LogUtils.error(TAG, "expected length " + expectedLength + " max length " + maxLength);
                 throw new DataLimitIssue("expected length " + expectedLength + " max length " + maxLength);
             }
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            int read = copy(inputStream, outputStream, expectedLength);
-            if (read == expectedLength) {
-                // token found
-                byte[] tokenData = outputStream.toByteArray();
-                // expected to be for a token
-                if (tokenData[0] == '/' && tokenData[read - 1] == '\n') {
-                    String token = new String(tokenData, Charsets.UTF_8);
-                    token = token.substring(0, read - 1);
-                    if (!expected.contains(token)) {
-                        LogUtils.debug(TAG, "not expected token " + token);
-                        throw new ProtocolIssue("not handled token " + token);
-                    }
-                    tokens.add(token);
-                    //LogUtils.error(TAG, "token  " + token);
-                } else if (tokenData[0] == 'n' && tokenData[1] == 'a' && tokenData[read - 1] == '\n') {
-                    LogUtils.error(TAG, "na token");
-                    throw new ProtocolIssue("na token");
-                } else if (tokenData[0] == 'l' && tokenData[1] == 's' && tokenData[read - 1] == '\n') {
-                    LogUtils.error(TAG, "ls token");
-                    tokens.add(IPFS.LS);
-                } else {
-                    //LogUtils.error(TAG, "token ??? " + new String(tokenData));
-                    message = tokenData;
-                }
-                // check if still data to read
-                ByteArrayOutputStream rest = new ByteArrayOutputStream();
-                int restRead = copy(inputStream, rest);
-                if (restRead == 0) {
-                    isDone = true;
-                } else {
-                    DataHandler sub = new DataHandler(expected, maxLength);
-                    sub.load(rest.toByteArray());
-                    this.merge(sub);
-                }
+            if (buffer.length - index < expectedLength) {
+                break;
             }
+
+            byte[] tokenData = Arrays.copyOfRange(buffer, index, index + expectedLength);
+            offset = index + expectedLength;
+            expectedLength = 0;
+            evaluate(tokenData);
         }
 
+        temp = new ByteArrayOutputStream();
+        temp.write(buffer, offset, buffer.length - offset);
+        isDone = temp.size() == 0;
+    }
+
+    private void evaluate(@NonNull byte[] tokenData) throws ProtocolIssue {
+        int read = tokenData.length;
+        // expected to be for a token
+        if (read > 0 && tokenData[0] == '/' && tokenData[read - 1] == '\n') {
+            String token = new String(tokenData, Charsets.UTF_8);
+            token = token.substring(0, read - 1);
+            if (!expected.contains(token)) {
+                LogUtils.debug(TAG, "not expected token " + token);
+                throw new ProtocolIssue("not handled token " + token);
+            }
+            tokens.add(token);
+        } else if (read > 2 && tokenData[0] == 'n' && tokenData[1] == 'a' && tokenData[read - 1] == '\n') {
+            LogUtils.error(TAG, "na token");
+            throw new ProtocolIssue("na token");
+        } else if (read > 2 && tokenData[0] == 'l' && tokenData[1] == 's' && tokenData[read - 1] == '\n') {
+            LogUtils.error(TAG, "ls token");
+            tokens.add(IPFS.LS);
+        } else {
+            message = tokenData;
+            messages.add(tokenData);
+        }
     }
 
     public void clear() {
         isDone = false;
         expectedLength = 0;
         message = null;
+        messages.clear();
         tokens.clear();
         try {
             temp.close();
@@ -182,15 +188,6 @@ public class DataHandler {
         }
     }
 
-    private void merge(DataHandler dataReader) throws IOException {
-        this.expectedLength = dataReader.expectedLength;
-        this.isDone = dataReader.isDone;
-        this.tokens.addAll(dataReader.tokens);
-        this.message = dataReader.message;
-        this.temp.close();
-        this.temp = dataReader.temp;
-    }
-
     public int expectedBytes() {
         return expectedLength;
 
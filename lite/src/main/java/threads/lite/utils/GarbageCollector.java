@@ -0,0 +1,344 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import threads.lite.IPFS;
+import threads.lite.LogUtils;
+import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.dag.BlockService;
+import threads.lite.dag.DagService;
+import threads.lite.data.Pins;
+import threads.lite.data.Storage;
+import threads.lite.format.Block;
+import threads.lite.format.BlockStore;
+import threads.lite.format.Link;
+import threads.lite.format.Metrics;
+import threads.lite.format.Node;
+
+// Incremental mark and sweep garbage collector of the block storage.
+// Mark: the DAGs of the recursive pins and the blocks of the direct pins are marked in a
+// Bloom filter over the keys of the storage. Only the nodes with links are remembered
+// exactly (so a shared part of a DAG is traversed once), a false positive of the filter
+// must not prune the traversal. Raw leaves are marked without loading them.
+// Sweep: the key space of the storage is streamed, a key which is not in the filter is
+// deleted. A false positive only keeps a garbage block until the next collection.
+// Both phases pause after IPFS.GC_BATCH_SIZE blocks, reads are never blocked.
+//
+// While a collection runs, every written block and every block which is found by a check
+// or a read is marked (barrier, see createBlockStore) and a new pin marks its DAG; marking
+// and the check and delete of the sweep are atomic. So an add which finds a block instead
+// of writing it again does not lose it. The blocks an add wrote, checked or read before a
+// collection started are remembered (see begin) and marked by the collection, so an add
+// only holds the lock (see getLock) for its final pin. The time the pins are blocked is
+// the pause.
+public class GarbageCollector {
+
+    private static final String TAG = GarbageCollector.class.getSimpleName();
+    @NonNull
+    private final Storage storage;
+    @NonNull
+    private final Pins pins;
+    @NonNull
+    private final Metrics metrics;
+    @NonNull
+    private final DagService dagService;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService collector = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final AtomicBoolean collecting = new AtomicBoolean(false);
+    // the blocks written, checked or read while an add (or a fetch) runs, cleared when none
+    // runs
+    private final Set<Cid> added = ConcurrentHashMap.newKeySet();
+    private final Object addsLock = new Object();
+    private volatile int adds = 0;
+    // the marks of the running collection, null otherwise
+    @Nullable
+    private volatile BloomFilter<byte[]> marks;
+
+    public GarbageCollector(@NonNull Storage storage, @NonNull Pins pins,
+                            @NonNull Metrics metrics) {
+        this.storage = storage;
+        this.pins = pins;
+        this.metrics = metrics;
+        // only the stored blocks, not cached
+        BlockStore blockStore = BlockStore.createBlockStore(storage);
+        this.dagService = DagService.createDagService(
+                BlockService.createBlockService(blockStore, new Exchange(blockStore)));
+    }
+
+    // rate limit, pauses after every IPFS.GC_BATCH_SIZE blocks
+    private static void throttle(@NonNull Closeable closeable, int count)
+            throws ClosedException {
+        if (closeable.isClosed()) {
+            throw new ClosedException();
+        }
+        if (count % IPFS.GC_BATCH_SIZE == 0) {
+            try {
+                Thread.sleep(IPFS.GC_BATCH_PAUSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClosedException();
+            }
+        }
+    }
+
+    private static void mark(@NonNull BloomFilter<byte[]> filter, @NonNull byte[] key) {
+        synchronized (filter) {
+            filter.put(key);
+        }
+    }
+
+    // the lock is held by the final pin of an add, a collection does not start meanwhile
+    @NonNull
+    public Lock getLock() {
+        return lock.readLock();
+    }
+
+    // an add (or a fetch) starts, the blocks from now on are kept by a collection until end
+    // is called (after the pin of the add), like a temporary pin
+    public void begin() {
+        synchronized (addsLock) {
+            adds++;
+        }
+    }
+
+    public void end() {
+        synchronized (addsLock) {
+            adds--;
+            if (adds == 0) {
+                added.clear();
+            }
+        }
+    }
+
+    // barrier, the blocks written, checked or read during a collection are marked. It is
+    // the outermost store, a cache below must not answer for a block without marking it;
+    // during a collection the existence of a block is checked in the storage, a cached
+    // block may have been swept already
+    @NonNull
+    public BlockStore createBlockStore(@NonNull BlockStore blockStore) {
+        return new BlockStore() {
+            @Override
+            public boolean hasBlock(@NonNull Cid cid) {
+                added(cid);
+                if (marked(cid)) {
+                    return storage.hasBlock(cid);
+                }
+                return blockStore.hasBlock(cid);
+            }
+
+            @Override
+            public Block getBlock(@NonNull Cid cid) {
+                added(cid);
+                if (marked(cid) && !storage.hasBlock(cid)) {
+                    return null;
+                }
+                return blockStore.getBlock(cid);
+            }
+
+            @Override
+            public void deleteBlock(@NonNull Cid cid) {
+                blockStore.deleteBlock(cid);
+            }
+
+            @Override
+            public void deleteBlocks(@NonNull List<Cid> cids) {
+                blockStore.deleteBlocks(cids);
+            }
+
+            @Override
+            public void putBlock(@NonNull Block block) {
+                added(block.getCid());
+                marked(block.getCid());
+                blockStore.putBlock(block);
+            }
+
+            @Override
+            public void putBlocks(@NonNull List<Block> blocks) {
+                for (Block block : blocks) {
+                    added(block.getCid());
+                    marked(block.getCid());
+                }
+                blockStore.putBlocks(blocks);
+            }
+
+            @Override
+            public int getSize(@NonNull Cid cid) {
+                return blockStore.getSize(cid);
+            }
+        };
+    }
+
+    // remembered before the marks are checked, a collection which started meanwhile marks
+    // it (the added blocks are marked after the marks are set)
+    private void added(@NonNull Cid cid) {
+        if (adds > 0) {
+            added.add(cid);
+        }
+    }
+
+    // marked before the block is written or checked, a sweep which deleted the block before
+    // is fine (it is written again or not found), returns true when a collection runs
+    private boolean marked(@NonNull Cid cid) {
+        BloomFilter<byte[]> filter = marks;
+        if (filter != null) {
+            mark(filter, storage.getKey(cid));
+            return true;
+        }
+        return false;
+    }
+
+    public void pin(@NonNull Closeable closeable, @NonNull Cid cid, boolean recursive)
+            throws ClosedException {
+        pins.pin(cid, recursive);
+        // the pins are read after the marks are set, a collection which started before
+        // does not know the pin
+        BloomFilter<byte[]> filter = marks;
+        if (filter != null) {
+            if (recursive) {
+                markDag(closeable, filter, new HashSet<>(), cid);
+            } else {
+                mark(filter, storage.getKey(cid));
+            }
+        }
+    }
+
+    // a collection runs, blocks written from now on are kept
+    public boolean isCollecting() {
+        return marks != null;
+    }
+
+    // runs a collection in the background (unless one is running), see collect for invalidate
+    public void start(@NonNull Runnable invalidate) {
+        if (!collecting.getAndSet(true)) {
+            collector.execute(() -> {
+                try {
+                    collect(() -> false, invalidate);
+                } catch (Throwable throwable) {
+                    LogUtils.error(TAG, throwable);
+                } finally {
+                    collecting.set(false);
+                }
+            });
+        }
+    }
+
+    public void collect(@NonNull Closeable closeable) throws ClosedException {
+        collect(closeable, () -> {
+        });
+    }
+
+    // removes the blocks which are not pinned, the result is reported to the metrics.
+    // invalidate is run while the barrier is still active, to clear a cache of the swept
+    // blocks (afterwards a cached block is not checked anymore)
+    public synchronized void collect(@NonNull Closeable closeable, @NonNull Runnable invalidate)
+            throws ClosedException {
+        long start = System.currentTimeMillis();
+        BloomFilter<byte[]> filter = BloomFilter.create(Funnels.byteArrayFunnel(),
+                Math.max(IPFS.GC_BATCH_SIZE, 2L * storage.numBlocks()),
+                IPFS.GC_FALSE_POSITIVE_RATE);
+        long locked = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            marks = filter;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long pause = System.currentTimeMillis() - locked;
+
+        try {
+            int marked = 0;
+            for (Cid cid : added) {
+                mark(filter, storage.getKey(cid));
+                throttle(closeable, ++marked);
+            }
+            for (Cid cid : pins.getPins(false)) {
+                mark(filter, storage.getKey(cid));
+                throttle(closeable, ++marked);
+            }
+            Set<Cid> visited = new HashSet<>();
+            for (Cid cid : pins.getPins(true)) {
+                marked += markDag(closeable, filter, visited, cid);
+            }
+            long sweep = System.currentTimeMillis();
+
+            int swept = 0;
+            int removed = 0;
+            long reclaimed = 0;
+            Iterator<byte[]> keys = storage.keys();
+            while (keys.hasNext()) {
+                byte[] key = keys.next();
+                int size = -1;
+                synchronized (filter) {
+                    if (!filter.mightContain(key)) {
+                        size = storage.deleteKey(key);
+                    }
+                }
+                if (size >= 0) {
+                    removed++;
+                    reclaimed += size;
+                }
+                throttle(closeable, ++swept);
+            }
+            metrics.garbageCollected(removed, reclaimed, pause);
+            LogUtils.info(TAG, "Collect marked " + marked + " took " + (sweep - start) +
+                    ", swept " + swept + " removed " + removed + " reclaimed " + reclaimed +
+                    " took " + (System.currentTimeMillis() - sweep) + " pause " + pause);
+        } finally {
+            invalidate.run();
+            marks = null;
+        }
+    }
+
+    // marks the DAG of the root (as far as it is stored), returns the number of marked blocks
+    private int markDag(@NonNull Closeable closeable, @NonNull BloomFilter<byte[]> filter,
+                        @NonNull Set<Cid> visited, @NonNull Cid root) throws ClosedException {
+        int count = 0;
+        Deque<Cid> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Cid cid = stack.pop();
+            // marked before it is loaded, it is not swept afterwards
+            mark(filter, storage.getKey(cid));
+            throttle(closeable, ++count);
+            if (cid.getType() == Cid.Raw || visited.contains(cid)) {
+                continue;
+            }
+            Node node = dagService.getNode(closeable, cid, false);
+            if (node == null) {
+                continue; // not stored
+            }
+            List<Link> links = node.getLinks();
+            if (!links.isEmpty()) {
+                visited.add(cid);
+                for (Link link : links) {
+                    stack.push(link.getCid());
+                }
+            }
+        }
+        return count;
+    }
+}
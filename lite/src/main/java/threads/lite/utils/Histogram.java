@@ -0,0 +1,85 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts values in buckets with fixed upper bounds, the last bucket holds the values
+// above the largest bound. Thread-safe, recording does not allocate.
+public class Histogram {
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+
+    public Histogram(@NonNull long... bounds) {
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("At least one bound is required");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bounds must be increasing");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts.incrementAndGet(index);
+        total.incrementAndGet();
+        sum.addAndGet(value);
+    }
+
+    @NonNull
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    // counts per bucket, one more than there are bounds
+    @NonNull
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public double getMean() {
+        long count = total.get();
+        if (count == 0) {
+            return 0.0;
+        }
+        return (double) sum.get() / count;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Histogram{");
+        for (int i = 0; i < counts.length(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            if (i < bounds.length) {
+                builder.append("<=").append(bounds[i]);
+            } else {
+                builder.append(">").append(bounds[bounds.length - 1]);
+            }
+            builder.append('=').append(counts.get(i));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -49,6 +49,14 @@ public class MetricsBlockStore implements BlockStore {
         blockstore.putBlock(block);
     }
 
+    @Override
+    public void putBlocks(@NonNull List<Block> blocks) {
+        for (Block block : blocks) {
+            metrics.leeching(block.getRawData().length);
+        }
+        blockstore.putBlocks(blocks);
+    }
+
     @Override
     public int getSize(@NonNull Cid cid) {
         return blockstore.getSize(cid);
@@ -0,0 +1,98 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.dag.DagService;
+import threads.lite.format.Node;
+
+// LRU cache of decoded dag-pb nodes (bounded by the size of their encoding), so that the
+// directories and the root nodes of files are unmarshalled once and not on every resolve
+// or listing. Raw leaves are not decoded anyway and are not cached.
+// The cached nodes are shared, they must not be changed (a Directory works on a copy).
+public class NodeCache {
+
+    private final long capacity;
+    private final LinkedHashMap<Cid, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0; // guarded by this
+
+    public NodeCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // only the nodes read through the returned service are cached, added nodes are not
+    @NonNull
+    public DagService createDagService(@NonNull DagService dagService) {
+        return new DagService() {
+            @Nullable
+            @Override
+            public Node getNode(@NonNull Closeable closeable, @NonNull Cid cid, boolean root)
+                    throws ClosedException {
+                if (cid.getType() != Cid.DagProtobuf) {
+                    return dagService.getNode(closeable, cid, root);
+                }
+                Node node = get(cid);
+                if (node == null) {
+                    node = dagService.getNode(closeable, cid, root);
+                    if (node != null) {
+                        put(cid, node);
+                    }
+                }
+                return node;
+            }
+
+            @Override
+            public void preload(@NonNull Closeable ctx, @NonNull List<Cid> cids) {
+                dagService.preload(ctx, cids);
+            }
+
+            @Override
+            public void Add(@NonNull Node nd) {
+                dagService.Add(nd);
+            }
+
+            @Override
+            public void AddMany(@NonNull List<Node> nodes) {
+                dagService.AddMany(nodes);
+            }
+        };
+    }
+
+    @Nullable
+    public synchronized Node get(@NonNull Cid cid) {
+        return nodes.get(cid);
+    }
+
+    public synchronized void put(@NonNull Cid cid, @NonNull Node node) {
+        int length = node.getRawData().length;
+        if (length > capacity || nodes.containsKey(cid)) {
+            return;
+        }
+        nodes.put(cid, node);
+        size += length;
+
+        Iterator<Map.Entry<Cid, Node>> iterator = nodes.entrySet().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Map.Entry<Cid, Node> entry = iterator.next();
+            iterator.remove();
+            size -= entry.getValue().getRawData().length;
+        }
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        size = 0;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+}
@@ -1,7 +1,5 @@
 package threads.lite.utils;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
@@ -34,7 +32,8 @@ public class Path {
     }
 
 
-    public static Pair<Cid, List<String>> splitAbsPath(Path fpath) {
+    @NonNull
+    public static ResolvedPath splitAbsPath(Path fpath) {
         List<String> parts = fpath.segments();
         String ident = parts.get(0);
         if (Objects.equals(ident, "ipfs") || (Objects.equals(ident, "ipld"))) {
@@ -51,7 +50,7 @@ public class Path {
         Cid cid = decodeCid(txt);
         parts.remove(txt);
 
-        return Pair.create(cid, parts);
+        return new ResolvedPath(cid, parts);
     }
 
 
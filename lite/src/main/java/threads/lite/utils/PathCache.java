@@ -0,0 +1,133 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import threads.lite.cid.Cid;
+import threads.lite.dag.FSNode;
+import threads.lite.format.Node;
+import threads.lite.format.RawNode;
+
+// LRU cache of resolved paths, a root cid with the path segments below it. The content of
+// a cid never changes and so does not the result of a path below it, the entries are never
+// invalidated, only the least recently used ones are evicted (bounded by the number of
+// entries). Next to the resolved cid, the type and the size of its node are kept, so that
+// e.g. a check for a directory does not load the node again.
+public class PathCache {
+
+    private final LinkedHashMap<Key, Entry> entries;
+
+    public PathCache(int entries) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > entries;
+            }
+        };
+    }
+
+    @Nullable
+    public synchronized Entry get(@NonNull Cid root, @NonNull List<String> path) {
+        return entries.get(new Key(root, path));
+    }
+
+    // the entry is also known by its cid (with no path), a lookup of the resolved cid
+    // itself is a hit
+    public synchronized void put(@NonNull Cid root, @NonNull List<String> path,
+                                 @NonNull Entry entry) {
+        entries.put(new Key(root, new ArrayList<>(path)), entry);
+        if (!path.isEmpty()) {
+            entries.put(new Key(entry.getCid(), new ArrayList<>()), entry);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public static class Entry {
+        @NonNull
+        private final Cid cid;
+        @Nullable
+        private final unixfs.pb.Unixfs.Data.DataType type;
+        private final long size;
+
+        private Entry(@NonNull Cid cid, @Nullable unixfs.pb.Unixfs.Data.DataType type,
+                      long size) {
+            this.cid = cid;
+            this.type = type;
+            this.size = size;
+        }
+
+        @NonNull
+        public static Entry create(@NonNull Node node) {
+            unixfs.pb.Unixfs.Data.DataType type = null;
+            if (node instanceof RawNode) {
+                type = unixfs.pb.Unixfs.Data.DataType.Raw;
+            } else {
+                try {
+                    type = FSNode.extractFSNode(node).Type();
+                } catch (Throwable ignore) {
+                    // not a UnixFS node
+                }
+            }
+            return new Entry(node.getCid(), type, node.size());
+        }
+
+        @NonNull
+        public Cid getCid() {
+            return cid;
+        }
+
+        // the UnixFS type of the node, null when it is not a UnixFS node
+        @Nullable
+        public unixfs.pb.Unixfs.Data.DataType getType() {
+            return type;
+        }
+
+        // the cumulative size of the DAG
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDir() {
+            return type == unixfs.pb.Unixfs.Data.DataType.Directory ||
+                    type == unixfs.pb.Unixfs.Data.DataType.HAMTShard;
+        }
+    }
+
+    private static class Key {
+        @NonNull
+        private final Cid root;
+        @NonNull
+        private final List<String> path;
+
+        private Key(@NonNull Cid root, @NonNull List<String> path) {
+            this.root = root;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return root.equals(key.root) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(root, path);
+        }
+    }
+}
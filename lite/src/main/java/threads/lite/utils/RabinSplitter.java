@@ -0,0 +1,154 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import threads.lite.format.Reader;
+
+// Content defined chunking with a Rabin fingerprint over a sliding window of 64 bytes
+// (see go-ipfs rabin chunker, same polynomial). A chunk ends when the low log2(avg) bits
+// of the fingerprint are zero, but not before min and not after max bytes. The first
+// min - 64 bytes of a chunk are not hashed. Window and buffers are allocated once.
+public class RabinSplitter implements Splitter {
+    public static final int WINDOW_SIZE = 64;
+    private static final long POLYNOMIAL = 17437180132763653L;
+    private static final int BUFFER_SIZE = 64 * 1024; // 64 KB
+    private static final int DEGREE = degree(POLYNOMIAL);
+    private static final int SHIFT = DEGREE - 8;
+    private static final long[] OUT = new long[256];
+    private static final long[] MOD = new long[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            // fingerprint of b followed by WINDOW_SIZE - 1 zeros, xor removes b from the window
+            long hash = appendByte(0, (byte) b);
+            for (int i = 0; i < WINDOW_SIZE - 1; i++) {
+                hash = appendByte(hash, (byte) 0);
+            }
+            OUT[b] = hash;
+
+            // reduction of the 8 bits above the degree in a single xor
+            MOD[b] = mod(((long) b) << DEGREE) | (((long) b) << DEGREE);
+        }
+    }
+
+    private final Reader reader;
+    private final int min;
+    private final int max;
+    private final long mask;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final byte[] data;
+    private int wpos;
+    private long digest;
+    private int count; // bytes of the current chunk
+    private int pre; // bytes to skip before hashing
+    private int bpos = 0;
+    private int bmax = 0;
+    private boolean done = false;
+
+    public RabinSplitter(@NonNull Reader reader, int min, int avg, int max) {
+        this.reader = reader;
+        this.min = min;
+        this.max = max;
+        this.mask = (1L << (31 - Integer.numberOfLeadingZeros(avg))) - 1;
+        this.data = new byte[max];
+        reset();
+    }
+
+    private static int degree(long polynomial) {
+        return 63 - Long.numberOfLeadingZeros(polynomial);
+    }
+
+    // polynomial modulo over GF(2)
+    private static long mod(long value) {
+        int degree = degree(value);
+        while (degree >= DEGREE) {
+            value ^= POLYNOMIAL << (degree - DEGREE);
+            degree = degree(value);
+        }
+        return value;
+    }
+
+    private static long appendByte(long hash, byte b) {
+        return mod((hash << 8) | (b & 0xFF));
+    }
+
+    private void reset() {
+        Arrays.fill(window, (byte) 0);
+        digest = 0;
+        wpos = 0;
+        count = 0;
+        slide((byte) 1);
+        pre = min - WINDOW_SIZE;
+    }
+
+    private void slide(byte b) {
+        int out = window[wpos] & 0xFF;
+        window[wpos] = b;
+        digest ^= OUT[out];
+        wpos = (wpos + 1) % WINDOW_SIZE;
+
+        int index = (int) (digest >>> SHIFT);
+        digest = (digest << 8) | (b & 0xFF);
+        digest ^= MOD[index];
+    }
+
+    @Override
+    public Reader Reader() {
+        return reader;
+    }
+
+    @Override
+    public byte[] NextBytes() {
+        while (!done) {
+            if (bpos >= bmax) {
+                int read = reader.read(buf, 0, buf.length);
+                if (read < 0) {
+                    done = true;
+                    if (count > 0) {
+                        return chunk();
+                    }
+                    return null;
+                }
+                bpos = 0;
+                bmax = read;
+                continue;
+            }
+
+            if (pre > 0) {
+                int length = Math.min(pre, bmax - bpos);
+                System.arraycopy(buf, bpos, data, count, length);
+                bpos += length;
+                count += length;
+                pre -= length;
+                continue;
+            }
+
+            while (bpos < bmax) {
+                byte b = buf[bpos++];
+                slide(b);
+                data[count++] = b;
+                if (count < min) {
+                    continue;
+                }
+                if ((digest & mask) == 0 || count >= max) {
+                    return chunk();
+                }
+            }
+        }
+        return null;
+    }
+
+    private byte[] chunk() {
+        byte[] result = Arrays.copyOf(data, count);
+        reset();
+        return result;
+    }
+
+    @Override
+    public boolean Done() {
+        return done;
+    }
+}
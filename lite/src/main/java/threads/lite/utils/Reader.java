@@ -3,6 +3,7 @@ package threads.lite.utils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 import threads.lite.bitswap.Interface;
@@ -12,12 +13,16 @@ import threads.lite.core.ClosedException;
 import threads.lite.dag.BlockService;
 import threads.lite.dag.DagReader;
 import threads.lite.dag.DagService;
+import threads.lite.dag.ReadAhead;
 import threads.lite.format.BlockStore;
 
 public class Reader {
 
     private final DagReader dagReader;
     private final Closeable closeable;
+    @Nullable
+    private ByteBuffer leaf; // leaf of the last positional read, index 0 is at leafOffset
+    private long leafOffset = 0;
 
 
     private Reader(@NonNull Closeable closeable, @NonNull DagReader dagReader) {
@@ -37,33 +42,59 @@ public class Reader {
     }
 
     public int readNextData(long offset, int size, byte[] data) throws ClosedException {
-        seek(offset);
-        byte[] bytes = loadNextData();
-        if (bytes != null) {
-            int min = Math.min(bytes.length, size);
-            System.arraycopy(bytes, 0, data, 0, min);
-            if (min < size) {
-                int remain = size - min;
-                bytes = loadNextData();
-                if (bytes != null) {
-                    System.arraycopy(bytes, 0, data, min, remain);
-                    return size;
-                } else {
-                    return min;
+        int read = read(offset, ByteBuffer.wrap(data, 0, size));
+        return Math.max(read, 0);
+    }
+
+    // Positional read, fills dst from the offset on, returns the number of bytes read or
+    // -1 when the offset is at the end. The leaf of the last read is kept, a read which
+    // continues where the last one stopped does not seek again.
+    public int read(long offset, @NonNull ByteBuffer dst) throws ClosedException {
+        long size = getSize();
+        if (offset >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && offset < size) {
+            if (leaf == null || offset < leafOffset || offset >= leafOffset + leaf.limit()) {
+                boolean contiguous = leaf != null && offset == leafOffset + leaf.limit();
+                leaf = null; // the walker state is unknown when the load fails
+                if (!contiguous) {
+                    dagReader.Seek(closeable, offset);
+                }
+                ByteBuffer next = nextBuffer();
+                while (next != null && !next.hasRemaining()) {
+                    next = nextBuffer();
+                }
+                leafOffset = offset;
+                leaf = next;
+                if (leaf == null) {
+                    break;
                 }
             }
-            return min;
+            int index = (int) (offset - leafOffset);
+            int length = Math.min(leaf.limit() - index, dst.remaining());
+            ByteBuffer src = leaf.duplicate();
+            src.position(index);
+            src.limit(index + length);
+            dst.put(src);
+            offset += length;
+            total += length;
         }
-
-        return 0;
+        if (total == 0) {
+            return -1;
+        }
+        return total;
     }
 
     public void seek(long position) throws ClosedException {
+        leaf = null;
         dagReader.Seek(closeable, position);
     }
 
     @Nullable
     public byte[] loadNextData() throws ClosedException {
+        leaf = null;
         try {
             return dagReader.loadNextData(closeable);
         } finally {
@@ -71,7 +102,28 @@ public class Reader {
         }
     }
 
+    // the next leaf payload as read-only buffer (not a copy)
+    @Nullable
+    public ByteBuffer loadNextBuffer() throws ClosedException {
+        leaf = null;
+        return nextBuffer();
+    }
+
+    @Nullable
+    private ByteBuffer nextBuffer() throws ClosedException {
+        try {
+            return dagReader.loadNextBuffer(closeable);
+        } finally {
+            dagReader.preloadData(closeable);
+        }
+    }
+
     public long getSize() {
         return this.dagReader.getSize();
     }
+
+    @NonNull
+    public ReadAhead getReadAhead() {
+        return dagReader.getReadAhead();
+    }
 }
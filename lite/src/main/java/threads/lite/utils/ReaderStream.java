@@ -1,9 +1,11 @@
 package threads.lite.utils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import threads.lite.core.ClosedException;
 
@@ -11,8 +13,8 @@ import threads.lite.core.ClosedException;
 public class ReaderStream extends InputStream {
     private static final String TAG = ReaderStream.class.getSimpleName();
     private final Reader reader;
-    private int position = 0;
-    private byte[] data = null;
+    @Nullable
+    private ByteBuffer data = null; // payload of the current leaf (not a copy)
 
     public ReaderStream(@NonNull Reader reader) {
         this.reader = reader;
@@ -30,41 +32,44 @@ public class ReaderStream extends InputStream {
     public int read() throws IOException {
 
         try {
-            if (data == null) {
-                invalidate();
-                preLoad();
-            }
-            if (data == null) {
+            if (!preLoad()) {
                 return -1;
             }
-            if (position < data.length) {
-                byte value = data[position];
-                position++;
-                return (value & 0xff);
-            } else {
-                invalidate();
-                if (preLoad()) {
-                    byte value = data[position];
-                    position++;
-                    return (value & 0xff);
-                } else {
-                    return -1;
-                }
-            }
+            return data.get() & 0xff;
         } catch (Throwable e) {
             throw new IOException(e);
         }
     }
 
-    private void invalidate() {
-        position = 0;
-        data = null;
+    @Override
+    public int read(@NonNull byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        try {
+            if (!preLoad()) {
+                return -1;
+            }
+            int read = Math.min(length, data.remaining());
+            data.get(bytes, offset, read);
+            return read;
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
     }
 
-
+    // loads the next leaf when the current one is consumed
     private boolean preLoad() throws ClosedException {
-        data = reader.loadNextData();
-        return data != null;
+        while (data == null || !data.hasRemaining()) {
+            data = reader.loadNextBuffer();
+            if (data == null) {
+                return false;
+            }
+        }
+        return true;
     }
 
 
@@ -9,8 +9,11 @@ import java.util.Hashtable;
 import java.util.List;
 
 import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
 import threads.lite.format.Link;
 import threads.lite.format.Node;
+import threads.lite.format.NodeGetter;
 
 
 public class RefWriter {
@@ -18,15 +21,20 @@ public class RefWriter {
 
     private final Hashtable<String, Integer> seen = new Hashtable<>();
     private final List<Cid> cids = new ArrayList<>();
+    private final Closeable closeable;
+    private final NodeGetter dag;
     private final boolean unique;
     private final int maxDepth;
 
-    public RefWriter(boolean unique, int maxDepth) {
+    public RefWriter(@NonNull Closeable closeable, @NonNull NodeGetter dag,
+                     boolean unique, int maxDepth) {
+        this.closeable = closeable;
+        this.dag = dag;
         this.unique = unique;
         this.maxDepth = maxDepth;
     }
 
-    public void evalRefs(@NonNull Node top) {
+    public void evalRefs(@NonNull Node top) throws ClosedException {
         evalRefsRecursive(top, 0);
     }
 
@@ -35,7 +43,7 @@ public class RefWriter {
     }
 
 
-    public int evalRefsRecursive(@NonNull Node node, int depth) {
+    public int evalRefsRecursive(@NonNull Node node, int depth) throws ClosedException {
 
         int count = 0;
         List<Link> links = node.getLinks();
@@ -73,11 +81,16 @@ public class RefWriter {
             // - On branches not explored deep enough
             // Note when !Unique, branches are always considered
             // unexplored and only depth limits apply.
-           /*
-           if(goDeeper) {
-               int c = evalRefsRecursive(nd, depth + 1, enc);
-               count += c;
-           }*/
+            if (goDeeper) {
+                // raw leaves have no links, they are not loaded
+                if (lc.getType() == Cid.Raw) {
+                    continue;
+                }
+                Node nd = dag.getNode(closeable, lc, false);
+                if (nd != null) { // not (completely) stored, the missing part is skipped
+                    count += evalRefsRecursive(nd, depth + 1);
+                }
+            }
         }
 
         return count;
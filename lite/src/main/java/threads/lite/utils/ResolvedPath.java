@@ -0,0 +1,30 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import threads.lite.cid.Cid;
+
+// a cid and the rest of the path below it (empty when the path is fully resolved)
+public class ResolvedPath {
+    @NonNull
+    private final Cid cid;
+    @NonNull
+    private final List<String> rest;
+
+    public ResolvedPath(@NonNull Cid cid, @NonNull List<String> rest) {
+        this.cid = cid;
+        this.rest = rest;
+    }
+
+    @NonNull
+    public Cid getCid() {
+        return cid;
+    }
+
+    @NonNull
+    public List<String> getRest() {
+        return rest;
+    }
+}
@@ -1,10 +1,9 @@
 package threads.lite.utils;
 
-import android.util.Pair;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -15,18 +14,18 @@ import threads.lite.core.Closeable;
 import threads.lite.core.ClosedException;
 import threads.lite.dag.BlockService;
 import threads.lite.dag.DagService;
-import threads.lite.data.Storage;
+import threads.lite.dag.HAMTShard;
 import threads.lite.format.BlockStore;
 import threads.lite.format.Link;
 import threads.lite.format.Node;
 import threads.lite.format.NodeGetter;
+import threads.lite.format.ResolvedLink;
 
 
 public class Resolver {
 
-    public static Node resolveNode(@NonNull Closeable closeable, @NonNull Storage storage,
+    public static Node resolveNode(@NonNull Closeable closeable, @NonNull BlockStore bs,
                                    @NonNull Interface exchange, @NonNull String path) throws ClosedException {
-        BlockStore bs = BlockStore.createBlockStore(storage);
         BlockService blockservice = BlockService.createBlockService(bs, exchange);
         DagService dags = DagService.createDagService(blockservice);
         return Resolver.resolveNode(closeable, dags, Path.create(path));
@@ -43,9 +42,9 @@ public class Resolver {
             throw new RuntimeException("todo not resolved");
         }
 
-        Pair<Cid, List<String>> resolved = resolveToLastNode(ctx, dag, ipa);
+        ResolvedPath resolved = resolveToLastNode(ctx, dag, ipa);
 
-        return resolved.first;
+        return resolved.getCid();
 
     }
 
@@ -65,15 +64,16 @@ public class Resolver {
         return nodeGetter.getNode(closeable, cid, true);
     }
 
-    public static Pair<Cid, List<String>> resolveToLastNode(@NonNull Closeable closeable,
-                                                            @NonNull NodeGetter dag,
-                                                            @NonNull Path path) throws ClosedException {
-        Pair<Cid, List<String>> result = Path.splitAbsPath(path);
-        Cid c = result.first;
-        List<String> p = result.second;
+    @NonNull
+    public static ResolvedPath resolveToLastNode(@NonNull Closeable closeable,
+                                                 @NonNull NodeGetter dag,
+                                                 @NonNull Path path) throws ClosedException {
+        ResolvedPath result = Path.splitAbsPath(path);
+        Cid c = result.getCid();
+        List<String> p = result.getRest();
 
         if (p.size() == 0) {
-            return Pair.create(c, Collections.emptyList());
+            return new ResolvedPath(c, Collections.emptyList());
         }
 
         Node node = dag.getNode(closeable, c, true);
@@ -81,9 +81,9 @@ public class Resolver {
 
         while (p.size() > 0) {
 
-            Pair<Link, List<String>> resolveOnce = node.resolveLink(p);
-            Link lnk = resolveOnce.first;
-            List<String> rest = resolveOnce.second;
+            ResolvedLink resolveOnce = resolveOnce(closeable, dag, node, p);
+            Link lnk = resolveOnce.getLink();
+            List<String> rest = resolveOnce.getRest();
 
             // Note: have to drop the error here as `ResolveOnce` doesn't handle 'leaf'
             // paths (so e.g. for `echo '{"foo":123}' | ipfs dag put` we wouldn't be
@@ -93,7 +93,7 @@ public class Resolver {
             }
 
             if (rest.size() == 0) {
-                return Pair.create(lnk.getCid(), Collections.emptyList());
+                return new ResolvedPath(lnk.getCid(), Collections.emptyList());
             }
 
             node = lnk.getNode(closeable, dag);
@@ -101,23 +101,41 @@ public class Resolver {
         }
 
         if (p.size() == 0) {
-            return Pair.create(node.getCid(), Collections.emptyList());
+            return new ResolvedPath(node.getCid(), Collections.emptyList());
         }
 
         // Confirm the path exists within the object
-        Pair<Object, List<String>> success = node.resolve(p);
-        List<String> rest = success.second;
-        Object val = success.first;
+        ResolvedLink success = node.resolve(p);
+        List<String> rest = success.getRest();
 
         if (rest.size() > 0) {
             throw new RuntimeException("path failed to resolve fully");
         }
-        if (val instanceof Link) {
+        if (success.getLink() != null) {
             throw new RuntimeException("inconsistent ResolveOnce / nd.Resolve");
         }
 
-        return Pair.create(node.getCid(), p);
+        return new ResolvedPath(node.getCid(), p);
+
+    }
 
+    // a sharded directory is resolved by the hash of the name, only the shards
+    // on the path of the hash are fetched (not the sibling shards)
+    private static ResolvedLink resolveOnce(@NonNull Closeable closeable,
+                                            @NonNull NodeGetter dag,
+                                            @NonNull Node node,
+                                            @NonNull List<String> path) throws ClosedException {
+        if (HAMTShard.IsShard(node)) {
+            String name = path.get(0);
+            HAMTShard shard = HAMTShard.NewHamtFromDag(
+                    DagService.createReadOnlyDagService(dag), node);
+            Link link = shard.Find(closeable, name);
+            if (link == null) {
+                throw new RuntimeException("" + name + " not found");
+            }
+            return new ResolvedLink(link, new ArrayList<>(path.subList(1, path.size())));
+        }
+        return node.resolveLink(path);
     }
 
 }
@@ -0,0 +1,42 @@
+package threads.lite.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import threads.lite.format.Reader;
+
+public class SizeSplitter implements Splitter {
+    private final Reader reader;
+    private final int size;
+    private boolean done;
+
+    public SizeSplitter(@NonNull Reader reader, int size) {
+        this.reader = reader;
+        this.size = size;
+    }
+
+    @Override
+    public Reader Reader() {
+        return reader;
+    }
+
+    @Override
+    public byte[] NextBytes() {
+        byte[] buf = new byte[size];
+        int read = reader.read(buf);
+        if (read < 0) {
+            done = true;
+            return null;
+        } else if (read < size) {
+            return Arrays.copyOfRange(buf, 0, read);
+        } else {
+            return buf;
+        }
+    }
+
+    @Override
+    public boolean Done() {
+        return done;
+    }
+}
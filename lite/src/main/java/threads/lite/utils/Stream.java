@@ -19,7 +19,6 @@ import threads.lite.dag.BlockService;
 import threads.lite.dag.DagService;
 import threads.lite.dag.Directory;
 import threads.lite.dag.FSNode;
-import threads.lite.data.Storage;
 import threads.lite.format.BlockStore;
 import threads.lite.format.Link;
 import threads.lite.format.Node;
@@ -29,9 +28,8 @@ import threads.lite.format.ProtoNode;
 public class Stream {
 
 
-    public static Adder getFileAdder(@NonNull Storage storage) {
+    public static Adder getFileAdder(@NonNull BlockStore bs) {
 
-        BlockStore bs = BlockStore.createBlockStore(storage);
         Interface exchange = new Exchange(bs);
         BlockService blockservice = BlockService.createBlockService(bs, exchange);
         DagService dagService = DagService.createDagService(blockservice);
@@ -51,17 +49,16 @@ public class Stream {
 
 
     public static void removeCid(@NonNull Closeable closeable,
-                                 @NonNull Storage storage,
+                                 @NonNull BlockStore bs,
                                  @NonNull Cid cid) throws ClosedException {
 
-        BlockStore bs = BlockStore.createBlockStore(storage);
         Interface exchange = new Exchange(bs);
         BlockService blockservice = BlockService.createBlockService(bs, exchange);
         DagService dags = DagService.createDagService(blockservice);
         Node top = Resolver.resolveNode(closeable, dags, cid);
         Objects.requireNonNull(top);
 
-        RefWriter rw = new RefWriter(true, -1);
+        RefWriter rw = new RefWriter(closeable, dags, true, -1);
         rw.evalRefs(top);
         List<Cid> cids = new ArrayList<>(rw.getCids());
 
@@ -81,25 +78,24 @@ public class Stream {
 
         threads.lite.format.Node node = Resolver.resolveNode(closeable, dagService, cid);
         Objects.requireNonNull(node);
-        Directory dir = Directory.createDirectoryFromNode(node);
+        Directory dir = Directory.createDirectoryFromNode(dagService, node);
         return dir != null;
     }
 
-    public static Cid createEmptyDir(@NonNull Storage storage) {
+    public static Cid createEmptyDir(@NonNull BlockStore bs) {
 
-        Adder fileAdder = getFileAdder(storage);
+        Adder fileAdder = getFileAdder(bs);
 
         Node nd = fileAdder.CreateEmptyDir();
         return nd.getCid();
     }
 
 
-    public static Cid addLinkToDir(@NonNull Storage storage, @NonNull Closeable closeable,
+    public static Cid addLinkToDir(@NonNull BlockStore bs, @NonNull Closeable closeable,
                                    @NonNull Cid dir, @NonNull String name, @NonNull Cid link) throws ClosedException {
 
-        Adder fileAdder = getFileAdder(storage);
+        Adder fileAdder = getFileAdder(bs);
 
-        BlockStore bs = BlockStore.createBlockStore(storage);
         Interface exchange = new Exchange(bs);
         BlockService blockservice = BlockService.createBlockService(bs, exchange);
         DagService dagService = DagService.createDagService(blockservice);
@@ -108,24 +104,23 @@ public class Stream {
         Objects.requireNonNull(dirNode);
         threads.lite.format.Node linkNode = Resolver.resolveNode(closeable, dagService, link);
         Objects.requireNonNull(linkNode);
-        Node nd = fileAdder.AddLinkToDir(dirNode, name, linkNode);
+        Node nd = fileAdder.AddLinkToDir(closeable, dirNode, name, linkNode);
         return nd.getCid();
 
     }
 
-    public static Cid removeLinkFromDir(@NonNull Storage storage, @NonNull Closeable closeable,
+    public static Cid removeLinkFromDir(@NonNull BlockStore bs, @NonNull Closeable closeable,
                                         @NonNull Cid dir, @NonNull String name) throws ClosedException {
 
-        Adder fileAdder = getFileAdder(storage);
+        Adder fileAdder = getFileAdder(bs);
 
-        BlockStore bs = BlockStore.createBlockStore(storage);
         Interface exchange = new Exchange(bs);
         BlockService blockservice = BlockService.createBlockService(bs, exchange);
         DagService dagService = DagService.createDagService(blockservice);
 
         threads.lite.format.Node dirNode = Resolver.resolveNode(closeable, dagService, dir);
         Objects.requireNonNull(dirNode);
-        Node nd = fileAdder.RemoveChild(dirNode, name);
+        Node nd = fileAdder.RemoveChild(closeable, dirNode, name);
         return nd.getCid();
 
     }
@@ -136,11 +131,15 @@ public class Stream {
 
         BlockService blockservice = BlockService.createBlockService(blockstore, exchange);
         DagService dagService = DagService.createDagService(blockservice);
+        ls(closeable, dagService, cid, resolveChildren);
+    }
 
+    public static void ls(@NonNull LinkCloseable closeable, @NonNull DagService dagService,
+                          @NonNull Cid cid, boolean resolveChildren) throws ClosedException {
 
         threads.lite.format.Node node = Resolver.resolveNode(closeable, dagService, cid);
         Objects.requireNonNull(node);
-        Directory dir = Directory.createDirectoryFromNode(node);
+        Directory dir = Directory.createDirectoryFromNode(dagService, node);
 
         if (dir == null) {
             lsFromLinks(closeable, dagService, node.getLinks(), resolveChildren);
@@ -152,9 +151,16 @@ public class Stream {
 
 
     @NonNull
-    public static Cid write(@NonNull Storage storage, @NonNull WriterStream writerStream) {
+    public static Cid write(@NonNull BlockStore bs, @NonNull WriterStream writerStream) {
+        return write(bs, Chunker.DefaultSplitter(), writerStream);
+    }
+
+    @NonNull
+    public static Cid write(@NonNull BlockStore bs, @NonNull Chunker chunker,
+                            @NonNull WriterStream writerStream) {
 
-        Adder fileAdder = getFileAdder(storage);
+        Adder fileAdder = getFileAdder(bs);
+        fileAdder.chunker = chunker;
         Node node = fileAdder.AddReader(writerStream);
         return node.getCid();
     }
@@ -164,7 +170,7 @@ public class Stream {
                                          @NonNull Directory dir,
                                          boolean resolveChildren) throws ClosedException {
 
-        List<Link> links = dir.getNode().getLinks();
+        List<Link> links = dir.getLinks(closeable);
         for (Link link : links) {
             processLink(closeable, dagService, link, resolveChildren);
         }
@@ -199,7 +205,7 @@ public class Stream {
                 Node linkNode = link.getNode(closeable, dagService);
                 if (linkNode instanceof ProtoNode) {
                     ProtoNode pn = (ProtoNode) linkNode;
-                    FSNode d = FSNode.createFSNodeFromBytes(pn.getData());
+                    FSNode d = FSNode.extractFSNode(pn);
                     int type;
                     switch (d.Type()) {
                         case File:
@@ -0,0 +1,125 @@
+package threads.lite;
+
+
+import net.luminis.quic.ConnectionIssue;
+import net.luminis.quic.QuicClientConnection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import threads.lite.cid.Multiaddr;
+import threads.lite.host.AddressDialer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AddressDialerTest {
+
+    private static final Multiaddr DEAD = new Multiaddr("/ip4/10.0.0.1/udp/4001/quic");
+    private static final Multiaddr SLOW = new Multiaddr("/ip4/10.0.0.2/udp/4001/quic");
+    private static final Multiaddr FAST = new Multiaddr("/ip4/10.0.0.3/udp/4001/quic");
+
+    // dead addresses hang until they are interrupted (or time out after 5 sec)
+    private static QuicClientConnection handshake(Multiaddr address, long delay) throws Exception {
+        if (address.equals(DEAD)) {
+            Thread.sleep(5000);
+            throw new ConnectionIssue();
+        }
+        Thread.sleep(delay);
+        return TestConnections.createConnection();
+    }
+
+    @Test
+    public void stagger() throws Exception {
+        AddressDialer dialer = new AddressDialer(50);
+        List<Multiaddr> addresses = Arrays.asList(DEAD, DEAD, FAST);
+
+        long start = System.currentTimeMillis();
+        QuicClientConnection conn = dialer.dial(() -> false, addresses,
+                address -> handshake(address, 10));
+        long time = System.currentTimeMillis() - start;
+
+        // the dead addresses do not block the fast one for the full timeout
+        assertTrue(conn.isConnected());
+        assertTrue(time < 1000);
+        assertEquals(1, dialer.getTimeToConnect().getTotal());
+        assertEquals(1, dialer.getAttempts().getTotal());
+    }
+
+    @Test
+    public void losers() throws Exception {
+        AddressDialer dialer = new AddressDialer(10);
+        QuicClientConnection[] slow = new QuicClientConnection[1];
+        AtomicInteger interrupted = new AtomicInteger(0);
+
+        QuicClientConnection conn = dialer.dial(() -> false, Arrays.asList(SLOW, FAST),
+                address -> {
+                    try {
+                        if (address.equals(SLOW)) {
+                            slow[0] = handshake(address, 500);
+                            return slow[0];
+                        }
+                        return handshake(address, 50);
+                    } catch (InterruptedException exception) {
+                        interrupted.incrementAndGet();
+                        throw exception;
+                    }
+                });
+        assertTrue(conn.isConnected());
+        Thread.sleep(100);
+        // the slow attempt was cancelled
+        assertEquals(1, interrupted.get());
+        assertNull(slow[0]);
+    }
+
+    @Test
+    public void order() throws Exception {
+        AddressDialer dialer = new AddressDialer(1000);
+        List<Multiaddr> addresses = Arrays.asList(DEAD, FAST);
+
+        // the dead address fails, the fast one is dialed right away
+        dialer.dial(() -> false, addresses, address -> {
+            if (address.equals(DEAD)) {
+                throw new ConnectionIssue();
+            }
+            return handshake(address, 10);
+        });
+
+        // the next dial starts with the address which worked before
+        Multiaddr[] first = new Multiaddr[1];
+        QuicClientConnection conn = dialer.dial(() -> false, addresses, address -> {
+            synchronized (first) {
+                if (first[0] == null) {
+                    first[0] = address;
+                }
+            }
+            return handshake(address, 10);
+        });
+        assertTrue(conn.isConnected());
+        assertSame(FAST, first[0]);
+    }
+
+    @Test
+    public void failure() {
+        AddressDialer dialer = new AddressDialer(10);
+        try {
+            dialer.dial(() -> false, Arrays.asList(SLOW, FAST), address -> {
+                throw new ConnectionIssue();
+            });
+            fail();
+        } catch (ConnectionIssue ignore) {
+            // expected
+        } catch (Throwable throwable) {
+            fail(throwable.toString());
+        }
+        assertEquals(0, dialer.getTimeToConnect().getTotal());
+        assertEquals(1, dialer.getAttempts().getTotal());
+        assertEquals(2.0, dialer.getAttempts().getMean(), 0.001);
+    }
+}
@@ -0,0 +1,189 @@
+package threads.lite;
+
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import threads.lite.core.Progress;
+import threads.lite.utils.BuzhashSplitter;
+import threads.lite.utils.Chunker;
+import threads.lite.utils.Splitter;
+import threads.lite.utils.WriterStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkerTest {
+
+    private final Random random = new Random(42);
+
+    private byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private List<byte[]> split(Chunker chunker, byte[] data) {
+        WriterStream reader = new WriterStream(new ByteArrayInputStream(data), new Progress() {
+            @Override
+            public void setProgress(int progress) {
+            }
+
+            @Override
+            public boolean doProgress() {
+                return false;
+            }
+
+            @Override
+            public boolean isClosed() {
+                return false;
+            }
+        }, data.length);
+        Splitter splitter = chunker.NewSplitter(reader);
+        List<byte[]> chunks = new ArrayList<>();
+        while (!splitter.Done()) {
+            byte[] chunk = splitter.NextBytes();
+            if (chunk != null) {
+                chunks.add(chunk);
+            }
+        }
+        assertNull(splitter.NextBytes());
+        return chunks;
+    }
+
+    private byte[] join(List<byte[]> chunks) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            outputStream.write(chunk, 0, chunk.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private Set<String> hashes(List<byte[]> chunks) throws Exception {
+        Set<String> result = new HashSet<>();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (byte[] chunk : chunks) {
+            result.add(Arrays.toString(digest.digest(chunk)));
+        }
+        return result;
+    }
+
+    @Test
+    public void size() {
+        byte[] data = randomBytes(1000);
+        List<byte[]> chunks = split(Chunker.Size(300), data);
+        assertEquals(4, chunks.size());
+        assertEquals(100, chunks.get(3).length);
+        assertArrayEquals(data, join(chunks));
+
+        assertEquals(0, split(Chunker.Size(300), new byte[0]).size());
+    }
+
+    @Test
+    public void buzhash() {
+        byte[] data = randomBytes(5 * 1024 * 1024);
+        List<byte[]> chunks = split(Chunker.Buzhash(), data);
+        assertArrayEquals(data, join(chunks));
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).length >= BuzhashSplitter.MIN);
+            assertTrue(chunks.get(i).length <= BuzhashSplitter.MAX);
+        }
+
+        byte[] small = randomBytes(1000);
+        chunks = split(Chunker.Buzhash(), small);
+        assertEquals(1, chunks.size());
+        assertArrayEquals(small, chunks.get(0));
+
+        assertEquals(0, split(Chunker.Buzhash(), new byte[0]).size());
+    }
+
+    @Test
+    public void buzhash_boundaries() {
+        // the chunks of stored content must not change (the table is not the one of
+        // go-ipfs, see BuzhashSplitter, a vector of go-ipfs does not apply)
+        byte[] data = new byte[2 * 1024 * 1024];
+        new Random(7).nextBytes(data);
+        List<byte[]> chunks = split(Chunker.Buzhash(), data);
+        int[] sizes = new int[chunks.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = chunks.get(i).length;
+        }
+        assertArrayEquals(new int[]{425932, 224355, 135581, 398027, 166712, 311715, 270760,
+                148157, 15913}, sizes);
+    }
+
+    @Test
+    public void rabin() {
+        int min = 16 * 1024;
+        int avg = 64 * 1024;
+        int max = 128 * 1024;
+        byte[] data = randomBytes(4 * 1024 * 1024);
+        List<byte[]> chunks = split(Chunker.Rabin(min, avg, max), data);
+        assertArrayEquals(data, join(chunks));
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).length >= min);
+            assertTrue(chunks.get(i).length <= max);
+        }
+        // chunks are cut by content, not only at the maximum
+        assertTrue(chunks.size() > data.length / max + 1);
+
+        assertEquals(0, split(Chunker.Rabin(avg), new byte[0]).size());
+    }
+
+    @Test
+    public void dedup() throws Exception {
+        byte[] data = randomBytes(8 * 1024 * 1024);
+        // insert a few bytes near the beginning
+        byte[] edited = new byte[data.length + 10];
+        System.arraycopy(data, 0, edited, 0, 1000);
+        System.arraycopy(randomBytes(10), 0, edited, 1000, 10);
+        System.arraycopy(data, 1000, edited, 1010, data.length - 1000);
+
+        for (Chunker chunker : new Chunker[]{Chunker.Buzhash(), Chunker.FromString("rabin")}) {
+            Set<String> original = hashes(split(chunker, data));
+            Set<String> changed = hashes(split(chunker, edited));
+            int shared = 0;
+            for (String hash : changed) {
+                if (original.contains(hash)) {
+                    shared++;
+                }
+            }
+            assertTrue(shared >= changed.size() - 2);
+        }
+
+        // fixed size chunks are all shifted
+        Set<String> original = hashes(split(Chunker.DefaultSplitter(), data));
+        Set<String> changed = hashes(split(Chunker.DefaultSplitter(), edited));
+        changed.retainAll(original);
+        assertEquals(0, changed.size());
+    }
+
+    @Test
+    public void fromString() {
+        byte[] data = randomBytes(1000);
+        assertEquals(10, split(Chunker.FromString("size-100"), data).size());
+        assertEquals(1, split(Chunker.FromString(""), data).size());
+        assertEquals(1, split(Chunker.FromString("rabin-1024-4096-8192"), data).size());
+        assertEquals(1, split(Chunker.FromString("buzhash"), data).size());
+        for (String value : new String[]{"size-0", "size-x", "rabin-1-2", "rabin-8-4-2", "fast"}) {
+            try {
+                Chunker.FromString(value);
+                fail(value);
+            } catch (RuntimeException ignore) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package threads.lite;
+
+
+import net.luminis.quic.ConnectionIssue;
+import net.luminis.quic.QuicClientConnection;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import threads.lite.cid.PeerId;
+import threads.lite.host.ConnectionManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConnectionManagerTest {
+
+    @Test
+    public void reuse() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        PeerId peerId = PeerId.random();
+        AtomicInteger dials = new AtomicInteger(0);
+        ConnectionManager.Dialer dialer = (closeable, id) -> {
+            dials.incrementAndGet();
+            return TestConnections.createConnection();
+        };
+
+        QuicClientConnection conn = manager.connect(() -> false, peerId, 5, dialer);
+        for (int i = 0; i < 9; i++) {
+            assertSame(conn, manager.connect(() -> false, peerId, 5, dialer));
+        }
+        assertEquals(1, dials.get());
+        assertEquals(1, manager.getHandshakes());
+        assertEquals(0.9, manager.getReuseRatio(), 0.001);
+
+        // a closed connection is dialed again
+        conn.close();
+        QuicClientConnection next = manager.connect(() -> false, peerId, 5, dialer);
+        assertTrue(next.isConnected());
+        assertEquals(2, manager.getHandshakes());
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        PeerId peerId = PeerId.random();
+        AtomicInteger dials = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        ConnectionManager.Dialer dialer = (closeable, id) -> {
+            dials.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ignore) {
+                // ignore
+            }
+            return TestConnections.createConnection();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<QuicClientConnection>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() ->
+                    manager.connect(() -> false, peerId, 5, dialer)));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        QuicClientConnection conn = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<QuicClientConnection> future : futures) {
+            assertSame(conn, future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, dials.get());
+        assertEquals(1, manager.getHandshakes());
+        assertEquals(7, manager.getReuses());
+    }
+
+    @Test
+    public void failure() {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        PeerId peerId = PeerId.random();
+        try {
+            manager.connect(() -> false, peerId, 5, (closeable, id) -> {
+                throw new ConnectionIssue();
+            });
+            fail();
+        } catch (ConnectionIssue ignore) {
+            // expected
+        } catch (Throwable throwable) {
+            fail(throwable.toString());
+        }
+        assertEquals(0, manager.numConnections());
+        assertEquals(0, manager.getHandshakes());
+    }
+
+    @Test
+    public void watermarks() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        List<QuicClientConnection> conns = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            conns.add(manager.connect(() -> false, PeerId.random(), 60,
+                    (closeable, id) -> TestConnections.createConnection()));
+            Thread.sleep(5);
+        }
+        // above the high water mark, the least recently used are closed
+        assertEquals(2, manager.numConnections());
+        assertEquals(3, manager.getEvictions());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(conns.get(i).isConnected());
+        }
+        assertTrue(conns.get(3).isConnected());
+        assertTrue(conns.get(4).isConnected());
+    }
+
+    @Test
+    public void idle() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        QuicClientConnection conn = manager.connect(() -> false, PeerId.random(), 0,
+                (closeable, id) -> TestConnections.createConnection());
+        QuicClientConnection kept = manager.connect(() -> false, PeerId.random(), 60,
+                (closeable, id) -> TestConnections.createConnection());
+        Thread.sleep(5);
+        manager.trim();
+        assertFalse(conn.isConnected());
+        assertTrue(kept.isConnected());
+        assertEquals(1, manager.numConnections());
+    }
+
+    @Test
+    public void busy() throws Exception {
+        ConnectionManager manager = new ConnectionManager(2, 4);
+        AtomicReference<Instant> activity = new AtomicReference<>();
+        QuicClientConnection conn = manager.connect(() -> false, PeerId.random(), 1,
+                (closeable, id) -> TestConnections.createConnection(activity));
+
+        // packets after the grace period (e.g. a running transfer) keep the connection
+        Thread.sleep(1100);
+        activity.set(Instant.now());
+        manager.trim();
+        assertTrue(conn.isConnected());
+
+        // idle again for the grace period
+        Thread.sleep(1100);
+        manager.trim();
+        assertFalse(conn.isConnected());
+        assertEquals(0, manager.numConnections());
+    }
+}
@@ -0,0 +1,244 @@
+package threads.lite;
+
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import threads.lite.bitswap.Interface;
+import threads.lite.cid.Cid;
+import threads.lite.cid.Multihash;
+import threads.lite.core.Closeable;
+import threads.lite.core.ClosedException;
+import threads.lite.core.Progress;
+import threads.lite.dag.DagFetcher;
+import threads.lite.format.BasicBlock;
+import threads.lite.format.Block;
+import threads.lite.format.BlockStore;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+import threads.lite.format.ProtoNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DagFetcherTest {
+
+    private static final int CONCURRENCY = 8;
+    private static final int FANOUT = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    @NonNull
+    private Block createRawBlock(int size) throws Exception {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = Cid.encode(digest.digest(data), Multihash.Type.sha2_256.index);
+        return BasicBlock.createBlockWithCid(Cid.NewCidV1(Cid.Raw, hash), data);
+    }
+
+    // root -> FANOUT nodes -> FANOUT leaves each, all nodes also link the shared leaf
+    @NonNull
+    private Cid createDag(@NonNull Map<Cid, Block> remote) throws Exception {
+        Block shared = createRawBlock(1000);
+        remote.put(shared.getCid(), shared);
+        ProtoNode root = Node.createNodeWithData(new byte[0]);
+        for (int i = 0; i < FANOUT; i++) {
+            ProtoNode node = Node.createNodeWithData(new byte[]{(byte) i});
+            for (int j = 0; j < FANOUT; j++) {
+                Block leaf = createRawBlock(1000);
+                remote.put(leaf.getCid(), leaf);
+                node.addRawLink(Link.create(leaf.getCid().bytes(), "", 1000));
+            }
+            node.addRawLink(Link.create(shared.getCid().bytes(), "", 1000));
+            remote.put(node.getCid(), node);
+            root.addRawLink(Link.create(node.getCid().bytes(), "", FANOUT * 1000));
+        }
+        remote.put(root.getCid(), root);
+        return root.getCid();
+    }
+
+    @Test
+    public void fetch_and_resume() throws Exception {
+        Map<Cid, Block> remote = new ConcurrentHashMap<>();
+        Cid root = createDag(remote);
+        MemoryBlockStore blockStore = new MemoryBlockStore();
+        RemoteExchange exchange = new RemoteExchange(remote, blockStore);
+        File journal = DagFetcher.getJournal(folder.newFolder(), root);
+
+        // interrupted after a part of the DAG
+        Closeable closeable = () -> exchange.requests.get() >= 100;
+        DagFetcher fetcher = new DagFetcher(blockStore, exchange, CONCURRENCY, journal);
+        try {
+            fetcher.fetch(closeable, root);
+            fail();
+        } catch (ClosedException ignore) {
+            // expected
+        }
+        assertTrue(journal.exists());
+        // requests in progress are interrupted, their blocks are requested again
+        int stored = blockStore.blocks.size();
+        exchange.requests.set(0);
+
+        fetcher = new DagFetcher(blockStore, exchange, CONCURRENCY, journal);
+        assertTrue(fetcher.fetch(() -> false, root));
+        assertFalse(journal.exists());
+        assertEquals(remote.size(), blockStore.blocks.size());
+
+        // every block requested once (the shared leaf too), the stored part not again
+        assertEquals(remote.size() - stored, exchange.requests.get());
+        assertEquals(remote.size() - stored, fetcher.getFetchedBlocks());
+        assertTrue(exchange.max.get() > 1);
+        assertTrue(exchange.max.get() <= CONCURRENCY);
+        assertTrue(fetcher.getBlockRate() > 0);
+    }
+
+    @Test
+    public void same_root() throws Exception {
+        Map<Cid, Block> remote = new ConcurrentHashMap<>();
+        Cid root = createDag(remote);
+        MemoryBlockStore blockStore = new MemoryBlockStore();
+        RemoteExchange exchange = new RemoteExchange(remote, blockStore);
+        File journal = DagFetcher.getJournal(folder.newFolder(), root);
+
+        // the fetches of the same root run one after the other
+        AtomicInteger percent = new AtomicInteger();
+        AtomicBoolean other = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            try {
+                other.set(new DagFetcher(blockStore, exchange, CONCURRENCY, journal)
+                        .fetch(() -> false, root));
+            } catch (ClosedException ignore) {
+                // not closed
+            }
+        });
+        thread.start();
+        DagFetcher fetcher = new DagFetcher(blockStore, exchange, CONCURRENCY, journal);
+        assertTrue(fetcher.fetch(new Progress() {
+            @Override
+            public void setProgress(int progress) {
+                assertTrue(progress > percent.getAndSet(progress));
+            }
+
+            @Override
+            public boolean doProgress() {
+                return true;
+            }
+
+            @Override
+            public boolean isClosed() {
+                return false;
+            }
+        }, root));
+        thread.join();
+        assertTrue(other.get());
+        assertFalse(journal.exists());
+        assertEquals(100, percent.get());
+
+        // every block requested once
+        assertEquals(remote.size(), exchange.requests.get());
+    }
+
+    private static class MemoryBlockStore implements BlockStore {
+        final Map<Cid, Block> blocks = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean hasBlock(@NonNull Cid cid) {
+            return blocks.containsKey(cid);
+        }
+
+        @Override
+        public Block getBlock(@NonNull Cid cid) {
+            return blocks.get(cid);
+        }
+
+        @Override
+        public void deleteBlock(@NonNull Cid cid) {
+            blocks.remove(cid);
+        }
+
+        @Override
+        public void deleteBlocks(@NonNull List<Cid> cids) {
+            for (Cid cid : cids) {
+                deleteBlock(cid);
+            }
+        }
+
+        @Override
+        public void putBlock(@NonNull Block block) {
+            blocks.put(block.getCid(), block);
+        }
+
+        @Override
+        public void putBlocks(@NonNull List<Block> blocks) {
+            for (Block block : blocks) {
+                putBlock(block);
+            }
+        }
+
+        @Override
+        public int getSize(@NonNull Cid cid) {
+            Block block = blocks.get(cid);
+            return block == null ? -1 : block.getRawData().length;
+        }
+    }
+
+    // delivers the blocks after a delay (like bitswap, the block is stored)
+    private static class RemoteExchange implements Interface {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        private final Map<Cid, Block> remote;
+        private final BlockStore blockStore;
+
+        RemoteExchange(@NonNull Map<Cid, Block> remote, @NonNull BlockStore blockStore) {
+            this.remote = remote;
+            this.blockStore = blockStore;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public Block getBlock(@NonNull Closeable closeable, @NonNull Cid cid, boolean root)
+                throws ClosedException {
+            if (closeable.isClosed()) {
+                throw new ClosedException();
+            }
+            requests.incrementAndGet();
+            max.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new ClosedException();
+            } finally {
+                active.decrementAndGet();
+            }
+            Block block = remote.get(cid);
+            blockStore.putBlock(block);
+            return block;
+        }
+
+        @Override
+        public void preload(@NonNull Closeable closeable, @NonNull List<Cid> cids) {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package threads.lite;
+
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import threads.lite.core.Closeable;
+import threads.lite.dag.Directory;
+import threads.lite.dag.HAMTShard;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+import threads.lite.utils.Path;
+import threads.lite.utils.ResolvedPath;
+import threads.lite.utils.Resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryTest {
+
+    private static final int ENTRIES = 10000;
+    private static final Closeable closeable = () -> false;
+
+    @Test
+    public void sharded_directory() throws Exception {
+        MemoryDagService dagService = new MemoryDagService();
+
+        // a folder with many photos, every photo is added with a new directory node
+        Node dirNode = Directory.createDirectory(dagService).getNode();
+        for (int i = 0; i < ENTRIES; i++) {
+            Directory dir = Directory.createDirectoryFromNode(dagService, dirNode);
+            assertNotNull(dir);
+            dir.addChild(closeable, "IMG_" + i + ".jpg", MemoryDagService.fileNode(i));
+            dirNode = dir.getNode();
+            dagService.Add(dirNode);
+        }
+
+        // switched to a sharded directory, no block exceeds the limit
+        assertTrue(HAMTShard.IsShard(dirNode));
+        for (byte[] block : dagService.blocks.values()) {
+            assertTrue(block.length < IPFS.BLOCK_SIZE_LIMIT);
+        }
+
+        Directory dir = Directory.createDirectoryFromNode(dagService, dirNode);
+        assertNotNull(dir);
+        List<Link> links = dir.getLinks(closeable);
+        assertEquals(ENTRIES, links.size());
+        Set<String> names = new HashSet<>();
+        for (Link link : links) {
+            names.add(link.getName());
+        }
+        assertEquals(ENTRIES, names.size());
+
+        // resolving a path only fetches the shards on the path of the hash
+        dagService.gets.set(0);
+        ResolvedPath resolved = Resolver.resolveToLastNode(closeable, dagService,
+                Path.create(IPFS.IPFS_PATH + dirNode.getCid().String() + "/IMG_4711.jpg"));
+        assertEquals(MemoryDagService.fileNode(4711).getCid(), resolved.getCid());
+        assertTrue(dagService.gets.get() <= 3);
+
+        // remove half of the entries
+        for (int i = 0; i < ENTRIES; i += 2) {
+            dir.removeChild(closeable, "IMG_" + i + ".jpg");
+        }
+        assertNull(dir.find(closeable, "IMG_10.jpg"));
+        Link link = dir.find(closeable, "IMG_11.jpg");
+        assertNotNull(link);
+        assertEquals(MemoryDagService.fileNode(11).getCid(), link.getCid());
+        assertEquals(ENTRIES / 2, dir.getLinks(closeable).size());
+    }
+}
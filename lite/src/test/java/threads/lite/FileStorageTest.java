@@ -0,0 +1,273 @@
+package threads.lite;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import threads.lite.cid.Cid;
+import threads.lite.cid.Multihash;
+import threads.lite.data.FileStorage;
+import threads.lite.format.BasicBlock;
+import threads.lite.format.Block;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileStorageTest {
+
+    private static final long SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    private Block createBlock(int size) throws Exception {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = Cid.encode(digest.digest(data), Multihash.Type.sha2_256.index);
+        return BasicBlock.createBlockWithCid(Cid.NewCidV0(hash), data);
+    }
+
+    @Test
+    public void put_get_delete() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        Block block = createBlock(1000);
+        Cid cid = block.getCid();
+        assertFalse(storage.hasBlock(cid));
+        assertNull(storage.getData(cid));
+        assertEquals(-1, storage.sizeBlock(cid));
+
+        storage.insertBlock(cid, block.getRawData());
+        assertTrue(storage.hasBlock(cid));
+        assertEquals(1000, storage.sizeBlock(cid));
+        assertArrayEquals(block.getRawData(), storage.getData(cid));
+
+        storage.deleteBlock(cid);
+        assertFalse(storage.hasBlock(cid));
+        assertNull(storage.getData(cid));
+        storage.close();
+    }
+
+    @Test
+    public void multihash_key() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        Block block = createBlock(100);
+        Cid cidV0 = block.getCid();
+        Cid cidV1 = Cid.NewCidV1(Cid.DagProtobuf, cidV0.bytes());
+
+        storage.insertBlock(cidV0, block.getRawData());
+        assertTrue(storage.hasBlock(cidV1));
+        assertArrayEquals(block.getRawData(), storage.getData(cidV1));
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Cid raw = Cid.NewCidV1(Cid.Raw, Cid.encode(digest.digest(new byte[]{1}),
+                Multihash.Type.sha2_256.index));
+        assertFalse(storage.hasBlock(raw));
+        storage.insertBlock(raw, new byte[]{1});
+        assertArrayEquals(new byte[]{1}, storage.getData(raw));
+        storage.close();
+    }
+
+    @Test
+    public void mapped_buffer() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Block block = createBlock(5000);
+            storage.insertBlock(block.getCid(), block.getRawData());
+            blocks.add(block);
+        }
+        assertTrue(dir.list().length > 1);
+
+        for (Block block : blocks) {
+            ByteBuffer buffer = storage.getBuffer(block.getCid());
+            assertNotNull(buffer);
+            assertTrue(buffer.isReadOnly());
+            assertEquals(block.getRawData().length, buffer.remaining());
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            assertArrayEquals(block.getRawData(), data);
+        }
+        storage.close();
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Block block = createBlock(3000);
+            storage.insertBlock(block.getCid(), block.getRawData());
+            blocks.add(block);
+        }
+        for (int i = 0; i < 10; i++) {
+            storage.deleteBlock(blocks.get(i).getCid());
+        }
+        storage.close();
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertEquals(40, storage.numBlocks());
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (i < 10) {
+                assertFalse(storage.hasBlock(block.getCid()));
+            } else {
+                assertArrayEquals(block.getRawData(), storage.getData(block.getCid()));
+            }
+        }
+
+        // blocks are appended to the last segment after reopen
+        Block block = createBlock(3000);
+        storage.insertBlock(block.getCid(), block.getRawData());
+        storage.close();
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertEquals(41, storage.numBlocks());
+        assertArrayEquals(block.getRawData(), storage.getData(block.getCid()));
+        storage.close();
+    }
+
+    @Test
+    public void torn_record() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        Block first = createBlock(2000);
+        Block second = createBlock(2000);
+        storage.insertBlock(first.getCid(), first.getRawData());
+        storage.insertBlock(second.getCid(), second.getRawData());
+        storage.close();
+
+        // crash in the middle of the second record
+        File segment = new File(dir, "0.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 500);
+        }
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertArrayEquals(first.getRawData(), storage.getData(first.getCid()));
+        assertFalse(storage.hasBlock(second.getCid()));
+
+        storage.insertBlock(second.getCid(), second.getRawData());
+        storage.close();
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertArrayEquals(first.getRawData(), storage.getData(first.getCid()));
+        assertArrayEquals(second.getRawData(), storage.getData(second.getCid()));
+        storage.close();
+    }
+
+    @Test
+    public void corrupted_record() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        Block first = createBlock(2000);
+        Block second = createBlock(2000);
+        storage.insertBlock(first.getCid(), first.getRawData());
+        storage.insertBlock(second.getCid(), second.getRawData());
+        storage.close();
+
+        // flip the last byte of the second block
+        File segment = new File(dir, "0.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(file.length() - 1);
+            int value = file.read();
+            file.seek(file.length() - 1);
+            file.write(value ^ 0xFF);
+        }
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertArrayEquals(first.getRawData(), storage.getData(first.getCid()));
+        assertFalse(storage.hasBlock(second.getCid()));
+        storage.close();
+    }
+
+    @Test
+    public void compact() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Block block = createBlock(4000);
+            storage.insertBlock(block.getCid(), block.getRawData());
+            blocks.add(block);
+        }
+        long size = storage.size();
+
+        // keep every fourth block
+        for (int i = 0; i < blocks.size(); i++) {
+            if (i % 4 != 0) {
+                storage.deleteBlock(blocks.get(i).getCid());
+            }
+        }
+        storage.compact();
+        assertTrue(storage.size() < size / 2);
+
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (i % 4 != 0) {
+                assertFalse(storage.hasBlock(block.getCid()));
+            } else {
+                assertArrayEquals(block.getRawData(), storage.getData(block.getCid()));
+            }
+        }
+        storage.close();
+
+        // deleted blocks must not come back after compaction
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertEquals(50, storage.numBlocks());
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (i % 4 != 0) {
+                assertFalse(storage.hasBlock(block.getCid()));
+            } else {
+                assertArrayEquals(block.getRawData(), storage.getData(block.getCid()));
+            }
+        }
+        storage.close();
+    }
+
+    @Test
+    public void clear() throws Exception {
+        File dir = folder.newFolder();
+        FileStorage storage = FileStorage.open(dir, SEGMENT_SIZE);
+
+        Block block = createBlock(1000);
+        storage.insertBlock(block.getCid(), block.getRawData());
+        storage.clear();
+        assertFalse(storage.hasBlock(block.getCid()));
+        assertEquals(0, storage.numBlocks());
+
+        storage.insertBlock(block.getCid(), block.getRawData());
+        storage.close();
+
+        storage = FileStorage.open(dir, SEGMENT_SIZE);
+        assertArrayEquals(block.getRawData(), storage.getData(block.getCid()));
+        storage.close();
+    }
+}
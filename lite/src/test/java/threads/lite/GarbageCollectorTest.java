@@ -0,0 +1,282 @@
+package threads.lite;
+
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import threads.lite.cid.Cid;
+import threads.lite.cid.Multihash;
+import threads.lite.data.FileStorage;
+import threads.lite.data.Pins;
+import threads.lite.format.BasicBlock;
+import threads.lite.format.BasicMetrics;
+import threads.lite.format.Block;
+import threads.lite.format.BlockStore;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+import threads.lite.format.ProtoNode;
+import threads.lite.utils.GarbageCollector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GarbageCollectorTest {
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+
+    @NonNull
+    private Block createRawBlock(int size) throws Exception {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = Cid.encode(digest.digest(data), Multihash.Type.sha2_256.index);
+        return BasicBlock.createBlockWithCid(Cid.NewCidV1(Cid.Raw, hash), data);
+    }
+
+    // a DAG with two levels of internal nodes, the blocks are added to the list
+    @NonNull
+    private Node createDag(@NonNull BlockStore blockStore, @NonNull List<Block> blocks,
+                           @NonNull List<Block> shared) throws Exception {
+        ProtoNode root = Node.createNodeWithData(new byte[0]);
+        for (int i = 0; i < 10; i++) {
+            ProtoNode node = Node.createNodeWithData(new byte[]{(byte) i});
+            for (int j = 0; j < 20; j++) {
+                Block leaf = createRawBlock(1000);
+                blockStore.putBlock(leaf);
+                blocks.add(leaf);
+                node.addRawLink(Link.create(leaf.getCid().bytes(), "", 1000));
+            }
+            for (Block leaf : shared) {
+                node.addRawLink(Link.create(leaf.getCid().bytes(), "", 1000));
+            }
+            blockStore.putBlock(node);
+            blocks.add(node);
+            root.addRawLink(Link.create(node.getCid().bytes(), "", 20000));
+        }
+        blockStore.putBlock(root);
+        blocks.add(root);
+        return root;
+    }
+
+    @Test
+    public void mark_and_sweep() throws Exception {
+        FileStorage storage = FileStorage.open(folder.newFolder(), SEGMENT_SIZE);
+        MemoryPins pins = new MemoryPins();
+        BasicMetrics metrics = new BasicMetrics();
+        GarbageCollector collector = new GarbageCollector(storage, pins, metrics);
+        BlockStore blockStore = collector.createBlockStore(BlockStore.createBlockStore(storage));
+
+        List<Block> shared = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Block block = createRawBlock(1000);
+            blockStore.putBlock(block);
+            shared.add(block);
+        }
+        List<Block> kept = new ArrayList<>(shared);
+        Node pinned = createDag(blockStore, kept, shared);
+        List<Block> garbage = new ArrayList<>();
+        createDag(blockStore, garbage, shared);
+        Block direct = createRawBlock(1000);
+        blockStore.putBlock(direct);
+        kept.add(direct);
+
+        pins.pin(pinned.getCid(), true);
+        pins.pin(direct.getCid(), false);
+        collector.collect(() -> false);
+
+        for (Block block : kept) {
+            assertTrue(storage.hasBlock(block.getCid()));
+        }
+        int removed = 0;
+        long reclaimed = 0;
+        for (Block block : garbage) {
+            if (!storage.hasBlock(block.getCid())) {
+                removed++;
+                reclaimed += block.getRawData().length;
+            }
+        }
+        // false positives of the filter are kept
+        assertTrue(removed > garbage.size() * 0.95);
+        assertEquals(kept.size() + garbage.size() - removed, storage.numBlocks());
+        assertEquals(1, metrics.getCollections());
+        assertEquals(removed, metrics.getCollected());
+        assertEquals(reclaimed, metrics.getReclaimed());
+
+        // without pins, everything is garbage
+        pins.unpin(pinned.getCid());
+        pins.unpin(direct.getCid());
+        collector.collect(() -> false);
+        assertEquals(0, storage.numBlocks());
+        storage.close();
+    }
+
+    @Test
+    public void concurrent_writes() throws Exception {
+        FileStorage storage = FileStorage.open(folder.newFolder(), SEGMENT_SIZE);
+        GarbageCollector collector = new GarbageCollector(storage, new MemoryPins(),
+                new BasicMetrics());
+        BlockStore blockStore = collector.createBlockStore(BlockStore.createBlockStore(storage));
+
+        List<Block> garbage = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Block block = createRawBlock(100);
+            blockStore.putBlock(block);
+            garbage.add(block);
+        }
+
+        // the blocks written during the collection are kept, also when they were garbage
+        List<Block> written = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            written.add(createRawBlock(100));
+        }
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            while (!collector.isCollecting() && !done.get()) {
+                Thread.yield();
+            }
+            for (Block block : written) {
+                blockStore.putBlock(block);
+            }
+            for (int i = 0; !done.get(); i++) {
+                blockStore.putBlock(garbage.get(i % garbage.size()));
+            }
+        });
+        writer.start();
+        collector.start(() -> done.set(true));
+        writer.join();
+
+        for (Block block : written) {
+            assertTrue(storage.hasBlock(block.getCid()));
+        }
+        storage.close();
+    }
+
+    @Test
+    public void found_blocks() throws Exception {
+        FileStorage storage = FileStorage.open(folder.newFolder(), SEGMENT_SIZE);
+        GarbageCollector collector = new GarbageCollector(storage, new MemoryPins(),
+                new BasicMetrics());
+        BlockStore blockStore = collector.createBlockStore(BlockStore.createBlockStore(storage));
+
+        List<Block> garbage = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            Block block = createRawBlock(100);
+            blockStore.putBlock(block);
+            garbage.add(block);
+        }
+
+        // an add which finds a block during the collection (and does not write it again)
+        // relies on it, a found block is kept
+        List<Block> found = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread adder = new Thread(() -> {
+            while (!collector.isCollecting() && !done.get()) {
+                Thread.yield();
+            }
+            for (int i = 0; i < garbage.size() && !done.get(); i += 10) {
+                Block block = garbage.get(i);
+                if (blockStore.hasBlock(block.getCid())) {
+                    found.add(block);
+                }
+            }
+        });
+        adder.start();
+        collector.start(() -> done.set(true));
+        adder.join();
+        while (!done.get()) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(found.size() > 0);
+        for (Block block : found) {
+            assertTrue(storage.hasBlock(block.getCid()));
+        }
+        storage.close();
+    }
+
+    @Test
+    public void add_across_collection() throws Exception {
+        FileStorage storage = FileStorage.open(folder.newFolder(), SEGMENT_SIZE);
+        MemoryPins pins = new MemoryPins();
+        GarbageCollector collector = new GarbageCollector(storage, pins, new BasicMetrics());
+        BlockStore blockStore = collector.createBlockStore(BlockStore.createBlockStore(storage));
+
+        Block existing = createRawBlock(1000);
+        blockStore.putBlock(existing);
+
+        // the blocks of an add written (or found) before a collection are kept, the add
+        // holds the lock only for its pin, which is after the collection
+        List<Block> added = new ArrayList<>();
+        collector.begin();
+        List<Block> shared = new ArrayList<>();
+        assertTrue(blockStore.hasBlock(existing.getCid()));
+        shared.add(existing);
+        Node root = createDag(blockStore, added, shared);
+        collector.collect(() -> false);
+        collector.pin(() -> false, root.getCid(), true);
+        collector.end();
+
+        for (Block block : added) {
+            assertTrue(storage.hasBlock(block.getCid()));
+        }
+        assertTrue(storage.hasBlock(existing.getCid()));
+
+        // after the add, its unpinned blocks are garbage again
+        pins.unpin(root.getCid());
+        collector.collect(() -> false);
+        assertEquals(0, storage.numBlocks());
+        storage.close();
+    }
+
+    private static class MemoryPins implements Pins {
+        private final Map<Cid, Boolean> pins = new HashMap<>();
+
+        @Override
+        public synchronized void pin(@NonNull Cid cid, boolean recursive) {
+            pins.merge(cid, recursive, Boolean::logicalOr);
+        }
+
+        @Override
+        public synchronized void unpin(@NonNull Cid cid) {
+            pins.remove(cid);
+        }
+
+        @Override
+        public synchronized boolean isPinned(@NonNull Cid cid) {
+            return pins.containsKey(cid);
+        }
+
+        @NonNull
+        @Override
+        public synchronized List<Cid> getPins(boolean recursive) {
+            List<Cid> cids = new ArrayList<>();
+            for (Map.Entry<Cid, Boolean> entry : pins.entrySet()) {
+                if (entry.getValue() == recursive) {
+                    cids.add(entry.getKey());
+                }
+            }
+            return cids;
+        }
+
+        @Override
+        public synchronized void clear() {
+            pins.clear();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package threads.lite;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import threads.lite.cid.Cid;
+import threads.lite.core.Closeable;
+import threads.lite.dag.DagService;
+import threads.lite.format.BasicBlock;
+import threads.lite.format.Decoder;
+import threads.lite.format.Node;
+
+// a dag service over a map of encoded nodes, the nodes are decoded on every get (counted)
+class MemoryDagService implements DagService {
+    final Map<Cid, byte[]> blocks = new HashMap<>();
+    final AtomicInteger gets = new AtomicInteger();
+
+    // a UnixFS file node (without content), the size makes it unique
+    @NonNull
+    static Node fileNode(int size) {
+        return Node.createNodeWithData(unixfs.pb.Unixfs.Data.newBuilder()
+                .setType(unixfs.pb.Unixfs.Data.DataType.File)
+                .setFilesize(size).build().toByteArray());
+    }
+
+    @Override
+    public Node getNode(@NonNull Closeable closeable, @NonNull Cid cid, boolean root) {
+        gets.incrementAndGet();
+        byte[] data = blocks.get(cid);
+        if (data == null) {
+            return null;
+        }
+        return Decoder.Decode(BasicBlock.createBlockWithCid(cid, data));
+    }
+
+    @Override
+    public void preload(@NonNull Closeable ctx, @NonNull List<Cid> cids) {
+    }
+
+    @Override
+    public void Add(@NonNull Node nd) {
+        blocks.put(nd.getCid(), nd.getRawData());
+    }
+
+    @Override
+    public void AddMany(@NonNull List<Node> nodes) {
+        for (Node node : nodes) {
+            Add(node);
+        }
+    }
+}
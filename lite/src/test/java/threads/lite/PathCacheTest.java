@@ -0,0 +1,92 @@
+package threads.lite;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import threads.lite.core.Closeable;
+import threads.lite.dag.DagService;
+import threads.lite.dag.Directory;
+import threads.lite.format.Node;
+import threads.lite.utils.NodeCache;
+import threads.lite.utils.Path;
+import threads.lite.utils.PathCache;
+import threads.lite.utils.Resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PathCacheTest {
+
+    private static final Closeable closeable = () -> false;
+
+    @Test
+    public void node_cache() throws Exception {
+        MemoryDagService dagService = new MemoryDagService();
+        NodeCache nodeCache = new NodeCache(1024 * 1024);
+        DagService dags = nodeCache.createDagService(dagService);
+
+        // site/css/style.css
+        Directory css = Directory.createDirectory(dagService);
+        Node style = MemoryDagService.fileNode(42);
+        dagService.Add(style);
+        css.addChild(closeable, "style.css", style);
+        dagService.Add(css.getNode());
+        Directory site = Directory.createDirectory(dagService);
+        site.addChild(closeable, "css", css.getNode());
+        Node root = site.getNode();
+        dagService.Add(root);
+
+        Path path = Path.create(IPFS.IPFS_PATH + root.getCid().String() + "/css/style.css");
+        Node node = Resolver.resolveNode(closeable, dags, path);
+        assertNotNull(node);
+        assertEquals(style.getCid(), node.getCid());
+        assertEquals(3, dagService.gets.get());
+
+        // the nodes are decoded once
+        Node again = Resolver.resolveNode(closeable, dags, path);
+        assertSame(node, again);
+        assertEquals(3, dagService.gets.get());
+
+        // bounded by the size of the encoded nodes
+        nodeCache = new NodeCache(root.getRawData().length);
+        dags = nodeCache.createDagService(dagService);
+        Resolver.resolveNode(closeable, dags, path);
+        assertTrue(nodeCache.size() <= root.getRawData().length);
+    }
+
+    @Test
+    public void path_cache() {
+        PathCache pathCache = new PathCache(2);
+        Node dir = Directory.createDirectory(new MemoryDagService()).getNode();
+        Node file = MemoryDagService.fileNode(42);
+        List<String> path = Arrays.asList("css", "style.css");
+
+        PathCache.Entry entry = PathCache.Entry.create(file);
+        assertFalse(entry.isDir());
+        assertEquals(unixfs.pb.Unixfs.Data.DataType.File, entry.getType());
+        assertEquals(file.size(), entry.getSize());
+        pathCache.put(dir.getCid(), path, entry);
+
+        assertSame(entry, pathCache.get(dir.getCid(), Arrays.asList("css", "style.css")));
+        // also known by its cid
+        assertSame(entry, pathCache.get(file.getCid(), Collections.emptyList()));
+        assertNull(pathCache.get(dir.getCid(), Collections.singletonList("css")));
+
+        PathCache.Entry dirEntry = PathCache.Entry.create(dir);
+        assertTrue(dirEntry.isDir());
+        pathCache.put(dir.getCid(), Collections.emptyList(), dirEntry);
+
+        // the least recently used entry is evicted
+        assertEquals(2, pathCache.size());
+        assertNull(pathCache.get(dir.getCid(), path));
+        assertSame(dirEntry, pathCache.get(dir.getCid(), Collections.emptyList()));
+    }
+}
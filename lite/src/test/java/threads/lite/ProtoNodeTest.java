@@ -0,0 +1,121 @@
+package threads.lite;
+
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import threads.lite.cid.Cid;
+import threads.lite.format.BasicBlock;
+import threads.lite.format.Decoder;
+import threads.lite.format.Link;
+import threads.lite.format.Node;
+import threads.lite.format.ProtoNode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ProtoNodeTest {
+
+    private static void varint(@NonNull ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void bytes(@NonNull ByteArrayOutputStream out, int field, byte[] bytes) {
+        varint(out, (field << 3) | 2);
+        varint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    @NonNull
+    private static byte[] link(@NonNull Cid cid, @NonNull String name, long size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bytes(out, 1, cid.bytes());
+        bytes(out, 2, name.getBytes(StandardCharsets.UTF_8));
+        varint(out, 3 << 3);
+        varint(out, size);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void decode_view() {
+        Cid a = Node.createNodeWithData(new byte[]{1}).getCid();
+        Cid b = Node.createNodeWithData(new byte[]{2}).getCid();
+        Cid c = Node.createNodeWithData(new byte[]{3}).getCid();
+
+        // links before the data (as go), not sorted and with an unknown field
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bytes(out, 2, link(c, "c.txt", 300));
+        bytes(out, 2, link(a, "a.txt", 100));
+        varint(out, 7 << 3);
+        varint(out, 42);
+        bytes(out, 2, link(b, "b.txt", 200));
+        bytes(out, 1, new byte[]{8, 1});
+        byte[] encoded = out.toByteArray();
+
+        Cid cid = Node.v0CidPrefix.sum(encoded);
+        Node node = Decoder.Decode(BasicBlock.createBlockWithCid(cid, encoded));
+
+        // the encoding is kept, the cid is not encoded again
+        assertEquals(cid, node.getCid());
+        assertArrayEquals(encoded, node.getRawData());
+        assertArrayEquals(new byte[]{8, 1}, node.getData());
+        ByteBuffer buffer = ((ProtoNode) node).getDataBuffer();
+        assertEquals(2, buffer.remaining());
+        assertEquals(encoded.length + 600, node.size());
+
+        // the links in the order of their names
+        assertEquals(3, node.numLinks());
+        assertEquals("a.txt", node.getLink(0).getName());
+        assertEquals(a, node.getLink(0).getCid());
+        assertEquals(100, node.getLink(0).getSize());
+        List<Link> links = node.getLinks();
+        assertEquals("b.txt", links.get(1).getName());
+        assertEquals("c.txt", links.get(2).getName());
+
+        Link resolved = node.resolveLink(Collections.singletonList("b.txt")).getLink();
+        assertNotNull(resolved);
+        assertEquals(b, resolved.getCid());
+        assertEquals(200, resolved.getSize());
+    }
+
+    @Test
+    public void copy_on_write() {
+        ProtoNode node = Node.createNodeWithData(new byte[]{8, 1});
+        for (int i = 0; i < 174; i++) {
+            Cid cid = Node.createNodeWithData(new byte[]{(byte) i}).getCid();
+            node.addRawLink(Link.create(cid.bytes(), "", 1000 + i));
+        }
+        byte[] encoded = node.getRawData();
+        Node decoded = Decoder.Decode(BasicBlock.createBlockWithCid(node.getCid(), encoded));
+        assertEquals(node.getCid(), decoded.getCid());
+        assertEquals(node.size(), decoded.size());
+        assertEquals(174, decoded.numLinks());
+        assertEquals(node.getLink(173).getCid(), decoded.getLink(173).getCid());
+
+        // a change of the copy does not change the view
+        ProtoNode copy = (ProtoNode) ((ProtoNode) decoded).copy();
+        assertEquals(node.getCid(), copy.getCid());
+        copy.removeNodeLink("");
+        assertEquals(173, copy.numLinks());
+        assertNotEquals(node.getCid(), copy.getCid());
+        assertEquals(174, decoded.numLinks());
+        assertArrayEquals(encoded, decoded.getRawData());
+
+        // a changed node is encoded as a built one
+        node.removeNodeLink("");
+        assertEquals(node.getCid(), copy.getCid());
+    }
+}
@@ -0,0 +1,63 @@
+package threads.lite;
+
+
+import org.junit.Test;
+
+import threads.lite.dag.ReadAhead;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReadAheadTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void stall_grows_window() {
+        ReadAhead readAhead = new ReadAhead(2, 4, 64);
+        readAhead.consumed(100 * MS, -1, 100 * MS);
+        assertEquals(8, readAhead.getWindow());
+        assertEquals(1, readAhead.getStalls());
+        assertEquals(100, readAhead.getStallTime());
+
+        readAhead.consumed(300 * MS, 150 * MS, 100 * MS);
+        assertEquals(16, readAhead.getWindow());
+        assertEquals(2, readAhead.getStalls());
+    }
+
+    @Test
+    public void seek_halves_window() {
+        ReadAhead readAhead = new ReadAhead(2, 16, 64);
+        readAhead.seek(0);
+        assertEquals(16, readAhead.getWindow());
+        readAhead.seek(5);
+        assertEquals(8, readAhead.getWindow());
+        assertEquals(5, readAhead.getCancelled());
+        readAhead.seek(5);
+        readAhead.seek(5);
+        readAhead.seek(5);
+        assertEquals(2, readAhead.getWindow());
+    }
+
+    @Test
+    public void converges_to_bandwidth_delay_product() {
+        ReadAhead readAhead = new ReadAhead(2, 40, 64);
+        // a leaf every 10 ms, blocks arrive 50 ms after the prefetch
+        long now = 0;
+        for (int i = 0; i < 2000; i++) {
+            now += 10 * MS;
+            readAhead.consumed(now, now - 50 * MS, 0);
+        }
+        // 50 / 10 leaves plus the headroom
+        assertEquals(7, readAhead.getWindow());
+        assertEquals(0, readAhead.getStalls());
+
+        // slower peers, the window grows again
+        for (int i = 0; i < 2000; i++) {
+            now += 10 * MS;
+            readAhead.consumed(now, now - 200 * MS, 50 * MS);
+        }
+        assertTrue(readAhead.getWindow() >= 20);
+        assertTrue(readAhead.getWindow() <= 64);
+    }
+}
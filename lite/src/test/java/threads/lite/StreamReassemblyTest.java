@@ -0,0 +1,121 @@
+package threads.lite;
+
+
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.stream.BaseStream;
+import net.luminis.quic.stream.StreamElement;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamReassemblyTest {
+
+    private static final int SIZE = 4 * 1024 * 1024;
+    private static final int FRAME_SIZE = 100;
+
+    private static List<StreamFrame> shuffledFrames(byte[] data, int window, Random random) {
+        List<StreamFrame> frames = new ArrayList<>();
+        for (int offset = 0; offset < data.length; offset += FRAME_SIZE) {
+            byte[] frameData = Arrays.copyOfRange(data, offset,
+                    Integer.min(data.length, offset + FRAME_SIZE));
+            frames.add(new StreamFrame(0, offset, frameData, false));
+            if (random.nextInt(10) == 0) {
+                // retransmission
+                frames.add(new StreamFrame(0, offset, frameData, false));
+            }
+        }
+        // frames arrive out of order, but not more than the window
+        for (int start = 0; start < frames.size(); start += window) {
+            Collections.shuffle(frames.subList(start, Integer.min(frames.size(), start + window)), random);
+        }
+        return frames;
+    }
+
+    @Test
+    public void shuffled_arrival() {
+        Random random = new Random(7);
+        byte[] data = new byte[SIZE / 4];
+        random.nextBytes(data);
+        List<StreamFrame> frames = shuffledFrames(data, 2000, random);
+
+        // a slow reader: the frames are added, then read in small pieces
+        TestStream stream = new TestStream();
+        for (StreamFrame frame : frames) {
+            stream.add(frame);
+            stream.available();
+        }
+
+        ByteBuffer result = ByteBuffer.allocate(data.length);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        while (stream.available() > 0) {
+            buffer.clear();
+            stream.read(buffer);
+            buffer.flip();
+            result.put(buffer);
+        }
+
+        assertArrayEquals(data, result.array());
+    }
+
+    @Test
+    public void concurrent_reader() throws Exception {
+        Random random = new Random(11);
+        byte[] data = new byte[SIZE];
+        random.nextBytes(data);
+        List<StreamFrame> frames = shuffledFrames(data, 100, random);
+
+        TestStream stream = new TestStream();
+        Thread producer = new Thread(() -> {
+            for (StreamFrame frame : frames) {
+                stream.add(frame);
+            }
+        });
+        ByteBuffer result = ByteBuffer.allocate(SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long start = System.nanoTime();
+        producer.start();
+        while (result.hasRemaining()) {
+            buffer.clear();
+            buffer.limit(Integer.min(buffer.capacity(), result.remaining()));
+            if (stream.read(buffer) > 0) {
+                buffer.flip();
+                result.put(buffer);
+            }
+            assertTrue(System.nanoTime() - start < 30_000_000_000L);
+        }
+        producer.join();
+
+        assertEquals(SIZE, stream.offset());
+        assertArrayEquals(data, result.array());
+    }
+
+    private static class TestStream extends BaseStream {
+        @Override
+        protected boolean add(StreamElement frame) {
+            return super.add(frame);
+        }
+
+        int available() {
+            return bytesAvailable();
+        }
+
+        @Override
+        protected int read(ByteBuffer buffer) {
+            return super.read(buffer);
+        }
+
+        long offset() {
+            return readOffset();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package threads.lite;
+
+
+import net.luminis.quic.QuicClientConnection;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+class TestConnections {
+
+    // a connection which is connected until it is closed
+    static QuicClientConnection createConnection() {
+        return createConnection(new AtomicReference<>());
+    }
+
+    // the last activity (packets) of the connection is the value of activity
+    static QuicClientConnection createConnection(AtomicReference<Instant> activity) {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        return (QuicClientConnection) Proxy.newProxyInstance(
+                QuicClientConnection.class.getClassLoader(),
+                new Class<?>[]{QuicClientConnection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isConnected":
+                            return connected.get();
+                        case "getLastActivity":
+                            return activity.get();
+                        case "close":
+                            connected.set(false);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
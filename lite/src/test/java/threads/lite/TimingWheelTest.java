@@ -0,0 +1,61 @@
+package threads.lite;
+
+
+import net.luminis.quic.concurrent.TimingWheel;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private static final int TIMERS = 10000;
+
+    @Test
+    public void expire_in_order() throws Exception {
+        TimingWheel wheel = new TimingWheel("test-timer", 1, TimeUnit.MILLISECONDS);
+        Random random = new Random(3);
+        CountDownLatch done = new CountDownLatch(TIMERS);
+        AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < TIMERS; i++) {
+            // delays up to 1.5 s: the timers are cascaded from the second wheel (256 ms per slot)
+            long delay = random.nextInt(1500);
+            long start = System.nanoTime();
+            wheel.schedule(() -> {
+                long late = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - delay;
+                if (late < 0) {
+                    early.incrementAndGet();
+                }
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        TimingWheel wheel = new TimingWheel("test-timer", 1, TimeUnit.MILLISECONDS);
+        AtomicBoolean cancelledRan = new AtomicBoolean(false);
+        CountDownLatch done = new CountDownLatch(1);
+
+        TimingWheel.Timer cancelled = wheel.schedule(() -> cancelledRan.set(true), 20, TimeUnit.MILLISECONDS);
+        TimingWheel.Timer expired = wheel.schedule(done::countDown, 40, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(expired.cancel());
+        assertFalse(cancelledRan.get());
+        assertEquals(0, wheel.size());
+    }
+}